@@ -75,6 +75,7 @@ import org.dcm4che.net.DcmServiceBase;
 import org.dcm4che.net.DcmServiceException;
 import org.dcm4che.net.DcmServiceRegistry;
 import org.dcm4che.net.Dimse;
+import org.dcm4che.net.TransferableInput;
 import org.dcm4che.server.DcmHandler;
 import org.dcm4che.server.Server;
 import org.dcm4che.server.ServerFactory;
@@ -321,11 +322,17 @@ public class DcmRcv extends DcmServiceBase
         File file = devnull ? dir 
                 : new File(dir, fmi.getMediaStorageSOPInstanceUID());
         log.info("M-WRITE " + file);
+        FileOutputStream fos = new FileOutputStream(file);
         BufferedOutputStream out = new BufferedOutputStream(
-        		new FileOutputStream(file), (byte[]) buffer.get()); 
+        		fos, (byte[]) buffer.get()); 
         try {
             fmi.write(out);
-            out.copyFrom(in);
+            if (in instanceof TransferableInput) {
+                out.flush();
+                ((TransferableInput) in).transferTo(fos.getChannel(), -1);
+            } else {
+                out.copyFrom(in);
+            }
         } finally {
             try {
                 out.close();
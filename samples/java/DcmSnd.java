@@ -46,7 +46,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 import java.text.MessageFormat;
 import java.util.Enumeration;
@@ -78,6 +81,7 @@ import org.dcm4che.net.ActiveAssociation;
 import org.dcm4che.net.Association;
 import org.dcm4che.net.AssociationFactory;
 import org.dcm4che.net.DataSource;
+import org.dcm4che.net.FileRegionOutput;
 import org.dcm4che.net.PDU;
 import org.dcm4che.net.PresContext;
 import org.dcm4che.server.PollDirSrv;
@@ -425,19 +429,22 @@ public class DcmSnd implements PollDirSrv.Handler {
 
     private boolean sendFile(ActiveAssociation active, File file)
         throws InterruptedException, IOException {
+        FileInputStream fin = null;
         InputStream in = null;
         DcmParser parser = null;
         Dataset ds = null;
         try {
             try {
-                in = new BufferedInputStream(new FileInputStream(file));
+                fin = new FileInputStream(file);
+                in = new BufferedInputStream(fin);
                 parser = pFact.newDcmParser(in);
                 try {
                     FileFormat format = parser.detectFileFormat();
                     ds = oFact.newDataset();
                     parser.setDcmHandler(ds.getDcmHandler());
                     parser.parseDcmFile(format, Tags.PixelData);
-                    if (parser.getReadTag() == Tags.PixelData) {
+                    if (parser.getReadTag() == Tags.PixelData
+                            && !parser.getDcmDecodeParam().deflated) {
                         if (parser.getStreamPosition() + parser.getReadLength()
                             > file.length()) {
                             throw new EOFException(
@@ -465,7 +472,7 @@ public class DcmSnd implements PollDirSrv.Handler {
                         new Object[] { file, e }));
                 return false;
             }
-            sendDataset(active, file, parser, ds);
+            sendDataset(active, file, fin.getChannel(), parser, ds);
             return true;
         } finally {
             if (in != null) {
@@ -478,7 +485,7 @@ public class DcmSnd implements PollDirSrv.Handler {
     }
 
     private boolean sendDataset(ActiveAssociation active, File file,
-            DcmParser parser, Dataset ds)
+            FileChannel channel, DcmParser parser, Dataset ds)
             throws InterruptedException, IOException {
         applyUIDSuffix(ds);
         doOverwrite(ds);
@@ -544,7 +551,7 @@ public class DcmSnd implements PollDirSrv.Handler {
                     sopClassUID,
                     sopInstUID,
                     priority),
-                new MyDataSource(parser, ds, buffer)),
+                new MyDataSource(channel, parser, ds, buffer)),
             null);
         sentBytes += parser.getStreamPosition();
         ++sentCount;
@@ -574,10 +581,13 @@ public class DcmSnd implements PollDirSrv.Handler {
     }
 
     private final class MyDataSource implements DataSource {
+        final FileChannel channel;
         final DcmParser parser;
         final Dataset ds;
         final byte[] buffer;
-        MyDataSource(DcmParser parser, Dataset ds, byte[] buffer) {
+        MyDataSource(FileChannel channel, DcmParser parser, Dataset ds,
+                byte[] buffer) {
+            this.channel = channel;
             this.parser = parser;
             this.ds = ds;
             this.buffer = buffer;
@@ -656,7 +666,20 @@ public class DcmSnd implements PollDirSrv.Handler {
                 throw new DcmParseException(
                     "Illegal length of OW Pixel Data: " + len);
             }
-            if (buffer == null) {
+            if (!swap && !parser.getDcmDecodeParam().deflated
+                    && out instanceof FileRegionOutput) {
+                // send directly from file, skip the value in the parsed
+                // stream; positions of inflated streams are not file offsets
+                ((FileRegionOutput) out).transferFrom(
+                    channel, parser.getStreamPosition(), len);
+                for (long remain = len; remain > 0;) {
+                    long n = in.skip(remain);
+                    if (n <= 0) {
+                        throw new EOFException("EOF during skip of pixel data");
+                    }
+                    remain -= n;
+                }
+            } else if (buffer == null) {
                 if (swap) {
                     int tmp;
                     for (int i = 0; i < len; ++i, ++i) {
@@ -700,7 +723,8 @@ public class DcmSnd implements PollDirSrv.Handler {
         if (cipherSuites != null) {
             return tls.getSocketFactory(cipherSuites).createSocket(host, port);
         } else {
-            return new Socket(host, port);
+            return SocketChannel.open(
+                new InetSocketAddress(host, port)).socket();
         }
     }
 
@@ -0,0 +1,722 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.net.SocketFactory;
+
+import org.apache.log4j.Logger;
+import org.dcm4che.data.Command;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.net.AAbort;
+import org.dcm4che.net.AAssociateAC;
+import org.dcm4che.net.AAssociateRQ;
+import org.dcm4che.net.ActiveAssociation;
+import org.dcm4che.net.Association;
+import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.Dimse;
+import org.dcm4che.net.PDU;
+import org.dcm4che.net.PresContext;
+
+/**
+ * Pool of established associations to remote Application Entities, which
+ * are reused for subsequent requests instead of negotiating a new
+ * association for each request.
+ * <p>
+ * Associations are pooled per peer, identified by called AET, host and
+ * port. A borrowed association has negotiated the requested SOP Class with
+ * the requested Transfer Syntaxes. If no pooled association of the peer
+ * did, a new association is negotiated, which proposes the requested and
+ * the most recently requested other Presentation Contexts of the peer, as
+ * many as fit into one A-ASSOCIATE-RQ. Associations idle longer than
+ * the validation interval are checked by a C-ECHO before they are
+ * lent again; associations idle longer than the idle timeout are released.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * ActiveAssociation active = pool.borrow(aet, host, port, cuid, tsuids);
+ * try {
+ *     PresContext pc =
+ *         AssociationPool.getAcceptedPresContext(active, cuid, tsuids);
+ *     ...
+ *     pool.release(active);
+ * } catch (IOException e) {
+ *     pool.invalidate(active);
+ *     throw e;
+ * }
+ * </pre>
+ *
+ * @version $Revision$
+ */
+public class AssociationPool {
+
+    private static final Logger log = Logger.getLogger(AssociationPool.class);
+
+    private static final AssociationFactory assocFact =
+        AssociationFactory.getInstance();
+
+    private static final DcmObjectFactory dcmFact =
+        DcmObjectFactory.getInstance();
+
+    private static final int ECHO_PCID = 1;
+
+    private static final String[] ECHO_TS = {
+        UIDs.ImplicitVRLittleEndian
+    };
+
+    private static final long EVICTION_INTERVAL = 1000L;
+
+    /** Number of Presentation Contexts besides Verification per request. */
+    private static final int MAX_PROPOSALS = 127;
+
+    private String callingAET = "ANONYMOUS";
+    private int maxPDULength = 16352;
+    private int acTimeout = 5000;
+    private int dimseTimeout = 0;
+    private int soCloseDelay = 500;
+    private boolean packPDVs = false;
+    private int maxAssociationsPerPeer = 4;
+    private int idleTimeout = 60000;
+    private int validationInterval = 10000;
+    private int borrowTimeout = 10000;
+    private SocketFactory socketFactory = null;
+
+    private final HashMap peers = new HashMap();
+    private final HashMap borrowed = new HashMap();
+    private Timer timer = null;
+    private boolean closed = false;
+
+    private long borrowCount = 0;
+    private long createdCount = 0;
+    private long totalBorrowWaitTime = 0;
+    private long maxBorrowWaitTime = 0;
+
+    public final String getCallingAET() {
+        return callingAET;
+    }
+
+    public final void setCallingAET(String callingAET) {
+        this.callingAET = callingAET;
+    }
+
+    public final int getMaxPDULength() {
+        return maxPDULength;
+    }
+
+    public final void setMaxPDULength(int maxPDULength) {
+        this.maxPDULength = maxPDULength;
+    }
+
+    public final int getAcTimeout() {
+        return acTimeout;
+    }
+
+    public final void setAcTimeout(int acTimeout) {
+        this.acTimeout = acTimeout;
+    }
+
+    public final int getDimseTimeout() {
+        return dimseTimeout;
+    }
+
+    public final void setDimseTimeout(int dimseTimeout) {
+        this.dimseTimeout = dimseTimeout;
+    }
+
+    public final int getSoCloseDelay() {
+        return soCloseDelay;
+    }
+
+    public final void setSoCloseDelay(int soCloseDelay) {
+        this.soCloseDelay = soCloseDelay;
+    }
+
+    public final boolean isPackPDVs() {
+        return packPDVs;
+    }
+
+    public final void setPackPDVs(boolean packPDVs) {
+        this.packPDVs = packPDVs;
+    }
+
+    public final int getMaxAssociationsPerPeer() {
+        return maxAssociationsPerPeer;
+    }
+
+    /**
+     * Sets the maximal number of associations - borrowed or idle - to one
+     * peer. Further borrowers wait, until an association is released.
+     */
+    public final synchronized void setMaxAssociationsPerPeer(int max) {
+        if (max < 1)
+            throw new IllegalArgumentException("max: " + max);
+        this.maxAssociationsPerPeer = max;
+        notifyAll();
+    }
+
+    public final int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time in ms, after which idle associations are released.
+     */
+    public final void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public final int getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * Sets the time in ms, after which idle associations are checked by a
+     * C-ECHO, before they are lent again. <code>0</code> checks every
+     * reused association, <code>-1</code> disables the check.
+     */
+    public final void setValidationInterval(int validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public final int getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    /**
+     * Sets the maximal time in ms, a borrower waits for a free association,
+     * if the maximal number of associations to the peer is reached.
+     * <code>0</code> waits infinitely.
+     */
+    public final void setBorrowTimeout(int borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    public final SocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    /**
+     * Sets the factory creating the sockets of new associations, e.g. for
+     * TLS connections. By default, sockets are created by a
+     * <code>SocketChannel</code>.
+     */
+    public final void setSocketFactory(SocketFactory socketFactory) {
+        this.socketFactory = socketFactory;
+    }
+
+    /**
+     * Returns an association to the specified peer, which has negotiated
+     * the SOP Class with one of the Transfer Syntaxes. Reuses an idle
+     * association, if available, otherwise negotiates a new association.
+     *
+     * @param calledAET called AE title of the peer
+     * @param host host name of the peer
+     * @param port port of the peer
+     * @param asuid SOP Class UID
+     * @param tsuids acceptable Transfer Syntax UIDs
+     * @return the borrowed association, which has to be returned by
+     *         {@link #release} or {@link #invalidate}
+     * @throws InterruptedIOException if no association becomes available
+     *         within the borrow timeout
+     * @throws IOException if the negotiation of a new association failed
+     */
+    public ActiveAssociation borrow(String calledAET, String host, int port,
+            String asuid, String[] tsuids)
+            throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Peer peer;
+        synchronized (this) {
+            checkOpen();
+            String key = calledAET + '@' + host + ':' + port;
+            peer = (Peer) peers.get(key);
+            if (peer == null) {
+                peer = new Peer(calledAET, host, port);
+                peers.put(key, peer);
+            }
+            peer.propose(asuid, tsuids);
+        }
+        for (;;) {
+            Entry entry = null;
+            Entry evicted = null;
+            synchronized (this) {
+                checkOpen();
+                entry = peer.takeIdle(asuid, tsuids);
+                if (entry == null && peer.count >= maxAssociationsPerPeer) {
+                    // make room for an association with the missing context
+                    evicted = peer.takeOldestIdle();
+                    if (evicted == null) {
+                        awaitRelease(start);
+                        continue;
+                    }
+                } else if (entry == null) {
+                    ++peer.count;
+                }
+            }
+            if (evicted != null) {
+                discard(evicted);
+                continue;
+            }
+            if (entry != null) {
+                if (!isValid(entry)) {
+                    discard(entry);
+                    continue;
+                }
+                return lend(entry, start, false);
+            }
+            try {
+                entry = new Entry(peer, connect(peer, asuid, tsuids));
+            } catch (IOException e) {
+                synchronized (this) {
+                    --peer.count;
+                    notifyAll();
+                }
+                throw e;
+            }
+            return lend(entry, start, true);
+        }
+    }
+
+    /**
+     * Returns a borrowed association to the pool. Associations, which are
+     * no longer established, are discarded.
+     */
+    public void release(ActiveAssociation active) {
+        Entry entry;
+        boolean discard;
+        synchronized (this) {
+            entry = (Entry) borrowed.remove(active);
+            if (entry == null)
+                throw new IllegalArgumentException("Not borrowed: " + active);
+            discard = closed || !isEstablished(entry.active);
+            if (!discard) {
+                entry.lastUsed = System.currentTimeMillis();
+                entry.peer.idle.addFirst(entry);
+                notifyAll();
+                return;
+            }
+        }
+        discard(entry);
+    }
+
+    /**
+     * Removes a borrowed association from the pool and closes it, e.g.
+     * after an I/O error.
+     */
+    public void invalidate(ActiveAssociation active) {
+        Entry entry;
+        synchronized (this) {
+            entry = (Entry) borrowed.remove(active);
+        }
+        if (entry == null)
+            throw new IllegalArgumentException("Not borrowed: " + active);
+        discard(entry);
+    }
+
+    /** Releases associations idle longer than the idle timeout. */
+    public void evictIdle() {
+        List evicted = new ArrayList();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Iterator it = peers.values().iterator(); it.hasNext();) {
+                Peer peer = (Peer) it.next();
+                for (Iterator it2 = peer.idle.iterator(); it2.hasNext();) {
+                    Entry entry = (Entry) it2.next();
+                    if (now - entry.lastUsed >= idleTimeout
+                            || !isEstablished(entry.active)) {
+                        it2.remove();
+                        evicted.add(entry);
+                    }
+                }
+            }
+        }
+        for (int i = 0, n = evicted.size(); i < n; i++)
+            discard((Entry) evicted.get(i));
+    }
+
+    /**
+     * Releases all idle associations. Associations, which are currently
+     * borrowed, are released, when they are returned to the pool.
+     */
+    public void close() {
+        List idle = new ArrayList();
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+            for (Iterator it = peers.values().iterator(); it.hasNext();) {
+                Peer peer = (Peer) it.next();
+                idle.addAll(peer.idle);
+                peer.idle.clear();
+            }
+            notifyAll();
+        }
+        for (int i = 0, n = idle.size(); i < n; i++)
+            discard((Entry) idle.get(i));
+    }
+
+    /** Returns the number of currently borrowed associations. */
+    public synchronized int getNumBorrowed() {
+        return borrowed.size();
+    }
+
+    /** Returns the number of idle associations in the pool. */
+    public synchronized int getNumIdle() {
+        int n = 0;
+        for (Iterator it = peers.values().iterator(); it.hasNext();)
+            n += ((Peer) it.next()).idle.size();
+        return n;
+    }
+
+    public synchronized long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /** Returns the number of associations negotiated by the pool. */
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Returns the fraction of borrowed associations, which were reused
+     * instead of negotiated.
+     */
+    public synchronized float getReuseRatio() {
+        return borrowCount == 0 ? 0.f
+                : (float) (borrowCount - createdCount) / borrowCount;
+    }
+
+    /**
+     * Returns the average time in ms spent in {@link #borrow}, including
+     * the negotiation of new associations.
+     */
+    public synchronized long getAverageBorrowWaitTime() {
+        return borrowCount == 0 ? 0 : totalBorrowWaitTime / borrowCount;
+    }
+
+    public synchronized long getMaxBorrowWaitTime() {
+        return maxBorrowWaitTime;
+    }
+
+    public synchronized void resetStatistics() {
+        borrowCount = 0;
+        createdCount = 0;
+        totalBorrowWaitTime = 0;
+        maxBorrowWaitTime = 0;
+    }
+
+    public String toString() {
+        return "AssociationPool[borrowed=" + getNumBorrowed() + ", idle="
+                + getNumIdle() + ", reuse=" + getReuseRatio() + "]";
+    }
+
+    /**
+     * Returns the Presentation Context, which was accepted for the SOP Class
+     * with one of the Transfer Syntaxes, or <code>null</code>, if the peer
+     * rejected the SOP Class or all of the Transfer Syntaxes.
+     */
+    public static PresContext getAcceptedPresContext(ActiveAssociation active,
+            String asuid, String[] tsuids) {
+        Association a = active.getAssociation();
+        for (int i = 0; i < tsuids.length; i++) {
+            PresContext pc = a.getAcceptedPresContext(asuid, tsuids[i]);
+            if (pc != null)
+                return pc;
+        }
+        return null;
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Pool closed");
+    }
+
+    private void awaitRelease(long start) throws InterruptedException,
+            InterruptedIOException {
+        if (borrowTimeout <= 0) {
+            wait();
+            return;
+        }
+        long remaining = start + borrowTimeout - System.currentTimeMillis();
+        if (remaining <= 0)
+            throw new InterruptedIOException("No free association within "
+                    + borrowTimeout + " ms");
+        wait(remaining);
+    }
+
+    private ActiveAssociation lend(Entry entry, long start, boolean created) {
+        long wait = System.currentTimeMillis() - start;
+        synchronized (this) {
+            borrowed.put(entry.active, entry);
+            ++borrowCount;
+            if (created)
+                ++createdCount;
+            totalBorrowWaitTime += wait;
+            if (wait > maxBorrowWaitTime)
+                maxBorrowWaitTime = wait;
+            if (timer == null) {
+                timer = new Timer(true);
+                timer.schedule(new TimerTask() {
+                    public void run() {
+                        evictIdle();
+                    }
+                }, EVICTION_INTERVAL, EVICTION_INTERVAL);
+            }
+        }
+        return entry.active;
+    }
+
+    private ActiveAssociation connect(Peer peer, String asuid,
+            String[] tsuids) throws IOException {
+        AAssociateRQ rq = assocFact.newAAssociateRQ();
+        rq.setCalledAET(peer.calledAET);
+        rq.setCallingAET(callingAET);
+        rq.setMaxPDULength(maxPDULength);
+        rq.addPresContext(assocFact.newPresContext(ECHO_PCID,
+                UIDs.Verification, ECHO_TS));
+        rq.addPresContext(assocFact.newPresContext(rq.nextPCID(), asuid,
+                tsuids));
+        synchronized (this) {
+            // most recently requested first; if concurrent requests evicted
+            // the requested context meanwhile, the least recently requested
+            // one does not fit
+            for (Iterator it = peer.proposed.iterator(); it.hasNext();) {
+                Proposal p = (Proposal) it.next();
+                if (p.matches(asuid, tsuids))
+                    continue;
+                int pcid = rq.nextPCID();
+                if (pcid == -1)
+                    break;
+                rq.addPresContext(assocFact.newPresContext(pcid, p.asuid,
+                        p.tsuids));
+            }
+        }
+        Socket s = newSocket(peer.host, peer.port);
+        Association a = assocFact.newRequestor(s);
+        a.setAcTimeout(acTimeout);
+        a.setDimseTimeout(dimseTimeout);
+        a.setSoCloseDelay(soCloseDelay);
+        a.setPackPDVs(packPDVs);
+        PDU ac;
+        try {
+            ac = a.connect(rq);
+        } catch (IOException e) {
+            try { s.close(); } catch (IOException ignore) {}
+            throw e;
+        }
+        if (!(ac instanceof AAssociateAC)) {
+            try { s.close(); } catch (IOException ignore) {}
+            throw new IOException("Association rejected: " + ac);
+        }
+        ActiveAssociation active = assocFact.newActiveAssociation(a, null);
+        active.start();
+        if (log.isDebugEnabled())
+            log.debug("Negotiated " + a + " for " + this);
+        return active;
+    }
+
+    private Socket newSocket(String host, int port) throws IOException {
+        if (socketFactory != null)
+            return socketFactory.createSocket(host, port);
+        return SocketChannel.open(new InetSocketAddress(host, port)).socket();
+    }
+
+    private boolean isValid(Entry entry) {
+        if (!isEstablished(entry.active))
+            return false;
+        if (validationInterval < 0 || System.currentTimeMillis()
+                - entry.lastUsed < validationInterval)
+            return true;
+        Association a = entry.active.getAssociation();
+        if (a.getAcceptedPresContext(UIDs.Verification, ECHO_TS[0]) == null)
+            return true;
+        try {
+            Command cmd = dcmFact.newCommand().initCEchoRQ(a.nextMsgID());
+            Dimse rsp = entry.active.invoke(
+                    assocFact.newDimse(ECHO_PCID, cmd)).get();
+            return rsp.getCommand().getStatus() == 0;
+        } catch (Exception e) {
+            log.info("C-ECHO failed on idle " + a + ": " + e);
+            return false;
+        }
+    }
+
+    private static boolean isEstablished(ActiveAssociation active) {
+        return active.getAssociation().getState()
+                == Association.ASSOCIATION_ESTABLISHED;
+    }
+
+    private void discard(Entry entry) {
+        synchronized (this) {
+            --entry.peer.count;
+            notifyAll();
+        }
+        close(entry.active);
+    }
+
+    private static void close(ActiveAssociation active) {
+        Association a = active.getAssociation();
+        if (!isEstablished(active))
+            return;
+        try {
+            active.release(false);
+        } catch (Exception e) {
+            log.info("Failed to release " + a + ": " + e);
+            try {
+                a.abort(assocFact.newAAbort(AAbort.SERVICE_USER,
+                        AAbort.REASON_NOT_SPECIFIED));
+            } catch (IOException ignore) {}
+        }
+    }
+
+    private static final class Proposal {
+        final String asuid;
+        final String[] tsuids;
+
+        Proposal(String asuid, String[] tsuids) {
+            this.asuid = asuid;
+            this.tsuids = (String[]) tsuids.clone();
+            Arrays.sort(this.tsuids);
+        }
+
+        boolean matches(String asuid, String[] tsuids) {
+            if (!this.asuid.equals(asuid) || this.tsuids.length != tsuids.length)
+                return false;
+            String[] tmp = (String[]) tsuids.clone();
+            Arrays.sort(tmp);
+            return Arrays.equals(this.tsuids, tmp);
+        }
+    }
+
+    private static final class Peer {
+        final String calledAET;
+        final String host;
+        final int port;
+        /** Requested contexts, the most recently requested first. */
+        final LinkedList proposed = new LinkedList();
+        final LinkedList idle = new LinkedList();
+        int count = 0;
+
+        Peer(String calledAET, String host, int port) {
+            this.calledAET = calledAET;
+            this.host = host;
+            this.port = port;
+        }
+
+        void propose(String asuid, String[] tsuids) {
+            Proposal p = null;
+            for (Iterator it = proposed.iterator(); it.hasNext();) {
+                Proposal tmp = (Proposal) it.next();
+                if (tmp.matches(asuid, tsuids)) {
+                    it.remove();
+                    p = tmp;
+                    break;
+                }
+            }
+            proposed.addFirst(p != null ? p : new Proposal(asuid, tsuids));
+            if (proposed.size() > MAX_PROPOSALS)
+                proposed.removeLast();
+        }
+
+        /** Returns the most recently used association, which negotiated
+         * the SOP Class with the Transfer Syntaxes. */
+        Entry takeIdle(String asuid, String[] tsuids) {
+            for (Iterator it = idle.iterator(); it.hasNext();) {
+                Entry entry = (Entry) it.next();
+                if (entry.negotiated(asuid, tsuids)) {
+                    it.remove();
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        Entry takeOldestIdle() {
+            return idle.isEmpty() ? null : (Entry) idle.removeLast();
+        }
+    }
+
+    private static final class Entry {
+        final Peer peer;
+        final ActiveAssociation active;
+        long lastUsed = System.currentTimeMillis();
+
+        Entry(Peer peer, ActiveAssociation active) {
+            this.peer = peer;
+            this.active = active;
+        }
+
+        /**
+         * Returns <code>true</code>, if the SOP Class was accepted with one
+         * of the Transfer Syntaxes, or was already proposed with them, so a
+         * new negotiation would not succeed either.
+         */
+        boolean negotiated(String asuid, String[] tsuids) {
+            if (getAcceptedPresContext(active, asuid, tsuids) != null)
+                return true;
+            AAssociateRQ rq = active.getAssociation().getAAssociateRQ();
+            for (Iterator it = rq.listPresContext().iterator(); it.hasNext();) {
+                PresContext pc = (PresContext) it.next();
+                if (pc.getAbstractSyntaxUID().equals(asuid)
+                        && new Proposal(asuid, (String[]) pc
+                                .getTransferSyntaxUIDs().toArray(
+                                        new String[0])).matches(asuid, tsuids))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
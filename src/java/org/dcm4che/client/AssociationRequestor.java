@@ -44,6 +44,8 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
+import javax.net.SocketFactory;
+
 import org.dcm4che.data.Command;
 import org.dcm4che.data.Dataset;
 import org.dcm4che.data.DcmObjectFactory;
@@ -86,6 +88,7 @@ public class AssociationRequestor {
 	private int dimseTimeout = 0;
 	private int soCloseDelay = 500;
 	private boolean packPDVs = false;
+	private SocketFactory socketFactory = null;
 
 	private AAssociateRQ aarq =
 		assocFact.newAAssociateRQ();
@@ -248,6 +251,25 @@ public class AssociationRequestor {
 		this.soCloseDelay = soCloseDelay;
 	}
 	
+	/**
+	 * @return
+	 */
+	public SocketFactory getSocketFactory() {
+		return socketFactory;
+	}
+
+	/**
+	 * Sets the factory creating the socket of the association, e.g. by
+	 * {@link org.dcm4che.util.SSLContextAdapter#getSocketFactory} for TLS
+	 * connections, which resume sessions cached by the adapter on
+	 * reconnect. By default, plain sockets are created.
+	 *
+	 * @param socketFactory
+	 */
+	public void setSocketFactory(SocketFactory socketFactory) {
+		this.socketFactory = socketFactory;
+	}
+	
 	public boolean isConnected() {
 		return active != null;
 	}
@@ -337,6 +359,9 @@ public class AssociationRequestor {
 	 * @return
 	 */
 	private Socket newSocket() throws UnknownHostException, IOException {
+		if (socketFactory != null) {
+			return socketFactory.createSocket(host, port);
+		}
 		return new Socket(host, port);
 	}
 	
@@ -59,6 +59,7 @@ import org.dcm4che.data.DcmElement;
 import org.dcm4che.data.DcmEncodeParam;
 import org.dcm4che.data.DcmParser;
 import org.dcm4che.data.DcmParserFactory;
+import org.dcm4che.data.ValueBufferPool;
 import org.dcm4che.dict.Tags;
 import org.dcm4che.dict.VRs;
 import org.dcm4che.image.PixelDataDescription;
@@ -91,7 +92,8 @@ class PrintSCUDataSource implements DataSource
         {
             final int OvRows = 0x10, OvCols = 0x11;
             final int OvOrigin = 0x50, OvData = 0x3000;
-            data = ds.getByteBuffer(group | OvData).array();
+            data = ValueBufferPool.toByteArray(
+                    ds.getByteBuffer(group | OvData));
             if (data == null)
                 throw new IllegalArgumentException("no overlay data");
             int[] origin = ds.getInts(group | OvOrigin);
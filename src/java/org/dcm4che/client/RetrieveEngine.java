@@ -0,0 +1,441 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.net.ActiveAssociation;
+import org.dcm4che.net.Association;
+import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.DataSource;
+import org.dcm4che.net.DcmServiceBase;
+import org.dcm4che.net.Dimse;
+import org.dcm4che.net.DimseListener;
+import org.dcm4che.net.PresContext;
+import org.dcm4che.util.TaskExecutor;
+
+/**
+ * Performs the C-STORE sub-operations of C-MOVE and C-GET requests in
+ * parallel. The returned {@link DcmServiceBase.MultiDimseRsp} is intended
+ * to be returned by <code>doCMove</code> or <code>doCGet</code> of a
+ * {@link DcmServiceBase}, which then writes a pending response for each
+ * completed batch of sub-operations and the final response.
+ * <p>
+ * C-MOVE sub-operations are distributed over several associations to the
+ * move destination, borrowed from an {@link AssociationPool}, so the
+ * number of concurrent associations per destination is limited by
+ * {@link AssociationPool#setMaxAssociationsPerPeer}. C-GET sub-operations
+ * are invoked on the association of the C-GET request, limited by its
+ * negotiated Asynchronous Operations Window.
+ * <p>
+ * A received C-CANCEL request stops the start of further sub-operations.
+ * The final response with status Cancel is written, after the running
+ * sub-operations completed.
+ *
+ * @version $Revision$
+ */
+public class RetrieveEngine {
+
+    public static final int SUCCESS = 0x0000;
+
+    public static final int CANCEL = 0xFE00;
+
+    public static final int SUB_OPERATIONS_FAILED = 0xA702;
+
+    public static final int SUB_OPERATIONS_WARNING = 0xB000;
+
+    public static final int SOP_CLASS_NOT_SUPPORTED = 0x0122;
+
+    public static final int PROCESSING_FAILURE = 0x0110;
+
+    private static final Logger log = Logger.getLogger(RetrieveEngine.class);
+
+    private static final AssociationFactory assocFact =
+        AssociationFactory.getInstance();
+
+    private static final DcmObjectFactory dcmFact =
+        DcmObjectFactory.getInstance();
+
+    /** Instance to send by a C-STORE sub-operation. */
+    public interface Instance {
+
+        String getSOPClassUID();
+
+        String getSOPInstanceUID();
+
+        /** Returns acceptable Transfer Syntaxes in order of preference. */
+        String[] getTransferSyntaxUIDs();
+
+        /** Returns the source of the dataset, encoded in the negotiated
+         * Transfer Syntax. */
+        DataSource getDataSource() throws IOException;
+    }
+
+    private final AssociationPool pool;
+    private TaskExecutor executor = TaskExecutor.getDefault();
+    private int parallelism = 4;
+    private int priority = Command.MEDIUM;
+
+    /**
+     * Creates an engine, which borrows associations to move destinations
+     * from the specified pool.
+     */
+    public RetrieveEngine(AssociationPool pool) {
+        if (pool == null)
+            throw new NullPointerException("pool");
+        this.pool = pool;
+    }
+
+    public final AssociationPool getAssociationPool() {
+        return pool;
+    }
+
+    public final TaskExecutor getTaskExecutor() {
+        return executor;
+    }
+
+    public final void setTaskExecutor(TaskExecutor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        this.executor = executor;
+    }
+
+    public final int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximal number of concurrent sub-operations of one
+     * retrieve request.
+     */
+    public final void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    public final int getPriority() {
+        return priority;
+    }
+
+    public final void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Starts the C-STORE sub-operations of a C-MOVE request to the move
+     * destination at the specified host and port.
+     *
+     * @param assoc association of the C-MOVE request
+     * @param rq C-MOVE request
+     * @param host host of the move destination
+     * @param port port of the move destination
+     * @param instances list of {@link Instance}s to send
+     * @return the response generator for <code>doCMove</code>
+     */
+    public DcmServiceBase.MultiDimseRsp move(ActiveAssociation assoc,
+            Dimse rq, String host, int port, List instances) {
+        Command cmd = rq.getCommand();
+        Retrieve retrieve = new MoveRetrieve(
+                cmd.getString(Tags.MoveDestination), host, port,
+                assoc.getAssociation().getCallingAET(), cmd.getMessageID(),
+                instances);
+        retrieve.start();
+        return retrieve;
+    }
+
+    /**
+     * Starts the C-STORE sub-operations of a C-GET request on the
+     * association of the request.
+     *
+     * @param assoc association of the C-GET request
+     * @param rq C-GET request
+     * @param instances list of {@link Instance}s to send
+     * @return the response generator for <code>doCGet</code>
+     */
+    public DcmServiceBase.MultiDimseRsp get(ActiveAssociation assoc,
+            Dimse rq, List instances) {
+        Retrieve retrieve = new GetRetrieve(assoc, instances);
+        retrieve.start();
+        return retrieve;
+    }
+
+    private static boolean isWarning(int status) {
+        return (status & 0xF000) == 0xB000 || status == 0x0107
+                || status == 0x0116;
+    }
+
+    private abstract class Retrieve
+            implements DcmServiceBase.MultiDimseRsp, DimseListener {
+
+        private final LinkedList queue;
+        private final int workers;
+        private final ArrayList failedUIDs = new ArrayList();
+        private int remaining;
+        private int completed = 0;
+        private int failed = 0;
+        private int warning = 0;
+        private int running = 0;
+        private int changes = 0;
+        private int reported = 0;
+        private boolean canceled = false;
+
+        Retrieve(List instances) {
+            this.queue = new LinkedList(instances);
+            this.remaining = instances.size();
+            this.workers = Math.min(parallelism, Math.max(1, remaining));
+        }
+
+        void start() {
+            synchronized (this) {
+                running = workers;
+            }
+            for (int i = 0; i < workers; i++)
+                executor.execute(new Runnable() {
+                    public void run() {
+                        work();
+                    }
+                }, "Retrieve-" + i);
+        }
+
+        private void work() {
+            try {
+                Instance inst;
+                while ((inst = take()) != null)
+                    done(inst, store(inst));
+            } finally {
+                synchronized (this) {
+                    --running;
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized Instance take() {
+            return canceled || queue.isEmpty() ? null
+                    : (Instance) queue.removeFirst();
+        }
+
+        private synchronized void done(Instance inst, int status) {
+            --remaining;
+            if (status == SUCCESS)
+                ++completed;
+            else if (isWarning(status))
+                ++warning;
+            else {
+                ++failed;
+                failedUIDs.add(inst.getSOPInstanceUID());
+            }
+            ++changes;
+            notifyAll();
+        }
+
+        private int store(Instance inst) {
+            String cuid = inst.getSOPClassUID();
+            String[] tsuids = inst.getTransferSyntaxUIDs();
+            ActiveAssociation active;
+            try {
+                active = borrow(cuid, tsuids);
+            } catch (Exception e) {
+                log.warn("Failed to open association for C-STORE of "
+                        + inst.getSOPInstanceUID() + ": " + e);
+                return PROCESSING_FAILURE;
+            }
+            boolean ok = false;
+            try {
+                PresContext pc = AssociationPool.getAcceptedPresContext(
+                        active, cuid, tsuids);
+                if (pc == null) {
+                    ok = true;
+                    return SOP_CLASS_NOT_SUPPORTED;
+                }
+                Association a = active.getAssociation();
+                Command cmd = dcmFact.newCommand().initCStoreRQ(
+                        a.nextMsgID(), cuid, inst.getSOPInstanceUID(),
+                        priority);
+                initStoreRQ(cmd);
+                Dimse rsp = active.invoke(assocFact.newDimse(pc.pcid(), cmd,
+                        inst.getDataSource())).get();
+                if (rsp == null)
+                    return PROCESSING_FAILURE;
+                ok = true;
+                return rsp.getCommand().getStatus();
+            } catch (Exception e) {
+                log.warn("C-STORE of " + inst.getSOPInstanceUID()
+                        + " failed: " + e);
+                return PROCESSING_FAILURE;
+            } finally {
+                release(active, ok);
+            }
+        }
+
+        abstract ActiveAssociation borrow(String cuid, String[] tsuids)
+                throws IOException, InterruptedException;
+
+        abstract void release(ActiveAssociation active, boolean ok);
+
+        void initStoreRQ(Command cmd) {
+        }
+
+        // MultiDimseRsp implementation ------------------------------
+        public DimseListener getCancelListener() {
+            return this;
+        }
+
+        /**
+         * Waits until further sub-operations completed and returns the
+         * counts of sub-operations by a pending response, or the final
+         * response after all sub-operations completed.
+         */
+        public synchronized Dataset next(ActiveAssociation assoc, Dimse rq,
+                Command rspCmd) {
+            try {
+                while (running > 0 && changes == reported)
+                    wait();
+            } catch (InterruptedException e) {
+                canceled = true;
+            }
+            reported = changes;
+            if (running > 0) {
+                putCounts(rspCmd, true);
+                return null;
+            }
+            int status = canceled && remaining > 0 ? CANCEL
+                    : failed == 0 && warning == 0 ? SUCCESS
+                    : completed == 0 && warning == 0 ? SUB_OPERATIONS_FAILED
+                    : SUB_OPERATIONS_WARNING;
+            rspCmd.putUS(Tags.Status, status);
+            putCounts(rspCmd, status == CANCEL);
+            if (status == SUCCESS || failedUIDs.isEmpty() && status != CANCEL)
+                return null;
+            Dataset ds = dcmFact.newDataset();
+            ArrayList uids = new ArrayList(failedUIDs);
+            if (status == CANCEL)
+                for (int i = 0, n = queue.size(); i < n; i++)
+                    uids.add(((Instance) queue.get(i)).getSOPInstanceUID());
+            ds.putUI(Tags.FailedSOPInstanceUIDList,
+                    (String[]) uids.toArray(new String[uids.size()]));
+            return ds;
+        }
+
+        private void putCounts(Command rspCmd, boolean withRemaining) {
+            if (withRemaining)
+                rspCmd.putUS(Tags.NumberOfRemainingSubOperations, remaining);
+            rspCmd.putUS(Tags.NumberOfCompletedSubOperations, completed);
+            rspCmd.putUS(Tags.NumberOfFailedSubOperations, failed);
+            rspCmd.putUS(Tags.NumberOfWarningSubOperations, warning);
+        }
+
+        public void release() {
+            cancel();
+        }
+
+        // DimseListener implementation (C-CANCEL-RQ) -------------------
+        public void dimseReceived(Association assoc, Dimse dimse) {
+            cancel();
+        }
+
+        private synchronized void cancel() {
+            if (running > 0 && !canceled) {
+                log.info("Cancel " + queue.size()
+                        + " not started sub-operations");
+                canceled = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private final class MoveRetrieve extends Retrieve {
+        private final String destAET;
+        private final String host;
+        private final int port;
+        private final String originatorAET;
+        private final int originatorMsgID;
+
+        MoveRetrieve(String destAET, String host, int port,
+                String originatorAET, int originatorMsgID, List instances) {
+            super(instances);
+            this.destAET = destAET;
+            this.host = host;
+            this.port = port;
+            this.originatorAET = originatorAET;
+            this.originatorMsgID = originatorMsgID;
+        }
+
+        ActiveAssociation borrow(String cuid, String[] tsuids)
+                throws IOException, InterruptedException {
+            return pool.borrow(destAET, host, port, cuid, tsuids);
+        }
+
+        void release(ActiveAssociation active, boolean ok) {
+            if (ok)
+                pool.release(active);
+            else
+                pool.invalidate(active);
+        }
+
+        void initStoreRQ(Command cmd) {
+            cmd.setMoveOriginator(originatorAET, originatorMsgID);
+        }
+    }
+
+    private final class GetRetrieve extends Retrieve {
+        private final ActiveAssociation assoc;
+
+        GetRetrieve(ActiveAssociation assoc, List instances) {
+            super(instances);
+            this.assoc = assoc;
+        }
+
+        ActiveAssociation borrow(String cuid, String[] tsuids) {
+            return assoc;
+        }
+
+        void release(ActiveAssociation active, boolean ok) {
+        }
+    }
+}
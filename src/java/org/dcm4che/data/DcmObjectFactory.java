@@ -58,6 +58,15 @@ public abstract class DcmObjectFactory {
 
     public abstract Dataset newDataset();
 
+    /**
+     * Returns a new <code>Dataset</code>, which defers reading of element
+     * values by its <code>readFile</code> methods for <code>File</code> and
+     * <code>ImageInputStream</code> sources until the first access of the
+     * particular element. The source must be kept unmodified as long as
+     * values of the returned <code>Dataset</code> are accessed.
+     */
+    public abstract Dataset newLazyDataset();
+
     public abstract FileMetaInfo newFileMetaInfo();
 
     public abstract FileMetaInfo newFileMetaInfo(String sopClassUID,
@@ -69,5 +78,26 @@ public abstract class DcmObjectFactory {
     public abstract PersonName newPersonName(String s);
 
     public abstract PersonName newPersonName();
-    
+
+    /**
+     * Compiles the specified query keys for repeated matching of datasets.
+     *
+     * @see Dataset#match(Dataset, boolean, boolean)
+     */
+    public abstract DatasetMatcher newDatasetMatcher(Dataset keys,
+            boolean ignorePNCase, boolean ignoreEmpty);
+
+    /**
+     * Enables caching of decoded string values by elements, whose value
+     * does not exceed the specified length. String values are then decoded
+     * only once per element and <code>SpecificCharacterSet</code>, which
+     * speeds up repeated access - e.g. by query matching - at the cost of
+     * keeping the decoded strings. By default, the cache is disabled.
+     *
+     * @param maxLength maximal value length in bytes; 0 disables the cache
+     */
+    public abstract void setMaxCachedStringLength(int maxLength);
+
+    public abstract int getMaxCachedStringLength();
+
 }
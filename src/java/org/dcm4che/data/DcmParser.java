@@ -84,6 +84,19 @@ public interface DcmParser {
 
     int getMaxValueLength();
 
+    /**
+     * Reads subsequent element values and data fragments into buffers
+     * allocated from the specified lease, instead of allocating a new
+     * <code>byte[]</code> for each value. The caller is responsible to
+     * release the lease, when the parsed object is no longer accessed.
+     *
+     * @param lease lease of a {@link ValueBufferPool} or <code>null</code>
+     *        to allocate a separate array for each value
+     */
+    void setValueBufferLease(ValueBufferPool.Lease lease);
+
+    ValueBufferPool.Lease getValueBufferLease();
+
     FileFormat detectFileFormat() throws IOException;
 
     int parseHeader() throws IOException;
@@ -133,12 +133,17 @@ public class SpecificCharacterSet {
         }
 
         public String decode(byte[] b) {
+            return decode(b, 0, b.length);
+        }
+
+        public String decode(byte[] b, int start, int len) {
             String cs = charset;
-            int off = 0;
-            int cur = 0;
+            int off = start;
+            int cur = start;
+            int end = start + len;
             int step = 1;
-            StringBuffer sb = new StringBuffer(b.length);
-            while (cur < b.length) {
+            StringBuffer sb = new StringBuffer(len);
+            while (cur < end) {
                 if (b[cur] == 0x1b) { // ESC
                     if (off < cur) {
                         sb.append(decode(b, off, cur - off, cs));
@@ -222,8 +227,8 @@ public class SpecificCharacterSet {
                     cur += step > 0 ? step : b[cur] < 0 ? 2 : 1;
                 }
             }
-            if (off < cur) {
-                sb.append(decode(b, off, cur - off, cs));
+            if (off < end) {
+                sb.append(decode(b, off, end - off, cs));
             }
             return sb.toString();
         }
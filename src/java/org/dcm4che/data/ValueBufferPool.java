@@ -0,0 +1,216 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * Pool of large byte array slabs, into which a {@link DcmParser} can read
+ * element values and data fragments instead of allocating a separate
+ * <code>byte[]</code> for each of them.
+ * <p>
+ * Slabs are handed out to {@link Lease} objects, one per parsed object. A
+ * lease has to be released explicitly by {@link Lease#release()}, after the
+ * application finished to access the parsed <code>Dataset</code>. Releasing
+ * the lease returns its slabs to the pool, where they get overwritten by
+ * subsequent parsing operations - so any further access of the
+ * <code>Dataset</code>, or of <code>ByteBuffer</code>s obtained from it,
+ * results in undefined values. Use {@link Dataset#putAll} to copy attributes,
+ * which shall survive the release of the lease, into another
+ * <code>Dataset</code>.
+ * <p>
+ * Values provided by a lease are slices of a shared array: consumers of
+ * {@link DcmElement#getByteBuffer()} have to respect
+ * <code>ByteBuffer.arrayOffset()</code> and <code>ByteBuffer.limit()</code>,
+ * if they access the backing array directly.
+ *
+ * @see DcmParser#setValueBufferLease(ValueBufferPool.Lease)
+ */
+public final class ValueBufferPool {
+
+    private static final int MIN_SLAB_SIZE = 0x1000; // 4K
+
+    private final int slabSize;
+    private final int maxSliceLength;
+    private final int maxPooledSlabs;
+    private final LinkedList free = new LinkedList();
+    private int allocated = 0;
+
+    /**
+     * Creates a pool of slabs with the specified size. Values larger than
+     * a quarter of the slab size are not pooled, but read into a separate
+     * array.
+     *
+     * @param slabSize size of one slab in bytes
+     * @param maxPooledSlabs maximal number of released slabs kept for reuse
+     */
+    public ValueBufferPool(int slabSize, int maxPooledSlabs) {
+        if (slabSize < MIN_SLAB_SIZE)
+            throw new IllegalArgumentException(
+                    "slabSize: " + slabSize + " < " + MIN_SLAB_SIZE);
+        if (maxPooledSlabs < 0)
+            throw new IllegalArgumentException(
+                    "maxPooledSlabs: " + maxPooledSlabs);
+        this.slabSize = slabSize;
+        this.maxSliceLength = slabSize >> 2;
+        this.maxPooledSlabs = maxPooledSlabs;
+    }
+
+    public final int getSlabSize() {
+        return slabSize;
+    }
+
+    public final int getMaxPooledSlabs() {
+        return maxPooledSlabs;
+    }
+
+    /** Returns the number of slabs currently kept for reuse. */
+    public synchronized int getPooledSlabs() {
+        return free.size();
+    }
+
+    /** Returns the number of slabs allocated by this pool so far. */
+    public synchronized int getAllocatedSlabs() {
+        return allocated;
+    }
+
+    /** Returns a new lease, which borrows slabs from this pool on demand. */
+    public Lease lease() {
+        return new Lease();
+    }
+
+    /**
+     * Returns the backing array of the specified value buffer, if it covers
+     * exactly the value, otherwise a copy of the value.
+     */
+    public static byte[] toByteArray(ByteBuffer bb) {
+        if (bb.hasArray() && bb.arrayOffset() == 0
+                && bb.array().length == bb.limit())
+            return bb.array();
+        byte[] b = new byte[bb.limit()];
+        if (bb.hasArray())
+            System.arraycopy(bb.array(), bb.arrayOffset(), b, 0, b.length);
+        else
+            for (int i = 0; i < b.length; i++)
+                b[i] = bb.get(i);
+        return b;
+    }
+
+    private synchronized byte[] borrowSlab() {
+        if (!free.isEmpty())
+            return (byte[]) free.removeFirst();
+        ++allocated;
+        return new byte[slabSize];
+    }
+
+    private synchronized void returnSlabs(ArrayList slabs) {
+        for (int i = 0, n = slabs.size(); i < n
+                && free.size() < maxPooledSlabs; ++i)
+            free.addLast(slabs.get(i));
+    }
+
+    /**
+     * Provides the values of one parsed object. Instances are not
+     * thread-safe and shall only be used by one parser at a time.
+     */
+    public final class Lease {
+
+        private final ArrayList slabs = new ArrayList();
+        private byte[] cur = null;
+        private int pos = 0;
+        private boolean released = false;
+
+        private Lease() {
+        }
+
+        public ValueBufferPool getPool() {
+            return ValueBufferPool.this;
+        }
+
+        /**
+         * Allocates a buffer with the specified length. The returned buffer
+         * has position 0 and limit <code>len</code>, but may be a slice of a
+         * larger array.
+         *
+         * @param len length of the value
+         * @return buffer for the value
+         * @throws IllegalStateException if the lease was already released
+         */
+        public ByteBuffer allocate(int len) {
+            if (released)
+                throw new IllegalStateException("Lease already released");
+            if (len > maxSliceLength)
+                return ByteBuffer.wrap(new byte[len]);
+            if (cur == null || pos + len > slabSize) {
+                cur = borrowSlab();
+                slabs.add(cur);
+                pos = 0;
+            }
+            ByteBuffer bb = ByteBuffer.wrap(cur, pos, len).slice();
+            // keep word alignment of values for faster swapping
+            pos += (len + 1) & ~1;
+            return bb;
+        }
+
+        /** Returns the number of slabs borrowed by this lease. */
+        public int getSlabs() {
+            return slabs.size();
+        }
+
+        public boolean isReleased() {
+            return released;
+        }
+
+        /**
+         * Returns all borrowed slabs to the pool. The values of the
+         * <code>Dataset</code> parsed with this lease are invalid
+         * afterwards. Releasing a lease twice has no effect.
+         */
+        public void release() {
+            if (released)
+                return;
+            released = true;
+            returnSlabs(slabs);
+            slabs.clear();
+            cur = null;
+        }
+    }
+}
@@ -59,4 +59,37 @@ public abstract class ColorModelFactory {
    public abstract ColorModelParam makeParam(Dataset ds, byte[] pv2dll);
    
    public abstract ColorModel getColorModel(ColorModelParam param);
+
+   /** Returns the maximal number of cached color models. */
+   public abstract int getMaxCacheSize();
+
+   /** Sets the maximal number of cached color models. On overflow, the least
+    * recently used color models are evicted.
+    */
+   public abstract void setMaxCacheSize(int maxSize);
+
+   /** Returns the maximal memory in bytes used by cached color maps. */
+   public abstract long getMaxCacheMemory();
+
+   /** Sets the maximal memory in bytes used by cached color maps. On
+    * overflow, the least recently used color models are evicted.
+    */
+   public abstract void setMaxCacheMemory(long maxMemory);
+
+   /** Returns the number of cached color models. */
+   public abstract int getCacheSize();
+
+   /** Returns the estimated memory in bytes used by cached color maps. */
+   public abstract long getCacheMemory();
+
+   /** Returns the number of requests served from the cache. */
+   public abstract long getCacheHits();
+
+   /** Returns the number of requests of cacheable params which had to
+    * create a new color model.
+    */
+   public abstract long getCacheMisses();
+
+   /** Removes all color models from the cache and resets the statistics. */
+   public abstract void clearCache();
 }
@@ -0,0 +1,77 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.imageio.plugins;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Iterates over the frames of a multi-frame image, in the order they were
+ * requested. Implementations may decompress further frames in background
+ * while the current frame is processed.
+ *
+ * @see org.dcm4cheri.imageio.plugins.DcmImageReader#readFrames
+ */
+public interface FrameIterator {
+
+    /**
+     * Returns <code>true</code>, if there are further frames.
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the index of the frame returned by the next invocation of
+     * {@link #next}.
+     */
+    int nextIndex();
+
+    /**
+     * Returns the next frame.
+     *
+     * @throws java.util.NoSuchElementException if there are no further frames
+     * @throws IOException if the frame could not be read or decompressed
+     */
+    BufferedImage next() throws IOException;
+
+    /**
+     * Stops decompressing further frames and releases associated resources.
+     * Invoked implicitly after the last frame was returned.
+     */
+    void close();
+}
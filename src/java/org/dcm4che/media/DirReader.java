@@ -42,6 +42,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DatasetMatcher;
 import org.dcm4che.data.DcmValueException;
 
 /**
@@ -151,6 +152,14 @@ public interface DirReader
         throws IOException;
 
 
+    /**
+     *  Gets the first top level record of the specified type, which matches
+     *  the precompiled query keys.
+     */
+    public DirRecord getFirstRecordBy(String type, DatasetMatcher matcher)
+        throws IOException;
+
+
     /**
      *  Description of the Method
      *
@@ -41,6 +41,7 @@ package org.dcm4che.media;
 import java.io.IOException;
 
 import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DatasetMatcher;
 import org.dcm4che.data.DcmValueException;
 
 /**
@@ -174,6 +175,14 @@ public interface DirRecord
         throws IOException;
 
 
+    /**
+     *  Gets the first child record of the specified type, which matches the
+     *  precompiled query keys.
+     */
+    public DirRecord getFirstChildBy(String type, DatasetMatcher matcher)
+        throws IOException;
+
+
     /**
      *  Gets the nextSibling attribute of the DirRecord object
      *
@@ -208,6 +217,14 @@ public interface DirRecord
         throws IOException;
 
 
+    /**
+     *  Gets the next sibling record of the specified type, which matches the
+     *  precompiled query keys.
+     */
+    public DirRecord getNextSiblingBy(String type, DatasetMatcher matcher)
+        throws IOException;
+
+
     /**
      *  Description of the Method
      *
@@ -217,5 +234,13 @@ public interface DirRecord
      * @return               Description of the Return Value
      */
     public boolean match(String type, Dataset keys, boolean ignorePNCase);
+
+
+    /**
+     *  Returns <code>true</code>, if this record is of the specified type -
+     *  or <code>type</code> is <code>null</code> - and its dataset matches
+     *  the precompiled query keys.
+     */
+    public boolean match(String type, DatasetMatcher matcher);
 }
 
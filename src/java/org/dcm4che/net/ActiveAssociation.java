@@ -40,6 +40,8 @@ package org.dcm4che.net;
 
 import java.io.IOException;
 
+import org.dcm4che.util.TaskExecutor;
+
 /**
  * <description> 
  *
@@ -60,6 +62,27 @@ public interface ActiveAssociation extends Runnable
 {
    public void start();
 
+   /**
+    * Serves this association by the selector thread and the workers of the
+    * specified reactor, instead of by own threads. Returns immediately.
+    *
+    * @param reactor reactor serving the association
+    * @throws IllegalArgumentException if the socket of the association was
+    *         not created by a <code>SocketChannel</code>
+    * @throws IOException if the channel cannot be switched to non-blocking
+    *         mode
+    */
+   public void start(AssociationReactor reactor) throws IOException;
+
+   /**
+    * Sets the executor, which provides the threads reading and processing
+    * messages, if the association is not served by a reactor. Has to be
+    * invoked before {@link #run()} or {@link #start()}.
+    *
+    * @param executor provider of threads
+    */
+   void setTaskExecutor(TaskExecutor executor);
+
    void addCancelListener(int msgID, DimseListener l);
    void removeCancelListener(int msgID);
    
@@ -68,6 +91,23 @@ public interface ActiveAssociation extends Runnable
    void invoke(Dimse rq, DimseListener l)
    throws InterruptedException, IOException;
 
+   /**
+    * Invokes the operation without waiting, if the maximal number of
+    * outstanding operations is reached.
+    *
+    * @param rq request to write
+    * @param pendingListener receives pending responses, instead of
+    *        collecting them in {@link FutureRSP#listPending()}; may be
+    *        <code>null</code>
+    * @return the future response, or <code>null</code>, if the request was
+    *         not written, because the maximal number of outstanding
+    *         operations is reached
+    * @throws java.io.InterruptedIOException if the current thread is
+    *         interrupted
+    */
+   FutureRSP tryInvoke(Dimse rq, DimseListener pendingListener)
+         throws IOException;
+
    FutureRSP invoke(Dimse rq)
    throws InterruptedException, IOException;
 
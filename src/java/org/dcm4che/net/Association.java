@@ -105,10 +105,28 @@ public interface Association {
     
     PDU accept(AcceptorPolicy policy) throws IOException;
     
+    /** Accepts or rejects the association like {@link #accept(AcceptorPolicy)},
+     * after the received A-ASSOCIATE-RQ was admitted by the specified
+     * controller.
+     * @param policy negotiates the association.
+     * @param admission may reject the association before negotiation.
+     * @return the sent A-ASSOCIATE-AC or A-ASSOCIATE-RJ, or the received
+     * A-ABORT.
+     */
+    PDU accept(AcceptorPolicy policy, AdmissionController admission)
+            throws IOException;
+    
     Dimse read() throws IOException;
     
     void write(Dimse dimse) throws IOException;
     
+    /**
+     * Writes several DIMSE messages at once. If {@link #isPackPDVs} is
+     * enabled, PDVs of consecutive messages are packed into the same
+     * P-DATA-TF PDU, as far as the maximal PDU length permits.
+     */
+    void write(Dimse[] dimses) throws IOException;
+    
     PDU release(int timeout) throws IOException;
     
     void abort(AAbort aa) throws IOException;
@@ -141,6 +159,11 @@ public interface Association {
     
     Socket getSocket();
     
+    /** Returns counters and latencies of this association.
+     * @return metrics of this association.
+     */
+    NetMetrics getMetrics();
+    
     String getCallingAET();
 
     String getCalledAET();
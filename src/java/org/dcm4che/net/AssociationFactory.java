@@ -146,6 +146,36 @@ public abstract class AssociationFactory {
 
     public abstract DcmServiceRegistry newDcmServiceRegistry();
 
+    /**
+     * Creates a reactor, which serves established associations by one
+     * selector thread and a bounded pool of worker threads.
+     *
+     * @see ActiveAssociation#start(AssociationReactor)
+     */
+    public abstract AssociationReactor newAssociationReactor();
+
+    /**
+     * Returns counters and latencies aggregated over all associations.
+     */
+    public abstract NetMetrics getMetrics();
+
+    /**
+     * Registers the metrics returned by {@link #getMetrics} at the platform
+     * MBean server.
+     *
+     * @param objectName JMX object name of the MBean
+     * @throws UnsupportedOperationException if the runtime does not provide
+     *         a platform MBean server
+     * @throws IllegalArgumentException if the name is invalid or already
+     *         registered
+     */
+    public abstract void registerMetricsMBean(String objectName);
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMetricsMBean}.
+     */
+    public abstract void unregisterMetricsMBean(String objectName);
+
     // Package protected ---------------------------------------------
 
     // Protected -----------------------------------------------------
@@ -50,6 +50,13 @@ public interface AssociationListener extends EventListener {
 
     void write(Association src, PDU pdu);
     
+    /**
+     * Invoked on receipt of a PDU. The buffer of a received P-DATA-TF is
+     * returned to a shared pool and reused for other P-DATA-TFs, after its
+     * PDVs were read. Therefore the P-DATA-TF and its PDVs must not be
+     * accessed after return of this method; listeners, which keep them,
+     * e.g. for tracing, have to copy the content.
+     */
     void received(Association src, PDU pdu);
 
     void write(Association src, Dimse dimse);
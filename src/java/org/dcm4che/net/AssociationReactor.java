@@ -0,0 +1,84 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+/**
+ * Serves established associations by one selector thread and a bounded
+ * pool of worker threads, instead of one thread blocked in reading per
+ * association.
+ * <p>
+ * Incoming PDUs are collected by the selector thread from the non-blocking
+ * <code>SocketChannel</code> of the association. A worker thread is only
+ * assigned to an association, if there are received PDUs to process. It
+ * reads and dispatches the next DIMSE message to the registered
+ * {@link DcmService} and returns to the pool afterwards. Therefore only
+ * associations, which sockets were created by a <code>SocketChannel</code>,
+ * can be served by a reactor, so it does not support TLS connections.
+ * <p>
+ * Service implementations, which wait for responses of other associations
+ * served by the same reactor, have to ensure that the number of workers
+ * suffices to avoid a deadlock.
+ *
+ * @see ActiveAssociation#start(AssociationReactor)
+ * @see AssociationFactory#newAssociationReactor()
+ */
+public interface AssociationReactor
+{
+   int getMaxWorkers();
+
+   /**
+    * Sets the maximal number of worker threads processing received DIMSE
+    * messages. Further received messages wait for a free worker.
+    *
+    * @param maxWorkers maximal number of worker threads
+    */
+   void setMaxWorkers(int maxWorkers);
+
+   /** Returns the number of worker threads currently processing messages. */
+   int getNumWorkers();
+
+   /** Returns the number of associations currently served by the reactor. */
+   int getNumAssociations();
+
+   /**
+    * Stops the selector thread. Associations served by the reactor are
+    * aborted, because they would not receive any further messages.
+    */
+   void stop();
+}
@@ -44,7 +44,10 @@ import org.dcm4che.data.Dataset;
 import org.dcm4che.util.UIDGenerator;
 import org.dcm4che.dict.Tags;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * <description>
@@ -68,6 +71,9 @@ public class DcmServiceBase implements DcmService {
     public static final int NO_SUCH_SOP_CLASS     = 0x0118;
     public static final int UNRECOGNIZE_OPERATION = 0x0211;
     
+    /** Maximal number of responses written at once by #doMultiRsp. */
+    private static final int MAX_PACKED_RSPS = 16;
+    
     public static final DcmService VERIFICATION_SCP = new DcmServiceBase() {
         protected void doCEcho(ActiveAssociation assoc, Dimse rq,
             Command rspCmd)
@@ -416,6 +422,11 @@ public class DcmServiceBase implements DcmService {
         try {
             assoc.addCancelListener(rspCmd.getMessageIDToBeingRespondedTo(),
                 mdr.getCancelListener());
+            if (mdr instanceof BufferedMultiDimseRsp
+                    && assoc.getAssociation().isPackPDVs()) {
+                doPackedRsp(assoc, rq, rspCmd, (BufferedMultiDimseRsp) mdr);
+                return;
+            }
             do {
                 Dataset rspData = mdr.next(assoc, rq, rspCmd);
                 Dimse rsp = fact.newDimse(rq.pcid(), rspCmd, rspData);
@@ -428,6 +439,45 @@ public class DcmServiceBase implements DcmService {
         }
     }
     
+    private void doPackedRsp(ActiveAssociation assoc, Dimse rq,
+        Command rspCmd, BufferedMultiDimseRsp mdr)
+    throws IOException, DcmServiceException {
+        ArrayList rsps = new ArrayList();
+        Command cmd = rspCmd;
+        do {
+            try {
+                do {
+                    Dataset rspData = mdr.next(assoc, rq, cmd);
+                    Dimse rsp = fact.newDimse(rq.pcid(), cmd, rspData);
+                    doBeforeRsp(assoc, rsp);
+                    rsps.add(rsp);
+                    if (!cmd.isPending()) {
+                        break;
+                    }
+                    cmd = copyOf(cmd); // each response needs its own
+                } while (rsps.size() < MAX_PACKED_RSPS && mdr.available() > 0);
+            } finally {
+                // write already generated responses also on failure
+                if (!rsps.isEmpty()) {
+                    Dimse[] a = (Dimse[]) rsps.toArray(new Dimse[rsps.size()]);
+                    rsps.clear();
+                    assoc.getAssociation().write(a);
+                    for (int i = 0; i < a.length; i++) {
+                        doAfterRsp(assoc, a[i]);
+                    }
+                }
+            }
+        } while (cmd.isPending());
+    }
+    
+    private static Command copyOf(Command cmd) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cmd.write(out);
+        Command copy = objFact.newCommand();
+        copy.read(new ByteArrayInputStream(out.toByteArray()));
+        return copy;
+    }
+    
     private static String createUID(String uid) {
         return uid != null ? uid : uidGen.createUID();
     }
@@ -441,4 +491,17 @@ public class DcmServiceBase implements DcmService {
         
         void release();
     }
+    
+    /**
+     * MultiDimseRsp, which buffers responses in advance. Available
+     * responses are written at once, so their PDVs are packed into one
+     * P-DATA-TF, if packPDVs is enabled on the association.
+     */
+    public static interface BufferedMultiDimseRsp extends MultiDimseRsp {
+        /**
+         * Returns the number of responses, which #next returns without
+         * blocking.
+         */
+        int available();
+    }
 }
@@ -0,0 +1,71 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implemented by the output stream passed to
+ * {@link DataSource#writeTo(java.io.OutputStream, String)}, so a data source
+ * can send large values, like pixel data, directly from a file.
+ * <p>
+ * If the association is served by a <code>SocketChannel</code>, the bytes
+ * are transferred from the file to the socket by
+ * <code>FileChannel.transferTo</code> without copying them into the PDU
+ * buffer. Otherwise, they are read from the file into the PDU buffer.
+ *
+ * @version $Revision$
+ */
+public interface FileRegionOutput {
+
+    /**
+     * Writes <code>count</code> bytes of the file, starting at
+     * <code>position</code>, as part of the current PDV. The position of the
+     * file channel is not modified.
+     *
+     * @param src file channel to read from
+     * @param position position of the first byte in the file
+     * @param count number of bytes to write
+     * @throws IOException if an I/O error occurs or the file ends before
+     *         <code>count</code> bytes were read
+     */
+    void transferFrom(FileChannel src, long position, long count)
+            throws IOException;
+}
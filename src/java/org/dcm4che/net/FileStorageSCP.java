@@ -0,0 +1,367 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import org.apache.log4j.Logger;
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmParser;
+import org.dcm4che.data.DcmParserFactory;
+import org.dcm4che.data.FileMetaInfo;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.util.BufferedOutputStream;
+
+/**
+ * Storage SCP, which spools received datasets to files without decoding
+ * them. The File Meta Information is written, followed by the bytes of the
+ * received data PDVs, which are transferred directly to the file, if the
+ * data stream implements {@link TransferableInput}.
+ * <p>
+ * Only the attributes specified by {@link #setIndexTags} are parsed from
+ * the beginning of the dataset, while it is written to the file. They are
+ * passed to {@link #stored}, which may be overridden to index the file.
+ * <p>
+ * Files are written to a temporary file first, which is renamed after
+ * the dataset was received completely, unless disabled by
+ * {@link #setUseTempFile}. Written files may be synchronized with the
+ * storage device each or in batches, configured by
+ * {@link #setSyncBatchSize}.
+ *
+ * @version $Revision$
+ */
+public class FileStorageSCP extends DcmServiceBase {
+
+    public static final int OUT_OF_RESOURCES = 0xA700;
+
+    public static final int CANNOT_UNDERSTAND = 0xC000;
+
+    /** Suffix of the temporary file, which is renamed after completion. */
+    public static final String PART_SUFFIX = ".part";
+
+    private static final Logger log = Logger.getLogger(FileStorageSCP.class);
+
+    private static final DcmParserFactory pFact =
+        DcmParserFactory.getInstance();
+
+    private static final int[] NO_TAGS = {};
+
+    private final File directory;
+
+    private int[] indexTags = NO_TAGS;
+
+    private int stopTag = 0;
+
+    private boolean useTempFile = true;
+
+    private int syncBatchSize = 0;
+
+    private int bufferSize = 8192;
+
+    private final ArrayList unsynced = new ArrayList();
+
+    /**
+     * Creates a Storage SCP, which stores files in the specified directory.
+     */
+    public FileStorageSCP(File directory) {
+        if (directory == null)
+            throw new NullPointerException("directory");
+        this.directory = directory;
+    }
+
+    public final File getDirectory() {
+        return directory;
+    }
+
+    public final int[] getIndexTags() {
+        return (int[]) indexTags.clone();
+    }
+
+    /**
+     * Sets the attributes, which are parsed from the received dataset and
+     * passed to {@link #stored}. Parsing stops after the attribute with
+     * the highest tag, so only the beginning of the dataset is decoded.
+     *
+     * @param tags tags of top level attributes; empty, if no attributes
+     *        shall be parsed
+     */
+    public final void setIndexTags(int[] tags) {
+        long max = 0;
+        for (int i = 0; i < tags.length; i++)
+            max = Math.max(max, tags[i] & 0xffffffffL);
+        this.indexTags = (int[]) tags.clone();
+        this.stopTag = (int) (max + 1);
+    }
+
+    public final boolean isUseTempFile() {
+        return useTempFile;
+    }
+
+    /**
+     * Enables writing to a temporary file with suffix {@link #PART_SUFFIX},
+     * which is renamed after the dataset was received completely, so
+     * incomplete files are never visible under their final name.
+     * Enabled by default.
+     */
+    public final void setUseTempFile(boolean useTempFile) {
+        this.useTempFile = useTempFile;
+    }
+
+    public final int getSyncBatchSize() {
+        return syncBatchSize;
+    }
+
+    /**
+     * Sets the number of files, which are synchronized with the storage
+     * device together. With <code>1</code>, each file is synchronized
+     * before the response is returned. With a greater value, files are
+     * synchronized, after the specified number of files were stored, or
+     * by {@link #flush}. <code>0</code> (= default) disables
+     * synchronization.
+     */
+    public final void setSyncBatchSize(int syncBatchSize) {
+        if (syncBatchSize < 0)
+            throw new IllegalArgumentException("syncBatchSize: "
+                    + syncBatchSize);
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the buffer for the File Meta Information and the
+     * parsed beginning of the dataset.
+     */
+    public final void setBufferSize(int bufferSize) {
+        if (bufferSize < 512)
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        this.bufferSize = bufferSize;
+    }
+
+    /** Synchronizes all stored files, which are not yet synchronized. */
+    public void flush() throws IOException {
+        File[] batch;
+        synchronized (unsynced) {
+            batch = (File[]) unsynced.toArray(new File[unsynced.size()]);
+            unsynced.clear();
+        }
+        sync(batch);
+    }
+
+    // DcmServiceBase overrides ----------------------------------------
+    protected void doCStore(ActiveAssociation assoc, Dimse rq,
+            Command rspCmd) throws IOException, DcmServiceException {
+        Command rqCmd = rq.getCommand();
+        InputStream in = rq.getDataAsStream();
+        if (in == null)
+            throw new DcmServiceException(CANNOT_UNDERSTAND,
+                    "Missing Dataset");
+        FileMetaInfo fmi = objFact.newFileMetaInfo(
+                rqCmd.getAffectedSOPClassUID(),
+                rqCmd.getAffectedSOPInstanceUID(),
+                rq.getTransferSyntaxUID());
+        File file = toFile(rqCmd);
+        Dataset attrs;
+        try {
+            attrs = spool(in, fmi, file);
+        } catch (IOException e) {
+            log.error("Failed to store " + file, e);
+            throw new DcmServiceException(OUT_OF_RESOURCES, e);
+        } finally {
+            in.close();
+        }
+        stored(assoc, rq, file, attrs);
+        rspCmd.putUS(Tags.Status, SUCCESS);
+    }
+
+    // Protected -------------------------------------------------------
+    /**
+     * Returns the file for the received object. The default implementation
+     * names the file by the SOP Instance UID in the configured directory.
+     */
+    protected File toFile(Command rqCmd) {
+        return new File(directory, rqCmd.getAffectedSOPInstanceUID());
+    }
+
+    /**
+     * Invoked after the file was stored. The default implementation does
+     * nothing.
+     *
+     * @param file the stored file
+     * @param attrs attributes specified by {@link #setIndexTags}, or
+     *        <code>null</code>, if no index tags are configured
+     */
+    protected void stored(ActiveAssociation assoc, Dimse rq, File file,
+            Dataset attrs) throws IOException, DcmServiceException {
+    }
+
+    // Private ---------------------------------------------------------
+    private Dataset spool(InputStream in, FileMetaInfo fmi, File file)
+            throws IOException {
+        File dst = useTempFile ? new File(file.getPath() + PART_SUFFIX)
+                : file;
+        File parent = dst.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("Could not create " + parent);
+        log.info("M-WRITE " + dst);
+        FileOutputStream fos = new FileOutputStream(dst);
+        boolean ok = false;
+        Dataset attrs = null;
+        try {
+            FileChannel ch = fos.getChannel();
+            BufferedOutputStream out = new BufferedOutputStream(
+                    Channels.newOutputStream(ch), new byte[bufferSize]);
+            fmi.write(out);
+            if (indexTags.length != 0)
+                attrs = parse(new TeeInputStream(in, out),
+                        fmi.getTransferSyntaxUID());
+            if (in instanceof TransferableInput) {
+                out.flush();
+                ((TransferableInput) in).transferTo(ch, -1);
+            } else {
+                out.copyFrom(in);
+                out.flush();
+            }
+            if (syncBatchSize == 1)
+                ch.force(true);
+            ok = true;
+        } finally {
+            try {
+                fos.close();
+            } catch (IOException ignore) {
+            }
+            if (!ok)
+                dst.delete();
+        }
+        if (dst != file) {
+            log.info("M-RENAME " + dst + " to " + file);
+            // File.renameTo does not replace existing files on all platforms
+            if (!dst.renameTo(file) && !(file.delete() && dst.renameTo(file))) {
+                dst.delete();
+                throw new IOException("Could not rename " + dst + " to "
+                        + file);
+            }
+        }
+        if (syncBatchSize > 1)
+            scheduleSync(file);
+        return attrs;
+    }
+
+    private Dataset parse(InputStream in, String tsuid) throws IOException {
+        Dataset ds = objFact.newDataset();
+        DcmParser parser = pFact.newDcmParser(in);
+        parser.setDcmHandler(ds.getDcmHandler());
+        parser.parseDataset(tsuid, stopTag);
+        return ds.subSet(indexTags);
+    }
+
+    private void scheduleSync(File file) throws IOException {
+        File[] batch;
+        synchronized (unsynced) {
+            unsynced.add(file);
+            if (unsynced.size() < syncBatchSize)
+                return;
+            batch = (File[]) unsynced.toArray(new File[unsynced.size()]);
+            unsynced.clear();
+        }
+        sync(batch);
+    }
+
+    private static void sync(File[] files) throws IOException {
+        for (int i = 0; i < files.length; i++) {
+            RandomAccessFile raf = new RandomAccessFile(files[i], "rw");
+            try {
+                raf.getChannel().force(true);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /** Writes the bytes read by the parser also to the file. */
+    private static final class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+
+        TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1)
+                out.write(b);
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                out.write(b, off, n);
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            byte[] b = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            int k;
+            while (skipped < n && (k = read(b, 0,
+                    (int) Math.min(b.length, n - skipped))) > 0)
+                skipped += k;
+            return skipped;
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
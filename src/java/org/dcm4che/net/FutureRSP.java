@@ -74,4 +74,17 @@ public interface FutureRSP {
    boolean isReady();
    
    Dimse peek();
+   
+   /**
+    * Registers a listener, which is notified once, when the final response
+    * or an exception was received, or the association was closed. If that
+    * already happened, the listener is notified immediately by the calling
+    * thread. Otherwise it is notified by the thread reading the response,
+    * so it shall not block.
+    */
+   void addListener(FutureRSP.Listener l);
+   
+   interface Listener {
+      void completed(FutureRSP future);
+   }
 }
@@ -0,0 +1,110 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+/**
+ * Counters and latency histograms of the network layer. Metrics of each
+ * association are available by {@link Association#getMetrics}; aggregated
+ * metrics of all associations by {@link AssociationFactory#getMetrics}.
+ * <p>
+ * Latencies are measured in microseconds and recorded in histograms with
+ * logarithmic buckets, so returned percentiles have a relative error of
+ * less than 1/16.
+ *
+ * @version $Revision$
+ * @see AssociationFactory#registerMetricsMBean
+ */
+public interface NetMetrics {
+
+    long getBytesReceived();
+
+    long getBytesSent();
+
+    long getPDUsReceived();
+
+    long getPDUsSent();
+
+    long getDimsesReceived();
+
+    long getDimsesSent();
+
+    /** Returns the number of sent and received A-ASSOCIATE-RJ PDUs. */
+    long getAssociationsRejected();
+
+    /** Returns the number of sent and received A-ABORT PDUs. */
+    long getAssociationsAborted();
+
+    /** Returns the number of invoked operations awaiting the response. */
+    int getPendingOperations();
+
+    /** Returns the maximal number of concurrently pending operations. */
+    int getMaxPendingOperations();
+
+    /** Returns the SOP Classes of invoked or performed operations. */
+    String[] getSOPClassUIDs();
+
+    /** Returns the number of completed operations invoked as SCU. */
+    long getInvokedOperations(String cuid);
+
+    /**
+     * Returns the latency between sending the request and receiving the
+     * final response of operations invoked as SCU.
+     *
+     * @param cuid SOP Class UID
+     * @param percentile between 0 and 100
+     * @return latency in microseconds; 0, if no operation was invoked
+     */
+    long getInvokeLatency(String cuid, double percentile);
+
+    /** Returns the number of operations performed as SCP. */
+    long getPerformedOperations(String cuid);
+
+    /**
+     * Returns the time spent by the SCP to perform operations, including
+     * sending the responses.
+     *
+     * @param cuid SOP Class UID
+     * @param percentile between 0 and 100
+     * @return latency in microseconds; 0, if no operation was performed
+     */
+    long getPerformLatency(String cuid, double percentile);
+
+    /** Resets all counters and histograms. */
+    void reset();
+}
@@ -0,0 +1,242 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.util.LinkedList;
+
+import org.apache.log4j.Logger;
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.util.TaskExecutor;
+
+/**
+ * Generates pending responses from matches of a {@link DatasetCursor}.
+ * The cursor is read by a separate task ahead of the written responses, so
+ * fetching matches overlaps with writing responses to the peer. At most
+ * <code>prefetch</code> matches are buffered; if the peer reads slowly, the
+ * task waits for free space in the buffer.
+ * <p>
+ * If packPDVs is enabled on the association, {@link DcmServiceBase} writes
+ * buffered responses at once, so their PDVs are packed into one P-DATA-TF.
+ * A received C-CANCEL-RQ stops reading the cursor and terminates the
+ * operation by a response with status Cancel.
+ *
+ * @version $Revision$
+ */
+public class StreamingMultiDimseRsp
+        implements DcmServiceBase.BufferedMultiDimseRsp {
+
+    public static final int CANCEL = 0xFE00;
+
+    public static final int PROCESSING_FAILURE = 0x0110;
+
+    private static final Logger log =
+        Logger.getLogger(StreamingMultiDimseRsp.class);
+
+    private static int instCount = 0;
+
+    private final DatasetCursor cursor;
+
+    private final int prefetch;
+
+    private final LinkedList buffer = new LinkedList();
+
+    private TaskExecutor executor = TaskExecutor.getDefault();
+
+    private boolean started = false;
+
+    private boolean eof = false;
+
+    private boolean canceled = false;
+
+    private DcmServiceException failure = null;
+
+    private final DimseListener cancelListener = new DimseListener() {
+        public void dimseReceived(Association assoc, Dimse dimse) {
+            cancel();
+        }
+    };
+
+    /**
+     * Creates a response generator for the matches of the cursor.
+     *
+     * @param cursor matches of the query
+     * @param prefetch maximal number of matches read ahead
+     */
+    public StreamingMultiDimseRsp(DatasetCursor cursor, int prefetch) {
+        if (cursor == null)
+            throw new NullPointerException("cursor");
+        if (prefetch < 1)
+            throw new IllegalArgumentException("prefetch: " + prefetch);
+        this.cursor = cursor;
+        this.prefetch = prefetch;
+    }
+
+    public final int getPrefetch() {
+        return prefetch;
+    }
+
+    public final TaskExecutor getTaskExecutor() {
+        return executor;
+    }
+
+    public final void setTaskExecutor(TaskExecutor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        this.executor = executor;
+    }
+
+    /**
+     * Starts reading matches from the cursor. Invoked by the first call of
+     * {@link #next}, if not invoked before.
+     */
+    public void start() {
+        synchronized (this) {
+            if (started)
+                return;
+            started = true;
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                fetch();
+            }
+        }, "StreamingRsp-" + ++instCount);
+    }
+
+    private void fetch() {
+        try {
+            for (;;) {
+                synchronized (this) {
+                    while (buffer.size() >= prefetch && !canceled)
+                        wait();
+                    if (canceled)
+                        return;
+                }
+                Dataset ds = cursor.next();
+                synchronized (this) {
+                    if (ds == null) {
+                        eof = true;
+                        notifyAll();
+                        return;
+                    }
+                    buffer.addLast(ds);
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+        } catch (DcmServiceException e) {
+            fail(e);
+        } catch (Exception e) {
+            log.warn("Failed to fetch next match:", e);
+            fail(new DcmServiceException(PROCESSING_FAILURE, e));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private synchronized void fail(DcmServiceException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    private synchronized void cancel() {
+        canceled = true;
+        notifyAll();
+    }
+
+    // MultiDimseRsp implementation ------------------------------------
+    public DimseListener getCancelListener() {
+        return cancelListener;
+    }
+
+    /**
+     * Returns the next buffered match by a pending response, or sets the
+     * status of the final response, after all matches were returned or the
+     * operation was canceled.
+     */
+    public Dataset next(ActiveAssociation assoc, Dimse rq, Command rspCmd)
+            throws DcmServiceException {
+        start();
+        synchronized (this) {
+            try {
+                while (buffer.isEmpty() && !eof && failure == null
+                        && !canceled)
+                    wait();
+            } catch (InterruptedException e) {
+                cancel();
+            }
+            if (canceled) {
+                rspCmd.putUS(Tags.Status, CANCEL);
+                return null;
+            }
+            if (!buffer.isEmpty()) {
+                notifyAll();
+                return (Dataset) buffer.removeFirst();
+            }
+            if (failure != null)
+                throw failure;
+            rspCmd.putUS(Tags.Status, DcmServiceBase.SUCCESS);
+            return null;
+        }
+    }
+
+    /**
+     * Stops reading the cursor. The cursor is closed by the reading task,
+     * or immediately, if reading was not started.
+     */
+    public void release() {
+        boolean close;
+        synchronized (this) {
+            canceled = true;
+            notifyAll();
+            close = !started;
+            started = true;
+        }
+        if (close)
+            cursor.close();
+    }
+
+    // BufferedMultiDimseRsp implementation ----------------------------
+    public synchronized int available() {
+        return canceled || eof || failure != null ? buffer.size() + 1
+                : buffer.size();
+    }
+}
@@ -42,14 +42,16 @@ import java.util.Iterator;
 
 import org.dcm4che.net.AcceptorPolicy;
 import org.dcm4che.net.AssociationListener;
+import org.dcm4che.net.AssociationReactor;
 import org.dcm4che.net.DcmServiceRegistry;
+import org.dcm4che.util.TaskExecutor;
 
 /**
  * @author     <a href="mailto:gunter@tiani.com">Gunter Zeilinger</a>
  * @since      June, 2002
  * @version    $Revision: 7898 $ $Date: 2008-11-03 12:15:52 +0100 (Mo, 03 Nov 2008) $
  */
-public interface DcmHandler extends Server.Handler
+public interface DcmHandler extends Server.RejectingHandler
 {
     /**
      *  Adds a feature to the AssociationListener attribute of the DcmHandler
@@ -118,6 +120,25 @@ public interface DcmHandler extends Server.Handler
     void setRqTimeout(int timeout);
 
 
+    /**
+     *  Getter for property rejectTimeout.
+     *
+     * @return    Value of property rejectTimeout.
+     */
+    int getRejectTimeout();
+
+
+    /**
+     *  Setter for property rejectTimeout. Limits the time to wait for the
+     *  A-ASSOCIATE-RQ of a connection, which is refused because the server
+     *  is saturated. Should be short, because the connection is refused by
+     *  the thread accepting connections.
+     *
+     * @param  timeout  The new rejectTimeout value
+     */
+    void setRejectTimeout(int timeout);
+
+
     /**
      *  Getter for property dimseTimeout.
      *
@@ -164,5 +185,137 @@ public interface DcmHandler extends Server.Handler
      * @param  packPDVs  New value of property packPDVs.
      */
     void setPackPDVs(boolean packPDVs);
+
+
+    /**
+     *  Getter for property associationReactor.
+     *
+     * @return    Value of property associationReactor.
+     */
+    AssociationReactor getAssociationReactor();
+
+
+    /**
+     *  Setter for property associationReactor. If set, accepted associations,
+     *  which sockets were created by a <code>SocketChannel</code>, are served
+     *  by the reactor, and the server thread returns after the association
+     *  negotiation.
+     *
+     * @param  reactor  reactor serving accepted associations or
+     *      <code>null</code>
+     * @see ServerFactory#newChannelServerSocketFactory()
+     */
+    void setAssociationReactor(AssociationReactor reactor);
+
+
+    /**
+     *  Getter for property taskExecutor.
+     *
+     * @return    Value of property taskExecutor.
+     */
+    TaskExecutor getTaskExecutor();
+
+
+    /**
+     *  Setter for property taskExecutor, which provides additional threads
+     *  for processing messages of accepted associations.
+     *
+     * @param  executor  New value of property taskExecutor.
+     */
+    void setTaskExecutor(TaskExecutor executor);
+
+
+    /**
+     *  Getter for property maxAssociations.
+     *
+     * @return    Value of property maxAssociations.
+     */
+    int getMaxAssociations();
+
+
+    /**
+     *  Setter for property maxAssociations. Further association requests
+     *  are rejected with A-ASSOCIATE-RJ (rejected-transient, local limit
+     *  exceeded). <code>0</code> (= default) for no limit.
+     *
+     * @param  max  maximal number of concurrent associations
+     */
+    void setMaxAssociations(int max);
+
+
+    /**
+     *  Getter for property maxAssociationsPerCallingAET.
+     *
+     * @return    Value of property maxAssociationsPerCallingAET.
+     */
+    int getMaxAssociationsPerCallingAET();
+
+
+    /**
+     *  Setter for property maxAssociationsPerCallingAET, which limits the
+     *  number of concurrent associations of each calling AE, unless
+     *  specified for the AE by {@link #setMaxAssociationsForCallingAET}.
+     *  <code>0</code> (= default) for no limit.
+     *
+     * @param  max  maximal number of concurrent associations per calling AE
+     */
+    void setMaxAssociationsPerCallingAET(int max);
+
+
+    /**
+     *  Returns the maximal number of concurrent associations of the
+     *  specified calling AE.
+     *
+     * @param  aet  calling AE title
+     * @return      quota of the AE; <code>0</code> for no limit
+     */
+    int getMaxAssociationsForCallingAET(String aet);
+
+
+    /**
+     *  Sets the maximal number of concurrent associations of the specified
+     *  calling AE, which overrides {@link #setMaxAssociationsPerCallingAET}.
+     *
+     * @param  aet  calling AE title
+     * @param  max  quota of the AE; <code>0</code> for no limit;
+     *      <code>-1</code> to remove the quota of the AE
+     */
+    void setMaxAssociationsForCallingAET(String aet, int max);
+
+
+    /**
+     *  Returns the number of established associations.
+     *
+     * @return    number of established associations
+     */
+    int getNumAssociations();
+
+
+    /**
+     *  Returns the number of established associations of the specified
+     *  calling AE.
+     *
+     * @param  aet  calling AE title
+     * @return      number of established associations of the AE
+     */
+    int getNumAssociations(String aet);
+
+
+    /**
+     *  Returns the number of connections, which association request is
+     *  received or negotiated, but not yet accepted or rejected.
+     *
+     * @return    number of pending association requests
+     */
+    int getNumPendingAssociations();
+
+
+    /**
+     *  Returns the number of association requests rejected because of the
+     *  limits, including connections refused by {@link #reject}.
+     *
+     * @return    number of rejected association requests
+     */
+    long getRejectedCount();
 }
 
@@ -44,6 +44,8 @@ import javax.net.ServerSocketFactory;
 import javax.net.ssl.HandshakeCompletedListener;
 
 import org.dcm4che.util.HandshakeFailedListener;
+import org.dcm4che.util.HandshakeMetrics;
+import org.dcm4che.util.TaskExecutor;
 
 /**
  * <description>
@@ -78,6 +80,21 @@ public interface Server
 
         boolean isSockedClosedByHandler();
     }
+
+    /**
+     * Handler, which is able to refuse connections fast, while all threads
+     * of the server are busy.
+     *
+     * @see Server#setRejectIfSaturated
+     */
+    interface RejectingHandler extends Handler
+    {
+        /**
+         * Refuses the connection and closes the socket.
+         */
+        void reject(Socket s)
+            throws IOException;
+    }
     
     void addHandshakeCompletedListener(HandshakeCompletedListener listener);
 
@@ -100,6 +117,47 @@ public interface Server
     int getMaxIdleThreads();
     
     int getNumIdleThreads();
+
+    /**
+     * Getter for property backlog.
+     *
+     * @return    Value of property backlog.
+     */
+    int getBacklog();
+
+    /**
+     * Setter for property backlog: the maximum queue length of incoming
+     * connections, which are not yet accepted. <code>0</code> (= default)
+     * uses the default of the platform. Takes effect on the next start.
+     *
+     * @param  backlog  New value of property backlog.
+     */
+    void setBacklog(int backlog);
+
+    boolean isRejectIfSaturated();
+
+    /**
+     * Enables refusing connections by {@link RejectingHandler#reject}, while
+     * {@link #getMaxClients} connections are handled, instead of leaving
+     * them in the backlog until the peer times out. One of the threads is
+     * then reserved for accepting and refusing connections. Has no effect,
+     * if the handler is not a {@link RejectingHandler}.
+     *
+     * @param  reject  <code>true</code> to refuse connections, while the
+     *                 server is saturated
+     */
+    void setRejectIfSaturated(boolean reject);
+
+    /**
+     * Returns the number of connections refused, because the server was
+     * saturated.
+     */
+    long getRejectedCount();
+
+    /**
+     * Returns the metrics of TLS handshakes with accepted connections.
+     */
+    HandshakeMetrics getHandshakeMetrics();
     
     /**
      * @param  port             Description of the Parameter
@@ -129,7 +187,8 @@ public interface Server
 
 
     /**
-     * Getter for property port.
+     * Getter for property port. Returns the port the server is listening on,
+     * while it is running.
      *
      * @return    Value of property port.
      */
@@ -137,7 +196,7 @@ public interface Server
 
 
     /**
-     * Setter for property port.
+     * Setter for property port. 0 binds the server to any free port.
      *
      * @param  port  New value of property port.
      */
@@ -173,5 +232,44 @@ public interface Server
      */
     public void setServerSocketFactory(ServerSocketFactory serverSocketFactory);
 
+
+    /**
+     * Getter for property taskExecutor.
+     *
+     * @return    Value of property taskExecutor.
+     */
+    public TaskExecutor getTaskExecutor();
+
+
+    /**
+     * Setter for property taskExecutor, which provides the threads accepting
+     * and handling connections. Takes effect on the next start.
+     *
+     * @param  executor  New value of property taskExecutor.
+     */
+    public void setTaskExecutor(TaskExecutor executor);
+
+
+    /**
+     * Getter for property handshakeExecutor.
+     *
+     * @return    Value of property handshakeExecutor.
+     */
+    public TaskExecutor getHandshakeExecutor();
+
+
+    /**
+     * Setter for property handshakeExecutor. If set, TLS connections are
+     * passed to this executor directly after accept, which performs the
+     * TLS handshake and handles the connection. So the accepting thread
+     * remains leader and is never blocked by slow handshakes, but such
+     * connections are not limited by {@link #setMaxClients}.
+     * <code>null</code> (= default) performs the handshake in the thread
+     * of the server, after it has passed the leadership to another thread.
+     *
+     * @param  executor  New value of property handshakeExecutor.
+     */
+    public void setHandshakeExecutor(TaskExecutor executor);
+
 }
 
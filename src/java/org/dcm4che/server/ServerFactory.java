@@ -38,6 +38,8 @@
 
 package org.dcm4che.server;
 
+import javax.net.ServerSocketFactory;
+
 import org.dcm4che.Implementation;
 import org.dcm4che.net.AcceptorPolicy;
 import org.dcm4che.net.DcmServiceRegistry;
@@ -82,6 +84,13 @@ public abstract class ServerFactory {
 
    public abstract UDPServer.Handler newSyslogHandler(SyslogService service);
 
+   /**
+    * Returns a factory of server sockets, which accepted sockets are created
+    * by a <code>SocketChannel</code>, as required to serve associations by
+    * an {@link org.dcm4che.net.AssociationReactor}.
+    */
+   public abstract ServerSocketFactory newChannelServerSocketFactory();
+
    // Package protected ---------------------------------------------
    
    // Protected -----------------------------------------------------
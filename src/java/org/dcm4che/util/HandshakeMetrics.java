@@ -0,0 +1,133 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.util;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counts TLS handshakes and measures their duration. A handshake is
+ * counted as resumed, if the negotiated session was created before the
+ * handshake started, i.e. was taken from the session cache.
+ *
+ * @see SSLContextAdapter#getHandshakeMetrics()
+ * @see org.dcm4che.server.Server#getHandshakeMetrics()
+ */
+public class HandshakeMetrics {
+
+    // Variables -----------------------------------------------------
+    private long handshakes;
+    private long resumed;
+    private long failed;
+    private long totalTime;
+    private long maxTime;
+
+    // Methods -------------------------------------------------------
+    /**
+     * Records a completed handshake.
+     *
+     * @param session   the negotiated session
+     * @param startTime value of <code>System.currentTimeMillis()</code>,
+     *                  when the handshake was started
+     */
+    public void handshakeCompleted(SSLSession session, long startTime) {
+        long time = System.currentTimeMillis() - startTime;
+        boolean reused = session != null
+                && session.getCreationTime() < startTime;
+        synchronized (this) {
+            ++handshakes;
+            if (reused) {
+                ++resumed;
+            }
+            totalTime += time;
+            if (time > maxTime) {
+                maxTime = time;
+            }
+        }
+    }
+
+    /** Records a failed handshake. */
+    public synchronized void handshakeFailed() {
+        ++failed;
+    }
+
+    /** Returns the number of completed handshakes, including resumed ones. */
+    public synchronized long getHandshakes() {
+        return handshakes;
+    }
+
+    /** Returns the number of handshakes, which resumed a cached session. */
+    public synchronized long getResumedHandshakes() {
+        return resumed;
+    }
+
+    /** Returns the number of failed handshakes. */
+    public synchronized long getFailedHandshakes() {
+        return failed;
+    }
+
+    /** Returns the summed up duration of completed handshakes in ms. */
+    public synchronized long getTotalHandshakeTime() {
+        return totalTime;
+    }
+
+    /** Returns the maximal duration of a completed handshake in ms. */
+    public synchronized long getMaxHandshakeTime() {
+        return maxTime;
+    }
+
+    /** Returns the mean duration of completed handshakes in ms. */
+    public synchronized long getMeanHandshakeTime() {
+        return handshakes == 0 ? 0 : totalTime / handshakes;
+    }
+
+    public synchronized void reset() {
+        handshakes = 0;
+        resumed = 0;
+        failed = 0;
+        totalTime = 0;
+        maxTime = 0;
+    }
+
+    public synchronized String toString() {
+        return "HandshakeMetrics[handshakes=" + handshakes
+                + ", resumed=" + resumed + ", failed=" + failed
+                + ", mean=" + getMeanHandshakeTime() + "ms, max="
+                + maxTime + "ms]";
+    }
+}
@@ -183,6 +183,78 @@ public abstract class SSLContextAdapter
      */
     public abstract boolean isNeedClientAuth();
 
+
+    /**
+     *  Sets the maximal number of sessions cached by the client and the
+     *  server session context, so further connections to or from the same
+     *  peer can resume the session with an abbreviated handshake.
+     *  <code>0</code> means no limit, <code>-1</code> (= default) keeps the
+     *  default of the JSSE provider.
+     *
+     * @param  size  The new sessionCacheSize value
+     */
+    public abstract void setSessionCacheSize(int size);
+
+
+    /**
+     *  Gets the sessionCacheSize attribute of the SSLContextAdapter object
+     *
+     * @return    The sessionCacheSize value
+     */
+    public abstract int getSessionCacheSize();
+
+
+    /**
+     *  Sets the timeout in seconds, after which cached sessions can no
+     *  longer be resumed. <code>0</code> means no limit, <code>-1</code>
+     *  (= default) keeps the default of the JSSE provider.
+     *
+     * @param  seconds  The new sessionTimeout value
+     */
+    public abstract void setSessionTimeout(int seconds);
+
+
+    /**
+     *  Gets the sessionTimeout attribute of the SSLContextAdapter object
+     *
+     * @return    The sessionTimeout value
+     */
+    public abstract int getSessionTimeout();
+
+
+    /**
+     *  Enables or disables resumption of cached sessions. If disabled,
+     *  each session is invalidated after the handshake, so every
+     *  connection performs a full handshake. Enabled by default.
+     *  <p>
+     *  Only applies to handshakes performed by {@link #startHandshake},
+     *  e.g. of sockets created by {@link #getSocketFactory}, so it only
+     *  affects the requestor side. Sessions of connections accepted by
+     *  server sockets of {@link #getServerSocketFactory} stay cached and
+     *  may be resumed by peers, which do not invalidate them.
+     *
+     * @param  enable  The new sessionResumption value
+     */
+    public abstract void setSessionResumption(boolean enable);
+
+
+    /**
+     *  Gets the sessionResumption attribute of the SSLContextAdapter object
+     *
+     * @return    The sessionResumption value
+     */
+    public abstract boolean isSessionResumption();
+
+
+    /**
+     *  Returns the metrics of handshakes performed by
+     *  {@link #startHandshake}, e.g. of sockets created by
+     *  {@link #getSocketFactory}.
+     *
+     * @return    The handshakeMetrics value
+     */
+    public abstract HandshakeMetrics getHandshakeMetrics();
+
     //   public abstract void setStartHandshake(boolean startHandshake);
 
     /**
@@ -0,0 +1,204 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.util;
+
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Provides the threads, which accept connections and read and process
+ * messages of associations.
+ * <p>
+ * The default executor starts a new platform thread for each task. If the
+ * system property <code>dcm4che.executor</code> is set to
+ * <code>virtual</code> and the Java runtime supports virtual threads, each
+ * task is executed by a new virtual thread instead.
+ *
+ * @see org.dcm4che.server.Server#setTaskExecutor(TaskExecutor)
+ * @see org.dcm4che.net.ActiveAssociation#setTaskExecutor(TaskExecutor)
+ */
+public abstract class TaskExecutor {
+
+    /** Name of the system property selecting the default executor. */
+    public static final String PROPERTY = "dcm4che.executor";
+
+    private static final Logger log = Logger.getLogger(TaskExecutor.class);
+
+    private static final TaskExecutor PLATFORM = new PlatformThreadExecutor();
+
+    private static TaskExecutor virtual = null;
+
+    private static TaskExecutor defaultExecutor = null;
+
+    /**
+     * Executes the task in a thread with the specified name.
+     *
+     * @param task task to execute
+     * @param name name of the thread
+     */
+    public abstract void execute(Runnable task, String name);
+
+    /** Returns an executor starting a new platform thread for each task. */
+    public static TaskExecutor getPlatformThreadExecutor() {
+        return PLATFORM;
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for each task.
+     *
+     * @throws UnsupportedOperationException if the Java runtime does not
+     *         support virtual threads
+     */
+    public static synchronized TaskExecutor getVirtualThreadExecutor() {
+        if (virtual == null)
+            virtual = new VirtualThreadExecutor();
+        return virtual;
+    }
+
+    /** Returns <code>true</code>, if the Java runtime supports virtual threads. */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            getVirtualThreadExecutor();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the executor used, if no executor was set explicitly.
+     * Initialized according to the system property {@link #PROPERTY}.
+     */
+    public static synchronized TaskExecutor getDefault() {
+        if (defaultExecutor == null) {
+            try {
+                defaultExecutor =
+                        forName(System.getProperty(PROPERTY, "platform"));
+            } catch (IllegalArgumentException e) {
+                log.warn("Illegal value of " + PROPERTY + ": "
+                        + e.getMessage() + " - use platform threads");
+                defaultExecutor = PLATFORM;
+            }
+        }
+        return defaultExecutor;
+    }
+
+    public static synchronized void setDefault(TaskExecutor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Returns the executor with the specified name: <code>platform</code> or
+     * <code>virtual</code>. Falls back to platform threads, if virtual
+     * threads are not supported.
+     */
+    public static TaskExecutor forName(String name) {
+        if ("platform".equalsIgnoreCase(name))
+            return PLATFORM;
+        if (!"virtual".equalsIgnoreCase(name))
+            throw new IllegalArgumentException("executor: " + name);
+        try {
+            return getVirtualThreadExecutor();
+        } catch (UnsupportedOperationException e) {
+            log.warn(e.getMessage() + " - use platform threads");
+            return PLATFORM;
+        }
+    }
+
+    private static final class PlatformThreadExecutor extends TaskExecutor {
+
+        public void execute(Runnable task, String name) {
+            new Thread(task, name).start();
+        }
+
+        public String toString() {
+            return "PlatformThreadExecutor";
+        }
+    }
+
+    /**
+     * Uses <code>Thread.ofVirtual()</code> by reflection, so the class can
+     * be loaded by runtimes without virtual threads.
+     */
+    private static final class VirtualThreadExecutor extends TaskExecutor {
+
+        private final Method ofVirtual;
+
+        private final Method name;
+
+        private final Method unstarted;
+
+        VirtualThreadExecutor() {
+            try {
+                Class builder = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual", new Class[0]);
+                name = builder.getMethod("name", new Class[] { String.class });
+                unstarted = builder.getMethod("unstarted",
+                        new Class[] { Runnable.class });
+                // preview feature of older runtimes may be disabled
+                ofVirtual.invoke(null, new Object[0]);
+            } catch (Exception e) {
+                throw new UnsupportedOperationException(
+                        "Virtual threads not supported by Java "
+                                + System.getProperty("java.version"));
+            }
+        }
+
+        public void execute(Runnable task, String threadName) {
+            Thread thread;
+            try {
+                Object builder = ofVirtual.invoke(null, new Object[0]);
+                builder = name.invoke(builder, new Object[] { threadName });
+                thread = (Thread) unstarted.invoke(builder,
+                        new Object[] { task });
+            } catch (Exception e) {
+                throw new RuntimeException(
+                        "Failed to create virtual thread: " + e);
+            }
+            thread.start();
+        }
+
+        public String toString() {
+            return "VirtualThreadExecutor";
+        }
+    }
+}
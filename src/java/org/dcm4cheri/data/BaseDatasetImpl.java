@@ -111,6 +111,13 @@ abstract class BaseDatasetImpl extends DcmObjectImpl implements Dataset {
    /**  Description of the Field */
    protected int totLen = 0;
 
+   /**
+    * Encoding parameters, for which <code>totLen</code>, <code>grTags</code>
+    * and <code>grLens</code> are valid, or <code>null</code>, if they have
+    * to be recalculated.
+    */
+   private DcmEncodeParam lengthParam = null;
+
    private static SAXTransformerFactory tfFactory;
 
    private static Templates templates;
@@ -191,13 +198,17 @@ abstract class BaseDatasetImpl extends DcmObjectImpl implements Dataset {
     * @return        Description of the Return Value
     */
    public int calcLength(DcmEncodeParam param) {
-       totLen = 0;
-       grCount = 0;
-
-       int curGrTag;
-
-       int prevGrTag = -1;
        synchronized (list) {
+           if (isLengthCached(param)) {
+               return totLen;
+           }
+           // lengths cached by enclosing items include the old totLen
+           invalidateParentLength();
+           totLen = 0;
+           grCount = 0;
+           boolean cacheable = isLengthCacheable();
+           int curGrTag;
+           int prevGrTag = -1;
            for (Iterator iter = iterator(); iter.hasNext();) {
                DcmElement el = (DcmElement) iter.next();
                curGrTag = el.tag() & 0xffff0000;
@@ -214,19 +225,57 @@ abstract class BaseDatasetImpl extends DcmObjectImpl implements Dataset {
                    grLens[grCount - 1] += el.length();
                } else if (el instanceof FragmentElement) {
                    grLens[grCount - 1] += ((FragmentElement) el).calcLength();
+                   // fragments are added without notice of this dataset
+                   cacheable = false;
                } else {
-                   grLens[grCount - 1] += ((SQElement) el).calcLength(param);
+                   SQElement sq = (SQElement) el;
+                   grLens[grCount - 1] += sq.calcLength(param);
+                   cacheable = cacheable && sq.isLengthCached(this, param);
                }
            }
+           grTags[grCount] = -1;
+           if (!param.skipGroupLen) {
+               totLen += grCount * 12;
+           }
+           for (int i = 0; i < grCount; ++i) {
+               totLen += grLens[i];
+           }
+           lengthParam = cacheable ? param : null;
+           return totLen;
        }
-       grTags[grCount] = -1;
-       if (!param.skipGroupLen) {
-           totLen += grCount * 12;
-       }
-       for (int i = 0; i < grCount; ++i) {
-           totLen += grLens[i];
+   }
+
+   /**
+    * Returns <code>true</code>, if the length calculated by the last
+    * {@link #calcLength} is still valid for the specified encoding.
+    */
+   final boolean isLengthCached(DcmEncodeParam param) {
+       DcmEncodeParam p = lengthParam;
+       return p != null
+           && p.explicitVR == param.explicitVR
+           && p.skipGroupLen == param.skipGroupLen
+           && p.undefSeqLen == param.undefSeqLen
+           && p.undefItemLen == param.undefItemLen;
+   }
+
+   /**
+    * Returns <code>false</code> for views, which are not notified about
+    * changes of the backing dataset and therefore must not cache lengths.
+    */
+   protected boolean isLengthCacheable() {
+       return true;
+   }
+
+   protected void elementsChanged() {
+       lengthParam = null;
+       invalidateParentLength();
+   }
+
+   private void invalidateParentLength() {
+       Dataset parent = getParent();
+       if (parent instanceof BaseDatasetImpl) {
+           ((BaseDatasetImpl) parent).elementsChanged();
        }
-       return totLen;
    }
 
    /**
@@ -254,41 +303,54 @@ abstract class BaseDatasetImpl extends DcmObjectImpl implements Dataset {
    public void writeDataset(DcmHandler handler, DcmEncodeParam param)
    throws IOException {
        synchronized (list) {
-           if (!(param.skipGroupLen && param.undefItemLen && param.undefSeqLen)) {
+           boolean patch = handler instanceof DcmStreamHandlerImpl
+               && ((DcmStreamHandlerImpl) handler).isBackPatching();
+           if (!patch && !(param.skipGroupLen && param.undefItemLen
+                   && param.undefSeqLen)) {
                calcLength(param);
            }
            handler.startDataset();
            handler.setDcmDecodeParam(param);
-           doWrite(handler, param);
+           doWrite(handler, param, patch);
            handler.endDataset();
        }
    }
 
-   private void doWrite(DcmHandler handler, DcmEncodeParam param)
+   /**
+    * Writes the elements. With <code>patch</code> set, defined lengths are
+    * written as placeholders, which the handler replaces after the content
+    * was written, so no lengths have to be calculated in advance.
+    */
+   private void doWrite(DcmHandler handler, DcmEncodeParam param,
+       boolean patch)
    throws IOException {
        int grIndex = 0;
+       int prevGrTag = -1;
        for (Iterator iter = iterator(); iter.hasNext();) {
            DcmElement el = (DcmElement) iter.next();
-           if (!param.skipGroupLen
-               && grTags[grIndex] == (el.tag() & 0xffff0000)) {
+           int grTag = el.tag() & 0xffff0000;
+           if (!param.skipGroupLen && (patch ? grTag != prevGrTag
+                   : grTags[grIndex] == grTag)) {
                byte[] b4 = new byte[4];
                ByteBuffer.wrap(b4).order(param.byteOrder)
-               .putInt(grLens[grIndex]);
-               handler.startElement(grTags[grIndex], VRs.UL, el
+               .putInt(patch ? 0 : grLens[grIndex]);
+               handler.startElement(grTag, VRs.UL, el
                    .getStreamPosition());
                handler.value(b4, 0, 4);
                handler.endElement();
                ++grIndex;
+               prevGrTag = grTag;
            }
            if (el instanceof SQElement) {
-               int len = param.undefSeqLen ? -1 : el.length();
+               int len = param.undefSeqLen ? -1 : patch ? 0 : el.length();
                handler.startElement(el.tag(), VRs.SQ, el.getStreamPosition());
                handler.startSequence(len);
                for (int j = 0, m = el.countItems(); j < m;) {
                    BaseDatasetImpl ds = (BaseDatasetImpl) el.getItem(j);
-                   int itemlen = param.undefItemLen ? -1 : ds.length();
+                   int itemlen = param.undefItemLen ? -1
+                           : patch ? 0 : ds.length();
                    handler.startItem(++j, ds.getItemOffset(), itemlen);
-                   ds.doWrite(handler, param);
+                   ds.doWrite(handler, param, patch);
                    handler.endItem(itemlen);
                }
                handler.endSequence(len);
@@ -373,12 +435,20 @@ abstract class BaseDatasetImpl extends DcmObjectImpl implements Dataset {
        if (param == null) {
            param = DcmDecodeParam.IVR_LE;
        }
-       DeflaterOutputStream deflater = null;
-       writeDataset(param.deflated ? new DcmStreamHandlerImpl(
-           deflater = new DeflaterOutputStream(new OutputStreamAdapter(out)))
-           : new DcmStreamHandlerImpl(out), param);
-       if (deflater != null)
+       if (param.deflated) {
+           DeflaterOutputStream deflater = new DeflaterOutputStream(
+               new OutputStreamAdapter(out));
+           writeDataset(new DcmStreamHandlerImpl(deflater), param);
            deflater.finish();
+           return;
+       }
+       DcmStreamHandlerImpl handler = new DcmStreamHandlerImpl(out);
+       // write defined lengths in one pass, unless they are known already
+       if (!(param.skipGroupLen && param.undefItemLen && param.undefSeqLen)
+           && !isLengthCached(param)) {
+           handler.setBackPatching(true);
+       }
+       writeDataset(handler, param);
    }
 
    private DcmEncodeParam checkCompatibility(FileMetaInfo fmi,
@@ -572,24 +642,8 @@ abstract class BaseDatasetImpl extends DcmObjectImpl implements Dataset {
     */
    public boolean match(Dataset keys, boolean ignorePNCase, boolean ignoreEmpty) {
        if (keys == null) { return true; }
-       SpecificCharacterSet keyCS = keys.getSpecificCharacterSet();
-       for (Iterator iter = keys.iterator(); iter.hasNext();) {
-           if (!match((DcmElementImpl) iter.next(),
-               ignorePNCase,
-               ignoreEmpty,
-               keyCS)) { return false; }
-       }
-       return true;
-   }
-
-   private boolean match(DcmElementImpl key, boolean ignorePNCase,
-       boolean ignoreEmpty, SpecificCharacterSet keyCS) {
-       final int tag = key.tag();
-       // ignore Character Set Attribute in key
-       if (tag == Tags.SpecificCharacterSet) return true;
-       DcmElementImpl e = (DcmElementImpl) get(tag);
-       if (e == null) { return ignoreEmpty || key.isEmpty(); }
-       return e.match(key, ignorePNCase, ignoreEmpty, keyCS, getSpecificCharacterSet());
+       return new DatasetMatcherImpl(keys, ignorePNCase, ignoreEmpty)
+               .matches(this);
    }
 
    /**
@@ -62,7 +62,7 @@ import javax.imageio.stream.ImageInputStream;
  * @version $Revision: 3994 $ $Date: 2006-05-18 00:10:23 +0200 (Do, 18 Mai 2006) $
  * @see "DICOM Part 5: Data Structures and Encoding, 7. The Data Set"
  */
-final class DatasetImpl extends BaseDatasetImpl
+class DatasetImpl extends BaseDatasetImpl
         implements org.dcm4che.data.Dataset {
 
     private final Dataset parent;
@@ -0,0 +1,241 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DatasetMatcher;
+import org.dcm4che.data.DcmElement;
+import org.dcm4che.data.DcmValueException;
+import org.dcm4che.data.SpecificCharacterSet;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.VRs;
+
+/**
+ * Implements {@link DatasetMatcher} by one precompiled matcher per key
+ * attribute.
+ */
+final class DatasetMatcherImpl implements DatasetMatcher {
+
+    private final KeyMatcher[] keyMatchers;
+    private final boolean ignoreEmpty;
+
+    DatasetMatcherImpl(Dataset keys, boolean ignorePNCase,
+            boolean ignoreEmpty) {
+        this.ignoreEmpty = ignoreEmpty;
+        if (keys == null) {
+            this.keyMatchers = new KeyMatcher[0];
+            return;
+        }
+        SpecificCharacterSet keyCS = keys.getSpecificCharacterSet();
+        ArrayList list = new ArrayList(keys.size());
+        for (Iterator iter = keys.iterator(); iter.hasNext();) {
+            DcmElement key = (DcmElement) iter.next();
+            // ignore Character Set Attribute in key
+            if (key.tag() != Tags.SpecificCharacterSet) {
+                list.add(compile(key, keyCS, ignorePNCase));
+            }
+        }
+        this.keyMatchers = (KeyMatcher[]) list.toArray(
+                new KeyMatcher[list.size()]);
+    }
+
+    private KeyMatcher compile(DcmElement key, SpecificCharacterSet keyCS,
+            boolean ignorePNCase) {
+        if (key.isEmpty()) {
+            return new KeyMatcher(key);
+        }
+        if (StringElement.isDateString(key)) {
+            return new DateRangeMatcher(key);
+        }
+        if (key instanceof StringElement) {
+            return new WildcardMatcher(key, keyCS,
+                    ignorePNCase && key.vr() == VRs.PN);
+        }
+        if (key.vr() == VRs.SQ) {
+            return new SequenceMatcher(key, ignorePNCase, ignoreEmpty);
+        }
+        return new ValueMatcher(key, keyCS, ignorePNCase, ignoreEmpty);
+    }
+
+    public boolean matches(Dataset ds) {
+        SpecificCharacterSet dsCS = ds.getSpecificCharacterSet();
+        for (int i = 0; i < keyMatchers.length; i++) {
+            KeyMatcher km = keyMatchers[i];
+            DcmElement e = ds.get(km.tag);
+            if (e == null) {
+                if (!(ignoreEmpty || km.keyEmpty)) {
+                    return false;
+                }
+            } else if (e.vr() != km.vr) {
+                return false;
+            } else if (e.isEmpty() || km.keyEmpty) {
+                if (!(ignoreEmpty || e.isEmpty() && km.keyEmpty)) {
+                    return false;
+                }
+            } else if (!km.matchValue(e, dsCS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Matches an empty key, which only checks presence of the value. */
+    private static class KeyMatcher {
+        final int tag;
+        final int vr;
+        final boolean keyEmpty;
+
+        KeyMatcher(DcmElement key) {
+            this.tag = key.tag();
+            this.vr = key.vr();
+            this.keyEmpty = key.isEmpty();
+        }
+
+        boolean matchValue(DcmElement e, SpecificCharacterSet dsCS) {
+            return true;
+        }
+    }
+
+    private static final class WildcardMatcher extends KeyMatcher {
+        private final Glob[] globs;
+        private final boolean universal;
+
+        WildcardMatcher(DcmElement key, SpecificCharacterSet keyCS,
+                boolean ignoreCase) {
+            super(key);
+            String[] patterns;
+            try {
+                patterns = key.getStrings(keyCS);
+            } catch (DcmValueException e) {
+                throw new IllegalArgumentException("key: " + key);
+            }
+            globs = new Glob[patterns.length];
+            boolean universal = false;
+            for (int i = 0; i < patterns.length; i++) {
+                globs[i] = new Glob(patterns[i], ignoreCase);
+                universal = universal || globs[i].isUniversal();
+            }
+            this.universal = universal;
+        }
+
+        boolean matchValue(DcmElement e, SpecificCharacterSet dsCS) {
+            if (universal) {
+                return true;
+            }
+            String[] values;
+            try {
+                values = e.getStrings(dsCS);
+            } catch (DcmValueException x) {
+                // Illegal Value match always (like null value)
+                return true;
+            }
+            for (int i = 0; i < globs.length; ++i) {
+                for (int j = 0; j < values.length; ++j) {
+                    if (globs[i].matches(values[j])) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class DateRangeMatcher extends KeyMatcher {
+        private final long[] ranges;
+
+        DateRangeMatcher(DcmElement key) {
+            super(key);
+            this.ranges = StringElement.toDateRanges(key);
+        }
+
+        boolean matchValue(DcmElement e, SpecificCharacterSet dsCS) {
+            return StringElement.matchDateRanges(e, ranges);
+        }
+    }
+
+    private static final class SequenceMatcher extends KeyMatcher {
+        private final DatasetMatcherImpl[] itemMatchers;
+
+        SequenceMatcher(DcmElement key, boolean ignorePNCase,
+                boolean ignoreEmpty) {
+            super(key);
+            itemMatchers = new DatasetMatcherImpl[key.countItems()];
+            for (int i = 0; i < itemMatchers.length; i++) {
+                itemMatchers[i] = new DatasetMatcherImpl(key.getItem(i),
+                        ignorePNCase, ignoreEmpty);
+            }
+        }
+
+        boolean matchValue(DcmElement e, SpecificCharacterSet dsCS) {
+            for (int i = 0; i < itemMatchers.length; ++i) {
+                for (int j = 0, n = e.countItems(); j < n; ++j) {
+                    if (itemMatchers[i].matches(e.getItem(j))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Delegates to the element for VRs without precompiled form. */
+    private static final class ValueMatcher extends KeyMatcher {
+        private final DcmElement key;
+        private final SpecificCharacterSet keyCS;
+        private final boolean ignorePNCase;
+        private final boolean ignoreEmpty;
+
+        ValueMatcher(DcmElement key, SpecificCharacterSet keyCS,
+                boolean ignorePNCase, boolean ignoreEmpty) {
+            super(key);
+            this.key = key;
+            this.keyCS = keyCS;
+            this.ignorePNCase = ignorePNCase;
+            this.ignoreEmpty = ignoreEmpty;
+        }
+
+        boolean matchValue(DcmElement e, SpecificCharacterSet dsCS) {
+            return ((DcmElementImpl) e).matchValue(key, ignorePNCase,
+                    ignoreEmpty, keyCS, dsCS);
+        }
+    }
+}
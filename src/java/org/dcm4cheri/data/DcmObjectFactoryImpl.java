@@ -41,6 +41,7 @@ package org.dcm4cheri.data;
 import org.dcm4che.Implementation;
 import org.dcm4che.data.Command;
 import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DatasetMatcher;
 import org.dcm4che.data.DcmObjectFactory;
 import org.dcm4che.data.FileMetaInfo;
 import org.dcm4che.data.PersonName;
@@ -65,6 +66,10 @@ public final class DcmObjectFactoryImpl extends DcmObjectFactory {
         return new DatasetImpl();
     }    
 
+    public Dataset newLazyDataset() {
+        return new LazyDatasetImpl();
+    }    
+
     public FileMetaInfo newFileMetaInfo() {
         return new FileMetaInfoImpl();
     }    
@@ -100,4 +105,17 @@ public final class DcmObjectFactoryImpl extends DcmObjectFactory {
                     Implementation.getClassUID(),
                     Implementation.getVersionName());
     }     
+
+    public DatasetMatcher newDatasetMatcher(Dataset keys,
+            boolean ignorePNCase, boolean ignoreEmpty) {
+        return new DatasetMatcherImpl(keys, ignorePNCase, ignoreEmpty);
+    }
+
+    public void setMaxCachedStringLength(int maxLength) {
+        StringElement.setMaxCachedLength(maxLength);
+    }
+
+    public int getMaxCachedStringLength() {
+        return StringElement.getMaxCachedLength();
+    }
 }
@@ -60,6 +60,8 @@ class DcmObjectHandlerImpl implements org.dcm4che.data.DcmHandler {
 
     private final DcmObject result;
     private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private DcmDecodeParam decodeParam = DcmDecodeParam.IVR_LE;
+    private DeferredElement.Source source;
     private DcmObject curDcmObject;
     private int tag;
     private int vr;
@@ -120,8 +122,23 @@ class DcmObjectHandlerImpl implements org.dcm4che.data.DcmHandler {
     }
     
     public void setDcmDecodeParam(DcmDecodeParam param) {
+        this.decodeParam = param;
         this.byteOrder = param.byteOrder;
     }
+
+    /**
+     * Sets the source, from which values skipped by the parser are read.
+     */
+    void setDeferredValueSource(DeferredElement.Source source) {
+        this.source = source;
+    }
+
+    void deferredValue(long valuePos, int length) {
+        DeferredElement e = new DeferredElement(tag, vr, length, valuePos,
+                decodeParam, source);
+        e.setStreamPosition(pos);
+        ((DcmObjectImpl) curDcmObject).putDeferred(e);
+    }
             
     public void startElement(int tag, int vr, long pos)
             throws IOException {
@@ -143,10 +160,17 @@ class DcmObjectHandlerImpl implements org.dcm4che.data.DcmHandler {
     }
     
     public void value(byte[] data, int start, int length) throws IOException {
-        curDcmObject.putXX(tag, vr,
-                ByteBuffer.wrap(data, start, length).order(byteOrder))
+        curDcmObject.putXX(tag, vr, wrap(data, start, length))
                 .setStreamPosition(pos);
     }
+
+    private ByteBuffer wrap(byte[] data, int start, int length) {
+        // element implementations expect value buffers with position 0
+        ByteBuffer bb = start == 0 && length == data.length
+                ? ByteBuffer.wrap(data)
+                : ByteBuffer.wrap(data, start, length).slice();
+        return bb.order(byteOrder);
+    }
     
 
     void value(byte[] data) throws IOException {
@@ -160,7 +184,7 @@ class DcmObjectHandlerImpl implements org.dcm4che.data.DcmHandler {
     public void fragment(int id, long pos, byte[] data, int start, int length)
             throws IOException {
         ((DcmElement)seqStack.getLast()).addDataFragment(
-                ByteBuffer.wrap(data, start, length).order(byteOrder));
+                wrap(data, start, length));
     }
     
     public void startItem(int id, long pos, int length) throws IOException {
@@ -44,9 +44,9 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.text.ParseException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import javax.imageio.stream.ImageOutputStream;
 
@@ -81,7 +81,10 @@ abstract class DcmObjectImpl implements DcmObject {
 
     protected final static Logger log = Logger.getLogger(DcmObjectImpl.class);
 
-    protected ArrayList list = new ArrayList();
+    protected final ElementList list = new ElementList();
+
+    /** Indicates, that <code>list</code> may contain deferred elements. */
+    private boolean hasDeferred = false;
 
     public DcmHandler getDcmHandler() {
         return new DcmObjectHandlerImpl(this);
@@ -117,6 +120,14 @@ abstract class DcmObjectImpl implements DcmObject {
 
     public void clear() {
         list.clear();
+        hasDeferred = false;
+        elementsChanged();
+    }
+
+    /**
+     * Called after an element was added, replaced or removed.
+     */
+    protected void elementsChanged() {
     }
 
     public void shareElements() {
@@ -128,22 +139,7 @@ abstract class DcmObjectImpl implements DcmObject {
     }
 
     private int indexOf(int tag) {
-        int low = 0;
-        int high = list.size() - 1;
-
-        while (low <= high) {
-            int mid = (low + high) >> 1;
-            DcmElementImpl midVal = (DcmElementImpl) list.get(mid);
-            long cmp = (midVal.tag & 0xffffffffL) - (tag & 0xffffffffL);
-
-            if (cmp < 0)
-                low = mid + 1;
-            else if (cmp > 0)
-                high = mid - 1;
-            else
-                return mid; // key found
-        }
-        return -(low + 1); // key not found
+        return list.indexOf(tag);
     }
 
     public boolean contains(int tag) {
@@ -179,7 +175,7 @@ abstract class DcmObjectImpl implements DcmObject {
             }
         }
         int index = indexOf(tag);
-        return index >= 0 ? ((DcmElement) list.get(index))
+        return index >= 0 ? elementAt(index)
                 .vm(getSpecificCharacterSet()) : -1;
     }
 
@@ -236,7 +232,47 @@ abstract class DcmObjectImpl implements DcmObject {
             }
         }
         int index = indexOf(tag);
-        return index >= 0 ? (DcmElement) list.get(index) : null;
+        return index >= 0 ? elementAt(index) : null;
+    }
+
+    private DcmElement elementAt(int index) {
+        DcmElement e = (DcmElement) list.get(index);
+        if (!(e instanceof DeferredElement))
+            return e;
+        // read the value without holding the lock, so concurrent accesses
+        // of other values are not blocked by the I/O
+        DcmElement read = readDeferred((DeferredElement) e);
+        synchronized (list) {
+            if (index >= list.size() || list.get(index) != e) {
+                // list modified meanwhile: locate the element by its tag
+                index = indexOf(e.tag());
+                if (index < 0)
+                    return read;
+                DcmElement cur = (DcmElement) list.get(index);
+                if (cur != e)
+                    return cur instanceof DeferredElement ? read : cur;
+            }
+            list.set(index, read);
+            return read;
+        }
+    }
+
+    private DcmElement readDeferred(DeferredElement e) {
+        try {
+            return e.read(this);
+        } catch (IOException x) {
+            throw new RuntimeException("Failed to read value of " + e, x);
+        }
+    }
+
+    /**
+     * Adds an element, whose value is read from its source on first access.
+     */
+    void putDeferred(DeferredElement e) {
+        synchronized (list) {
+            hasDeferred = true;
+            put(e);
+        }
     }
 
     public DcmElement remove(int tag) {
@@ -251,10 +287,16 @@ abstract class DcmObjectImpl implements DcmObject {
                 return null;
             }
         }
+        DcmElement e;
         synchronized (list) {
             int index = indexOf(tag);
-            return index >= 0 ? (DcmElement) list.remove(index) : null;
+            if (index < 0)
+                return null;
+            e = (DcmElement) list.remove(index);
+            elementsChanged();
         }
+        return e instanceof DeferredElement
+                ? readDeferred((DeferredElement) e) : e;
     }
 
     public ByteBuffer getByteBuffer(int tag) {
@@ -668,19 +710,8 @@ abstract class DcmObjectImpl implements DcmObject {
 
     private DcmElement doPut(DcmElement newElem) {
         synchronized (list) {
-            final int size = list.size();
-            final int newTag = newElem.tag();
-            if (size == 0
-                    || (((DcmElementImpl) list.get(size - 1)).tag & 0xffffffffL) < (newTag & 0xffffffffL)) {
-                list.add(newElem);
-            } else {
-                int index = indexOf(newTag);
-                if (index >= 0) {
-                    list.set(index, newElem);
-                } else {
-                    list.add(-(index + 1), newElem);
-                }
-            }
+            list.put(newElem);
+            elementsChanged();
             return newElem;
         }
     }
@@ -2391,63 +2422,67 @@ abstract class DcmObjectImpl implements DcmObject {
         if (value == null) {
             return putXX(tag, vr);
         }
+        return put(createXX(tag, vr, value));
+    }
+
+    static DcmElement createXX(int tag, int vr, ByteBuffer value) {
         switch (vr) {
         case VRs.AE:
-            return put(StringElement.createAE(tag, value));
+            return StringElement.createAE(tag, value);
         case VRs.AS:
-            return put(StringElement.createAS(tag, value));
+            return StringElement.createAS(tag, value);
         case VRs.AT:
-            return put(ValueElement.createAT(tag, value));
+            return ValueElement.createAT(tag, value);
         case VRs.CS:
-            return put(StringElement.createCS(tag, value));
+            return StringElement.createCS(tag, value);
         case VRs.DA:
-            return put(StringElement.createDA(tag, value));
+            return StringElement.createDA(tag, value);
         case VRs.DS:
-            return put(StringElement.createDS(tag, value));
+            return StringElement.createDS(tag, value);
         case VRs.DT:
-            return put(StringElement.createDT(tag, value));
+            return StringElement.createDT(tag, value);
         case VRs.FL:
-            return put(ValueElement.createFL(tag, value));
+            return ValueElement.createFL(tag, value);
         case VRs.FD:
-            return put(ValueElement.createFD(tag, value));
+            return ValueElement.createFD(tag, value);
         case VRs.IS:
-            return put(StringElement.createIS(tag, value));
+            return StringElement.createIS(tag, value);
         case VRs.LO:
-            return put(StringElement.createLO(tag, value));
+            return StringElement.createLO(tag, value);
         case VRs.LT:
-            return put(StringElement.createLT(tag, value));
+            return StringElement.createLT(tag, value);
         case VRs.OB:
-            return put(ValueElement.createOB(tag, value));
+            return ValueElement.createOB(tag, value);
         case VRs.OF:
-            return put(ValueElement.createOF(tag, value));
+            return ValueElement.createOF(tag, value);
         case VRs.OW:
-            return put(ValueElement.createOW(tag, value));
+            return ValueElement.createOW(tag, value);
         case VRs.PN:
-            return put(StringElement.createPN(tag, value));
+            return StringElement.createPN(tag, value);
         case VRs.SH:
-            return put(StringElement.createSH(tag, value));
+            return StringElement.createSH(tag, value);
         case VRs.SL:
-            return put(ValueElement.createSL(tag, value));
+            return ValueElement.createSL(tag, value);
         case VRs.SS:
-            return put(ValueElement.createSS(tag, value));
+            return ValueElement.createSS(tag, value);
         case VRs.ST:
-            return put(StringElement.createST(tag, value));
+            return StringElement.createST(tag, value);
         case VRs.TM:
-            return put(StringElement.createTM(tag, value));
+            return StringElement.createTM(tag, value);
         case VRs.UC:
-            return put(StringElement.createUC(tag, value));
+            return StringElement.createUC(tag, value);
         case VRs.UI:
-            return put(StringElement.createUI(tag, value));
+            return StringElement.createUI(tag, value);
         case VRs.UN:
-            return put(ValueElement.createUN(tag, value));
+            return ValueElement.createUN(tag, value);
         case VRs.UL:
-            return put(ValueElement.createUL(tag, value));
+            return ValueElement.createUL(tag, value);
         case VRs.US:
-            return put(ValueElement.createUS(tag, value));
+            return ValueElement.createUS(tag, value);
         case VRs.UT:
-            return put(StringElement.createUT(tag, value));
+            return StringElement.createUT(tag, value);
         default:
-            return putXX(tag, checkIllegalVR(tag, vr), value);
+            return createXX(tag, checkIllegalVR(tag, vr), value);
         }
     }
 
@@ -2607,7 +2642,81 @@ abstract class DcmObjectImpl implements DcmObject {
      * @return Description of the Return Value
      */
     public Iterator iterator() {
-        return list.iterator();
+        final Iterator iter = list.iterator();
+        if (!hasDeferred)
+            return new Iterator() {
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                public Object next() {
+                    return iter.next();
+                }
+
+                public void remove() {
+                    iter.remove();
+                    elementsChanged();
+                }
+            };
+        // read deferred values one by one, as the iteration reaches them
+        return new Iterator() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < list.size();
+            }
+
+            public Object next() {
+                if (index >= list.size())
+                    throw new NoSuchElementException();
+                return elementAt(index++);
+            }
+
+            public void remove() {
+                if (index == 0)
+                    throw new IllegalStateException();
+                synchronized (list) {
+                    list.remove(--index);
+                    elementsChanged();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the elements with tags in the range
+     * [<code>fromTag</code>, <code>toTag</code>), starting the iteration by
+     * binary search instead of scanning all preceding elements.
+     */
+    Iterator iterator(final int fromTag, final int toTag) {
+        final long toTagL = toTag & 0xffffffffL;
+        return new Iterator() {
+            private int index = startIndex();
+
+            private int startIndex() {
+                synchronized (list) {
+                    int i = list.indexOf(fromTag);
+                    return i < 0 ? -(i + 1) : i;
+                }
+            }
+
+            public boolean hasNext() {
+                synchronized (list) {
+                    return index < list.size()
+                            && (list.tagAt(index) & 0xffffffffL) < toTagL;
+                }
+            }
+
+            public Object next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return elementAt(index++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     public int hashCode() {
@@ -2662,6 +2771,9 @@ abstract class DcmObjectImpl implements DcmObject {
         int tagOfCreatorID = 0;
         dcmObj.setPrivateCreatorID(null);
         setPrivateCreatorID(null);
+        synchronized (list) {
+            list.ensureCapacity(list.size() + dcmObj.size());
+        }
         for (Iterator it = dcmObj.iterator(); it.hasNext();) {
             DcmElement el = (DcmElement) it.next();
             int tag = el.tag();
@@ -2741,8 +2853,7 @@ abstract class DcmObjectImpl implements DcmObject {
 
     private ByteBuffer transcodeString(ByteBuffer value,
             SpecificCharacterSet srcCharSet, SpecificCharacterSet dstCharSet) {
-        byte[] b = value.array();
-        String s = srcCharSet == null ? new String(b) : srcCharSet.decode(b);
+        String s = StringElement.decode(value, srcCharSet);
         return ByteBuffer.wrap(dstCharSet == null ? s.getBytes()
                 : dstCharSet.encode(s));
     }
@@ -2903,7 +3014,7 @@ abstract class DcmObjectImpl implements DcmObject {
      * @param vr
      * @return Default VR code of given tag
      */
-    private int checkIllegalVR(int tag, int vr) {
+    private static int checkIllegalVR(int tag, int vr) {
         log.warn(Tags.toString(tag) + " with illegal VR Code: "
                 + Integer.toHexString(vr) + "H");
         int defaultVR = VRMap.DEFAULT.lookup(tag);
@@ -58,6 +58,7 @@ import org.dcm4che.data.DcmDecodeParam;
 import org.dcm4che.data.DcmHandler;
 import org.dcm4che.data.DcmParseException;
 import org.dcm4che.data.FileFormat;
+import org.dcm4che.data.ValueBufferPool;
 import org.dcm4che.dict.TagDictionary;
 import org.dcm4che.dict.Tags;
 import org.dcm4che.dict.VRMap;
@@ -104,6 +105,11 @@ final class DcmParserImpl implements org.dcm4che.data.DcmParser {
     
     private ByteArrayOutputStream unBuf = null;
 
+    private ValueBufferPool.Lease lease = null;
+    private DcmObjectHandlerImpl deferTo = null;
+    private byte[] valBuf = b0;
+    private int valOff = 0;
+
     private DcmDecodeParam fixInvalidSequenceEncoding;
     
     public DcmParserImpl(InputStream in) {
@@ -137,6 +143,51 @@ final class DcmParserImpl implements org.dcm4che.data.DcmParser {
         this.maxValLen = maxValLen;
     }
 
+    public final void setValueBufferLease(ValueBufferPool.Lease lease) {
+        this.lease = lease;
+    }
+
+    public final ValueBufferPool.Lease getValueBufferLease() {
+        return lease;
+    }
+
+    /**
+     * Skips values of subsequent dataset elements and sequences with
+     * defined length, and passes their position to the specified handler,
+     * instead of reading them. Requires an <code>ImageInputStream</code>
+     * as input.
+     *
+     * @param handler receives the positions of skipped values, or
+     *        <code>null</code> to read all values
+     */
+    final void setDeferValues(DcmObjectHandlerImpl handler) {
+        if (handler != null && !(in instanceof ImageInputStream))
+            throw new UnsupportedOperationException();
+        this.deferTo = handler;
+        this.handler = handler;
+    }
+
+    private boolean isDeferrable() {
+        return deferTo != null && unBuf == null && rLen > 0
+                && (rTag >>> 16) > 2
+                && rTag != Tags.SpecificCharacterSet
+                && !Tags.isPrivateCreatorDataElement(rTag)
+                && fixInvalidSequenceEncoding == null
+                && in instanceof ImageInputStream;
+    }
+
+    private void skipValue() throws IOException {
+        ImageInputStream iis = (ImageInputStream) in;
+        long valuePos = iis.getStreamPosition();
+        long end = valuePos + (rLen & 0xffffffffL);
+        long streamLen = iis.length();
+        if (streamLen != -1L && end > streamLen)
+            throw new EOFException(logMsg());
+        iis.seek(end);
+        rPos += rLen;
+        deferTo.deferredValue(valuePos, rLen);
+    }
+
     public final int getReadTag() {
         return rTag;
     }
@@ -638,7 +689,10 @@ final class DcmParserImpl implements org.dcm4che.data.DcmParser {
                         && rTag != ITEM_DELIMITATION_ITEM_TAG)
                     handler.startElement(rTag, rVR, rPos0);
 
-                if (rLen == -1 || rVR == VRs.SQ) {
+                if (isDeferrable()) {
+                    skipValue();
+                    lread += rLen;
+                } else if (rLen == -1 || rVR == VRs.SQ) {
                     switch (rVR) {
                         case VRs.SQ:
                         case VRs.OB: case VRs.OF: case VRs.OW:
@@ -786,33 +840,34 @@ final class DcmParserImpl implements org.dcm4che.data.DcmParser {
     }
     
     private int readValue() throws IOException {
-        byte[] data = readBytes(rLen);
+        readBytes(rLen);
         if (handler != null && unBuf == null) {
             try {
-                handler.value(data, 0, rLen);
+                handler.value(valBuf, valOff, rLen);
             } catch (IllegalArgumentException x) {
                 throw new DcmParseException(x.getMessage(), x);
             }
         }
         if (rTag == TS_ID_TAG)
-            tsUID = decodeUID(data, rLen-1);
+            tsUID = decodeUID(valBuf, valOff, rLen);
         return rLen;
     }
     
-    private String decodeUID(byte[] data, int rlen1) {
-        if (data.length == 0) {
+    private String decodeUID(byte[] data, int off, int len) {
+        if (len == 0) {
             log.warn("Empty Transfer Syntax UID");
             return "";
         }
         
-        while (rlen1 >= 0 && data[rlen1] == 0 || data[rlen1] == ' ')
-            rlen1--;
-        if (rlen1 < 0) {
+        int end = off + len - 1;
+        while (end >= off && (data[end] == 0 || data[end] == ' '))
+            end--;
+        if (end < off) {
             log.warn("Empty Transfer Syntax UID in FMI");
             return "";
         }
         try {
-            return new String(data, 0, rlen1+1, "US-ASCII");
+            return new String(data, off, end - off + 1, "US-ASCII");
         } catch (UnsupportedEncodingException ex) {
             log.warn("Decoding Transfer Syntax UID in FMI failed!", ex);
             return null;
@@ -821,27 +876,34 @@ final class DcmParserImpl implements org.dcm4che.data.DcmParser {
     
     private int readFragment(int id, int itemlen) throws IOException {
         long rPos0 = rPos;
-        byte[] data = readBytes(itemlen);
+        readBytes(itemlen);
         if (handler != null && unBuf == null)
-            handler.fragment(id, rPos0-8, data, 0, itemlen);
+            handler.fragment(id, rPos0-8, valBuf, valOff, itemlen);
         return itemlen;
     }
     
-    private byte[] readBytes(int len) throws IOException {
-        if (len == 0)
-            return b0;
-        byte[] retval;
-        try {
-            retval = new byte[len];
-        } catch (OutOfMemoryError e) {
-            throw new DcmParseException(logMsg()
-                    + ", out of memory allocating byte[]");
+    private void readBytes(int len) throws IOException {
+        valOff = 0;
+        if (len == 0) {
+            valBuf = b0;
+            return;
+        }
+        if (lease != null && unBuf == null) {
+            ByteBuffer bb = lease.allocate(len);
+            valBuf = bb.array();
+            valOff = bb.arrayOffset();
+        } else {
+            try {
+                valBuf = new byte[len];
+            } catch (OutOfMemoryError e) {
+                throw new DcmParseException(logMsg()
+                        + ", out of memory allocating byte[]");
+            }
         }
-        in.readFully(retval, 0, len);
+        in.readFully(valBuf, valOff, len);
         rPos += len;
         if (unBuf != null)
-            unBuf.write(retval, 0, len);
-        return retval;
+            unBuf.write(valBuf, valOff, len);
     }
 
 }
@@ -70,6 +70,15 @@ class DcmStreamHandlerImpl implements org.dcm4che.data.DcmHandler {
     
     private DataOutput out;
 
+    // back-patching of defined lengths
+    private boolean backPatching = false;
+    private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private long[] openLens = new long[8];
+    private int numOpenLens = 0;
+    private long[] groupStart = new long[8];
+    private int[] groupTag = new int[8];
+    private int level = 0;
+
     /** Creates a new instance of DcmStreamHandlerImpl */
     public DcmStreamHandlerImpl(OutputStream out) {
         this.out  = out instanceof DataOutput ? (DataOutput)out
@@ -109,17 +118,69 @@ class DcmStreamHandlerImpl implements org.dcm4che.data.DcmHandler {
     }
     
     public void startDataset() {
-        // noop
+        level = 0;
+        groupStart[0] = -1L;
     }
     
-    public void endDataset() {
-        // noop
+    public void endDataset() throws IOException {
+        closeGroup();
     }
     
     public void setDcmDecodeParam(DcmDecodeParam param) {
         bb12.order(param.byteOrder);
+        this.byteOrder = param.byteOrder;
         this.explicitVR = param.explicitVR;
     }
+
+    /**
+     * Enables writing of defined sequence, item and group lengths after the
+     * content was written, by seeking back to the length field. The lengths
+     * passed to <code>startSequence</code>, <code>startItem</code> and the
+     * value of group length elements are then only placeholders.
+     *
+     * @throws IllegalStateException if the output is not an
+     *         <code>ImageOutputStream</code>
+     */
+    public void setBackPatching(boolean backPatching) {
+        if (backPatching && !(out instanceof ImageOutputStream))
+            throw new IllegalStateException("Output not seekable: " + out);
+        this.backPatching = backPatching;
+    }
+
+    public boolean isBackPatching() {
+        return backPatching;
+    }
+
+    private void openLength() throws IOException {
+        if (numOpenLens == openLens.length) {
+            long[] tmp = new long[numOpenLens << 1];
+            System.arraycopy(openLens, 0, tmp, 0, numOpenLens);
+            openLens = tmp;
+        }
+        openLens[numOpenLens++] = ((ImageOutputStream) out).getStreamPosition();
+    }
+
+    private void closeLength() throws IOException {
+        patchLength(openLens[--numOpenLens]);
+    }
+
+    /** Writes the number of bytes since <code>start</code> before it. */
+    private void patchLength(long start) throws IOException {
+        ImageOutputStream ios = (ImageOutputStream) out;
+        long end = ios.getStreamPosition();
+        ByteBuffer bb = ByteBuffer.wrap(b12, 0, 4).order(byteOrder);
+        bb.putInt(0, (int) (end - start));
+        ios.seek(start - 4);
+        ios.write(b12, 0, 4);
+        ios.seek(end);
+    }
+
+    private void closeGroup() throws IOException {
+        if (backPatching && groupStart[level] != -1L) {
+            patchLength(groupStart[level]);
+            groupStart[level] = -1L;
+        }
+    }
 /*    public final void setByteOrder(ByteOrder byteOrder) {
         bb12.order(byteOrder);
     }
@@ -154,6 +215,9 @@ class DcmStreamHandlerImpl implements org.dcm4che.data.DcmHandler {
     public void startElement(int tag, int vr, long pos) throws IOException {
         this.tag = tag;
         this.vr = vr;
+        if (backPatching && groupStart[level] != -1L
+                && (tag & 0xffff0000) != groupTag[level])
+            closeGroup();
     }
     
     public void endElement() throws IOException {
@@ -161,20 +225,43 @@ class DcmStreamHandlerImpl implements org.dcm4che.data.DcmHandler {
 
     public void startSequence(int len) throws IOException {
         writeHeader(tag, vr, len);
+        if (backPatching && len != -1)
+            openLength();
     }
 
     public void endSequence(int len) throws IOException {
         if (len == -1)
             writeHeader(SEQ_DELIMITATION_ITEM_TAG, VRs.NONE, 0);
+        else if (backPatching)
+            closeLength();
     }
     
     public void startItem(int id, long pos, int len) throws IOException {
         writeHeader(ITEM_TAG, VRs.NONE, len);
+        if (backPatching) {
+            if (len != -1)
+                openLength();
+            if (++level == groupStart.length) {
+                long[] tmp = new long[level << 1];
+                System.arraycopy(groupStart, 0, tmp, 0, level);
+                groupStart = tmp;
+                int[] tmp2 = new int[level << 1];
+                System.arraycopy(groupTag, 0, tmp2, 0, level);
+                groupTag = tmp2;
+            }
+            groupStart[level] = -1L;
+        }
     }
     
     public void endItem(int len) throws IOException {
+        if (backPatching) {
+            closeGroup();
+            --level;
+        }
         if (len == -1)
             writeHeader(ITEM_DELIMITATION_ITEM_TAG, VRs.NONE, 0);
+        else if (backPatching)
+            closeLength();
     }
 
     public void value(byte[] data, int start, int length) throws IOException {
@@ -182,6 +269,10 @@ class DcmStreamHandlerImpl implements org.dcm4che.data.DcmHandler {
         out.write(data, start, length);
         if ((length & 1) != 0)
             out.write(VRs.getPadding(vr));
+        if (backPatching && (tag & 0xffff) == 0) {
+            groupStart[level] = ((ImageOutputStream) out).getStreamPosition();
+            groupTag[level] = tag & 0xffff0000;
+        }
     }
     
     public void fragment(int id, long pos, byte[] data, int start, int length)
@@ -0,0 +1,208 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmDecodeParam;
+import org.dcm4che.data.DcmElement;
+import org.dcm4che.data.SpecificCharacterSet;
+import org.dcm4che.dict.VRs;
+
+/**
+ * Placeholder for an element, whose value was skipped by the parser and
+ * is read from the source on first access.
+ *
+ * @see LazyDatasetImpl
+ */
+final class DeferredElement extends DcmElementImpl {
+
+    private static final int SEQ_DELIMITATION_ITEM_TAG = 0xFFFEE0DD;
+
+    /** Random access to the bytes of a parsed stream. */
+    static abstract class Source {
+        abstract void read(long pos, byte[] b) throws IOException;
+    }
+
+    static final class ImageInputStreamSource extends Source {
+        private final ImageInputStream iis;
+
+        ImageInputStreamSource(ImageInputStream iis) {
+            this.iis = iis;
+        }
+
+        void read(long pos, byte[] b) throws IOException {
+            synchronized (iis) {
+                long pos0 = iis.getStreamPosition();
+                iis.seek(pos);
+                try {
+                    iis.readFully(b);
+                } finally {
+                    iis.seek(pos0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads values by positional reads of one file channel, shared by all
+     * elements of a dataset. The channel is opened on first access, reopened
+     * if it was closed by an interrupted read, and closed on finalization.
+     */
+    static final class FileSource extends Source {
+        private final File file;
+        private FileChannel channel;
+
+        FileSource(File file) {
+            this.file = file;
+        }
+
+        private synchronized FileChannel channel() throws IOException {
+            if (channel == null || !channel.isOpen())
+                channel = new RandomAccessFile(file, "r").getChannel();
+            return channel;
+        }
+
+        void read(long pos, byte[] b) throws IOException {
+            FileChannel ch = channel();
+            ByteBuffer bb = ByteBuffer.wrap(b);
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, pos + bb.position()) < 0)
+                    throw new EOFException("EOF during read of " + file);
+            }
+        }
+
+        protected synchronized void finalize() throws Throwable {
+            if (channel != null)
+                try { channel.close(); } catch (IOException ignore) {}
+            super.finalize();
+        }
+    }
+
+    private final int vr;
+    private final int len;
+    private final long valuePos;
+    private final DcmDecodeParam decodeParam;
+    private final Source src;
+
+    DeferredElement(int tag, int vr, int len, long valuePos,
+            DcmDecodeParam decodeParam, Source src) {
+        super(tag);
+        this.vr = vr;
+        this.len = len;
+        this.valuePos = valuePos;
+        this.decodeParam = decodeParam;
+        this.src = src;
+    }
+
+    public int vr() {
+        return vr;
+    }
+
+    public int length() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return len == 0;
+    }
+
+    /**
+     * Reads the value and returns the VM of the read element. The owning
+     * object replaces deferred elements on access, so this is only invoked
+     * on elements held outside of it.
+     */
+    public int vm(SpecificCharacterSet cs) {
+        try {
+            return read(null).vm(cs);
+        } catch (IOException x) {
+            throw new RuntimeException("Failed to read value of " + this, x);
+        }
+    }
+
+    public String toString() {
+        return toString(tag, vr, -1, len, "deferred@" + valuePos);
+    }
+
+    /**
+     * Reads the value from the source and creates the corresponding element.
+     *
+     * @param owner object, which shall contain the element
+     */
+    DcmElement read(DcmObjectImpl owner) throws IOException {
+        byte[] b = new byte[len];
+        src.read(valuePos, b);
+        DcmElement el = vr == VRs.SQ
+                ? readItems(b, (Dataset) owner)
+                : DcmObjectImpl.createXX(tag, vr,
+                        ByteBuffer.wrap(b).order(decodeParam.byteOrder));
+        return el.setStreamPosition(streamPos);
+    }
+
+    private DcmElement readItems(byte[] b, Dataset parent)
+            throws IOException {
+        SQElement sq = new SQElement(tag, parent);
+        DcmParserImpl parser = new DcmParserImpl(new ByteArrayInputStream(b));
+        parser.setDcmDecodeParam(decodeParam);
+        parser.setStreamPosition(valuePos);
+        ByteBuffer bb = ByteBuffer.wrap(b).order(decodeParam.byteOrder);
+        int off;
+        while ((off = (int) (parser.getStreamPosition() - valuePos)) < len) {
+            int itemTag = (bb.getShort(off) << 16)
+                    | (bb.getShort(off + 2) & 0xffff);
+            if (itemTag == SEQ_DELIMITATION_ITEM_TAG)
+                break;
+            Dataset item = sq.addNewItem().setItemOffset(valuePos + off);
+            DcmObjectHandlerImpl handler = new DcmObjectHandlerImpl(item);
+            handler.setDcmDecodeParam(decodeParam);
+            parser.setDcmHandler(handler);
+            parser.parseItemDataset();
+        }
+        return sq;
+    }
+}
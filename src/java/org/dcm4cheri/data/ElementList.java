@@ -0,0 +1,225 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.data;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.dcm4che.data.DcmElement;
+
+/**
+ * Sorted element storage of {@link DcmObjectImpl}. Keeps the tags in a
+ * separate <code>int[]</code> parallel to the elements, so lookups by tag
+ * do not touch the element objects. Appending an element with a tag
+ * greater than the last one - as delivered by the parser - does not shift
+ * any entries.
+ * <p>
+ * Not synchronized: callers lock on the instance, as they did on the
+ * former <code>ArrayList</code>.
+ */
+final class ElementList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] tags;
+    private Object[] elems;
+    private int size = 0;
+    private int modCount = 0;
+
+    ElementList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ElementList(int capacity) {
+        tags = new int[capacity];
+        elems = new Object[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; ++i)
+            elems[i] = null;
+        size = 0;
+        ++modCount;
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity <= tags.length)
+            return;
+        int newCapacity = Math.max(minCapacity, (tags.length * 3) / 2 + 1);
+        int[] newTags = new int[newCapacity];
+        Object[] newElems = new Object[newCapacity];
+        System.arraycopy(tags, 0, newTags, 0, size);
+        System.arraycopy(elems, 0, newElems, 0, size);
+        tags = newTags;
+        elems = newElems;
+    }
+
+    public Object get(int index) {
+        checkIndex(index);
+        return elems[index];
+    }
+
+    public int tagAt(int index) {
+        checkIndex(index);
+        return tags[index];
+    }
+
+    /** Replaces the element at the specified index by one with equal tag. */
+    public Object set(int index, Object elem) {
+        checkIndex(index);
+        Object prev = elems[index];
+        elems[index] = elem;
+        return prev;
+    }
+
+    public Object remove(int index) {
+        checkIndex(index);
+        Object prev = elems[index];
+        int numMoved = size - index - 1;
+        if (numMoved > 0) {
+            System.arraycopy(tags, index + 1, tags, index, numMoved);
+            System.arraycopy(elems, index + 1, elems, index, numMoved);
+        }
+        elems[--size] = null;
+        ++modCount;
+        return prev;
+    }
+
+    /**
+     * Inserts or replaces the element with the tag of the specified element,
+     * keeping the list sorted by unsigned tag value.
+     *
+     * @return the replaced element or <code>null</code>
+     */
+    public Object put(DcmElement elem) {
+        final int tag = elem.tag();
+        if (size == 0 || (tags[size - 1] ^ 0x80000000) < (tag ^ 0x80000000)) {
+            insert(size, tag, elem);
+            return null;
+        }
+        int index = indexOf(tag);
+        if (index >= 0)
+            return set(index, elem);
+        insert(-(index + 1), tag, elem);
+        return null;
+    }
+
+    private void insert(int index, int tag, Object elem) {
+        ensureCapacity(size + 1);
+        int numMoved = size - index;
+        if (numMoved > 0) {
+            System.arraycopy(tags, index, tags, index + 1, numMoved);
+            System.arraycopy(elems, index, elems, index + 1, numMoved);
+        }
+        tags[index] = tag;
+        elems[index] = elem;
+        ++size;
+        ++modCount;
+    }
+
+    /**
+     * Searches the element with the specified tag.
+     *
+     * @return index of the element, if it is contained in the list;
+     *         otherwise, <code>(-(insertion point) - 1)</code>.
+     */
+    public int indexOf(int tag) {
+        final int key = tag ^ 0x80000000;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midVal = tags[mid] ^ 0x80000000;
+            if (midVal < key)
+                low = mid + 1;
+            else if (midVal > key)
+                high = mid - 1;
+            else
+                return mid; // key found
+        }
+        return -(low + 1); // key not found
+    }
+
+    public Iterator iterator() {
+        return new Iterator() {
+            private int index = 0;
+            private int lastRet = -1;
+            private int expectedModCount = modCount;
+
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            public Object next() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (index >= size)
+                    throw new NoSuchElementException();
+                lastRet = index;
+                return elems[index++];
+            }
+
+            public void remove() {
+                if (lastRet < 0)
+                    throw new IllegalStateException();
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                ElementList.this.remove(lastRet);
+                index = lastRet;
+                lastRet = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + size);
+    }
+}
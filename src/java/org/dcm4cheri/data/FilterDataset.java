@@ -101,6 +101,43 @@ public abstract class FilterDataset extends BaseDatasetImpl implements Dataset {
         return el != null && filter(el.tag(), el.vr()) ? el : null;
     }
     
+    Iterator iterator(int fromTag, int toTag) {
+        final long fromTagL = fromTag & 0xFFFFFFFFL;
+        final long toTagL = toTag & 0xFFFFFFFFL;
+        final Iterator iter = iterator();
+        return new Iterator() {
+            private DcmElement next = findNext();
+            private DcmElement findNext() {
+                while (iter.hasNext()) {
+                    DcmElement el = (DcmElement) iter.next();
+                    long ltag = el.tag() & 0xFFFFFFFFL;
+                    if (ltag >= toTagL)
+                        break;
+                    if (ltag >= fromTagL)
+                        return el;
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Object next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                DcmElement retval = next;
+                next = findNext();
+                return retval;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     public Iterator iterator() {
         final Iterator backendIter = backend.iterator();
         return new Iterator() {
@@ -147,6 +184,10 @@ public abstract class FilterDataset extends BaseDatasetImpl implements Dataset {
         return backend.getParent();
     }
 
+    protected boolean isLengthCacheable() {
+        return false;
+    }
+
     public void setPrivateCreatorID(String privateCreatorID) {
         backend.setPrivateCreatorID(privateCreatorID);
     }       
@@ -297,16 +338,15 @@ public abstract class FilterDataset extends BaseDatasetImpl implements Dataset {
         
         public int size() {
             int count = 0;
-            long ltag;
-            for (Iterator iter = backend.iterator(); iter.hasNext();) {
-                ltag = ((DcmElement)iter.next()).tag() & 0xFFFFFFFFL;
-                if (ltag < fromTag) continue;
-                if (ltag >= toTag) break;
+            for (Iterator iter = iterator(); iter.hasNext(); iter.next())
                 ++count;
-            }
             return count;
         }
 
+        public Iterator iterator() {
+            return backend.iterator((int) fromTag, (int) toTag);
+        }
+
         public boolean filter(int tag, int vr) {
             long ltag = tag & 0xFFFFFFFFL;
             return ltag >= fromTag && ltag < toTag;
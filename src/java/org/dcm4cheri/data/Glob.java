@@ -0,0 +1,125 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.data;
+
+/**
+ * Precompiled DICOM wildcard pattern: <code>*</code> matches any sequence
+ * of characters, <code>?</code> any single character.
+ */
+final class Glob {
+
+    private final char[] pattern;
+    private final boolean wildcard;
+    private final boolean ignoreCase;
+
+    Glob(String pattern, boolean ignoreCase) {
+        this.pattern = pattern.toCharArray();
+        this.ignoreCase = ignoreCase;
+        boolean wildcard = false;
+        for (int i = 0; i < this.pattern.length; i++) {
+            char c = this.pattern[i];
+            if (c == '*' || c == '?') {
+                wildcard = true;
+            } else if (ignoreCase) {
+                this.pattern[i] = Character.toUpperCase(c);
+            }
+        }
+        this.wildcard = wildcard;
+    }
+
+    static boolean matches(String pattern, String input, boolean ignoreCase) {
+        return new Glob(pattern, ignoreCase).matches(input);
+    }
+
+    /** Returns <code>true</code>, if the pattern contains only '*'. */
+    boolean isUniversal() {
+        for (int i = 0; i < pattern.length; i++) {
+            if (pattern[i] != '*') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean matches(String s) {
+        final char[] p = pattern;
+        final int m = p.length;
+        final int n = s.length();
+        if (!wildcard) {
+            if (n != m) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (!equals(p[i], s.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int i = 0, j = 0;
+        int star = -1, mark = 0;
+        while (i < n) {
+            if (j < m && p[j] == '*') {
+                // remember position to backtrack, match empty sequence first
+                star = j++;
+                mark = i;
+            } else if (j < m && (p[j] == '?' || equals(p[j], s.charAt(i)))) {
+                i++;
+                j++;
+            } else if (star != -1) {
+                j = star + 1;
+                i = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (j < m && p[j] == '*') {
+            j++;
+        }
+        return j == m;
+    }
+
+    private boolean equals(char p, char c) {
+        return p == c || ignoreCase && p == Character.toUpperCase(c);
+    }
+
+    public String toString() {
+        return new String(pattern);
+    }
+}
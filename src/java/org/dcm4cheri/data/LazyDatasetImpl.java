@@ -0,0 +1,102 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+
+import org.dcm4che.data.FileFormat;
+
+/**
+ * <code>Dataset</code>, which only records the position of element values
+ * when read from a file or an <code>ImageInputStream</code>, and reads the
+ * value of an element on its first access. Sequences with defined length
+ * are read as a whole on first access of the sequence.
+ * <p>
+ * Values of the File Meta Information, of the Specific Character Set, of
+ * Private Creator Data Elements and of elements with undefined length are
+ * read immediately. Deferring is not applicable to deflated transfer syntaxes
+ * and to datasets read from an <code>InputStream</code>.
+ *
+ * @see org.dcm4che.data.DcmObjectFactory#newLazyDataset()
+ */
+final class LazyDatasetImpl extends DatasetImpl {
+
+    LazyDatasetImpl() {
+    }
+
+    /**
+     * Reads the dataset from the specified stream, which must not be closed
+     * or repositioned by other threads, as long as values of this dataset
+     * are accessed.
+     */
+    public void readFile(ImageInputStream in, FileFormat format, int stopTag)
+            throws IOException {
+        read(in, new DeferredElement.ImageInputStreamSource(in), format,
+                stopTag);
+    }
+
+    /**
+     * Reads the dataset from the specified file. Deferred values are read by
+     * positional reads of one file channel, which is opened on first access
+     * and shared by all elements and items of this dataset. The file must not
+     * be modified, as long as values of this dataset are accessed.
+     */
+    public void readFile(File f, FileFormat format, int stopTag)
+            throws IOException {
+        ImageInputStream in = new FileImageInputStream(f);
+        try {
+            read(in, new DeferredElement.FileSource(f), format, stopTag);
+        } finally {
+            try { in.close(); } catch (IOException ignore) {}
+        }
+    }
+
+    private void read(ImageInputStream in, DeferredElement.Source source,
+            FileFormat format, int stopTag) throws IOException {
+        DcmParserImpl parser = new DcmParserImpl(in);
+        DcmObjectHandlerImpl handler = new DcmObjectHandlerImpl(this);
+        handler.setDeferredValueSource(source);
+        parser.setDeferValues(handler);
+        parser.parseDcmFile(format, stopTag);
+    }
+}
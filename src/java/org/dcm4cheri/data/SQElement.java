@@ -162,6 +162,7 @@ class SQElement extends DcmElementImpl
     public void addItem(Dataset item)
     {
         list.add(item);
+        itemsChanged();
     }
 
 
@@ -174,9 +175,38 @@ class SQElement extends DcmElementImpl
     {
         Dataset item = new DatasetImpl(parent);
         list.add(item);
+        itemsChanged();
         return item;
     }
 
+    private void itemsChanged()
+    {
+        if (parent instanceof BaseDatasetImpl) {
+            ((BaseDatasetImpl) parent).elementsChanged();
+        }
+    }
+
+
+    /**
+     *  Returns <code>true</code>, if the lengths of all items are cached and
+     *  changes of the items will be notified to the specified owner.
+     */
+    boolean isLengthCached(Dataset owner, DcmEncodeParam param)
+    {
+        if (parent != owner) {
+            return false;
+        }
+        for (int i = 0, n = list.size(); i < n; ++i) {
+            Dataset item = (Dataset) list.get(i);
+            if (item.getParent() != owner
+                    || !(item instanceof BaseDatasetImpl)
+                    || !((BaseDatasetImpl) item).isLengthCached(param)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 
     /**
      *  Description of the Method
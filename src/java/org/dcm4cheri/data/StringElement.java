@@ -42,7 +42,6 @@ import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.Date;
-import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 import org.dcm4che.data.DcmElement;
@@ -267,13 +266,62 @@ abstract class StringElement extends ValueElement {
         return ByteBuffer.wrap(cs == null ? s.getBytes() : cs.encode(s));
     }
 
+    /**
+     * Values up to this length get their decoded strings cached; 0 disables
+     * the cache.
+     */
+    private static volatile int maxCachedLength = 0;
+
+    static int getMaxCachedLength() {
+        return maxCachedLength;
+    }
+
+    static void setMaxCachedLength(int maxLength) {
+        if (maxLength < 0)
+            throw new IllegalArgumentException("maxLength: " + maxLength);
+        maxCachedLength = maxLength;
+    }
+
+    /** Decoded values together with the character set used to decode them. */
+    private static final class Decoded {
+        final SpecificCharacterSet cs;
+        final String[] values;
+
+        Decoded(SpecificCharacterSet cs, String[] values) {
+            this.cs = cs;
+            this.values = values;
+        }
+    }
+
     protected final Trim trim;
 
+    private Decoded decoded;
+
     StringElement(int tag, ByteBuffer data, Trim trim) {
         super(tag, data);
         this.trim = trim;
     }
 
+    /**
+     * Returns the trimmed values decoded with the specified character set.
+     * The returned array may be cached and shall not be modified.
+     */
+    protected final String[] decodedValues(SpecificCharacterSet cs) {
+        Decoded d = decoded;
+        if (d != null && d.cs == cs) {
+            return d.values;
+        }
+        String[] values = split(trim.trim(decode(data, cs)));
+        if (data.limit() <= maxCachedLength) {
+            decoded = new Decoded(cs, values);
+        }
+        return values;
+    }
+
+    protected String[] split(String s) {
+        return new String[] { s };
+    }
+
     public int hashCode() {
         if (data == null)
             return tag;
@@ -321,12 +369,17 @@ abstract class StringElement extends ValueElement {
 
     public String getString(int index, SpecificCharacterSet cs)
         throws DcmValueException {
-        ByteBuffer bb = getByteBuffer();
-        if (bb == null) {
+        if (data == null) {
             return null;
         }
+        return decodedValues(cs)[0];
+    }
+
+    static String decode(ByteBuffer bb, SpecificCharacterSet cs) {
         byte[] b = bb.array();
-        return trim.trim(cs == null ? new String(b) : cs.decode(b));
+        int off = bb.arrayOffset();
+        int len = bb.limit();
+        return cs == null ? new String(b, off, len) : cs.decode(b, off, len);
     }
 
     public String[] getStrings(SpecificCharacterSet cs)
@@ -368,15 +421,14 @@ abstract class StringElement extends ValueElement {
         } catch (DcmValueException e) {
             throw new IllegalArgumentException("key: " + key);
         }
+        boolean ignoreCase = ignorePNCase && vr() == VRs.PN;
         for (int i = 0; i < patterns.length; ++i) {
             if (isUniversalMatch(patterns[i])) {
                 return true;
             }
+            Glob glob = new Glob(patterns[i], ignoreCase);
             for (int j = 0; j < values.length; ++j) {
-                if (ignorePNCase
-                    && vr() == VRs.PN
-                        ? match(patterns[i].toUpperCase(), values[j].toUpperCase())
-                        : match(patterns[i], values[j])) {
+                if (glob.matches(values[j])) {
                     return true;
                 }
             }
@@ -384,39 +436,20 @@ abstract class StringElement extends ValueElement {
         return false;
     }
 
-    private static boolean match(String pattern, String input) {
-        if (pattern.indexOf('*') == -1 && pattern.indexOf('?') == -1) {
-            return pattern.equals(input);
-        }
-        return Pattern.matches(toRegEx(pattern), input);
+    static boolean isDateString(DcmElement e) {
+        return e instanceof DateString;
     }
 
-    private static String toRegEx(String pattern) {
-        char[] a = pattern.toCharArray();
-        StringBuffer sb = new StringBuffer(a.length + 10);
-        boolean inQuote = false;
-        for (int i = 0; i < a.length; ++i) {
-            if (a[i] == '*' || a[i] == '?') {
-                if (inQuote) {
-                    sb.append('\\').append('E');
-                    inQuote = false;
-                }
-                sb.append('.');
-                if (a[i] == '*') {
-                    sb.append('*');
-                }
-            } else {
-                if (!inQuote) {
-                    sb.append('\\').append('Q');
-                    inQuote = true;
-                }
-                sb.append(a[i]);
-            }
-        }
-        if (inQuote) {
-            sb.append('\\').append('E');
-        }
-        return sb.toString();
+    /**
+     * Returns the [from, to] pairs of the date/time ranges of a DA, DT or TM
+     * key, or <code>null</code> if the key matches any value.
+     */
+    static long[] toDateRanges(DcmElement key) {
+        return ((DateString) key).toRanges();
+    }
+
+    static boolean matchDateRanges(DcmElement e, long[] ranges) {
+        return ((DateString) e).matchRanges(ranges);
     }
 
     // LT -------------------------------------------------------------
@@ -544,40 +577,47 @@ abstract class StringElement extends ValueElement {
             super(tag, data, trim);
         }
 
-         public final int vm(SpecificCharacterSet cs) {
+        public final int vm(SpecificCharacterSet cs) {
             if (data.limit() == 0) {
                 return 0;
             }
-            if (cs == null) {
+            // ISO 2022 multi-byte characters may contain 0x5C bytes
+            if (cs == null || isAsciiVR()) {
                 int vm = 1;
                 byte[] a = data.array();
-                for (int i = 0; i < a.length; i++) {
+                for (int i = data.arrayOffset(), n = i + data.limit(); i < n; i++) {
                     if (a[i] == DELIM) {
                         ++vm;
                     }
                 }
                 return vm;
             }
-            return StringUtils.count(cs.decode(data.array()), '\\') + 1;
-         }
-
-         public String getString(SpecificCharacterSet cs)
-             throws DcmValueException {
-             if (isEmpty()) {
-                 return null;
-             }
-             byte[] b = data.array();
-             String s = trim.trim(cs == null ? new String(b) : cs.decode(b));
-             int end = s.indexOf('\\');
-             return end != -1 ? s.substring(0, end) : s;             
-         }
+            return Math.max(1, decodedValues(cs).length);
+        }
+
+        boolean isAsciiVR() {
+            return false;
+        }
+
+        protected final String[] split(String s) {
+            return StringUtils.split(s, '\\');
+        }
+
+        public String getString(SpecificCharacterSet cs)
+            throws DcmValueException {
+            if (isEmpty()) {
+                return null;
+            }
+            String[] ss = decodedValues(cs);
+            return ss.length != 0 ? ss[0] : "";
+        }
 
         public String getString(int index, SpecificCharacterSet cs)
             throws DcmValueException {
             if (index == 0) {
                 return getString(cs);
             }
-            String[] ss = getStrings(cs);
+            String[] ss = isEmpty() ? STRING0 : decodedValues(cs);
             return index < ss.length ? ss[index] : null;
         }
 
@@ -586,9 +626,7 @@ abstract class StringElement extends ValueElement {
             if (isEmpty()) {
                 return STRING0;
             }
-            byte[] b = data.array();
-            String s = trim.trim(cs == null ? new String(b) : cs.decode(b));
-            return StringUtils.split(s, '\\');
+            return (String[]) decodedValues(cs).clone();
         }
     }
 
@@ -710,6 +748,10 @@ abstract class StringElement extends ValueElement {
             super(tag, data, trim);
         }
 
+        final boolean isAsciiVR() {
+            return true;
+        }
+
         public final String getString(int index, SpecificCharacterSet cs)
             throws DcmValueException {
             return super.getString(index, null);
@@ -1107,48 +1149,66 @@ abstract class StringElement extends ValueElement {
             return a;
         }
 
-        protected boolean matchValue(
-            DcmElement key,
-            boolean ignorePNCase,
-            boolean ignoreEmpty,
-            SpecificCharacterSet keyCS,
-            SpecificCharacterSet dsCS) {
+        final long[] toRanges() {
             String[] keys;
             try {
-                keys = key.getStrings(null);
+                keys = super.getStrings(null);
             } catch (DcmValueException e) {
-                throw new IllegalArgumentException("key: " + key);
+                throw new IllegalArgumentException("key: " + this);
             }
+            long[] ranges = new long[keys.length << 1];
             for (int i = 0; i < keys.length; ++i) {
                 Date[] range;
                 try {
                     range = parseDateRange(getFormat(), keys[i],
                             getTimeResolution());
                 } catch (ParseException e1) {
-                    throw new IllegalArgumentException("key: " + key);
+                    throw new IllegalArgumentException("key: " + this);
+                }
+                if (range == null) {
+                    return null;
                 }
-                long from =
+                ranges[i << 1] =
                     range[0] != null ? range[0].getTime() : Long.MIN_VALUE;
-                long to =
+                ranges[(i << 1) + 1] =
                     range[1] != null ? range[1].getTime() : Long.MAX_VALUE;
-                try {
-                    Date[] values = getDates();
-                    for (int j = 0; j < values.length; ++j) {
-                        if (values[i] == null) {
-                            return true;
-                        }
-                        final long time = values[i].getTime();
-                        if (time >= from && time <= to) {
-                            return true;
-                        }
+            }
+            return ranges;
+        }
+
+        final boolean matchRanges(long[] ranges) {
+            if (ranges == null) {
+                return true;
+            }
+            Date[] values;
+            try {
+                values = getDates();
+            } catch (DcmValueException e) {
+                return true;
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                for (int j = 0; j < values.length; ++j) {
+                    if (values[j] == null) {
+                        return true;
+                    }
+                    final long time = values[j].getTime();
+                    if (time >= ranges[i] && time <= ranges[i + 1]) {
+                        return true;
                     }
-                } catch (DcmValueException e) {
-                    return true;
                 }
             }
             return false;
         }
 
+        protected boolean matchValue(
+            DcmElement key,
+            boolean ignorePNCase,
+            boolean ignoreEmpty,
+            SpecificCharacterSet keyCS,
+            SpecificCharacterSet dsCS) {
+            return matchRanges(((DateString) key).toRanges());
+        }
+
         protected abstract DateFormat getFormat();
         
         protected long getTimeResolution() { return 1L; }
@@ -0,0 +1,170 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.image;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.StringTokenizer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Pool of idle image readers or writers, keyed by Transfer Syntax UID.
+ * Codecs of classes listed by the configuration property
+ * {@link #DISPOSE_AFTER_USE} are quarantined: they are disposed on return
+ * instead of being reused.
+ * 
+ * @see ImageReaderFactory#borrowReader(String)
+ * @see ImageWriterFactory#borrowWriter(String)
+ */
+abstract class CodecPool {
+
+    /**
+     * Name of the configuration property listing the (prefixes of) class
+     * names of codecs, which cannot be reused after <code>reset()</code>.
+     */
+    static final String DISPOSE_AFTER_USE = "disposeAfterUse";
+
+    private static final Logger log = Logger.getLogger(CodecPool.class);
+
+    private final HashMap idle = new HashMap();
+
+    private final String[] disposeAfterUse;
+
+    private int maxIdle = 4;
+
+    CodecPool(Properties config) {
+        StringTokenizer stk = new StringTokenizer(
+                config.getProperty(DISPOSE_AFTER_USE, ""), ", \t");
+        disposeAfterUse = new String[stk.countTokens()];
+        for (int i = 0; i < disposeAfterUse.length; i++) {
+            disposeAfterUse[i] = stk.nextToken();
+        }
+    }
+
+    protected abstract Object create(String tsuid);
+
+    protected abstract void reset(Object codec);
+
+    protected abstract void dispose(Object codec);
+
+    final synchronized int getMaxIdle() {
+        return maxIdle;
+    }
+
+    final void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        }
+        synchronized (this) {
+            this.maxIdle = maxIdle;
+        }
+        trim();
+    }
+
+    final synchronized int getNumIdle(String tsuid) {
+        LinkedList list = (LinkedList) idle.get(tsuid);
+        return list == null ? 0 : list.size();
+    }
+
+    final Object borrow(String tsuid) {
+        synchronized (this) {
+            LinkedList list = (LinkedList) idle.get(tsuid);
+            if (list != null && !list.isEmpty()) {
+                return list.removeFirst();
+            }
+        }
+        return create(tsuid);
+    }
+
+    final void release(String tsuid, Object codec) {
+        if (isDisposeAfterUse(codec)) {
+            dispose(codec);
+            return;
+        }
+        try {
+            reset(codec);
+        } catch (RuntimeException e) {
+            log.warn("Failed to reset " + codec, e);
+            dispose(codec);
+            return;
+        }
+        synchronized (this) {
+            LinkedList list = (LinkedList) idle.get(tsuid);
+            if (list == null) {
+                idle.put(tsuid, list = new LinkedList());
+            }
+            if (list.size() < maxIdle) {
+                list.addFirst(codec);
+                return;
+            }
+        }
+        dispose(codec);
+    }
+
+    /**
+     * Disposes idle codecs exceeding the maximal number of idle codecs.
+     */
+    final void trim() {
+        LinkedList tmp = new LinkedList();
+        synchronized (this) {
+            for (Iterator it = idle.values().iterator(); it.hasNext();) {
+                LinkedList list = (LinkedList) it.next();
+                while (list.size() > maxIdle) {
+                    tmp.add(list.removeLast());
+                }
+            }
+        }
+        while (!tmp.isEmpty()) {
+            dispose(tmp.removeFirst());
+        }
+    }
+
+    final boolean isDisposeAfterUse(Object codec) {
+        String className = codec.getClass().getName();
+        for (int i = 0; i < disposeAfterUse.length; i++) {
+            if (className.startsWith(disposeAfterUse[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -45,7 +45,10 @@ import org.dcm4che.image.ColorModelFactory;
 import org.dcm4che.image.ColorModelParam;
 
 import java.awt.image.ColorModel;
-import java.util.WeakHashMap;
+import java.awt.image.IndexColorModel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *
@@ -54,7 +57,13 @@ import java.util.WeakHashMap;
  */
 public class ColorModelFactoryImpl extends ColorModelFactory {
 	private static final Logger log = Logger.getLogger(ColorModelFactoryImpl.class);
-	private static final WeakHashMap cache = new WeakHashMap();
+   /** Color models in access order, the least recently used first. */
+	private static final LinkedHashMap cache = new LinkedHashMap(16, .75f, true);
+   private static int maxCacheSize = 64;
+   private static long maxCacheMemory = 16L << 20;
+   private static long cacheMemory = 0L;
+   private static long hits = 0L;
+   private static long misses = 0L;
    
    private final static byte[] P2D_IDENTITY = new byte[256];
    static { for (int i = 0; i < 256; ++i) P2D_IDENTITY[i] = (byte)i; }
@@ -68,12 +77,114 @@ public class ColorModelFactoryImpl extends ColorModelFactory {
       if (!param.isCacheable()) {
          return param.newColorModel();
       }
-      ColorModel cm = (ColorModel)cache.get(param);
-      if (cm == null) {
-         cache.put(param, cm = param.newColorModel());
+      Object key = param instanceof MonochromeParam
+            ? ((MonochromeParam) param).getColorMapKey()
+            : param;
+      synchronized (cache) {
+         ColorModel cm = (ColorModel)cache.get(key);
+         if (cm != null) {
+            ++hits;
+            return cm;
+         }
+         ++misses;
+      }
+      // create outside of lock, so other threads are not blocked
+      ColorModel cm = param.newColorModel();
+      synchronized (cache) {
+         ColorModel other = (ColorModel)cache.get(key);
+         if (other != null) {
+            return other;
+         }
+         cache.put(key, cm);
+         cacheMemory += memoryOf(cm);
+         evict();
       }
       return cm;
    }
+
+   private static long memoryOf(ColorModel cm) {
+      return cm instanceof IndexColorModel
+            ? ((IndexColorModel) cm).getMapSize() << 2
+            : 0L;
+   }
+
+   /** Evicts least recently used entries until the cache fits into its
+    * bounds. Must be called with the lock of cache held.
+    */
+   private static void evict() {
+      Iterator it = cache.entrySet().iterator();
+      while ((cache.size() > maxCacheSize || cacheMemory > maxCacheMemory)
+            && it.hasNext()) {
+         Map.Entry e = (Map.Entry) it.next();
+         cacheMemory -= memoryOf((ColorModel) e.getValue());
+         it.remove();
+      }
+   }
+
+   public int getMaxCacheSize() {
+      synchronized (cache) {
+         return maxCacheSize;
+      }
+   }
+
+   public void setMaxCacheSize(int maxSize) {
+      if (maxSize < 0) {
+         throw new IllegalArgumentException("maxSize: " + maxSize);
+      }
+      synchronized (cache) {
+         maxCacheSize = maxSize;
+         evict();
+      }
+   }
+
+   public long getMaxCacheMemory() {
+      synchronized (cache) {
+         return maxCacheMemory;
+      }
+   }
+
+   public void setMaxCacheMemory(long maxMemory) {
+      if (maxMemory < 0) {
+         throw new IllegalArgumentException("maxMemory: " + maxMemory);
+      }
+      synchronized (cache) {
+         maxCacheMemory = maxMemory;
+         evict();
+      }
+   }
+
+   public int getCacheSize() {
+      synchronized (cache) {
+         return cache.size();
+      }
+   }
+
+   public long getCacheMemory() {
+      synchronized (cache) {
+         return cacheMemory;
+      }
+   }
+
+   public long getCacheHits() {
+      synchronized (cache) {
+         return hits;
+      }
+   }
+
+   public long getCacheMisses() {
+      synchronized (cache) {
+         return misses;
+      }
+   }
+
+   public void clearCache() {
+      synchronized (cache) {
+         cache.clear();
+         cacheMemory = 0L;
+         hits = 0L;
+         misses = 0L;
+      }
+   }
    
    public ColorModelParam makeParam(Dataset ds) {
       return makeParam(ds, null);
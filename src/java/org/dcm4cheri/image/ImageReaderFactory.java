@@ -38,12 +38,15 @@
 
 package org.dcm4cheri.image;
 
-import java.util.Hashtable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Properties;
 
-import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
 
 /**
  * @author gunter.zeilinger@tiani.com
@@ -58,12 +61,83 @@ public class ImageReaderFactory {
     }
     
     private final Properties map = new Properties();
+    
+    private final HashMap spis = new HashMap();
+    
+    private final CodecPool pool;
         
     private ImageReaderFactory() {
         ConfigurationUtils.loadPropertiesForClass(map, ImageReaderFactory.class);
+        pool = new CodecPool(map) {
+            protected Object create(String tsuid) {
+                return getReaderForTransferSyntax(tsuid);
+            }
+            protected void reset(Object codec) {
+                ((ImageReader) codec).reset();
+            }
+            protected void dispose(Object codec) {
+                ((ImageReader) codec).dispose();
+            }
+        };
     }
     
+    /**
+     * Returns a new Image Reader for the Transfer Syntax. The provider of
+     * the reader is only looked up by the first invocation for the
+     * Transfer Syntax.
+     */
     public ImageReader getReaderForTransferSyntax(String tsuid) {
+        ImageReaderSpi spi = getReaderSpi(tsuid);
+        try {
+            return spi.createReaderInstance();
+        } catch (IOException e) {
+            throw new ConfigurationException("Failed to create Image Reader "
+                    + spi.getPluginClassName(), e);
+        }
+    }
+
+    /**
+     * Leases an Image Reader for the Transfer Syntax from the pool of
+     * idle readers. The reader shall be passed back by
+     * {@link #returnReader}, or disposed, if it failed.
+     */
+    public ImageReader borrowReader(String tsuid) {
+        return (ImageReader) pool.borrow(tsuid);
+    }
+
+    /**
+     * Resets the reader and puts it back to the pool of idle readers, or
+     * disposes it, if the pool is full or the reader cannot be reused.
+     */
+    public void returnReader(String tsuid, ImageReader reader) {
+        pool.release(tsuid, reader);
+    }
+
+    public int getMaxIdleReaders() {
+        return pool.getMaxIdle();
+    }
+
+    /**
+     * Sets the maximal number of idle readers kept per Transfer Syntax.
+     */
+    public void setMaxIdleReaders(int max) {
+        pool.setMaxIdle(max);
+    }
+
+    public int getNumIdleReaders(String tsuid) {
+        return pool.getNumIdle(tsuid);
+    }
+
+    private synchronized ImageReaderSpi getReaderSpi(String tsuid) {
+        ImageReaderSpi spi = (ImageReaderSpi) spis.get(tsuid);
+        if (spi == null) {
+            spi = findReaderSpi(tsuid);
+            spis.put(tsuid, spi);
+        }
+        return spi;
+    }
+
+    private ImageReaderSpi findReaderSpi(String tsuid) {
         String s = map.getProperty(tsuid);
         if (s == null)
             throw new UnsupportedOperationException(
@@ -75,20 +149,22 @@ public class ImageReaderFactory {
         
         final String formatName = x[0];
         
-        //Build a table of readers
-        Hashtable readers =  new Hashtable();
-        for (Iterator it = ImageIO.getImageReadersByFormatName(formatName); it.hasNext();) {
-            ImageReader r = (ImageReader) it.next();
-            readers.put(r.getClass().getName(), r);
+        //Build a table of reader providers
+        HashMap providers = new HashMap();
+        for (Iterator it = IIORegistry.getDefaultInstance()
+                .getServiceProviders(ImageReaderSpi.class, true); it.hasNext();) {
+            ImageReaderSpi spi = (ImageReaderSpi) it.next();
+            if (Arrays.asList(spi.getFormatNames()).contains(formatName))
+                providers.put(spi.getPluginClassName(), spi);
         }
         
         //Search for a reader in the order specified in the properties.
         for (int i=1; i<x.length; i++) {
-			ImageReader r = (ImageReader)readers.get(x[i]);
-			if (r != null) return r;
-		}
+            ImageReaderSpi spi = (ImageReaderSpi) providers.get(x[i]);
+            if (spi != null) return spi;
+        }
         
-		//No luck, throw the Exception
+        //No luck, throw the Exception
         throw new ConfigurationException("No Image Reader available for format:" + formatName); 
     }
 
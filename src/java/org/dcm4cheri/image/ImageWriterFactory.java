@@ -38,11 +38,15 @@
 
 package org.dcm4cheri.image;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Properties;
 
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageWriterSpi;
 
 /**
  * @author gunter.zeilinger@tiani.com
@@ -57,12 +61,83 @@ public class ImageWriterFactory {
     }
     
     private final Properties map = new Properties();
+    
+    private final HashMap spis = new HashMap();
+    
+    private final CodecPool pool;
         
     private ImageWriterFactory() {
         ConfigurationUtils.loadPropertiesForClass(map, ImageWriterFactory.class);
+        pool = new CodecPool(map) {
+            protected Object create(String tsuid) {
+                return getWriterForTransferSyntax(tsuid);
+            }
+            protected void reset(Object codec) {
+                ((ImageWriter) codec).reset();
+            }
+            protected void dispose(Object codec) {
+                ((ImageWriter) codec).dispose();
+            }
+        };
     }
     
+    /**
+     * Returns a new Image Writer for the Transfer Syntax. The provider of
+     * the writer is only looked up by the first invocation for the
+     * Transfer Syntax.
+     */
     public ImageWriter getWriterForTransferSyntax(String tsuid) {
+        ImageWriterSpi spi = getWriterSpi(tsuid);
+        try {
+            return spi.createWriterInstance();
+        } catch (IOException e) {
+            throw new ConfigurationException("Failed to create Image Writer "
+                    + spi.getPluginClassName(), e);
+        }
+    }
+
+    /**
+     * Leases an Image Writer for the Transfer Syntax from the pool of
+     * idle writers. The writer shall be passed back by
+     * {@link #returnWriter}, or disposed, if it failed.
+     */
+    public ImageWriter borrowWriter(String tsuid) {
+        return (ImageWriter) pool.borrow(tsuid);
+    }
+
+    /**
+     * Resets the writer and puts it back to the pool of idle writers, or
+     * disposes it, if the pool is full or the writer cannot be reused.
+     */
+    public void returnWriter(String tsuid, ImageWriter writer) {
+        pool.release(tsuid, writer);
+    }
+
+    public int getMaxIdleWriters() {
+        return pool.getMaxIdle();
+    }
+
+    /**
+     * Sets the maximal number of idle writers kept per Transfer Syntax.
+     */
+    public void setMaxIdleWriters(int max) {
+        pool.setMaxIdle(max);
+    }
+
+    public int getNumIdleWriters(String tsuid) {
+        return pool.getNumIdle(tsuid);
+    }
+
+    private synchronized ImageWriterSpi getWriterSpi(String tsuid) {
+        ImageWriterSpi spi = (ImageWriterSpi) spis.get(tsuid);
+        if (spi == null) {
+            spi = findWriterSpi(tsuid);
+            spis.put(tsuid, spi);
+        }
+        return spi;
+    }
+
+    private ImageWriterSpi findWriterSpi(String tsuid) {
         String s = map.getProperty(tsuid);
         if (s == null)
             throw new UnsupportedOperationException(
@@ -73,24 +148,23 @@ public class ImageWriterFactory {
         final String formatName = s.substring(0, delim);
         final String className = s.substring(delim+1);
 
-        //try for the class listed in the properties
-        for (Iterator it = ImageIO.getImageWritersByFormatName(formatName);
-                it.hasNext();) {
-            ImageWriter r = (ImageWriter) it.next();
-            if (className.equals(r.getClass().getName()))
-                return r;
+        HashMap providers = new HashMap();
+        for (Iterator it = IIORegistry.getDefaultInstance()
+                .getServiceProviders(ImageWriterSpi.class, true); it.hasNext();) {
+            ImageWriterSpi spi = (ImageWriterSpi) it.next();
+            if (Arrays.asList(spi.getFormatNames()).contains(formatName))
+                providers.put(spi.getPluginClassName(), spi);
         }
+        //try for the class listed in the properties
+        ImageWriterSpi spi = (ImageWriterSpi) providers.get(className);
+        if (spi != null)
+            return spi;
         //no luck; if it's jpeg, then try for a non-CLib version
-		final String altClassName = "com.sun.imageio.plugins.jpeg.JPEGImageWriter";
-        if (formatName.equals("jpeg")) {
-			for (Iterator it = ImageIO.getImageWritersByFormatName(formatName);
-					it.hasNext();) {
-				ImageWriter r = (ImageWriter) it.next();
-				if (className.equals(r.getClass().getName()))
-					return r;
-	        }
-		}
-		//no luck, throw the Exception
+        final String altClassName = "com.sun.imageio.plugins.jpeg.JPEGImageWriter";
+        if (formatName.equals("jpeg")
+                && (spi = (ImageWriterSpi) providers.get(altClassName)) != null)
+            return spi;
+        //no luck, throw the Exception
         throw new ConfigurationException("No Image Writer of class " + className
                 + " available for format:" + formatName); 
     }
@@ -40,6 +40,7 @@ package org.dcm4cheri.image;
 
 import org.apache.log4j.Logger;
 import org.dcm4che.data.Dataset;
+import org.dcm4che.data.ValueBufferPool;
 import org.dcm4che.dict.Tags;
 import org.dcm4che.image.ColorModelParam;
 
@@ -242,19 +243,81 @@ final class MonochromeParam extends BasicColorModelParam  {
       if (voilut != null) {
           createCMAPfromVOILUT(cmap);
       } else {
-          float centerV, widthV;
-          if (getNumberOfWindows() == 0) {
-        	  centerV = slope*(max + min)/2f+intercept;
-        	  widthV = (max-min) * slope;
-          } else {
-        	  centerV = center[0];
-        	  widthV = width[0];
-          }
-          log.debug("window level "+centerV+","+widthV + " intercept, slope="+intercept+","+slope + " isInverse "+isInverse());
-          createCMAP(cmap, (centerV - intercept)/slope,widthV/slope);
+          log.debug("window level "+getCenterV()+","+getWidthV() + " intercept, slope="+intercept+","+slope + " isInverse "+isInverse());
+          createCMAP(cmap, getPixelCenter(), getPixelWidth());
       }
       return new IndexColorModel(bits, size, cmap, 0, false, -1, dataType);
    }
+
+   private float getCenterV() {
+      return getNumberOfWindows() == 0
+            ? slope*(max + min)/2f+intercept
+            : center[0];
+   }
+
+   private float getWidthV() {
+      return getNumberOfWindows() == 0
+            ? (max-min) * slope
+            : width[0];
+   }
+
+   private float getPixelCenter() {
+      return (getCenterV() - intercept)/slope;
+   }
+
+   private float getPixelWidth() {
+      return getWidthV()/slope;
+   }
+
+   /** Returns a key, which is equal for all cacheable params creating the
+    * same color map. Windows which only differ below the resolution of
+    * pixel values are mapped to the same key.
+    */
+   Object getColorMapKey() {
+      float c = getPixelCenter();
+      float wFlt = getPixelWidth();
+      // same quantization as in createCMAP
+      int w = (int) wFlt;
+      int u = (int) (c - (wFlt/2));
+      return new ColorMapKey(this, u, w);
+   }
+
+   private static final class ColorMapKey {
+      private final int dataType, bits, min, max, inverse, u, w;
+      private final byte[] pv2dll;
+      private final int hashcode;
+
+      ColorMapKey(MonochromeParam param, int u, int w) {
+         this.dataType = param.dataType;
+         this.bits = param.bits;
+         this.min = param.min;
+         this.max = param.max;
+         this.inverse = param.min < 0 ? 0 : param.inverse;
+         this.pv2dll = param.pv2dll;
+         this.u = u;
+         this.w = w;
+         this.hashcode = ((((u * 31 + w) * 31 + bits) * 31 + min) * 31
+               + inverse) * 31 + System.identityHashCode(pv2dll);
+      }
+
+      public int hashCode() {
+         return hashcode;
+      }
+
+      public boolean equals(Object o) {
+         if (this == o) {
+            return true;
+         }
+         if (!(o instanceof ColorMapKey)) {
+            return false;
+         }
+         ColorMapKey other = (ColorMapKey) o;
+         return u == other.u && w == other.w && bits == other.bits
+               && min == other.min && max == other.max
+               && inverse == other.inverse && dataType == other.dataType
+               && pv2dll == other.pv2dll;
+      }
+   }
    
 /** Create a colour map to digital driving levels
     * 
@@ -280,10 +343,8 @@ final class MonochromeParam extends BasicColorModelParam  {
          Arrays.fill(cmap, Math.max(0,o), max,
             useInverse == 0 ? cmax : cmin);
       }
-      for (int i = Math.max(0,u), n = Math.min(o,max); i < n; ++i) {
-         cmap[i] = toARGB(pv2dll[(((i-u)<<pvBits) / w ^ useInverse) & andmask]);
-         //if( (i % 120) == 0 ) log.info("cmap["+i+"]="+(cmap[i] & 0xFF) );
-      }
+      PixelKernels.window(cmap, 0, Math.max(0,u), Math.min(o,max), u, w,
+            pv2dll, pvBits, useInverse, andmask);
       if (min == 0) {
          return; // all done for unsigned px val
       }
@@ -295,15 +356,14 @@ final class MonochromeParam extends BasicColorModelParam  {
          Arrays.fill(cmap, Math.max(o+size,size>>1), size,
             useInverse == 0 ? cmax : cmin);
       }
-      for (int i = Math.max(min,u), n = Math.min(o,0); i < n; ++i) {
-         cmap[i+size] = toARGB(pv2dll[(((i-u)<<pvBits) / w ^ useInverse) & andmask]);
-         //if( i % 120 == 0 ) log.info("cmap["+(i+size)+"]="+(cmap[i+size] & 0xFF) );
-      }
+      PixelKernels.window(cmap, size, Math.max(min,u), Math.min(o,0), u, w,
+            pv2dll, pvBits, useInverse, andmask);
    }
 
    private void createCMAPfromVOILUT(int[] cmap) {
        int[] lutDescriptor = voilut.getInts(Tags.LUTDescriptor);
-       byte[] lutData = voilut.getByteBuffer(Tags.LUTData).array();
+       byte[] lutData = ValueBufferPool.toByteArray(
+               voilut.getByteBuffer(Tags.LUTData));
        int lutLength = lutDescriptor[0] != 0 ? lutDescriptor[0] : 0x10000;
        int lutOffset = lutDescriptor[1];
        // adjust VR=US to VR=SS if signed or negative intercept
@@ -0,0 +1,255 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.image;
+
+/**
+ * Branch-free pixel kernels used for masking, auto windowing and creating
+ * the color maps of monochrome images. The loops are unrolled and keep
+ * independent accumulators so the JIT can pipeline them, and sign extension
+ * and clamping are done by shifts and <code>Math.min</code>/<code>max</code>
+ * instead of conditional stores.
+ */
+public final class PixelKernels {
+
+    private PixelKernels() {
+    }
+
+    /**
+     * Returns the shift which sign extends a value of <code>bitsStored</code>
+     * bits by <code>(val &lt;&lt; shift) &gt;&gt; shift</code>; 0 for unsigned
+     * values.
+     */
+    public static int signShift(int bitsStored, boolean signed) {
+        return signed ? 32 - bitsStored : 0;
+    }
+
+    /** Masks all samples with <code>mask</code>. */
+    public static void mask(byte[] data, int mask) {
+        final byte m = (byte) mask;
+        final int n4 = data.length & ~3;
+        int i = 0;
+        for (; i < n4; i += 4) {
+            data[i] &= m;
+            data[i + 1] &= m;
+            data[i + 2] &= m;
+            data[i + 3] &= m;
+        }
+        for (; i < data.length; ++i)
+            data[i] &= m;
+    }
+
+    /** Masks all samples with <code>mask</code>. */
+    public static void mask(short[] data, int mask) {
+        final short m = (short) mask;
+        final int n4 = data.length & ~3;
+        int i = 0;
+        for (; i < n4; i += 4) {
+            data[i] &= m;
+            data[i + 1] &= m;
+            data[i + 2] &= m;
+            data[i + 3] &= m;
+        }
+        for (; i < data.length; ++i)
+            data[i] &= m;
+    }
+
+    /** Clamps all unsigned samples to <code>max</code>. */
+    public static void clamp(short[] data, int max) {
+        final int n4 = data.length & ~3;
+        int i = 0;
+        for (; i < n4; i += 4) {
+            data[i] = (short) Math.min(data[i] & 0xffff, max);
+            data[i + 1] = (short) Math.min(data[i + 1] & 0xffff, max);
+            data[i + 2] = (short) Math.min(data[i + 2] & 0xffff, max);
+            data[i + 3] = (short) Math.min(data[i + 3] & 0xffff, max);
+        }
+        for (; i < data.length; ++i)
+            data[i] = (short) Math.min(data[i] & 0xffff, max);
+    }
+
+    /**
+     * Returns minimum and maximum of the samples masked with
+     * <code>mask</code> and sign extended by <code>shift</code>.
+     * 
+     * @param data samples
+     * @param mask bits stored mask
+     * @param shift sign extension shift, see {@link #signShift}
+     * @param store if <code>true</code>, the masked samples are written back
+     * @return <code>{min, max}</code>
+     */
+    public static int[] minMax(byte[] data, int mask, int shift,
+            boolean store) {
+        int min0 = Integer.MAX_VALUE, min1 = Integer.MAX_VALUE;
+        int max0 = Integer.MIN_VALUE, max1 = Integer.MIN_VALUE;
+        final int n2 = data.length & ~1;
+        int i = 0, v0, v1;
+        for (; i < n2; i += 2) {
+            v0 = data[i] & mask;
+            v1 = data[i + 1] & mask;
+            if (store) {
+                data[i] = (byte) v0;
+                data[i + 1] = (byte) v1;
+            }
+            v0 = (v0 << shift) >> shift;
+            v1 = (v1 << shift) >> shift;
+            min0 = Math.min(min0, v0);
+            max0 = Math.max(max0, v0);
+            min1 = Math.min(min1, v1);
+            max1 = Math.max(max1, v1);
+        }
+        if (i < data.length) {
+            v0 = data[i] & mask;
+            if (store)
+                data[i] = (byte) v0;
+            v0 = (v0 << shift) >> shift;
+            min0 = Math.min(min0, v0);
+            max0 = Math.max(max0, v0);
+        }
+        return new int[] { Math.min(min0, min1), Math.max(max0, max1) };
+    }
+
+    /**
+     * Returns minimum and maximum of the samples masked with
+     * <code>mask</code> and sign extended by <code>shift</code>.
+     * 
+     * @param data samples
+     * @param mask bits stored mask
+     * @param shift sign extension shift, see {@link #signShift}
+     * @param store if <code>true</code>, the masked samples are written back
+     * @return <code>{min, max}</code>
+     */
+    public static int[] minMax(short[] data, int mask, int shift,
+            boolean store) {
+        int min0 = Integer.MAX_VALUE, min1 = Integer.MAX_VALUE;
+        int max0 = Integer.MIN_VALUE, max1 = Integer.MIN_VALUE;
+        final int n2 = data.length & ~1;
+        int i = 0, v0, v1;
+        for (; i < n2; i += 2) {
+            v0 = data[i] & mask;
+            v1 = data[i + 1] & mask;
+            if (store) {
+                data[i] = (short) v0;
+                data[i + 1] = (short) v1;
+            }
+            v0 = (v0 << shift) >> shift;
+            v1 = (v1 << shift) >> shift;
+            min0 = Math.min(min0, v0);
+            max0 = Math.max(max0, v0);
+            min1 = Math.min(min1, v1);
+            max1 = Math.max(max1, v1);
+        }
+        if (i < data.length) {
+            v0 = data[i] & mask;
+            if (store)
+                data[i] = (short) v0;
+            v0 = (v0 << shift) >> shift;
+            min0 = Math.min(min0, v0);
+            max0 = Math.max(max0, v0);
+        }
+        return new int[] { Math.min(min0, min1), Math.max(max0, max1) };
+    }
+
+    /**
+     * Clamps all unsigned samples to <code>max</code> and returns minimum and
+     * maximum of the clamped samples.
+     * 
+     * @return <code>{min, max}</code>
+     */
+    public static int[] clampMinMax(short[] data, int max) {
+        int min0 = Integer.MAX_VALUE, min1 = Integer.MAX_VALUE;
+        int max0 = Integer.MIN_VALUE, max1 = Integer.MIN_VALUE;
+        final int n2 = data.length & ~1;
+        int i = 0, v0, v1;
+        for (; i < n2; i += 2) {
+            data[i] = (short) (v0 = Math.min(data[i] & 0xffff, max));
+            data[i + 1] = (short) (v1 = Math.min(data[i + 1] & 0xffff, max));
+            min0 = Math.min(min0, v0);
+            max0 = Math.max(max0, v0);
+            min1 = Math.min(min1, v1);
+            max1 = Math.max(max1, v1);
+        }
+        if (i < data.length) {
+            data[i] = (short) (v0 = Math.min(data[i] & 0xffff, max));
+            min0 = Math.min(min0, v0);
+            max0 = Math.max(max0, v0);
+        }
+        return new int[] { Math.min(min0, min1), Math.max(max0, max1) };
+    }
+
+    /**
+     * Fills <code>cmap[off+from]</code> to <code>cmap[off+to-1]</code> with
+     * the opaque gray ARGB values of
+     * <code>pv2dll[((((i-u) &lt;&lt; pvBits) / w) ^ inverse) & andmask]</code>.
+     * The quotient is advanced incrementally with a remainder instead of
+     * dividing for each entry, which also avoids the overflow of
+     * <code>(i-u) &lt;&lt; pvBits</code> for wide windows.
+     * 
+     * @param cmap color map to fill
+     * @param off offset added to the pixel value to get the cmap index
+     * @param from first pixel value, must not be less than <code>u</code>
+     * @param to last pixel value + 1
+     * @param u lower bound of the window
+     * @param w width of the window, must be positive if
+     *            <code>from &lt; to</code>
+     * @param pv2dll P-Value to DDL LUT
+     * @param pvBits bits of the P-Value
+     * @param inverse 0 or -1 to invert the P-Value
+     * @param andmask mask applied to the P-Value
+     */
+    public static void window(int[] cmap, int off, int from, int to, int u,
+            int w, byte[] pv2dll, int pvBits, int inverse, int andmask) {
+        if (from >= to)
+            return;
+        final long num = (long) (from - u) << pvBits;
+        int q = (int) (num / w);
+        int r = (int) (num % w);
+        final int dq = (1 << pvBits) / w;
+        final int dr = (1 << pvBits) % w;
+        int v, carry;
+        for (int i = off + from, n = off + to; i < n; ++i) {
+            v = pv2dll[(q ^ inverse) & andmask] & 0xff;
+            cmap[i] = 0xff000000 | (v << 16) | (v << 8) | v;
+            q += dq;
+            r += dr;
+            carry = (w - 1 - r) >> 31; // -1 if r >= w
+            q -= carry;
+            r -= w & carry;
+        }
+    }
+}
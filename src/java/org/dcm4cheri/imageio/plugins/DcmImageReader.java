@@ -48,11 +48,16 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 import javax.imageio.IIOException;
 import javax.imageio.ImageReadParam;
@@ -61,6 +66,7 @@ import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import org.apache.log4j.Logger;
 import org.dcm4che.data.Dataset;
@@ -74,8 +80,11 @@ import org.dcm4che.dict.UIDs;
 import org.dcm4che.image.ColorModelFactory;
 import org.dcm4che.image.ColorModelParam;
 import org.dcm4che.imageio.plugins.DcmImageReadParam;
+import org.dcm4che.imageio.plugins.FrameIterator;
+import org.dcm4che.util.TaskExecutor;
 import org.dcm4cheri.image.ImageReaderFactory;
 import org.dcm4cheri.image.ItemParser;
+import org.dcm4cheri.image.PixelKernels;
 
 import com.sun.media.imageio.stream.SegmentedImageInputStream;
 
@@ -87,17 +96,11 @@ public class DcmImageReader extends ImageReader {
 
     private static final Logger log = Logger.getLogger(DcmImageReader.class);
 
-    private static final String J2KIMAGE_READER = "com.sun.media.imageioimpl.plugins.jpeg2000.J2KImageReader";
-
     private static final ColorModelFactory cmFactory = ColorModelFactory
             .getInstance();
 
     private ImageInputStream stream = null;
 
-    private ImageReader decompressor = null;
-
-    private boolean patchJpegLS;
-
     private ItemParser itemParser = null;
 
     // The image to be written.
@@ -114,7 +117,7 @@ public class DcmImageReader extends ImageReader {
 
     private long frame1StartPos;
 
-    private int frameLength;
+    private long frameLength;
 
     private int width = -1;
 
@@ -290,20 +293,22 @@ public class DcmImageReader extends ImageReader {
             return;
         }
         this.frame1StartPos = theParser.getStreamPosition();
-        this.frameLength = rLen / numberOfFrames;
+        // Value Length is unsigned
+        this.frameLength = (rLen & 0xFFFFFFFFL) / numberOfFrames;
+        final long pixels = (long) width * height;
 
         if (this.samplesPerPixel > 1) {
             if (alloc == 16) {
                 throw new IOException("RGB 16 Bits allocated not supported!");
             }
-            if (frameLength < 3 * width * height) {
+            if (frameLength < 3 * pixels) {
                 throw new DcmValueException("Invalid Length of Pixel Data: "
                         + rLen);
             }
             return;
         }
 
-        if (frameLength < width * height * (alloc >> 3)) {
+        if (frameLength < pixels * (alloc >> 3)) {
             throw new DcmValueException("Invalid Length of Pixel Data: " + rLen);
         }
     }
@@ -416,8 +421,6 @@ public class DcmImageReader extends ImageReader {
                     decompress(imageIndex, readParam),
                     readParam);
 
-        stream.seek(frame1StartPos + imageIndex * frameLength);
-
         this.theTile = theImage.getWritableTile(0, 0);
 
         Rectangle rect = getSourceRegion(param, width, height);
@@ -450,42 +453,79 @@ public class DcmImageReader extends ImageReader {
             destYOffset = 0;
         }
 
+        long pos = frame1StartPos + imageIndex * frameLength;
         DataBuffer db = this.theTile.getDataBuffer();
         if (this.dataType == DataBuffer.TYPE_BYTE) {
             if (this.samplesPerPixel == 3) {
                 if (this.planes != 0) {
-                    readByteSamples(1, ((DataBufferByte) db).getData(0));
-                    readByteSamples(1, ((DataBufferByte) db).getData(1));
-                    readByteSamples(1, ((DataBufferByte) db).getData(2));
+                    long planeLength = (long) width * height;
+                    readByteSamples(pos, 1, ((DataBufferByte) db).getData(0));
+                    readByteSamples(pos + planeLength, 1,
+                            ((DataBufferByte) db).getData(1));
+                    readByteSamples(pos + (planeLength << 1), 1,
+                            ((DataBufferByte) db).getData(2));
                 } else {
-                    readByteSamples(3, ((DataBufferByte) db).getData());
+                    readByteSamples(pos, 3, ((DataBufferByte) db).getData());
                 }
             } else {
-                readByteSamples(1, ((DataBufferByte) db).getData());
+                readByteSamples(pos, 1, ((DataBufferByte) db).getData());
             }
         } else {
-            readWordSamples(1, ((DataBufferUShort) db).getData());
+            readWordSamples(pos, 1, ((DataBufferUShort) db).getData());
         }
 
         return adjustBufferedImage(this.theImage, readParam);
     }
 
-    private void initDecompressor() {
-        if (decompressor == null) {
-            ImageReaderFactory f = ImageReaderFactory.getInstance();
-            String tsuid = getTransferSyntaxUID();
-            decompressor = f.getReaderForTransferSyntax(tsuid);
-            patchJpegLS = false;
-            if (dataType == DataBuffer.TYPE_USHORT 
-                        && UIDs.JPEGLSLossless.equals(tsuid)) {
-                    String patchJAIJpegLS = f.patchJAIJpegLS();
-                    if (patchJAIJpegLS != null)
-                        patchJpegLS = patchJAIJpegLS.length() == 0 
-                                || patchJAIJpegLS.equals(
-                                        theDataset.getFileMetaInfo()
-                                            .getImplementationClassUID());
-            }
+    /**
+     * Reads the specified frames of a multi-frame image. Frames of
+     * compressed Pixel Data are decompressed by up to <code>threads</code>
+     * decompressors in parallel, while the compressed data of at most
+     * <code>2 * threads</code> frames is held in memory. The frames are
+     * returned in the order of <code>imageIndices</code>. The input of this
+     * reader must not be changed until the returned iterator is closed,
+     * which stops its worker threads.
+     * 
+     * @param imageIndices indices of the frames to read
+     * @param param read parameter applied to each frame, or <code>null</code>;
+     *        a destination image is not supported
+     * @param threads maximal number of frames decompressed in parallel
+     * @return iterator over the decompressed frames
+     */
+    public synchronized FrameIterator readFrames(int[] imageIndices,
+            ImageReadParam param, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads: " + threads);
+        }
+        if (param != null && param.getDestination() != null) {
+            throw new IllegalArgumentException(
+                    "destination image not supported");
+        }
+        readMetadata();
+        for (int i = 0; i < imageIndices.length; i++) {
+            checkIndex(imageIndices[i]);
+        }
+        int[] indices = (int[]) imageIndices.clone();
+        if (itemParser == null || threads == 1) {
+            return new SequentialFrameIterator(indices, param);
+        }
+        DcmImageReadParam readParam = (DcmImageReadParam) param;
+        if (readParam == null) {
+            readParam = (DcmImageReadParam) getDefaultReadParam();
         }
+        return new ParallelFrameIterator(indices, readParam, threads);
+    }
+
+    private boolean isPatchJpegLS() {
+        if (dataType != DataBuffer.TYPE_USHORT
+                || !UIDs.JPEGLSLossless.equals(getTransferSyntaxUID()))
+            return false;
+        String patchJAIJpegLS = ImageReaderFactory.getInstance()
+                .patchJAIJpegLS();
+        return patchJAIJpegLS != null
+                && (patchJAIJpegLS.length() == 0
+                        || patchJAIJpegLS.equals(theDataset.getFileMetaInfo()
+                                .getImplementationClassUID()));
     }
 
     private BufferedImage adjustBufferedImage(BufferedImage bi,
@@ -526,34 +566,14 @@ public class DcmImageReader extends ImageReader {
         int mask = this.mask;
         int sign = this.sign;
         if (!autoWindowing) {
-            for (int i = 0; i < data.length; i++)
-                data[i] &= mask;
+            PixelKernels.mask(data, mask);
             return bi;
         }
-        int min = Integer.MAX_VALUE;
-        int max = Integer.MIN_VALUE;
-        int val;
-        if (readParam.isMaskPixelData()) {
-            for (int i = 0; i < data.length; i++) {
-                data[i] = (byte) (val = data[i] & mask);
-                if ((val & sign) != 0)
-                    val |= sign;
-                if (val < min)
-                    min = val;
-                if (val > max)
-                    max = val;
-            }
-        } else {
-            for (int i = 0; i < data.length; i++) {
-                val = data[i] & mask;
-                if ((val & sign) != 0)
-                    val |= sign;
-                if (val < min)
-                    min = val;
-                if (val > max)
-                    max = val;
-            }
-        }
+        int[] minMax = PixelKernels.minMax(data, mask,
+                PixelKernels.signShift(stored, sign != 0),
+                readParam.isMaskPixelData());
+        int min = minMax[0];
+        int max = minMax[1];
         final float w = (max - min) * cmParam.getRescaleSlope();
         final float c = ((max + min) / 2) * cmParam.getRescaleSlope()
                 + cmParam.getRescaleIntercept();
@@ -582,51 +602,18 @@ public class DcmImageReader extends ImageReader {
         int sign = this.sign;
         if (!autoWindowing) {
             if (clamp)
-                for (int i = 0; i < data.length; i++) {
-                    if ((data[i] & 0xffff) > mask)
-                        data[i] = (short) mask;
-                }
+                PixelKernels.clamp(data, mask);
             else
-                for (int i = 0; i < data.length; i++)
-                    data[i] &= mask;
+                PixelKernels.mask(data, mask);
             return bi;
         }
-        int min = Integer.MAX_VALUE;
-        int max = Integer.MIN_VALUE;
-        int val;
-        if (clamp) {
-            for (int i = 0; i < data.length; i++) {
-                val = data[i] & 0xffff;
-                if (val > mask)
-                    data[i] = (short) (val = mask);
-                if ((val & sign) != 0)
-                    val |= sign;
-                if (val < min)
-                    min = val;
-                if (val > max)
-                    max = val;
-            }
-        } else if (readParam.isMaskPixelData()) {
-            for (int i = 0; i < data.length; i++) {
-                data[i] = (short) (val = data[i] & mask);
-                if ((val & sign) != 0)
-                    val |= sign;
-                if (val < min)
-                    min = val;
-                if (val > max)
-                    max = val;
-            }
-        } else {
-            for (int i = 0; i < data.length; i++) {
-                val = data[i] & mask;
-                if ((val & sign) != 0)
-                    val |= sign;
-                if (val < min)
-                    min = val;
-                if (val > max)
-                    max = val;
-            }
-        }
+        // clamp is only set for unsigned data
+        int[] minMax = clamp ? PixelKernels.clampMinMax(data, mask)
+                : PixelKernels.minMax(data, mask,
+                        PixelKernels.signShift(stored, sign != 0),
+                        readParam.isMaskPixelData());
+        int min = minMax[0];
+        int max = minMax[1];
         final float w = (max - min) * cmParam.getRescaleSlope();
         final float c = ((max + min) / 2) * cmParam.getRescaleSlope()
                 + cmParam.getRescaleIntercept();
@@ -639,32 +626,61 @@ public class DcmImageReader extends ImageReader {
 
     private BufferedImage decompress(int imageIndex,
             DcmImageReadParam readParam) throws IOException {
-        initDecompressor();
         log.debug("Start decompressing frame#" + (imageIndex + 1));
         SegmentedImageInputStream siis =
                 new SegmentedImageInputStream(stream, itemParser);
         itemParser.seekFrame(siis, imageIndex);
-        decompressor.setInput(
-                patchJpegLS ? new PatchJpegLSImageInputStream(siis)
-                              : (ImageInputStream) siis);
-        BufferedImage bi =
-                decompressor.read(0, decompressorReadParam(readParam));
-        // workaround for Bug in J2KImageReader and
-        // J2KImageReaderCodecLib.setInput()
-        if (decompressor.getClass().getName().startsWith(J2KIMAGE_READER)) {
-            decompressor.dispose();
-            decompressor = null;
-        } else {
-            decompressor.reset();
-        }
+        BufferedImage bi = decompress(getTransferSyntaxUID(),
+                isPatchJpegLS() ? new PatchJpegLSImageInputStream(siis)
+                                : (ImageInputStream) siis,
+                theImage, readParam);
         log.debug("Finished decompressed frame#" + (imageIndex + 1));
         return bi;
     }
 
-    private ImageReadParam decompressorReadParam(DcmImageReadParam readParam) {
+    /**
+     * Decompresses one frame by a decompressor leased from the pool of
+     * {@link ImageReaderFactory}.
+     */
+    private static BufferedImage decompress(String tsuid, ImageInputStream iis,
+            BufferedImage destination, DcmImageReadParam readParam)
+            throws IOException {
+        ImageReaderFactory f = ImageReaderFactory.getInstance();
+        ImageReader decompressor = f.borrowReader(tsuid);
+        boolean reusable = false;
+        try {
+            decompressor.setInput(iis);
+            BufferedImage bi = decompressor.read(0,
+                    decompressorReadParam(decompressor, destination, readParam));
+            reusable = true;
+            return bi;
+        } finally {
+            if (reusable)
+                f.returnReader(tsuid, decompressor);
+            else
+                decompressor.dispose();
+        }
+    }
+
+    private byte[] readCompressedFrame(int imageIndex) throws IOException {
+        SegmentedImageInputStream siis =
+                new SegmentedImageInputStream(stream, itemParser);
+        itemParser.seekFrame(siis, imageIndex);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read;
+        while ((read = siis.read(buf, 0, buf.length)) > 0) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static ImageReadParam decompressorReadParam(
+            ImageReader decompressor, BufferedImage destination,
+            DcmImageReadParam readParam) {
         ImageReadParam decompressorReadParam =
                 decompressor.getDefaultReadParam();
-        decompressorReadParam.setDestination(theImage);
+        decompressorReadParam.setDestination(destination);
         decompressorReadParam.setSourceRegion(readParam.getSourceRegion());
         decompressorReadParam.setSourceSubsampling(
                 readParam.getSourceXSubsampling(),
@@ -676,29 +692,37 @@ public class DcmImageReader extends ImageReader {
         return decompressorReadParam;
     }
 
-    private void readByteSamples(int samples, byte[] dest) throws IOException {
+    /**
+     * Reads the rows of the source region, which are not skipped by
+     * subsampling, by positioned reads, so the cost does not depend on the
+     * size of the whole frame.
+     * 
+     * @param startPos stream position of the first pixel of the frame or plane
+     */
+    private void readByteSamples(long startPos, int samples, byte[] dest)
+            throws IOException {
         byte[] srcRow = null;
         final int rowLen = width * samples;
         final int srcRowLen = sourceWidth * samples;
-        final int srcXOffsetLen = sourceXOffset * samples;
         final int destXOffsetLen = destXOffset * samples;
         if (sourceXSubsampling != 1) {
             srcRow = new byte[srcRowLen];
         }
         final int maxPosMax = totDestHeight * totDestWidth;
         final int totDestRowLen = totDestWidth * samples;
-        stream.skipBytes(rowLen * sourceYOffset);
+        long srcPos = startPos + (long) sourceYOffset * rowLen
+                + sourceXOffset * samples;
         int destY = destYOffset;
         int pos = 0, posMax = 0;
         int x = 0, y = 0;
         int x3, pos3;
         try {
-            for (y = 0; y < sourceHeight; ++y) {
+            for (y = 0; y < sourceHeight && destY < totDestHeight;
+                    ++y, srcPos += rowLen) {
                 if ((y - subsamplingYOffset) % sourceYSubsampling != 0) {
-                    stream.skipBytes(rowLen);
                     continue;
                 }
-                stream.skipBytes(srcXOffsetLen);
+                stream.seek(srcPos);
                 if (sourceXSubsampling == 1) {
                     stream.readFully(dest, destY * totDestRowLen
                             + destXOffsetLen, srcRowLen);
@@ -730,41 +754,37 @@ public class DcmImageReader extends ImageReader {
                         throw new Error("Internal dcm4che Error");
                     }
                 }
-                stream.skipBytes(rowLen - srcXOffsetLen - srcRowLen);
-                if (++destY >= totDestHeight) {
-                    ++y;
-                    break;
-                }
+                ++destY;
             }
-            stream.skipBytes(rowLen * (height - sourceYOffset - y));
         } catch (Exception ex) {
             log.error(ex);
             throw new IIOException("Exception in readByteSamples", ex);
         }
     }
 
-    private void readWordSamples(int samples, short[] dest) throws IOException {
+    private void readWordSamples(long startPos, int samples, short[] dest)
+            throws IOException {
         final int rowLen = width * samples;
         final int srcRowLen = sourceWidth * samples;
-        final int srcXOffsetLen = sourceXOffset * samples;
         final int destXOffsetLen = destXOffset * samples;
         final byte[] srcRow = new byte[srcRowLen << 1];
         final ShortBuffer srcRowBuf = ByteBuffer.wrap(srcRow).order(
                 theParser.getDcmDecodeParam().byteOrder).asShortBuffer();
         final int maxPosMax = totDestHeight * totDestWidth;
         final int totDestRowLen = totDestWidth * samples;
-        stream.skipBytes((rowLen * sourceYOffset) << 1);
+        long srcPos = startPos + (((long) sourceYOffset * rowLen
+                + sourceXOffset * samples) << 1);
         int destY = destYOffset;
         int pos = 0, posMax = 0;
         int x = 0, y = 0;
         int x3, pos3;
         try {
-            for (y = 0; y < sourceHeight; ++y) {
+            for (y = 0; y < sourceHeight && destY < totDestHeight;
+                    ++y, srcPos += rowLen << 1) {
                 if ((y - subsamplingYOffset) % sourceYSubsampling != 0) {
-                    stream.skipBytes(rowLen << 1);
                     continue;
                 }
-                stream.skipBytes(srcXOffsetLen << 1);
+                stream.seek(srcPos);
                 stream.readFully(srcRow);
                 if (sourceXSubsampling == 1) {
                     srcRowBuf.rewind();
@@ -797,13 +817,8 @@ public class DcmImageReader extends ImageReader {
                         throw new Error("Internal dcm4che Error");
                     }
                 }
-                stream.skipBytes((rowLen - srcXOffsetLen - srcRowLen) << 1);
-                if (++destY >= totDestHeight) {
-                    ++y;
-                    break;
-                }
+                ++destY;
             }
-            stream.skipBytes((rowLen * (height - sourceYOffset - y)) << 1);
         } catch (Exception ex) {
             log.error(ex);
             throw new IIOException("Exception in readWordSamples", ex);
@@ -832,10 +847,241 @@ public class DcmImageReader extends ImageReader {
 
         theImage = null;
         theTile = null;
-        if (decompressor != null)
-            decompressor.dispose();
-        decompressor = null;
         ybr2rgb = false;
         itemParser = null;
     }
+
+    private final class SequentialFrameIterator implements FrameIterator {
+
+        private final int[] indices;
+
+        private final ImageReadParam param;
+
+        private int next = 0;
+
+        SequentialFrameIterator(int[] indices, ImageReadParam param) {
+            this.indices = indices;
+            this.param = param;
+        }
+
+        public boolean hasNext() {
+            return next < indices.length;
+        }
+
+        public int nextIndex() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return indices[next];
+        }
+
+        public BufferedImage next() throws IOException {
+            int index = nextIndex();
+            ++next;
+            return read(index, param);
+        }
+
+        public void close() {
+            next = indices.length;
+        }
+    }
+
+    /**
+     * Reads the compressed data of the frames sequentially in the thread
+     * of the caller and passes them to a pool of workers, which lease
+     * decompressors from {@link ImageReaderFactory}. The results are
+     * collected in a ring buffer,
+     * which also limits the number of frames read ahead. Workers are started
+     * on demand and terminate after being idle for
+     * {@link #WORKER_KEEP_ALIVE} ms, so they do not outlive an iterator,
+     * which is dropped without being closed.
+     */
+    private final class ParallelFrameIterator implements FrameIterator {
+
+        private static final long WORKER_KEEP_ALIVE = 2000L;
+
+        private final int[] indices;
+
+        private final DcmImageReadParam readParam;
+
+        private final ImageTypeSpecifier imageType;
+
+        private final String tsuid;
+
+        private final boolean patch;
+
+        private final Object[] results;
+
+        private final int threads;
+
+        private final LinkedList queue = new LinkedList();
+
+        private int workers = 0;
+
+        private int idleWorkers = 0;
+
+        private int threadNo = 0;
+
+        private int submitted = 0;
+
+        private int delivered = 0;
+
+        private boolean closed = false;
+
+        ParallelFrameIterator(int[] indices, DcmImageReadParam readParam,
+                int threads) {
+            this.indices = indices;
+            this.readParam = readParam;
+            this.imageType = getImageTypeSpecifier(readParam.getPValToDDL());
+            this.tsuid = getTransferSyntaxUID();
+            this.patch = isPatchJpegLS();
+            this.results = new Object[threads << 1];
+            this.threads = threads;
+        }
+
+        public synchronized boolean hasNext() {
+            return !closed && delivered < indices.length;
+        }
+
+        public synchronized int nextIndex() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return indices[delivered];
+        }
+
+        public BufferedImage next() throws IOException {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            readAhead();
+            Object result;
+            synchronized (this) {
+                int slot = delivered % results.length;
+                try {
+                    while ((result = results[slot]) == null) {
+                        if (closed)
+                            throw new IllegalStateException("closed");
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                }
+                results[slot] = null;
+                ++delivered;
+            }
+            if (!hasNext())
+                close();
+            if (result instanceof IOException)
+                throw (IOException) result;
+            if (result instanceof RuntimeException)
+                throw (RuntimeException) result;
+            if (result instanceof Error)
+                throw (Error) result;
+            return (BufferedImage) result;
+        }
+
+        public synchronized void close() {
+            closed = true;
+            queue.clear();
+            notifyAll();
+        }
+
+        private void readAhead() throws IOException {
+            while (submitted < indices.length
+                    && submitted - delivered < results.length) {
+                int index = indices[submitted];
+                byte[] data;
+                synchronized (DcmImageReader.this) {
+                    data = readCompressedFrame(index);
+                }
+                synchronized (this) {
+                    if (closed)
+                        throw new IllegalStateException("closed");
+                    queue.add(new Object[] { new Integer(submitted), data });
+                    ++submitted;
+                    notifyAll();
+                }
+                startWorker();
+            }
+            // replace workers, which terminated on interrupt
+            startWorker();
+        }
+
+        private void startWorker() {
+            String threadName;
+            synchronized (this) {
+                if (closed || queue.size() <= idleWorkers || workers >= threads)
+                    return;
+                ++workers;
+                threadName = "DcmImageReader-" + (++threadNo);
+            }
+            TaskExecutor.getDefault().execute(new Runnable() {
+                public void run() {
+                    decompressFrames();
+                }
+            }, threadName);
+        }
+
+        private synchronized void put(int seq, Object result) {
+            results[seq % results.length] = result;
+            notifyAll();
+        }
+
+        private void decompressFrames() {
+            for (;;) {
+                Object[] task;
+                boolean interrupted = Thread.interrupted();
+                synchronized (this) {
+                    if (!interrupted && queue.isEmpty() && !closed) {
+                        ++idleWorkers;
+                        try {
+                            wait(WORKER_KEEP_ALIVE);
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        } finally {
+                            --idleWorkers;
+                        }
+                    }
+                    if (closed || queue.isEmpty()) {
+                        --workers;
+                        if (interrupted)
+                            Thread.currentThread().interrupt();
+                        return;
+                    }
+                    task = (Object[]) queue.removeFirst();
+                    if (interrupted)
+                        --workers;
+                }
+                int seq = ((Integer) task[0]).intValue();
+                if (interrupted) {
+                    // fail the taken frame, so next() does not wait for it
+                    put(seq, new InterruptedIOException(
+                            "Decompression of frame interrupted"));
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                Object result;
+                try {
+                    result = decompressFrame((byte[]) task[1]);
+                } catch (Throwable e) {
+                    result = e;
+                }
+                put(seq, result);
+            }
+        }
+
+        private BufferedImage decompressFrame(byte[] data) throws IOException {
+            ImageInputStream iis = new MemoryCacheImageInputStream(
+                    new ByteArrayInputStream(data));
+            try {
+                BufferedImage dest = getDestination(readParam,
+                        Collections.singletonList(imageType).iterator(),
+                        width, height);
+                BufferedImage bi = decompress(tsuid,
+                        patch ? new PatchJpegLSImageInputStream(iis) : iis,
+                        dest, readParam);
+                return adjustBufferedImage(bi, readParam);
+            } finally {
+                iis.close();
+            }
+        }
+    }
 }
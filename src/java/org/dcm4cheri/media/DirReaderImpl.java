@@ -43,6 +43,7 @@ import java.io.IOException;
 import javax.imageio.stream.ImageInputStream;
 
 import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DatasetMatcher;
 import org.dcm4che.data.DcmElement;
 import org.dcm4che.data.DcmObjectFactory;
 import org.dcm4che.data.DcmParser;
@@ -269,11 +270,18 @@ class DirReaderImpl implements DirReader
      */
     public DirRecord getFirstRecordBy(String type, Dataset keys, boolean ignorePNCase)
         throws IOException
+    {
+        return getFirstRecordBy(type, DirRecordImpl.compile(keys, ignorePNCase));
+    }
+
+
+    public DirRecord getFirstRecordBy(String type, DatasetMatcher matcher)
+        throws IOException
     {
         DirRecord dr = getFirstRecord(true);
-        return (dr == null || dr.match(type, keys, ignorePNCase))
+        return (dr == null || dr.match(type, matcher))
                  ? dr
-                 : dr.getNextSiblingBy(type, keys, ignorePNCase);
+                 : dr.getNextSiblingBy(type, matcher);
     }
 
 
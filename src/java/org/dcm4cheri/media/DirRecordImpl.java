@@ -41,6 +41,7 @@ package org.dcm4cheri.media;
 import java.io.IOException;
 
 import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DatasetMatcher;
 import org.dcm4che.data.DcmElement;
 import org.dcm4che.data.DcmObjectFactory;
 import org.dcm4che.data.DcmParser;
@@ -314,6 +315,20 @@ final class DirRecordImpl implements DirRecord
     }
 
 
+    public boolean match(String type, DatasetMatcher matcher)
+    {
+        return (type == null || type.equals(this.type))
+                 && matcher.matches(dataset);
+    }
+
+
+    static DatasetMatcher compile(Dataset keys, boolean ignorePNCase)
+    {
+        return DcmObjectFactory.getInstance()
+                .newDatasetMatcher(keys, ignorePNCase, true);
+    }
+
+
     /**
      *  Gets the firstChildBy attribute of the DirRecordImpl object
      *
@@ -325,11 +340,18 @@ final class DirRecordImpl implements DirRecord
      */
     public DirRecord getFirstChildBy(String type, Dataset keys, boolean ignorePNCase)
         throws IOException
+    {
+        return getFirstChildBy(type, compile(keys, ignorePNCase));
+    }
+
+
+    public DirRecord getFirstChildBy(String type, DatasetMatcher matcher)
+        throws IOException
     {
         DirRecord dr = getFirstChild(true);
-        return (dr == null || dr.match(type, keys, ignorePNCase))
+        return (dr == null || dr.match(type, matcher))
                  ? dr
-                 : dr.getNextSiblingBy(type, keys, ignorePNCase);
+                 : dr.getNextSiblingBy(type, matcher);
     }
 
 
@@ -344,13 +366,19 @@ final class DirRecordImpl implements DirRecord
      */
     public DirRecord getNextSiblingBy(String type, Dataset keys, boolean ignorePNCase)
         throws IOException
+    {
+        return getNextSiblingBy(type, compile(keys, ignorePNCase));
+    }
+
+
+    public DirRecord getNextSiblingBy(String type, DatasetMatcher matcher)
+        throws IOException
     {
         DirRecord dr = this;
         do {
             dr = dr.getNextSibling(true);
-        } while (dr != null && !dr.match(type, keys, ignorePNCase));
+        } while (dr != null && !dr.match(type, matcher));
         return dr;
     }
 
 }
-
@@ -123,6 +123,7 @@ abstract class AAssociateRQACImpl implements AAssociateRQAC {
    private String implClassUID = Implementation.getClassUID();
    private String implVers = Implementation.getVersionName();
    private AsyncOpsWindow asyncOpsWindow = null;
+   private int pduLength = 0;
    protected UserIdentityRQ userIdentityRQ = null;
    protected UserIdentityAC userIdentityAC = null;
    protected final LinkedHashMap presCtxs = new LinkedHashMap();
@@ -409,6 +410,11 @@ abstract class AAssociateRQACImpl implements AAssociateRQAC {
    protected abstract int type();
    protected abstract int pctype();
    
+   /** Returns the length of the last written PDU including the header. */
+   final int pduLength() {
+      return pduLength;
+   }
+   
    private static final byte[] ZERO32 = {
       0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
       0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
@@ -463,6 +469,7 @@ abstract class AAssociateRQACImpl implements AAssociateRQAC {
       }
       writeUserInfo(dout);
       bout.writeTo(type(), out);
+      pduLength = bout.size();
    }
    
    private void writeUserInfo(DataOutputStream dout) throws IOException {
@@ -188,6 +188,12 @@ class AcceptorPolicyImpl implements AcceptorPolicy {
     
     private HashMap extNegotiaionMap = new HashMap();        
     
+    /** Compiled from the configuration on first negotiation after update */
+    private volatile CompiledPolicy compiled = null;
+
+    /** Incremented after each update of the compiled configuration */
+    private volatile int version = 0;
+    
     // Static --------------------------------------------------------
     
     // Constructors --------------------------------------------------
@@ -337,14 +343,19 @@ class AcceptorPolicyImpl implements AcceptorPolicy {
         }
     }
         
-    public final PresContext putPresContext(String asuid, String[] tsuids) {
-        if (tsuids != null) {
-            return (PresContext)presCtxMap.put(asuid,
-                new PresContextImpl(0x020, 1, 0,
-                    StringUtils.checkUID(asuid), 
-                    StringUtils.checkUIDs(tsuids)));
-        } else {
-            return (PresContext)presCtxMap.remove(asuid);
+    public final synchronized PresContext putPresContext(String asuid,
+            String[] tsuids) {
+        try {
+            if (tsuids != null) {
+                return (PresContext)presCtxMap.put(asuid,
+                    new PresContextImpl(0x020, 1, 0,
+                        StringUtils.checkUID(asuid), 
+                        StringUtils.checkUIDs(tsuids)));
+            } else {
+                return (PresContext)presCtxMap.remove(asuid);
+            }
+        } finally {
+            ++version;
         }
     }
     
@@ -352,24 +363,39 @@ class AcceptorPolicyImpl implements AcceptorPolicy {
         return (PresContext)presCtxMap.get(as);
     }
     
-    public RoleSelection putRoleSelection(String uid, boolean scu, boolean scp) {
-        return (RoleSelection)roleSelectionMap.put(
-            StringUtils.checkUID(uid), new RoleSelectionImpl(uid, scu, scp));
+    public synchronized RoleSelection putRoleSelection(String uid,
+            boolean scu, boolean scp) {
+        try {
+            return (RoleSelection)roleSelectionMap.put(
+                StringUtils.checkUID(uid),
+                new RoleSelectionImpl(uid, scu, scp));
+        } finally {
+            ++version;
+        }
     }
     
     public RoleSelection getRoleSelection(String uid) {
         return (RoleSelection)roleSelectionMap.get(uid);
     }
     
-    public RoleSelection removeRoleSelection(String uid) {
-        return (RoleSelection)roleSelectionMap.remove(uid);
+    public synchronized RoleSelection removeRoleSelection(String uid) {
+        try {
+            return (RoleSelection)roleSelectionMap.remove(uid);
+        } finally {
+            ++version;
+        }
     }
     
-    public ExtNegotiator putExtNegPolicy(String uid, ExtNegotiator en) {
-        if (en != null) {
-            return (ExtNegotiator)extNegotiaionMap.put(uid, en);
-        } else {
-            return (ExtNegotiator)extNegotiaionMap.remove(uid);
+    public synchronized ExtNegotiator putExtNegPolicy(String uid,
+            ExtNegotiator en) {
+        try {
+            if (en != null) {
+                return (ExtNegotiator)extNegotiaionMap.put(uid, en);
+            } else {
+                return (ExtNegotiator)extNegotiaionMap.remove(uid);
+            }
+        } finally {
+            ++version;
         }
     }
     
@@ -447,11 +473,26 @@ class AcceptorPolicyImpl implements AcceptorPolicy {
         } catch (AAssociateRJException e) {
             return e.getAAssociateRJ();
         }
-        negotiatePresCtx(rq, ac);
-        negotiateRoleSelection(rq, ac);
-        negotiateExt(rq, ac);
+        CompiledPolicy policy = compiled;
+        if (policy == null || policy.version != version)
+            policy = compile();
+        policy.negotiatePresCtx(rq, ac);
+        policy.negotiateRoleSelection(rq, ac);
+        policy.negotiateExt(rq, ac);
         return ac;
 	}
+
+    /**
+     * Compiles the configuration. A policy compiled concurrently to an
+     * update keeps the former version, so it is compiled again on the next
+     * negotiation.
+     */
+    private synchronized CompiledPolicy compile() {
+        CompiledPolicy policy = compiled;
+        if (policy == null || policy.version != version)
+            compiled = policy = new CompiledPolicy(this);
+        return policy;
+    }
     
     private String negotiateAppCtx(String proposed) {
         String retval = (String)appCtxMap.get(proposed);
@@ -464,63 +505,6 @@ class AcceptorPolicyImpl implements AcceptorPolicy {
         return null;
     }
     
-    private void negotiatePresCtx(AAssociateRQ rq, AAssociateAC ac) {
-        for (Iterator it = rq.listPresContext().iterator(); it.hasNext();)
-            ac.addPresContext(negotiatePresCtx((PresContext)it.next()));
-    }
-    
-    private PresContext negotiatePresCtx(PresContext offered) {
-        PresContext accept = getPresContext(offered.getAbstractSyntaxUID());
-        if (accept == null)
-            return mkACPresCtx(offered,
-                    PresContext.ABSTRACT_SYNTAX_NOT_SUPPORTED,
-                    offered.getTransferSyntaxUID());
-
-        for (Iterator it = accept.getTransferSyntaxUIDs().iterator();
-                it.hasNext();) {
-            String tsuid = (String) it.next();
-            if (offered.getTransferSyntaxUIDs().indexOf(tsuid) != -1)
-                return mkACPresCtx(offered, PresContext.ACCEPTANCE, tsuid);
-        }
-
-        return mkACPresCtx(offered,
-                PresContext.TRANSFER_SYNTAXES_NOT_SUPPORTED,
-                offered.getTransferSyntaxUID());
-    }
-
-    private PresContextImpl mkACPresCtx(PresContext offered, int result,
-            String tsuid) {
-        return new PresContextImpl(0x021, offered.pcid(), result, null,
-                new String[]{ tsuid } );
-    }
-    
-    private void negotiateRoleSelection(AAssociateRQ rq, AAssociateAC ac) {
-        for (Iterator it = rq.listRoleSelections().iterator(); it.hasNext();)
-            ac.addRoleSelection(negotiateRoleSelection((RoleSelection)it.next()));
-    }
-    
-    private RoleSelection negotiateRoleSelection(RoleSelection offered) {
-        boolean scu = offered.scu();
-        boolean scp = false;
-        
-        RoleSelection accept = getRoleSelection(offered.getSOPClassUID());
-        if (accept != null) {
-            scu = offered.scu() && accept.scu();
-            scp = offered.scp() && accept.scp();
-        }
-        return new RoleSelectionImpl(offered.getSOPClassUID(), scu, scp);
-    }
-    
-    private void negotiateExt(AAssociateRQ rq, AAssociateAC ac) {
-        for (Iterator it = rq.listExtNegotiations().iterator(); it.hasNext();) {
-            ExtNegotiation offered = (ExtNegotiation)it.next();
-            String uid = offered.getSOPClassUID();
-            ExtNegotiator enp = getExtNegPolicy(uid);
-            if (enp != null)
-                ac.addExtNegotiation(
-                new ExtNegotiationImpl(uid, enp.negotiate(offered.info())));
-        }
-    }
 
     private AsyncOpsWindow negotiateAOW(AsyncOpsWindow offered) {
         if (offered == null)
@@ -543,4 +527,122 @@ class AcceptorPolicyImpl implements AcceptorPolicy {
             new ArrayList(presCtxMap.values()));       
     }
 
+    // Inner classes -------------------------------------------------
+    /**
+     * Immutable lookup tables compiled from the configuration. Instead of
+     * matching each configured transfer syntax against the offered ones,
+     * the offered transfer syntaxes are looked up in a table of ranks, and
+     * the single element transfer syntax list of the accepted context is
+     * shared by all associations.
+     */
+    private static final class CompiledPolicy {
+
+        /** Abstract Syntax UID -> AcceptedSyntax */
+        private final HashMap presCtxs = new HashMap();
+
+        private final HashMap roleSelections;
+
+        private final HashMap extNegotiators;
+
+        /** Version of the configuration, from which it was compiled */
+        final int version;
+
+        CompiledPolicy(AcceptorPolicyImpl policy) {
+            version = policy.version;
+            for (Iterator it = policy.presCtxMap.values().iterator();
+                    it.hasNext();) {
+                PresContext pc = (PresContext) it.next();
+                presCtxs.put(pc.getAbstractSyntaxUID().intern(),
+                        new AcceptedSyntax(pc.getTransferSyntaxUIDs()));
+            }
+            roleSelections = new HashMap(policy.roleSelectionMap);
+            extNegotiators = new HashMap(policy.extNegotiaionMap);
+        }
+
+        void negotiatePresCtx(AAssociateRQ rq, AAssociateAC ac) {
+            for (Iterator it = rq.listPresContext().iterator(); it.hasNext();)
+                ac.addPresContext(negotiatePresCtx((PresContext)it.next()));
+        }
+
+        private PresContext negotiatePresCtx(PresContext offered) {
+            AcceptedSyntax accept = (AcceptedSyntax)
+                    presCtxs.get(offered.getAbstractSyntaxUID());
+            if (accept == null)
+                return mkACPresCtx(offered,
+                        PresContext.ABSTRACT_SYNTAX_NOT_SUPPORTED);
+
+            int best = accept.tsuids.length;
+            for (Iterator it = offered.getTransferSyntaxUIDs().iterator();
+                    best > 0 && it.hasNext();) {
+                Integer rank = (Integer) accept.ranks.get(it.next());
+                if (rank != null && rank.intValue() < best)
+                    best = rank.intValue();
+            }
+            if (best == accept.tsuids.length)
+                return mkACPresCtx(offered,
+                        PresContext.TRANSFER_SYNTAXES_NOT_SUPPORTED);
+
+            return new PresContextImpl(0x021, offered.pcid(),
+                    PresContext.ACCEPTANCE, null, accept.tsuids[best]);
+        }
+
+        private static PresContextImpl mkACPresCtx(PresContext offered,
+                int result) {
+            return new PresContextImpl(0x021, offered.pcid(), result, null,
+                    Collections.singletonList(
+                            offered.getTransferSyntaxUID()));
+        }
+
+        void negotiateRoleSelection(AAssociateRQ rq, AAssociateAC ac) {
+            for (Iterator it = rq.listRoleSelections().iterator(); it.hasNext();)
+                ac.addRoleSelection(
+                        negotiateRoleSelection((RoleSelection)it.next()));
+        }
+
+        private RoleSelection negotiateRoleSelection(RoleSelection offered) {
+            boolean scu = offered.scu();
+            boolean scp = false;
+
+            RoleSelection accept = (RoleSelection)
+                    roleSelections.get(offered.getSOPClassUID());
+            if (accept != null) {
+                scu = offered.scu() && accept.scu();
+                scp = offered.scp() && accept.scp();
+            }
+            return new RoleSelectionImpl(offered.getSOPClassUID(), scu, scp);
+        }
+
+        void negotiateExt(AAssociateRQ rq, AAssociateAC ac) {
+            for (Iterator it = rq.listExtNegotiations().iterator();
+                    it.hasNext();) {
+                ExtNegotiation offered = (ExtNegotiation)it.next();
+                String uid = offered.getSOPClassUID();
+                ExtNegotiator enp = (ExtNegotiator) extNegotiators.get(uid);
+                if (enp != null)
+                    ac.addExtNegotiation(new ExtNegotiationImpl(uid,
+                            enp.negotiate(offered.info())));
+            }
+        }
+    }
+
+    /** Accepted transfer syntaxes of one abstract syntax. */
+    private static final class AcceptedSyntax {
+
+        /** Single element lists of accepted transfer syntaxes, by rank */
+        final List[] tsuids;
+
+        /** Transfer Syntax UID -> Integer rank */
+        final HashMap ranks = new HashMap();
+
+        AcceptedSyntax(List configured) {
+            tsuids = new List[configured.size()];
+            for (int i = 0; i < tsuids.length; i++) {
+                String tsuid = ((String) configured.get(i)).intern();
+                tsuids[i] = Collections.singletonList(tsuid);
+                if (!ranks.containsKey(tsuid))
+                    ranks.put(tsuid, new Integer(i));
+            }
+        }
+    }
+
 }
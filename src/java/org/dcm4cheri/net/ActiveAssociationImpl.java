@@ -77,20 +77,24 @@
 package org.dcm4cheri.net;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
 
 import org.apache.log4j.Logger;
 import org.dcm4che.data.Command;
-import org.dcm4che.data.Dataset;
 import org.dcm4che.net.ActiveAssociation;
 import org.dcm4che.net.Association;
 import org.dcm4che.net.AssociationListener;
+import org.dcm4che.net.AssociationReactor;
 import org.dcm4che.net.DcmServiceRegistry;
 import org.dcm4che.net.Dimse;
 import org.dcm4che.net.DimseListener;
 import org.dcm4che.net.FutureRSP;
 import org.dcm4che.net.PDU;
+import org.dcm4che.util.TaskExecutor;
 import org.dcm4cheri.util.IntHashtable2;
 import org.dcm4cheri.util.LF_ThreadPool;
+import org.dcm4cheri.util.Semaphore;
 
 /**
  * <description>
@@ -118,14 +122,20 @@ final class ActiveAssociationImpl implements ActiveAssociation,
 
     private final DcmServiceRegistry services;
 
+    /** Outstanding operations: message ID -> Invocation */
     private final IntHashtable2 rspDispatcher = new IntHashtable2();
 
+    /** Permits for outstanding operations, <code>null</code> if unlimited */
+    private final Semaphore window;
+
     private final IntHashtable2 cancelDispatcher = new IntHashtable2();
 
     private final LF_ThreadPool threadPool = new LF_ThreadPool(this, name);
 
     private boolean running = false;
 
+    private final NetMetricsImpl metrics;
+
     // Static --------------------------------------------------------
 
     // Constructors --------------------------------------------------
@@ -136,6 +146,9 @@ final class ActiveAssociationImpl implements ActiveAssociation,
 
         this.assoc = (AssociationImpl) assoc;
         this.services = services;
+        this.metrics = (NetMetricsImpl) assoc.getMetrics();
+        int maxOps = assoc.getMaxOpsInvoked();
+        this.window = maxOps > 0 ? new Semaphore(maxOps) : null;
         ((AssociationImpl) assoc).setThreadPool(threadPool);
         assoc.addAssociationListener(this);
     }
@@ -168,7 +181,22 @@ final class ActiveAssociationImpl implements ActiveAssociation,
         if (running)
             throw new IllegalStateException("Already running: " + threadPool);
 
-        new Thread(this, name).start();
+        threadPool.getTaskExecutor().execute(this, name);
+    }
+
+    public void setTaskExecutor(TaskExecutor executor) {
+        if (running)
+            throw new IllegalStateException("Already running: " + threadPool);
+
+        threadPool.setTaskExecutor(executor);
+    }
+
+    public void start(AssociationReactor reactor) throws IOException {
+        if (running)
+            throw new IllegalStateException("Already running: " + threadPool);
+
+        this.running = true;
+        ((AssociationReactorImpl) reactor).register(this);
     }
 
     public Association getAssociation() {
@@ -178,15 +206,25 @@ final class ActiveAssociationImpl implements ActiveAssociation,
     public void invoke(Dimse rq, DimseListener l) throws InterruptedException,
             IOException {
         // checkRunning();
-        int msgID = rq.getCommand().getMessageID();
-        int maxOps = assoc.getMaxOpsInvoked();
-        synchronized (rspDispatcher) {
-            if (maxOps > 0)
-                while (rspDispatcher.size() >= maxOps)
-                    rspDispatcher.wait();
-            rspDispatcher.put(msgID, l);
+        if (window != null)
+            window.acquire();
+        put(rq.getCommand(), l);
+        assoc.write(rq);
+    }
+
+    public FutureRSP tryInvoke(Dimse rq, DimseListener pendingListener)
+            throws IOException {
+        try {
+            if (window != null && !window.attempt(0))
+                return null;
+        } catch (InterruptedException e) {
+            // distinguish from a full window
+            throw new InterruptedIOException(e.getMessage());
         }
+        FutureRSPImpl retval = new FutureRSPImpl(assoc, pendingListener);
+        put(rq.getCommand(), retval);
         assoc.write(rq);
+        return retval;
     }
 
     public FutureRSP invoke(Dimse rq) throws InterruptedException, IOException {
@@ -225,6 +263,7 @@ final class ActiveAssociationImpl implements ActiveAssociation,
             }
             assoc.initMDC();
             Command cmd = dimse.getCommand();
+            long start = NetMetricsImpl.micros();
             switch (cmd.getCommandField()) {
             case Command.C_STORE_RQ:
                 services.lookup(cmd.getAffectedSOPClassUID()).c_store(this,
@@ -289,6 +328,9 @@ final class ActiveAssociationImpl implements ActiveAssociation,
             default:
                 throw new RuntimeException("Illegal Command: " + cmd);
             }
+            if (cmd.isRequest() && cmd.getCommandField() != Command.C_CANCEL_RQ)
+                metrics.operationPerformed(NetMetricsImpl.sopClassUID(cmd),
+                        NetMetricsImpl.micros() - start);
         } catch (IOException ioe) {
             log.error(ioe.getMessage(), ioe);
             pool.shutdown();
@@ -307,20 +349,64 @@ final class ActiveAssociationImpl implements ActiveAssociation,
     // Protected -----------------------------------------------------
 
     // Private -------------------------------------------------------
+    private void put(Command rqCmd, DimseListener l) {
+        Invocation inv = new Invocation(l, NetMetricsImpl.sopClassUID(rqCmd));
+        synchronized (rspDispatcher) {
+            rspDispatcher.put(rqCmd.getMessageID(), inv);
+        }
+        metrics.operationInvoked();
+    }
+
+    /**
+     * Dispatches the response to the listener of the invoked operation.
+     * The dataset is read and the listener is called outside of the lock of
+     * the dispatcher, so a slow listener only delays responses of its own
+     * operation. Responses of one operation are dispatched in the order of
+     * receipt, also if they are processed by different threads.
+     */
     private void handleResponse(Dimse dimse) throws IOException {
-        DimseListener l = null;
+        Command cmd = dimse.getCommand();
+        dimse.getDataset(); // read out dataset, if any
+        int msgID = cmd.getMessageIDToBeingRespondedTo();
+        Invocation inv;
         synchronized (rspDispatcher) {
-            Command cmd = dimse.getCommand();
-            Dataset ds = dimse.getDataset(); // read out dataset, if any
-            int msgID = cmd.getMessageIDToBeingRespondedTo();
-            if (cmd.isPending()) {
-                l = (DimseListener) rspDispatcher.get(msgID);
-            } else {
-                l = (DimseListener) rspDispatcher.remove(msgID);
-                rspDispatcher.notify();
+            inv = (Invocation) rspDispatcher.get(msgID);
+        }
+        if (inv == null)
+            return;
+        LinkedList received = inv.received;
+        try {
+            synchronized (received) {
+                while (received.contains(dimse) && received.getFirst() != dimse)
+                    received.wait();
+            }
+            if (inv.listener != null)
+                inv.listener.dimseReceived(assoc, dimse);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            synchronized (received) {
+                received.remove(dimse);
+                received.notifyAll();
             }
-            if (l != null)
-                l.dimseReceived(assoc, dimse);
+        }
+        if (cmd.isPending())
+            return;
+        synchronized (rspDispatcher) {
+            if (rspDispatcher.get(msgID) != inv)
+                return;
+            rspDispatcher.remove(msgID);
+            // count the operation as completed before waking up
+            // waitForPendingRSP(), so no operation is reported pending
+            // after it returned
+            metrics.operationCompleted(inv.cuid,
+                    NetMetricsImpl.micros() - inv.start);
+            // free the slot before waking up waitForPendingRSP(), so a
+            // following tryInvoke() succeeds
+            if (window != null)
+                window.release();
+            if (rspDispatcher.isEmpty())
+                rspDispatcher.notifyAll();
         }
     }
 
@@ -342,7 +428,23 @@ final class ActiveAssociationImpl implements ActiveAssociation,
     public void write(Association src, PDU pdu) {
     }
 
+    /**
+     * Records the order of received responses. Invoked by the reading
+     * thread, before the next message can be read by another thread.
+     */
     public void received(Association src, Dimse dimse) {
+        Command cmd = dimse.getCommand();
+        if (!cmd.isResponse())
+            return;
+        Invocation inv;
+        synchronized (rspDispatcher) {
+            inv = (Invocation) rspDispatcher.get(
+                    cmd.getMessageIDToBeingRespondedTo());
+        }
+        if (inv != null)
+            synchronized (inv.received) {
+                inv.received.addLast(dimse);
+            }
     }
 
     public void error(Association src, IOException ioe) {
@@ -352,13 +454,38 @@ final class ActiveAssociationImpl implements ActiveAssociation,
     }
 
     public void closed(Association src) {
+        int outstanding;
         synchronized (rspDispatcher) {
+            outstanding = rspDispatcher.size();
             rspDispatcher.clear();
             rspDispatcher.notifyAll();
         }
+        for (int i = 0; i < outstanding; i++)
+            metrics.operationCompleted(null, 0L);
+        if (window != null)
+            window.release(outstanding);
         assoc.removeAssociationListener(this);
     }
 
+    // Inner classes -------------------------------------------------
+    private static final class Invocation {
+        final DimseListener listener;
+
+        /** Received responses, which are not yet dispatched. */
+        final LinkedList received = new LinkedList();
+
+        /** SOP Class UID of the request */
+        final String cuid;
+
+        /** Time of invocation in microseconds */
+        final long start = NetMetricsImpl.micros();
+
+        Invocation(DimseListener listener, String cuid) {
+            this.listener = listener;
+            this.cuid = cuid;
+        }
+    }
+
     public void write(Association src, Dimse dimse) {
     }
 
@@ -91,7 +91,9 @@ import org.dcm4che.net.DataSource;
 import org.dcm4che.net.DcmServiceRegistry;
 import org.dcm4che.net.Dimse;
 import org.dcm4che.net.ExtNegotiation;
+import org.dcm4che.net.NetMetrics;
 import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.AssociationReactor;
 import org.dcm4che.net.PDataTF;
 import org.dcm4che.net.PDU;
 import org.dcm4che.net.PDUException;
@@ -268,4 +270,20 @@ public final class AssociationFactoryImpl extends AssociationFactory {
         return new DcmServiceRegistryImpl();
     }
 
+    public AssociationReactor newAssociationReactor() {
+        return new AssociationReactorImpl();
+    }
+
+    public NetMetrics getMetrics() {
+        return NetMetricsImpl.GLOBAL;
+    }
+
+    public void registerMetricsMBean(String objectName) {
+        NetMetricsImpl.registerMBean(objectName);
+    }
+
+    public void unregisterMetricsMBean(String objectName) {
+        NetMetricsImpl.unregisterMBean(objectName);
+    }
+
 }
@@ -77,14 +77,17 @@
 package org.dcm4cheri.net;
 
 import org.dcm4che.net.AcceptorPolicy;
+import org.dcm4che.net.AdmissionController;
 import org.dcm4che.net.Association;
 import org.dcm4che.net.AssociationListener;
 import org.dcm4che.net.AAssociateAC;
 import org.dcm4che.net.AAssociateRQ;
 import org.dcm4che.net.AAssociateRJ;
+import org.dcm4che.net.AAssociateRJException;
 import org.dcm4che.net.AAbort;
 import org.dcm4che.net.Dimse;
 import org.dcm4che.net.ExtNegotiation;
+import org.dcm4che.net.NetMetrics;
 import org.dcm4che.net.PDU;
 import org.dcm4che.net.PresContext;
 
@@ -141,6 +144,10 @@ final class AssociationImpl implements Association {
         return fsm.socket();
     }
 
+    public NetMetrics getMetrics() {
+        return fsm.metrics();
+    }
+
     public final String toString() {
         return "Assoc[sock="
             + fsm.socket()
@@ -206,6 +213,14 @@ final class AssociationImpl implements Association {
         reader.setThreadPool(pool);
     }
 
+    final int getReadMaxLength() {
+        return fsm.getReadMaxLength();
+    }
+
+    void setTransport(ChannelTransport transport) {
+        fsm.setTransport(transport);
+    }
+
     /** Setter for property soCloseDelay.
      * @param soCloseDelay New value of property soCloseDelay.
      */
@@ -282,13 +297,25 @@ final class AssociationImpl implements Association {
     }
 
     public final PDU accept(AcceptorPolicy policy) throws IOException {
+        return accept(policy, null);
+    }
+
+    public final PDU accept(AcceptorPolicy policy,
+            AdmissionController admission) throws IOException {
 		initMDC();
         try {
             PDU rq = fsm.read(rqTimeout, b10);
             if (!(rq instanceof AAssociateRQ))
                 return (AAbort) rq;
 
-            PDU rp = policy.negotiate(this);
+            PDU rp;
+            try {
+                if (admission != null)
+                    admission.admit(this);
+                rp = policy.negotiate(this);
+            } catch (AAssociateRJException e) {
+                rp = e.getAAssociateRJ();
+            }
             if (rp instanceof AAssociateAC)
                 fsm.write((AAssociateAC) rp);
             else
@@ -330,6 +357,18 @@ final class AssociationImpl implements Association {
         }
     }
 
+    public final void write(Dimse[] dimses) throws IOException {
+        initMDC();
+        try {
+            for (int i = 0; i < dimses.length; i++) {
+                msgID = Math.max(dimses[i].getCommand().getMessageID(), msgID);
+            }
+            writer.write(dimses);
+        } finally {
+            clearMDC();
+        }
+    }
+
     public final PDU release(int timeout) throws IOException {
         initMDC();
         try {
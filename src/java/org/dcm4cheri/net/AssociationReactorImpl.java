@@ -0,0 +1,477 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.apache.log4j.Logger;
+import org.dcm4che.net.AAbort;
+import org.dcm4che.net.AssociationReactor;
+import org.dcm4che.util.TaskExecutor;
+import org.dcm4cheri.util.LF_ThreadPool;
+
+/**
+ * Selector based implementation of {@link AssociationReactor}.
+ *
+ * @version $Revision$
+ */
+final class AssociationReactorImpl implements AssociationReactor, Runnable {
+
+    // Constants -----------------------------------------------------
+    private static final Logger log =
+            Logger.getLogger(AssociationReactorImpl.class);
+
+    private static final long SELECT_TIMEOUT = 1000L;
+
+    private static final long WORKER_KEEP_ALIVE = 60000L;
+
+    // Attributes ----------------------------------------------------
+    private static int instCount = 0;
+
+    private final String name = "AssocReactor-" + ++instCount;
+
+    private final LinkedList pending = new LinkedList();
+
+    private final LinkedList tasks = new LinkedList();
+
+    private Selector selector = null;
+
+    private int maxWorkers = 64;
+
+    private int workers = 0;
+
+    private int idleWorkers = 0;
+
+    private int threadNo = 0;
+
+    private final HashSet sessions = new HashSet();
+
+    // Constructors --------------------------------------------------
+    AssociationReactorImpl() {
+    }
+
+    // AssociationReactor implementation -----------------------------
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public void setMaxWorkers(int maxWorkers) {
+        if (maxWorkers < 1)
+            throw new IllegalArgumentException("maxWorkers: " + maxWorkers);
+        this.maxWorkers = maxWorkers;
+    }
+
+    public int getNumWorkers() {
+        synchronized (tasks) {
+            return workers - idleWorkers;
+        }
+    }
+
+    public synchronized int getNumAssociations() {
+        return sessions.size();
+    }
+
+    public void stop() {
+        Selector sel;
+        LinkedList stopped = new LinkedList();
+        synchronized (this) {
+            sel = selector;
+            selector = null;
+            stopped.addAll(sessions);
+        }
+        if (sel == null)
+            return;
+        log.info("Stop " + name);
+        try {
+            sel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close selector of " + name, e);
+        }
+        synchronized (pending) {
+            for (Iterator it = pending.iterator(); it.hasNext();) {
+                Object o = it.next();
+                if (o instanceof Session)
+                    stopped.add(o);
+            }
+            pending.clear();
+        }
+        // nobody will read from the channels any more
+        for (Iterator it = stopped.iterator(); it.hasNext();)
+            ((Session) it.next()).abort();
+        synchronized (tasks) {
+            tasks.notifyAll();
+        }
+    }
+
+    public synchronized String toString() {
+        return name + "[associations: " + sessions.size() + ", workers: "
+                + workers + "(" + maxWorkers + "), idle: " + idleWorkers
+                + "]";
+    }
+
+    // Package protected ---------------------------------------------
+    /**
+     * Switches the association to the non-blocking channel of its socket and
+     * registers it with the selector.
+     */
+    void register(ActiveAssociationImpl activeAssoc) throws IOException {
+        AssociationImpl assoc = (AssociationImpl) activeAssoc.getAssociation();
+        Socket s = assoc.getSocket();
+        SocketChannel ch = s.getChannel();
+        if (ch == null)
+            throw new IllegalArgumentException(
+                    "Socket not created by a SocketChannel - " + s);
+        ChannelTransport transport =
+                new ChannelTransport(this, ch, assoc.getReadMaxLength());
+        Session session = new Session(activeAssoc, assoc, transport);
+        assoc.setTransport(transport);
+        assoc.setThreadPool(session);
+        Selector sel = ensureRunning();
+        synchronized (pending) {
+            pending.addLast(session);
+        }
+        sel.wakeup();
+    }
+
+    /** Resumes reading from the channel, after PDUs were taken from the queue. */
+    void resume(ChannelTransport transport) {
+        Selector sel;
+        synchronized (this) {
+            sel = selector;
+        }
+        if (sel == null)
+            return;
+        synchronized (pending) {
+            pending.addLast(transport);
+        }
+        sel.wakeup();
+    }
+
+    // Runnable implementation (selector thread) ---------------------
+    public void run() {
+        Selector sel;
+        synchronized (this) {
+            sel = selector;
+        }
+        long lastTimeoutCheck = System.currentTimeMillis();
+        try {
+            while (sel.isOpen()) {
+                sel.select(SELECT_TIMEOUT);
+                processPending(sel);
+                for (Iterator it = sel.selectedKeys().iterator();
+                        it.hasNext();) {
+                    SelectionKey key = (SelectionKey) it.next();
+                    it.remove();
+                    Session session = (Session) key.attachment();
+                    if (key.isValid() && key.isReadable())
+                        readPDUs(key, session);
+                    session.schedule(System.currentTimeMillis());
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastTimeoutCheck >= SELECT_TIMEOUT) {
+                    lastTimeoutCheck = now;
+                    for (Iterator it = sel.keys().iterator(); it.hasNext();)
+                        ((Session) ((SelectionKey) it.next()).attachment())
+                                .schedule(now);
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // stopped
+        } catch (IOException e) {
+            log.error(name + " terminated", e);
+        }
+    }
+
+    // Private -------------------------------------------------------
+    private synchronized Selector ensureRunning() throws IOException {
+        if (selector == null) {
+            selector = Selector.open();
+            Thread thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+            log.info("Start " + name);
+        }
+        return selector;
+    }
+
+    private void processPending(Selector sel) {
+        for (;;) {
+            Object o;
+            synchronized (pending) {
+                if (pending.isEmpty())
+                    return;
+                o = pending.removeFirst();
+            }
+            if (o instanceof Session) {
+                Session session = (Session) o;
+                try {
+                    session.register(sel);
+                } catch (IOException e) {
+                    log.warn("Failed to register " + session.assoc, e);
+                    session.shutdown();
+                } catch (ClosedSelectorException e) {
+                    session.abort();
+                    throw e;
+                }
+            } else {
+                SelectionKey key = ((ChannelTransport) o).getSelectionKey();
+                if (key != null && key.isValid())
+                    key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void readPDUs(SelectionKey key, Session session) {
+        switch (session.transport.readPDUs()) {
+        case ChannelTransport.SUSPEND:
+            if (log.isDebugEnabled())
+                log.debug("Suspend reading - " + session.transport);
+            key.interestOps(0);
+            break;
+        case ChannelTransport.STOP:
+            key.cancel();
+            break;
+        }
+    }
+
+    private synchronized void registered(Session session) {
+        sessions.add(session);
+    }
+
+    private synchronized void unregistered(Session session) {
+        sessions.remove(session);
+    }
+
+    private void execute(Runnable task) {
+        String threadName;
+        synchronized (tasks) {
+            tasks.addLast(task);
+            if (tasks.size() <= idleWorkers) {
+                tasks.notify();
+                return;
+            }
+            if (workers >= maxWorkers)
+                return;
+            ++workers;
+            threadName = name + "-" + (++threadNo);
+        }
+        TaskExecutor.getDefault().execute(new Runnable() {
+            public void run() {
+                work();
+            }
+        }, threadName);
+    }
+
+    private void work() {
+        for (;;) {
+            Runnable task;
+            synchronized (tasks) {
+                if (tasks.isEmpty()) {
+                    ++idleWorkers;
+                    try {
+                        tasks.wait(WORKER_KEEP_ALIVE);
+                    } catch (InterruptedException e) {
+                        log.warn(e);
+                    } finally {
+                        --idleWorkers;
+                    }
+                }
+                if (tasks.isEmpty()) {
+                    --workers;
+                    return;
+                }
+                task = (Runnable) tasks.removeFirst();
+            }
+            task.run();
+        }
+    }
+
+    // Inner classes -------------------------------------------------
+    /**
+     * Dispatches received messages of one association to the workers of the
+     * reactor. Replaces the Leader/Follower thread pool of the association:
+     * the current reader promotes the next leader by releasing the
+     * association for the next worker.
+     */
+    private final class Session extends LF_ThreadPool implements Runnable {
+
+        final ActiveAssociationImpl handler;
+
+        final AssociationImpl assoc;
+
+        final ChannelTransport transport;
+
+        private Thread leader = null;
+
+        private boolean reading = false;
+
+        private boolean shutdown = false;
+
+        private boolean registered = false;
+
+        Session(ActiveAssociationImpl handler, AssociationImpl assoc,
+                ChannelTransport transport) {
+            super(handler, name);
+            this.handler = handler;
+            this.assoc = assoc;
+            this.transport = transport;
+        }
+
+        synchronized void register(Selector sel) throws IOException {
+            if (shutdown)
+                return;
+            transport.setSelectionKey(transport.channel().register(
+                    sel, SelectionKey.OP_READ, this));
+            registered = true;
+            registered(this);
+        }
+
+        /** Assigns a worker, if received PDUs wait for a reader. */
+        void schedule(long now) {
+            synchronized (this) {
+                if (shutdown || reading
+                        || !transport.isReadable(assoc.getDimseTimeout(), now))
+                    return;
+                reading = true;
+            }
+            execute(this);
+        }
+
+        public void run() {
+            synchronized (this) {
+                leader = Thread.currentThread();
+            }
+            try {
+                handler.run(this);
+            } catch (Throwable th) {
+                log.warn("Exception thrown in "
+                        + Thread.currentThread().getName(), th);
+                shutdown();
+            }
+            synchronized (this) {
+                if (leader != Thread.currentThread())
+                    return;
+                leader = null;
+                reading = false;
+            }
+            transport.touch();
+            schedule(System.currentTimeMillis());
+        }
+
+        /**
+         * Waits until the session is shut down. Received messages are read
+         * by the workers of the reactor, not by the joining thread.
+         */
+        public void join() {
+            synchronized (this) {
+                while (!shutdown) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        log.warn(e);
+                        return;
+                    }
+                }
+            }
+        }
+
+        public boolean promoteNewLeader() {
+            synchronized (this) {
+                if (shutdown)
+                    return false;
+                if (leader != Thread.currentThread())
+                    throw new IllegalStateException();
+                leader = null;
+                reading = false;
+            }
+            schedule(System.currentTimeMillis());
+            return true;
+        }
+
+        public void shutdown() {
+            boolean unregister;
+            synchronized (this) {
+                if (shutdown)
+                    return;
+                shutdown = true;
+                leader = null;
+                unregister = registered;
+                registered = false;
+                notifyAll();
+            }
+            super.shutdown();
+            if (unregister) {
+                transport.getSelectionKey().cancel();
+                unregistered(this);
+            }
+        }
+
+        /** Aborts the association, if the reactor is stopped. */
+        void abort() {
+            try {
+                assoc.abort(new AAbortImpl(AAbort.SERVICE_PROVIDER,
+                        AAbort.REASON_NOT_SPECIFIED));
+            } catch (Exception e) {
+                log.warn("Failed to abort " + assoc, e);
+            }
+            shutdown();
+        }
+
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        public int running() {
+            return reading ? 1 : 0;
+        }
+
+        public String toString() {
+            return "Session[" + assoc + ", reading: " + reading
+                    + ", shutdown: " + shutdown + "]";
+        }
+    }
+}
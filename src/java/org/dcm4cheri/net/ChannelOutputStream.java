@@ -0,0 +1,127 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Output stream writing to a <code>SocketChannel</code>, which also supports
+ * gathering writes and file transfers. In non-blocking mode, the calling
+ * thread waits on a private selector until the channel accepted all bytes.
+ *
+ * @version $Revision$
+ */
+class ChannelOutputStream extends OutputStream {
+
+    private final SocketChannel ch;
+
+    private Selector writeSelector = null;
+
+    ChannelOutputStream(SocketChannel ch) {
+        this.ch = ch;
+    }
+
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+        while (bb.hasRemaining())
+            if (ch.write(bb) == 0)
+                awaitWritable();
+    }
+
+    /** Writes the remaining bytes of all buffers by gathering writes. */
+    public void write(ByteBuffer[] srcs) throws IOException {
+        for (int i = 0; i < srcs.length;) {
+            if (!srcs[i].hasRemaining()) {
+                ++i;
+                continue;
+            }
+            if (ch.write(srcs, i, srcs.length - i) == 0)
+                awaitWritable();
+        }
+    }
+
+    /**
+     * Transfers <code>count</code> bytes of the file, starting at
+     * <code>position</code>, to the channel.
+     */
+    public void transferFrom(FileChannel src, long position, long count)
+            throws IOException {
+        while (count > 0) {
+            long n = src.transferTo(position, count, ch);
+            if (n == 0) {
+                if (position >= src.size())
+                    throw new EOFException();
+                awaitWritable();
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    private void awaitWritable() throws IOException {
+        if (ch.isBlocking())
+            return;
+        if (writeSelector == null) {
+            writeSelector = Selector.open();
+            ch.register(writeSelector, SelectionKey.OP_WRITE);
+        }
+        writeSelector.select();
+        writeSelector.selectedKeys().clear();
+    }
+
+    public void close() throws IOException {
+        try {
+            if (writeSelector != null)
+                writeSelector.close();
+        } finally {
+            ch.close();
+        }
+    }
+}
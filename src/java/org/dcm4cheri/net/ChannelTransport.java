@@ -0,0 +1,262 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+/**
+ * Transport of an association over a non-blocking <code>SocketChannel</code>.
+ * PDUs are assembled incrementally by the selector thread of the
+ * {@link AssociationReactorImpl} and queued until they are taken by
+ * {@link FsmImpl#read}. Writes block the calling thread until the channel
+ * accepted all bytes.
+ *
+ * @version $Revision$
+ */
+final class ChannelTransport {
+
+    /** Number of queued PDUs, which suspends reading from the channel. */
+    static final int MAX_QUEUED_PDUS = 8;
+
+    static final int READ_MORE = 0;
+
+    static final int SUSPEND = 1;
+
+    static final int STOP = 2;
+
+    private final AssociationReactorImpl reactor;
+    private final SocketChannel ch;
+    private final int maxLength;
+    private final ByteBuffer header = ByteBuffer.allocate(6);
+    private ByteBuffer pdu = null;
+    private final LinkedList queue = new LinkedList();
+    private final ChannelOutputStream out;
+    private SelectionKey key = null;
+    private IOException error = null;
+    private boolean eof = false;
+    private boolean suspended = false;
+    private long lastActivity = System.currentTimeMillis();
+
+    ChannelTransport(AssociationReactorImpl reactor, SocketChannel ch,
+            int maxLength) throws IOException {
+        this.reactor = reactor;
+        this.ch = ch;
+        this.maxLength = Math.max(maxLength, UnparsedPDUImpl.MAX_LENGTH);
+        this.out = new ChannelOutputStream(ch) {
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    ChannelTransport.this.close();
+                }
+            }
+        };
+        ch.configureBlocking(false);
+    }
+
+    final SocketChannel channel() {
+        return ch;
+    }
+
+    final ChannelOutputStream getOutputStream() {
+        return out;
+    }
+
+    /** Called by the selector thread after registration of the channel. */
+    synchronized void setSelectionKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    synchronized SelectionKey getSelectionKey() {
+        return key;
+    }
+
+    /**
+     * Reads available bytes from the channel, until it would block or the
+     * maximal number of PDUs is queued. Only called by the selector thread.
+     *
+     * @return {@link #READ_MORE}, {@link #SUSPEND} until the queue is
+     *         drained, or {@link #STOP} at the end of the stream
+     */
+    int readPDUs() {
+        try {
+            for (;;) {
+                ByteBuffer dst = pdu != null ? pdu : header;
+                int n = ch.read(dst);
+                if (n < 0) {
+                    setEOF();
+                    return STOP;
+                }
+                if (n == 0)
+                    return READ_MORE;
+                if (dst.hasRemaining())
+                    continue;
+                if (pdu == null && !newPDU())
+                    return STOP;
+                if (pdu != null && !pdu.hasRemaining()) {
+                    byte[] b = pdu.array();
+                    pdu = null;
+                    if (enqueue(new UnparsedPDUImpl(b)) >= MAX_QUEUED_PDUS) {
+                        synchronized (this) {
+                            suspended = true;
+                        }
+                        return SUSPEND;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                error = e;
+                notifyAll();
+            }
+            return STOP;
+        }
+    }
+
+    private boolean newPDU() {
+        header.clear();
+        int type = header.get(0) & 0xff;
+        int len = header.getInt(2);
+        if ((len & 0xFFFFFFFFL) > maxLength) {
+            // let the FSM handle the invalid PDU, but stop reading
+            enqueue(new UnparsedPDUImpl(type, len));
+            return false;
+        }
+        byte[] b = UnparsedPDUImpl.allocate(type, 6 + len);
+        header.get(b, 0, 6);
+        header.clear();
+        pdu = ByteBuffer.wrap(b, 0, 6 + len);
+        pdu.position(6);
+        return true;
+    }
+
+    private synchronized int enqueue(UnparsedPDUImpl raw) {
+        queue.addLast(raw);
+        notifyAll();
+        return queue.size();
+    }
+
+    private synchronized void setEOF() {
+        eof = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns <code>true</code>, if a reader would not block, because a PDU,
+     * the end of the stream or an error was received, or the timeout expired
+     * since the last activity on the association.
+     */
+    synchronized boolean isReadable(int timeout, long now) {
+        return !queue.isEmpty() || eof || error != null
+                || (timeout > 0 && now - lastActivity >= timeout);
+    }
+
+    /** Resets the timer of the read timeout, if there is no active reader. */
+    synchronized void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the next received PDU. Waits, until a PDU is received or the
+     * timeout expired, counted from the last activity on the association.
+     */
+    UnparsedPDUImpl take(int timeout) throws IOException {
+        UnparsedPDUImpl raw = poll(timeout);
+        boolean resume;
+        synchronized (this) {
+            resume = suspended && queue.size() <= MAX_QUEUED_PDUS / 2;
+            if (resume)
+                suspended = false;
+        }
+        if (resume)
+            reactor.resume(this);
+        return raw;
+    }
+
+    private synchronized UnparsedPDUImpl poll(int timeout)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        while (queue.isEmpty()) {
+            if (error != null)
+                throw error;
+            if (eof)
+                throw new EOFException();
+            long wait = 0;
+            if (timeout > 0) {
+                wait = lastActivity + timeout - now;
+                if (wait <= 0)
+                    throw new SocketTimeoutException("Read timed out");
+            }
+            try {
+                wait(wait);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+            now = System.currentTimeMillis();
+        }
+        lastActivity = now;
+        return (UnparsedPDUImpl) queue.removeFirst();
+    }
+
+    /** Closes the channel and wakes up waiting readers. */
+    void close() throws IOException {
+        SelectionKey key;
+        synchronized (this) {
+            eof = true;
+            notifyAll();
+            key = this.key;
+        }
+        if (key != null)
+            key.cancel();
+        ch.close();
+    }
+
+    public String toString() {
+        return "ChannelTransport[" + ch + ", queued=" + queue.size()
+                + (suspended ? ", suspended" : "") + (eof ? ", eof" : "")
+                + "]";
+    }
+}
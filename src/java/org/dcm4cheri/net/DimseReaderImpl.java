@@ -44,6 +44,8 @@ import org.dcm4che.data.*;
 import org.dcm4cheri.util.LF_ThreadPool;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  *
@@ -60,7 +62,7 @@ final class DimseReaderImpl {
     private PDataTF pDataTF = null;
     private PDataTF.PDV pdv = null;
     private Command cmd = null;
-    private byte[] buf = null;
+    private final byte[] header = new byte[6];
     private LF_ThreadPool pool = null;
 
     /** Creates a new instance of DimseReader */
@@ -90,7 +92,7 @@ final class DimseReaderImpl {
         if (tsUID == null) {
             abort("No Presentation Context negotiated with pcid:" + pcid);
         }
-        InputStream in = new PDataTFInputStream(pdv.getInputStream());
+        InputStream in = new PDataTFInputStream(pdv);
         cmd = dcmObjFact.newCommand();
         boolean ds = false;
         try {
@@ -116,12 +118,13 @@ final class DimseReaderImpl {
                 abort("Mismatch between Command PDV pcid: " + pcid
                         + " and " + pdv);
             }
-            in = new PDataTFInputStream(pdv.getInputStream());
+            in = new PDataTFInputStream(pdv);
         } else { // no Dataset
            // if no Data Fragment
             forkNextReadNext();
         }
         DimseImpl retval = new DimseImpl(pcid, tsUID, cmd, in);
+        fsm.metrics().dimseReceived();
         fsm.fireReceived(retval);
         return retval;
     }
@@ -145,7 +148,7 @@ final class DimseReaderImpl {
        pool.promoteNewLeader();
     }
 
-    private InputStream nextStream() throws IOException {
+    private PDataTF.PDV nextStream() throws IOException {
         if (pdv != null && pdv.last()) {
            // if last Data Fragment
            if (!pdv.cmd()) {
@@ -157,7 +160,7 @@ final class DimseReaderImpl {
             throw new EOFException(
                     "Association released during receive of DIMSE");
         }
-        return pdv.getInputStream();
+        return pdv;
     }
     
     private boolean nextPDV() throws IOException {
@@ -182,10 +185,12 @@ final class DimseReaderImpl {
     }
 
     private boolean nextPDataTF() throws IOException {
-        if (buf == null) {
-            buf = new byte[fsm.getReadMaxLength() + 6];
+        if (pDataTF != null) {
+            // all PDVs of the previous P-DATA-TF are consumed
+            ((PDataTFImpl) pDataTF).release();
+            pDataTF = null;
         }
-        PDU pdu = fsm.read(timeout, buf);
+        PDU pdu = fsm.read(timeout, header);
         if (pdu instanceof PDataTF) {
             pDataTF = (PDataTF)pdu;
             return true;
@@ -200,30 +205,46 @@ final class DimseReaderImpl {
         throw new PDUException("Received " + pdu, (AAbort)pdu);
     }                
 
-    private class PDataTFInputStream extends InputStream {
-        private InputStream in;
+    /**
+     * Reads the values of subsequent PDVs directly from the receive buffers
+     * of the P-DATA-TFs.
+     */
+    private class PDataTFInputStream extends InputStream
+            implements TransferableInput {
+        private byte[] buf;
+        private int pos;
+        private int end;
 
-        PDataTFInputStream(InputStream in) {
-            this.in = in;
+        PDataTFInputStream(PDataTF.PDV pdv) {
+            setPDV(pdv);
+        }
+
+        private void setPDV(PDataTF.PDV pdv) {
+            if (pdv == null) {
+                buf = null;
+                return;
+            }
+            PDataTFImpl.PDVImpl impl = (PDataTFImpl.PDVImpl) pdv;
+            buf = impl.buffer();
+            pos = impl.valueOffset();
+            end = pos + impl.valueLength();
         }
 
         public int available() throws IOException {
-            if(in == null) {
+            if(buf == null) {
                 return 0; // no way to signal EOF from available()
             }
-            return in.available();
+            return end - pos;
         }
         
         public int read() throws IOException {
-            if (in == null) {
-                return -1;
+            while (buf != null) {
+                if (pos < end) {
+                    return buf[pos++] & 0xff;
+                }
+                setPDV(nextStream());
             }
-            int c = in.read();
-            if (c == -1) {
-                in = nextStream();
-                return read();
-            }
-            return c;
+            return -1;
         }
         
         public int read(byte b[], int off, int len) throws IOException {
@@ -235,18 +256,57 @@ final class DimseReaderImpl {
             } else if (len == 0) {
                 return 0;
             } 
-            while (in != null) {  
-                int n = in.read(b, off, len);
-                if (n > 0)
+            while (buf != null) {  
+                int n = Math.min(len, end - pos);
+                if (n > 0) {
+                    System.arraycopy(buf, pos, b, off, n);
+                    pos += n;
                     return n;
-                in = nextStream();
+                }
+                setPDV(nextStream());
             }
             return -1;
         }
         
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (buf != null && skipped < n) {
+                int k = (int) Math.min(n - skipped, end - pos);
+                if (k > 0) {
+                    pos += k;
+                    skipped += k;
+                } else {
+                    setPDV(nextStream());
+                }
+            }
+            return skipped;
+        }
+        
+        public long transferTo(WritableByteChannel dst, long count)
+                throws IOException {
+            long transferred = 0;
+            while (buf != null && transferred != count) {
+                int n = end - pos;
+                if (count != -1) {
+                    n = (int) Math.min(n, count - transferred);
+                }
+                if (n > 0) {
+                    ByteBuffer bb = ByteBuffer.wrap(buf, pos, n);
+                    while (bb.hasRemaining()) {
+                        dst.write(bb);
+                    }
+                    pos += n;
+                    transferred += n;
+                } else {
+                    setPDV(nextStream());
+                }
+            }
+            return transferred;
+        }
+
         public void close() throws IOException {
-            while (in != null) {
-                in = nextStream();
+            while (buf != null) {
+                setPDV(nextStream());
             }
         }
     }
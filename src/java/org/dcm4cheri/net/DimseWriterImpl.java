@@ -42,6 +42,7 @@ import org.dcm4che.net.*;
 import org.dcm4che.data.Command;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 
 /**
  *
@@ -50,6 +51,12 @@ import java.io.*;
  */
 final class DimseWriterImpl {
 
+    /**
+     * Minimal number of bytes, which are sent from the buffer of the caller
+     * or from the file, instead of copying them into the PDU buffer.
+     */
+    private static final int MIN_ATTACH_LENGTH = 1024;
+
     private final FsmImpl fsm;
     private PDataTFImpl pDataTF = null;
     private int pcid;
@@ -64,15 +71,39 @@ final class DimseWriterImpl {
     }
     
     public synchronized void write(Dimse dimse) throws IOException {
+        writeDimse(dimse);
+        flushPDataTF();
+    }
+
+    /**
+     * Writes several DIMSE messages. If packPDVs is enabled, PDVs of
+     * consecutive messages are packed into the same P-DATA-TF.
+     */
+    public synchronized void write(Dimse[] dimses) throws IOException {
+        for (int i = 0; i < dimses.length; i++) {
+            writeDimse(dimses[i]);
+            if (!packPDVs) {
+                flushPDataTF();
+            }
+        }
+        if (pDataTF != null) {
+            flushPDataTF();
+        }
+    }
+
+    private void writeDimse(Dimse dimse) throws IOException {
         pcid = dimse.pcid();
         String tsUID = fsm.getAcceptedTransferSyntaxUID(pcid);
         if (tsUID == null) {
             throw new IllegalStateException();
         }
         ((DimseImpl)dimse).setTransferSyntaxUID(tsUID);
+        fsm.metrics().dimseSent();
         fsm.fireWrite(dimse);
         if (pDataTF == null) {
             pDataTF = new PDataTFImpl(fsm.getWriteMaxLength());
+        } else if (pDataTF.free() <= 0) {
+            flushPDataTF();
         }
         pDataTF.openPDV(pcid, cmd = true);
         OutputStream out = new PDataTFOutputStream();
@@ -94,7 +125,6 @@ final class DimseWriterImpl {
                 out.close();
             }                
         }
-        flushPDataTF();
     }
     
     public void flushPDataTF() throws IOException {
@@ -114,9 +144,6 @@ final class DimseWriterImpl {
         
     private void closeStream() throws IOException {
         pDataTF.closePDV(true);
-        if (!cmd) {
-            flushPDataTF();
-        }
     }
 
     /** Getter for property packPDVs.
@@ -133,7 +160,10 @@ final class DimseWriterImpl {
         this.packPDVs = packPDVs;
     }
     
-    private class PDataTFOutputStream extends OutputStream {
+    private class PDataTFOutputStream extends OutputStream
+            implements FileRegionOutput {
+        private final boolean attach = fsm.isChannelOutput();
+
         public final void write(int b) throws IOException {
             if (pDataTF.free() == 0) {
                 flushPDataTF();
@@ -148,7 +178,11 @@ final class DimseWriterImpl {
             int toWrite = len;
             for (;;) {
                 int n = Math.min(pDataTF.free(), toWrite);
-                pDataTF.write(b, off, n);
+                if (isAttachable(n, toWrite)) {
+                    pDataTF.attach(b, off, n);
+                } else {
+                    pDataTF.write(b, off, n);
+                }
                 off += n;
                 toWrite -= n;
                 if (toWrite == 0) {
@@ -157,8 +191,33 @@ final class DimseWriterImpl {
                 flushPDataTF();
             }
         }
+        public void transferFrom(FileChannel src, long position, long count)
+                throws IOException {
+            while (count > 0) {
+                if (pDataTF.free() == 0) {
+                    flushPDataTF();
+                }
+                int n = (int) Math.min(pDataTF.free(), count);
+                if (isAttachable(n, count)) {
+                    pDataTF.attach(src, position, n);
+                } else {
+                    pDataTF.write(src, position, n);
+                }
+                position += n;
+                count -= n;
+            }
+        }
         public void close() throws IOException {
             closeStream();
         }
+        /**
+         * Only values filling the PDU are attached, which are followed by
+         * further bytes, so the PDU is flushed by the next loop iteration,
+         * before the caller regains control of its buffer.
+         */
+        private boolean isAttachable(int n, long remaining) {
+            return attach && n == pDataTF.free() && n < remaining
+                && n >= MIN_ATTACH_LENGTH;
+        }
     }
 }
@@ -81,7 +81,8 @@ final class FsmImpl
     private final boolean requestor;
     private final Socket s;
     private final InputStream in;
-    private final OutputStream out;
+    private OutputStream out;
+    private ChannelTransport transport = null;
     private int soCloseDelay = 500;
     private AAssociateRQ rq = null;
     private AAssociateAC ac = null;
@@ -89,6 +90,8 @@ final class FsmImpl
     private AAbort aa = null;
     private AssociationListener assocListener = null;
     private LF_ThreadPool pool = null;
+    private final NetMetricsImpl metrics =
+            NetMetricsImpl.newAssociationMetrics();
 
 
     /**
@@ -108,7 +111,9 @@ final class FsmImpl
         initMDC();
         try {
             this.in = s.getInputStream();
-            this.out = s.getOutputStream();
+            this.out = s.getChannel() != null
+                    ? new ChannelOutputStream(s.getChannel())
+                    : s.getOutputStream();
             log.info(s.toString());
             changeState(requestor ? STA4 : STA2);
         } finally {
@@ -151,6 +156,21 @@ final class FsmImpl
     }
 
 
+    /**
+     *  Switches to the transport over the non-blocking channel of the socket.
+     *  Received PDUs are taken from the queue of the transport afterwards.
+     *
+     *@param  transport  transport served by an AssociationReactor
+     */
+    void setTransport(ChannelTransport transport)
+    {
+        synchronized (out) {
+            this.transport = transport;
+            this.out = transport.getOutputStream();
+        }
+    }
+
+
     /**
      *  Description of the Method
      *
@@ -293,6 +313,29 @@ final class FsmImpl
     }
 
 
+    /**
+     *  Returns <code>true</code>, if PDUs are written to a <code>SocketChannel</code>,
+     *  which supports gathering writes and file transfers.
+     *
+     *@return    <code>true</code>, if written to a <code>SocketChannel</code>
+     */
+    final boolean isChannelOutput()
+    {
+        return out instanceof ChannelOutputStream;
+    }
+
+
+    /**
+     *  Returns the metrics of this association.
+     *
+     *@return    metrics of this association
+     */
+    final NetMetricsImpl metrics()
+    {
+        return metrics;
+    }
+
+
     /**
      *  Gets the writeMaxLength attribute of the FsmImpl object
      *
@@ -497,14 +540,21 @@ final class FsmImpl
         try {
             UnparsedPDUImpl raw = null;
             synchronized (in) {
-                s.setSoTimeout(timeout);
                 try {
-                    raw = new UnparsedPDUImpl(in, buf);
+                    if (transport != null) {
+                        raw = transport.take(timeout);
+                    } else {
+                        s.setSoTimeout(timeout);
+                        raw = new UnparsedPDUImpl(in, buf,
+                                ac != null && rq != null
+                                        ? getReadMaxLength() : 0);
+                    }
                 } catch (IOException e) {
                     changeState(STA1);
                     throw e;
                 }
             }
+            metrics.pduReceived(raw.type(), (raw.length() & 0xFFFFFFFFL) + 6);
             return state.parse(raw);
         } catch (IOException ioe) {
             if (assocListener != null) {
@@ -535,6 +585,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(1, ((AAssociateRQACImpl) rq).pduLength());
         this.rq = rq;
     }
 
@@ -559,6 +610,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(2, ((AAssociateRQACImpl) ac).pduLength());
         this.ac = ac;
     }
 
@@ -583,6 +635,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(3, 10);
     }
 
 
@@ -606,6 +659,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(4, ((PDataTFImpl) data).pduLength());
     }
 
 
@@ -629,6 +683,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(5, 10);
     }
 
 
@@ -652,6 +707,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(6, 10);
     }
 
 
@@ -675,6 +731,7 @@ final class FsmImpl
             }
             throw ioe;
         }
+        metrics.pduSent(7, 10);
     }
 
 
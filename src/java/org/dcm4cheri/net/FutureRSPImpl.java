@@ -81,30 +81,44 @@ implements DimseListener, AssociationListener, FutureRSP {
    private final ArrayList pending = new ArrayList();
    private IOException exception = null;
    private final Association assoc;
+   private final DimseListener pendingListener;
+   private ArrayList listeners = null;
+   private boolean completed = false;
    
    // Static --------------------------------------------------------
    
    // Constructors --------------------------------------------------
    public FutureRSPImpl(Association assoc) {
+       this(assoc, null);
+   }
+   
+   public FutureRSPImpl(Association assoc, DimseListener pendingListener) {
        this.assoc = assoc;
+       this.pendingListener = pendingListener;
        assoc.addAssociationListener(this);
    }
    
    // Public --------------------------------------------------------
    
    // FutureRSP implementation ----------------------------------------------
-   public synchronized void set(Dimse rsp) {
+   public void set(Dimse rsp) {
       assoc.removeAssociationListener(this);
-      this.rsp = rsp;
-      ready = true;
-      notifyAll();
+      synchronized (this) {
+         this.rsp = rsp;
+         ready = true;
+         notifyAll();
+      }
+      fireCompleted();
    }
    
-   public synchronized void setException(IOException ex) {
+   public void setException(IOException ex) {
       assoc.removeAssociationListener(this);
-      exception = ex;
-      ready = true;
-      notifyAll();
+      synchronized (this) {
+         exception = ex;
+         ready = true;
+         notifyAll();
+      }
+      fireCompleted();
    }
    
    public synchronized Dimse get()
@@ -134,10 +148,32 @@ implements DimseListener, AssociationListener, FutureRSP {
       return rsp;
    }
    
+   public void addListener(FutureRSP.Listener l) {
+      if (l == null) {
+         throw new NullPointerException();
+      }
+      synchronized (this) {
+         if (!completed) {
+            if (listeners == null) {
+               listeners = new ArrayList(1);
+            }
+            listeners.add(l);
+            return;
+         }
+      }
+      l.completed(this);
+   }
+   
    // DimseListener implementation ---------------------------------
    public void dimseReceived(Association assoc, Dimse dimse) {
       if (dimse.getCommand().isPending()) {
-          pending.add(dimse);
+         if (pendingListener != null) {
+            pendingListener.dimseReceived(assoc, dimse);
+         } else {
+            synchronized (this) {
+               pending.add(dimse);
+            }
+         }
       } else {
          set(dimse);
       }
@@ -157,9 +193,12 @@ implements DimseListener, AssociationListener, FutureRSP {
    public void closing(Association src) {
    }
    
-   synchronized public void closed(Association src) {
-      closed = true;
-      notifyAll();
+   public void closed(Association src) {
+      synchronized (this) {
+         closed = true;
+         notifyAll();
+      }
+      fireCompleted();
    }
    
    public void write(Association src, Dimse dimse) {
@@ -171,6 +210,23 @@ implements DimseListener, AssociationListener, FutureRSP {
    // Protected -----------------------------------------------------
    
    // Private -------------------------------------------------------
+   private void fireCompleted() {
+      ArrayList tmp;
+      synchronized (this) {
+         if (completed) {
+            return;
+         }
+         completed = true;
+         tmp = listeners;
+         listeners = null;
+      }
+      if (tmp != null) {
+         for (int i = 0, n = tmp.size(); i < n; i++) {
+            ((FutureRSP.Listener) tmp.get(i)).completed(this);
+         }
+      }
+   }
+   
    private Dimse doGet() throws IOException {
       if (exception != null)
          throw exception;
@@ -0,0 +1,165 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+/**
+ * Histogram of latencies with log-linear buckets: values below 16 are
+ * counted exactly, each greater power of two is divided into 16 buckets.
+ * Like {@link StripedCounter}, updates of different threads are spread
+ * over several recorders.
+ *
+ * @version $Revision$
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /** Greater values are counted in the last bucket. */
+    private static final int MAX_BITS = 36;
+
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+    private final Recorder[] recorders;
+
+    private final int mask;
+
+    LatencyHistogram(int stripes) {
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+        this.recorders = new Recorder[n];
+        this.mask = n - 1;
+        for (int i = 0; i < n; i++)
+            recorders[i] = new Recorder();
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_COUNT)
+            return value < 0 ? 0 : (int) value;
+        int msb = 63;
+        while ((value >>> msb) == 0)
+            --msb;
+        if (msb >= MAX_BITS)
+            return BUCKETS - 1;
+        int shift = msb - SUB_BITS;
+        return (shift + 1) * SUB_COUNT
+                + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    /** Returns the greatest value counted in the specified bucket. */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_COUNT)
+            return bucket;
+        int shift = bucket / SUB_COUNT - 1;
+        long low = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    void record(long value) {
+        Recorder r = recorders[StripedCounter.stripe(mask)];
+        int bucket = bucket(value);
+        synchronized (r) {
+            r.counts[bucket]++;
+            r.count++;
+            if (value > r.max)
+                r.max = value;
+        }
+    }
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < recorders.length; i++)
+            synchronized (recorders[i]) {
+                count += recorders[i].count;
+            }
+        return count;
+    }
+
+    /**
+     * Returns the value, which is not exceeded by the specified percentage
+     * of recorded values.
+     */
+    long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile: " + percentile);
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long max = 0;
+        for (int i = 0; i < recorders.length; i++) {
+            Recorder r = recorders[i];
+            synchronized (r) {
+                for (int j = 0; j < BUCKETS; j++)
+                    counts[j] += r.counts[j];
+                count += r.count;
+                max = Math.max(max, r.max);
+            }
+        }
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile * count / 100));
+        long sum = 0;
+        for (int j = 0; j < BUCKETS; j++) {
+            sum += counts[j];
+            if (sum >= rank)
+                return Math.min(highestValue(j), max);
+        }
+        return max;
+    }
+
+    void reset() {
+        for (int i = 0; i < recorders.length; i++) {
+            Recorder r = recorders[i];
+            synchronized (r) {
+                r.counts = new long[BUCKETS];
+                r.count = 0;
+                r.max = 0;
+            }
+        }
+    }
+
+    private static final class Recorder {
+        long[] counts = new long[BUCKETS];
+
+        long count;
+
+        long max;
+    }
+}
@@ -0,0 +1,406 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.net.NetMetrics;
+
+/**
+ * Metrics of one association, which also updates the aggregated metrics of
+ * all associations.
+ *
+ * @version $Revision$
+ */
+final class NetMetricsImpl implements NetMetrics {
+
+    /** Aggregated metrics of all associations. */
+    static final NetMetricsImpl GLOBAL = new NetMetricsImpl(null, 16);
+
+    private static final Object[] NO_ARGS = {};
+
+    private static final Method NANO_TIME = nanoTime();
+
+    private final NetMetricsImpl parent;
+
+    private final int stripes;
+
+    private final StripedCounter bytesReceived;
+
+    private final StripedCounter bytesSent;
+
+    private final StripedCounter pdusReceived;
+
+    private final StripedCounter pdusSent;
+
+    private final StripedCounter dimsesReceived;
+
+    private final StripedCounter dimsesSent;
+
+    private final StripedCounter rejected;
+
+    private final StripedCounter aborted;
+
+    private final Object pendingLock = new Object();
+
+    private int pending = 0;
+
+    private int maxPending = 0;
+
+    /** SOP Class UID -> SOPClassMetrics, replaced on update */
+    private volatile Map sopClasses = Collections.EMPTY_MAP;
+
+    NetMetricsImpl(NetMetricsImpl parent, int stripes) {
+        this.parent = parent;
+        this.stripes = stripes;
+        this.bytesReceived = new StripedCounter(stripes);
+        this.bytesSent = new StripedCounter(stripes);
+        this.pdusReceived = new StripedCounter(stripes);
+        this.pdusSent = new StripedCounter(stripes);
+        this.dimsesReceived = new StripedCounter(stripes);
+        this.dimsesSent = new StripedCounter(stripes);
+        this.rejected = new StripedCounter(stripes);
+        this.aborted = new StripedCounter(stripes);
+    }
+
+    /** Returns a new instance for an association. */
+    static NetMetricsImpl newAssociationMetrics() {
+        return new NetMetricsImpl(GLOBAL, 1);
+    }
+
+    private static Method nanoTime() {
+        try {
+            return System.class.getMethod("nanoTime", new Class[0]);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the current value of the most precise available timer in
+     * microseconds. <code>System.nanoTime()</code> is invoked by reflection,
+     * so the class can be loaded by runtimes before Java 5.
+     */
+    static long micros() {
+        if (NANO_TIME != null)
+            try {
+                return ((Long) NANO_TIME.invoke(null, NO_ARGS)).longValue()
+                        / 1000;
+            } catch (Exception e) {
+            }
+        return System.currentTimeMillis() * 1000;
+    }
+
+    /**
+     * Registers the aggregated metrics at the platform MBean server. The
+     * JMX API is accessed by reflection, so the class can be loaded by
+     * runtimes before Java 5.
+     */
+    static void registerMBean(String objectName) {
+        Object server = mbeanServer();
+        try {
+            Object mbean = Class.forName("javax.management.StandardMBean")
+                    .getConstructor(new Class[] { Object.class, Class.class })
+                    .newInstance(new Object[] { GLOBAL, NetMetrics.class });
+            invokeMBeanServer(server, "registerMBean",
+                    new Class[] { Object.class, objectNameClass() },
+                    new Object[] { mbean, toObjectName(objectName) });
+        } catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException(e.toString());
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(e.toString());
+        } catch (InvocationTargetException e) {
+            throw toIllegalArgumentException(e.getTargetException());
+        } catch (Exception e) {
+            throw toIllegalArgumentException(e);
+        }
+    }
+
+    static void unregisterMBean(String objectName) {
+        Object server = mbeanServer();
+        try {
+            invokeMBeanServer(server, "unregisterMBean",
+                    new Class[] { objectNameClass() },
+                    new Object[] { toObjectName(objectName) });
+        } catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException(e.toString());
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(e.toString());
+        } catch (InvocationTargetException e) {
+            throw toIllegalArgumentException(e.getTargetException());
+        } catch (Exception e) {
+            throw toIllegalArgumentException(e);
+        }
+    }
+
+    private static Object mbeanServer() {
+        try {
+            return Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getPlatformMBeanServer", new Class[0])
+                    .invoke(null, NO_ARGS);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException(
+                    "No platform MBean server in Java "
+                            + System.getProperty("java.version"));
+        }
+    }
+
+    private static Class objectNameClass() throws ClassNotFoundException {
+        return Class.forName("javax.management.ObjectName");
+    }
+
+    private static Object toObjectName(String name) throws Exception {
+        return objectNameClass().getConstructor(new Class[] { String.class })
+                .newInstance(new Object[] { name });
+    }
+
+    private static void invokeMBeanServer(Object server, String name,
+            Class[] types, Object[] args) throws Exception {
+        Class.forName("javax.management.MBeanServer").getMethod(name, types)
+                .invoke(server, args);
+    }
+
+    private static IllegalArgumentException toIllegalArgumentException(
+            Throwable e) {
+        IllegalArgumentException iae = new IllegalArgumentException(
+                e.toString());
+        iae.initCause(e);
+        return iae;
+    }
+
+    /** Returns the SOP Class UID, to which the request applies. */
+    static String sopClassUID(Command cmd) {
+        String cuid = cmd.getAffectedSOPClassUID();
+        return cuid != null ? cuid : cmd.getRequestedSOPClassUID();
+    }
+
+    // NetMetrics implementation ---------------------------------------
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getPDUsReceived() {
+        return pdusReceived.sum();
+    }
+
+    public long getPDUsSent() {
+        return pdusSent.sum();
+    }
+
+    public long getDimsesReceived() {
+        return dimsesReceived.sum();
+    }
+
+    public long getDimsesSent() {
+        return dimsesSent.sum();
+    }
+
+    public long getAssociationsRejected() {
+        return rejected.sum();
+    }
+
+    public long getAssociationsAborted() {
+        return aborted.sum();
+    }
+
+    public int getPendingOperations() {
+        synchronized (pendingLock) {
+            return pending;
+        }
+    }
+
+    public int getMaxPendingOperations() {
+        synchronized (pendingLock) {
+            return maxPending;
+        }
+    }
+
+    public String[] getSOPClassUIDs() {
+        Map map = sopClasses;
+        return (String[]) map.keySet().toArray(new String[map.size()]);
+    }
+
+    public long getInvokedOperations(String cuid) {
+        SOPClassMetrics m = (SOPClassMetrics) sopClasses.get(cuid);
+        return m != null ? m.invoked.count() : 0;
+    }
+
+    public long getInvokeLatency(String cuid, double percentile) {
+        SOPClassMetrics m = (SOPClassMetrics) sopClasses.get(cuid);
+        return m != null ? m.invoked.percentile(percentile) : 0;
+    }
+
+    public long getPerformedOperations(String cuid) {
+        SOPClassMetrics m = (SOPClassMetrics) sopClasses.get(cuid);
+        return m != null ? m.performed.count() : 0;
+    }
+
+    public long getPerformLatency(String cuid, double percentile) {
+        SOPClassMetrics m = (SOPClassMetrics) sopClasses.get(cuid);
+        return m != null ? m.performed.percentile(percentile) : 0;
+    }
+
+    public void reset() {
+        bytesReceived.reset();
+        bytesSent.reset();
+        pdusReceived.reset();
+        pdusSent.reset();
+        dimsesReceived.reset();
+        dimsesSent.reset();
+        rejected.reset();
+        aborted.reset();
+        synchronized (pendingLock) {
+            maxPending = pending;
+        }
+        synchronized (this) {
+            sopClasses = Collections.EMPTY_MAP;
+        }
+    }
+
+    public String toString() {
+        return "NetMetrics[pdus=" + getPDUsReceived() + "/" + getPDUsSent()
+                + ", bytes=" + getBytesReceived() + "/" + getBytesSent()
+                + ", dimses=" + getDimsesReceived() + "/" + getDimsesSent()
+                + ", pending=" + getPendingOperations() + "]";
+    }
+
+    // Package protected -----------------------------------------------
+    void pduReceived(int type, long length) {
+        pdusReceived.increment();
+        bytesReceived.add(length);
+        countRejectOrAbort(type);
+        if (parent != null)
+            parent.pduReceived(type, length);
+    }
+
+    void pduSent(int type, long length) {
+        pdusSent.increment();
+        bytesSent.add(length);
+        countRejectOrAbort(type);
+        if (parent != null)
+            parent.pduSent(type, length);
+    }
+
+    void dimseReceived() {
+        dimsesReceived.increment();
+        if (parent != null)
+            parent.dimseReceived();
+    }
+
+    void dimseSent() {
+        dimsesSent.increment();
+        if (parent != null)
+            parent.dimseSent();
+    }
+
+    void operationInvoked() {
+        synchronized (pendingLock) {
+            if (++pending > maxPending)
+                maxPending = pending;
+        }
+        if (parent != null)
+            parent.operationInvoked();
+    }
+
+    /**
+     * Records the completion of an invoked operation.
+     *
+     * @param cuid SOP Class UID, or <code>null</code>, if the operation was
+     *        aborted, which is not recorded in the histogram
+     */
+    void operationCompleted(String cuid, long latency) {
+        synchronized (pendingLock) {
+            if (pending > 0)
+                --pending;
+        }
+        if (cuid != null)
+            sopClassMetrics(cuid).invoked.record(latency);
+        if (parent != null)
+            parent.operationCompleted(cuid, latency);
+    }
+
+    void operationPerformed(String cuid, long latency) {
+        sopClassMetrics(cuid).performed.record(latency);
+        if (parent != null)
+            parent.operationPerformed(cuid, latency);
+    }
+
+    // Private ---------------------------------------------------------
+    private void countRejectOrAbort(int type) {
+        if (type == 3)
+            rejected.increment();
+        else if (type == 7)
+            aborted.increment();
+    }
+
+    private SOPClassMetrics sopClassMetrics(String cuid) {
+        SOPClassMetrics m = (SOPClassMetrics) sopClasses.get(cuid);
+        if (m != null)
+            return m;
+        synchronized (this) {
+            m = (SOPClassMetrics) sopClasses.get(cuid);
+            if (m == null) {
+                HashMap map = new HashMap(sopClasses);
+                map.put(cuid, m = new SOPClassMetrics(stripes));
+                sopClasses = map;
+            }
+            return m;
+        }
+    }
+
+    private static final class SOPClassMetrics {
+        final LatencyHistogram invoked;
+
+        final LatencyHistogram performed;
+
+        SOPClassMetrics(int stripes) {
+            invoked = new LatencyHistogram(stripes);
+            performed = new LatencyHistogram(stripes);
+        }
+    }
+}
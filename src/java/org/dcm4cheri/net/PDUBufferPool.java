@@ -0,0 +1,132 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of receive buffers for P-DATA-TF PDUs, shared by all associations.
+ * Buffers are grouped in size classes, which capacity is a power of two
+ * plus the length of the PDU header, so PDUs of the usual maximal lengths
+ * fit exactly into one class.
+ *
+ * @version $Revision$
+ */
+final class PDUBufferPool {
+
+    private static final int HEADER_LENGTH = 6;
+
+    private static final int MIN_SHIFT = 12; // 4 KB
+
+    private static final int MAX_SHIFT = 21; // 2 MB
+
+    private static final long DEF_MAX_POOLED_BYTES = 32L << 20;
+
+    private static final PDUBufferPool instance =
+            new PDUBufferPool(DEF_MAX_POOLED_BYTES);
+
+    private final ArrayList[] free = new ArrayList[MAX_SHIFT - MIN_SHIFT + 1];
+
+    private final long maxPooledBytes;
+
+    private long pooledBytes = 0L;
+
+    static PDUBufferPool getInstance() {
+        return instance;
+    }
+
+    PDUBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = 0; i < free.length; i++)
+            free[i] = new ArrayList();
+    }
+
+    private static int sizeClass(int len) {
+        int shift = MIN_SHIFT;
+        while ((1 << shift) + HEADER_LENGTH < len)
+            if (++shift > MAX_SHIFT)
+                return -1;
+        return shift - MIN_SHIFT;
+    }
+
+    private static int capacity(int sizeClass) {
+        return (1 << (MIN_SHIFT + sizeClass)) + HEADER_LENGTH;
+    }
+
+    /**
+     * Returns a buffer with at least the specified length. Buffers larger
+     * than the largest size class are not pooled.
+     */
+    byte[] allocate(int len) {
+        int c = sizeClass(len);
+        if (c < 0)
+            return new byte[len];
+        synchronized (this) {
+            ArrayList l = free[c];
+            if (!l.isEmpty()) {
+                byte[] b = (byte[]) l.remove(l.size() - 1);
+                pooledBytes -= b.length;
+                return b;
+            }
+        }
+        return new byte[capacity(c)];
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not access the buffer
+     * afterwards. Buffers, which size does not match a size class, are
+     * ignored, as well as buffers exceeding the maximal number of pooled
+     * bytes.
+     */
+    void release(byte[] b) {
+        int c = sizeClass(b.length);
+        if (c < 0 || b.length != capacity(c))
+            return;
+        synchronized (this) {
+            if (pooledBytes + b.length > maxPooledBytes)
+                return;
+            free[c].add(b);
+            pooledBytes += b.length;
+        }
+    }
+
+    synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+}
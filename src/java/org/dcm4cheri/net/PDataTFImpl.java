@@ -41,6 +41,8 @@ package org.dcm4cheri.net;
 import org.dcm4che.net.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 /**
@@ -56,8 +58,16 @@ final class PDataTFImpl implements PDataTF {
    private int pdulen;
    private int wpos;
    private final LinkedList pdvs = new LinkedList();
-   private final Iterator it;
+   private final boolean readOnly;
+   private int rpos;
+   private boolean released = false;
    private PDVImpl curPDV = null;
+   // value bytes of the current PDV, which are written after buf
+   private byte[] extBuf = null;
+   private int extOff;
+   private FileChannel extFile = null;
+   private long extPos;
+   private int extLen = 0;
    
    static PDataTFImpl parse(UnparsedPDUImpl raw) throws PDUException {
       if (raw.buffer() == null) {
@@ -73,18 +83,22 @@ final class PDataTFImpl implements PDataTF {
       this.pdulen = pdulen;
       this.wpos = pdulen + 12;
       this.buf = buf;
+      this.readOnly = true;
+      this.rpos = 6;
+      // validate PDV lengths, PDVs are created on demand by readPDV()
       int off = 6;
       while (off <= pdulen) {
-         PDVImpl pdv = new PDVImpl(off);
-         pdvs.add(pdv);
-         off += 4 + pdv.length();
+         int pdvlen = pdvLength(off);
+         if (pdvlen < 2 || pdvlen > pdulen) {
+            break;
+         }
+         off += 4 + pdvlen;
       }
       if (off != pdulen + 6) {
          throw new PDUException("Illegal " + toString(),
          new AAbortImpl(AAbort.SERVICE_PROVIDER,
          AAbort.INVALID_PDU_PARAMETER_VALUE));
       }
-      this.it = pdvs.iterator();
    }
    
    PDataTFImpl(int maxLength) {
@@ -98,23 +112,55 @@ final class PDataTFImpl implements PDataTF {
       this.pdulen = 0;
       this.wpos = 12;
       this.buf = new byte[6 + maxLength];
-      this.it = null;
+      this.readOnly = false;
    }
    
    public void clear() {
-      if (it != null) {
+      if (readOnly) {
          throw new IllegalStateException("P-DATA-TF read only");
       }
       pdulen = 0;
       wpos = 12;
       pdvs.clear();
+      extBuf = null;
+      extFile = null;
+      extLen = 0;
+   }
+   
+   /** Returns the length of the PDU including the PDU header. */
+   final int pduLength() {
+      return pdulen + 6;
    }
    
    public PDV readPDV() {
-      if (it == null) {
+      if (!readOnly) {
          throw new IllegalStateException("P-DATA-TF write only");
       }
-      return it.hasNext() ? (PDV)it.next() : null;
+      if (rpos > pdulen) {
+         return null;
+      }
+      PDVImpl pdv = new PDVImpl(rpos);
+      rpos += 4 + pdv.length();
+      return pdv;
+   }
+   
+   /**
+    * Returns the receive buffer to the shared pool, after all PDVs were
+    * read. Neither this P-DATA-TF nor its PDVs may be accessed afterwards.
+    */
+   void release() {
+      if (!readOnly || released) {
+         return;
+      }
+      released = true;
+      PDUBufferPool.getInstance().release(buf);
+   }
+   
+   private int pdvLength(int off) {
+      return ((buf[off] & 0xff) << 24)
+      | ((buf[off+1] & 0xff) << 16)
+      | ((buf[off+2] & 0xff) << 8)
+      | ((buf[off+3] & 0xff) << 0);
    }
    
    public String toString(boolean verbose) {
@@ -127,6 +173,18 @@ final class PDataTFImpl implements PDataTF {
    
    StringBuffer toStringBuffer(StringBuffer sb) {
       sb.append("P-DATA-TF[pdulen=").append(pdulen).append("]");
+      if (readOnly) {
+         if (released) {
+            return sb.append("(released)");
+         }
+         for (int off = 6, pdvlen; off <= pdulen
+               && (pdvlen = pdvLength(off)) >= 2 && pdvlen <= pdulen;
+               off += 4 + pdvlen) {
+            sb.append("\n\t");
+            toStringBuffer(off, sb);
+         }
+         return sb;
+      }
       Iterator it = pdvs.iterator();
       while (it.hasNext()) {
          sb.append("\n\t").append(it.next());
@@ -135,17 +193,17 @@ final class PDataTFImpl implements PDataTF {
    }
    
    public final int free() {
-      return buf.length - wpos;
+      return buf.length - wpos - extLen;
    }
    
    public void openPDV(int pcid, boolean cmd) {
-      if (it != null) {
+      if (readOnly) {
          throw new IllegalStateException("P-DATA-TF read only");
       }
       if (curPDV != null) {
          throw new IllegalStateException("Open PDV " + curPDV);
       }
-      if (free() < 0) {
+      if (free() < 0 || extLen != 0) {
          throw new IllegalStateException("Maximal length of PDU reached");
       }
       curPDV = new PDVImpl(6 + pdulen);
@@ -159,7 +217,7 @@ final class PDataTFImpl implements PDataTF {
    }
    
    boolean isEmpty() {
-      return pdvs.isEmpty();
+      return readOnly ? pdulen == 0 : pdvs.isEmpty();
    }
    
    public void closePDV(boolean last) {
@@ -174,26 +232,86 @@ final class PDataTFImpl implements PDataTF {
    }
    
    public final boolean write(int b) {
-      if (curPDV == null) {
-         throw new IllegalStateException("No open PDV");
-      }
-      if (wpos >= buf.length) return false;
+      checkWritable();
+      if (free() <= 0) return false;
       buf[wpos++] = (byte)b;
       ++pdulen;
       return true;
    }
    
    public final int write(byte[] b, int off, int len) {
-      if (curPDV == null) {
-         throw new IllegalStateException("No open PDV");
-      }
-      int wlen = Math.min(len, buf.length - wpos);
+      checkWritable();
+      int wlen = Math.min(len, free());
       System.arraycopy(b, off, buf, wpos, wlen);
       wpos += wlen;
       pdulen += wlen;
       return wlen;
    }
    
+   /**
+    * Reads <code>len</code> bytes of the file at <code>pos</code> into the
+    * current PDV.
+    */
+   final void write(FileChannel src, long pos, int len) throws IOException {
+      checkWritable();
+      if (len > free()) {
+         throw new IllegalArgumentException("len:" + len);
+      }
+      ByteBuffer bb = ByteBuffer.wrap(buf, wpos, len);
+      while (bb.hasRemaining()) {
+         if (src.read(bb, pos + bb.position() - wpos) < 0) {
+            throw new EOFException();
+         }
+      }
+      wpos += len;
+      pdulen += len;
+   }
+   
+   /**
+    * Appends <code>len</code> bytes of <code>b</code> to the current PDV
+    * without copying them. The bytes are written after the buffered content
+    * of the PDU, so the PDV can not be continued afterwards and the PDU has
+    * to be written, before <code>b</code> is modified.
+    */
+   final void attach(byte[] b, int off, int len) {
+      checkAttachable(len);
+      extBuf = b;
+      extOff = off;
+      extLen = len;
+      pdulen += len;
+   }
+   
+   /**
+    * Appends <code>len</code> bytes of the file at <code>pos</code> to the
+    * current PDV. The bytes are transferred from the file, when the PDU is
+    * written.
+    * 
+    * @see #attach(byte[], int, int)
+    */
+   final void attach(FileChannel src, long pos, int len) {
+      checkAttachable(len);
+      extFile = src;
+      extPos = pos;
+      extLen = len;
+      pdulen += len;
+   }
+   
+   private void checkWritable() {
+      if (curPDV == null) {
+         throw new IllegalStateException("No open PDV");
+      }
+      if (extLen != 0) {
+         throw new IllegalStateException("PDV with attached value");
+      }
+   }
+   
+   private void checkAttachable(int len) {
+      checkWritable();
+      if (len > free()) {
+         throw new IllegalArgumentException("len:" + len);
+      }
+   }
+   
    public void writeTo(OutputStream out) throws IOException {
       if (curPDV != null) {
          throw new IllegalStateException("Open PDV " + curPDV);
@@ -204,7 +322,43 @@ final class PDataTFImpl implements PDataTF {
       buf[3] = (byte)(pdulen >> 16);
       buf[4] = (byte)(pdulen >> 8);
       buf[5] = (byte)(pdulen >> 0);
-      out.write(buf, 0, pdulen + 6);
+      int len = pdulen + 6 - extLen;
+      if (extLen == 0) {
+         out.write(buf, 0, len);
+      } else if (out instanceof ChannelOutputStream) {
+         ChannelOutputStream cout = (ChannelOutputStream) out;
+         if (extBuf != null) {
+            cout.write(new ByteBuffer[] {
+               ByteBuffer.wrap(buf, 0, len),
+               ByteBuffer.wrap(extBuf, extOff, extLen) });
+         } else {
+            cout.write(buf, 0, len);
+            cout.transferFrom(extFile, extPos, extLen);
+         }
+      } else {
+         out.write(buf, 0, len);
+         if (extBuf != null) {
+            out.write(extBuf, extOff, extLen);
+         } else {
+            copy(extFile, extPos, extLen, out);
+         }
+      }
+   }
+   
+   private static void copy(FileChannel src, long pos, int len,
+         OutputStream out) throws IOException {
+      byte[] b = new byte[Math.min(len, 8192)];
+      ByteBuffer bb = ByteBuffer.wrap(b);
+      while (len > 0) {
+         bb.clear().limit(Math.min(len, b.length));
+         int n = src.read(bb, pos);
+         if (n < 0) {
+            throw new EOFException();
+         }
+         out.write(b, 0, n);
+         pos += n;
+         len -= n;
+      }
    }
    
    final class PDVImpl implements PDataTF.PDV {
@@ -242,14 +396,11 @@ final class PDataTFImpl implements PDataTF {
       }
       
       final void close() {
-         length(wpos - off - 4);
+         length(wpos + extLen - off - 4);
       }
       
       public final int length() {
-         return ((buf[off] & 0xff) << 24)
-         | ((buf[off+1] & 0xff) << 16)
-         | ((buf[off+2] & 0xff) << 8)
-         | ((buf[off+3] & 0xff) << 0);
+         return pdvLength(off);
       }
       
       public final int pcid() {
@@ -267,17 +418,36 @@ final class PDataTFImpl implements PDataTF {
       public final InputStream getInputStream() {
          return new ByteArrayInputStream(buf, off + 6, length() - 2);
       }
+      
+      /** Returns the buffer containing the value of the PDV. */
+      final byte[] buffer() {
+         return buf;
+      }
+      
+      /** Returns the offset of the value of the PDV in {@link #buffer()}. */
+      final int valueOffset() {
+         return off + 6;
+      }
+      
+      /** Returns the length of the value of the PDV. */
+      final int valueLength() {
+         return length() - 2;
+      }
            
       public String toString() {
          return toStringBuffer(new StringBuffer()).toString();
       }
       
       StringBuffer toStringBuffer(StringBuffer sb) {
-         return sb.append("PDV[pc-").append(pcid())
-         .append(cmd() ? ",cmd" : ",data")
-         .append(last() ? "(last),off=" : ",off=").append(off)
-         .append(",pdvlen=").append(length())
-         .append("]");
+         return PDataTFImpl.this.toStringBuffer(off, sb);
       }
    }
+   
+   private StringBuffer toStringBuffer(int off, StringBuffer sb) {
+      return sb.append("PDV[pc-").append(buf[off+4] & 0xFF)
+      .append((buf[off+5] & 1) != 0 ? ",cmd" : ",data")
+      .append((buf[off+5] & 2) != 0 ? "(last),off=" : ",off=").append(off)
+      .append(",pdvlen=").append(pdvLength(off))
+      .append("]");
+   }
 }
@@ -71,6 +71,19 @@ final class PresContextImpl implements PresContext {
         this.asuid = asuid;
         this.tsuids = new ArrayList(Arrays.asList(tsuids));
     }
+
+    /**
+     * Creates a presentation context, which shares the specified list of
+     * transfer syntaxes. The list must not be modified afterwards.
+     */
+    PresContextImpl(int type, int pcid, int result, String asuid,
+            List tsuids) {
+        this.type = type;
+        this.pcid = pcid;
+        this.result = result;
+        this.asuid = asuid;
+        this.tsuids = tsuids;
+    }
     
     PresContextImpl(int type, DataInputStream din, int len)
             throws IOException, PDUException {
@@ -0,0 +1,107 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.net;
+
+/**
+ * Counter, which spreads updates of different threads over several cells,
+ * so concurrent updates rarely contend for the same lock.
+ *
+ * @version $Revision$
+ */
+final class StripedCounter {
+
+    private final Cell[] cells;
+
+    private final int mask;
+
+    /**
+     * @param stripes number of cells; rounded up to a power of two
+     */
+    StripedCounter(int stripes) {
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+        this.cells = new Cell[n];
+        this.mask = n - 1;
+        for (int i = 0; i < n; i++)
+            cells[i] = new Cell();
+    }
+
+    /** Returns the stripe of the current thread for the specified mask. */
+    static int stripe(int mask) {
+        if (mask == 0)
+            return 0;
+        int h = System.identityHashCode(Thread.currentThread());
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long n) {
+        Cell cell = cells[stripe(mask)];
+        synchronized (cell) {
+            cell.value += n;
+        }
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length; i++)
+            synchronized (cells[i]) {
+                sum += cells[i].value;
+            }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < cells.length; i++)
+            synchronized (cells[i]) {
+                cells[i].value = 0;
+            }
+    }
+
+    private static final class Cell {
+        long value;
+
+        // padding, so cells do not share cache lines
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -54,22 +54,33 @@ final class UnparsedPDUImpl {
     
     /** Creates a new instance of RawPDU */
     public UnparsedPDUImpl(InputStream in, byte[] buf) throws IOException {
+        this(in, buf, 0);
+    }
+
+    /**
+     * Reads a PDU into the specified buffer. If it is too small, the PDU is
+     * read into a buffer of the shared pool, if it is a P-DATA-TF, or into
+     * a new buffer otherwise.
+     *
+     * @param maxLength maximal accepted PDU length in addition to
+     *        {@link #MAX_LENGTH} and the length of the buffer
+     */
+    UnparsedPDUImpl(InputStream in, byte[] buf, int maxLength)
+            throws IOException {
         if (buf == null || buf.length < 6) {
             buf = new byte[10];
         }
         readFully(in, buf, 0, 6);
         this.type = buf[0] & 0xFF;
-        this.len = ((buf[2] & 0xff) << 24)
-                | ((buf[3] & 0xff) << 16)
-                | ((buf[4] & 0xff) << 8)
-                | ((buf[5] & 0xff) << 0);
-        if ((len & 0xFFFFFFFFL) > Math.max(buf.length, MAX_LENGTH)) {
+        this.len = length(buf);
+        if ((len & 0xFFFFFFFFL) > Math.max(Math.max(buf.length, maxLength),
+                MAX_LENGTH)) {
 //            skipFully(in, len & 0xFFFFFFFFL);
             this.buf = null;
             return;
         }
         if (buf.length < 6 + len) {
-            this.buf = new byte[6 + len];
+            this.buf = allocate(type, 6 + len);
             System.arraycopy(buf, 0, this.buf, 0, 6);
         } else {
             this.buf = buf;
@@ -77,6 +88,40 @@ final class UnparsedPDUImpl {
         readFully(in, this.buf, 6, len);
     }
 
+    /**
+     * Creates a new instance from a completely received PDU. The buffer may
+     * be larger than the PDU.
+     */
+    UnparsedPDUImpl(byte[] buf) {
+        this.buf = buf;
+        this.type = buf[0] & 0xFF;
+        this.len = length(buf);
+    }
+
+    static int length(byte[] header) {
+        return ((header[2] & 0xff) << 24)
+                | ((header[3] & 0xff) << 16)
+                | ((header[4] & 0xff) << 8)
+                | ((header[5] & 0xff) << 0);
+    }
+
+    /**
+     * Allocates the receive buffer for a PDU of the specified type and
+     * total length.
+     */
+    static byte[] allocate(int type, int len) {
+        // other PDUs may keep the buffer, so only P-DATA-TF are pooled
+        return type == 4 ? PDUBufferPool.getInstance().allocate(len)
+                : new byte[len];
+    }
+
+    /** Creates a new instance for a PDU, which exceeds the maximal length. */
+    UnparsedPDUImpl(int type, int len) {
+        this.buf = null;
+        this.type = type;
+        this.len = len;
+    }
+
     public final int type() {
         return type;
     }
@@ -40,14 +40,23 @@ package org.dcm4cheri.server;
 
 import org.dcm4che.server.DcmHandler;
 import org.dcm4che.net.AAssociateAC;
+import org.dcm4che.net.AAssociateRJ;
+import org.dcm4che.net.AAssociateRJException;
+import org.dcm4che.net.AdmissionController;
 import org.dcm4che.net.Association;
+import org.dcm4che.net.ActiveAssociation;
 import org.dcm4che.net.AssociationListener;
+import org.dcm4che.net.AssociationReactor;
 import org.dcm4che.net.AcceptorPolicy;
 import org.dcm4che.net.DcmServiceRegistry;
 import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.Dimse;
+import org.dcm4che.net.PDU;
+import org.dcm4che.util.TaskExecutor;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 
@@ -65,14 +74,63 @@ class DcmHandlerImpl implements DcmHandler
     private final static AssociationFactory fact =
             AssociationFactory.getInstance();
 
+    /** Association property marking associations counted by the quotas */
+    private final static String ADMITTED = "DcmHandler.admitted";
+
     private final LinkedList listeners = new LinkedList();
     private AcceptorPolicy policy;
     private DcmServiceRegistry services;
 
     private int rqTimeout = 5000;
+    private int rejectTimeout = 500;
     private int dimseTimeout = 0;
     private int soCloseDelay = 500;
     private boolean packPDVs = false;
+    private AssociationReactor reactor = null;
+    private TaskExecutor executor = TaskExecutor.getDefault();
+    private int maxAssociations = 0;
+    private int maxAssociationsPerCallingAET = 0;
+    /** Calling AET -> Integer quota */
+    private final HashMap quotas = new HashMap();
+    /** Calling AET -> int[] number of associations; guards all counters */
+    private final HashMap counts = new HashMap();
+    private int numAssociations = 0;
+    private int numPending = 0;
+    private long rejectedCount = 0;
+
+    private final AdmissionController admission =
+        new AdmissionController() {
+            public void admit(Association assoc) throws AAssociateRJException
+            {
+                DcmHandlerImpl.this.admit(assoc);
+            }
+        };
+
+    private final AdmissionController rejectAll =
+        new AdmissionController() {
+            public void admit(Association assoc) throws AAssociateRJException
+            {
+                synchronized (counts) {
+                    ++rejectedCount;
+                }
+                throw newLocalLimitExceeded();
+            }
+        };
+
+    /** Releases the quota of admitted associations on close */
+    private final AssociationListener releaser =
+        new AssociationListener() {
+            public void write(Association src, PDU pdu) {}
+            public void received(Association src, PDU pdu) {}
+            public void write(Association src, Dimse dimse) {}
+            public void received(Association src, Dimse dimse) {}
+            public void error(Association src, IOException ioe) {}
+            public void closing(Association src) {}
+            public void closed(Association src)
+            {
+                release(src);
+            }
+        };
 
     // Static --------------------------------------------------------
 
@@ -165,6 +223,21 @@ class DcmHandlerImpl implements DcmHandler
     }
 
 
+    public void setRejectTimeout(int timeout)
+    {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout: " + timeout);
+        }
+        this.rejectTimeout = timeout;
+    }
+
+
+    public int getRejectTimeout()
+    {
+        return rejectTimeout;
+    }
+
+
     /**
      *  Gets the dimseTimeout attribute of the DcmHandlerImpl object
      *
@@ -227,6 +300,105 @@ class DcmHandlerImpl implements DcmHandler
     public void setPackPDVs(boolean packPDVs) {
         this.packPDVs = packPDVs;
     }
+
+    /** Getter for property associationReactor.
+     * @return Value of property associationReactor.
+     */
+    public AssociationReactor getAssociationReactor() {
+        return reactor;
+    }
+
+    /** Setter for property associationReactor.
+     * @param reactor New value of property associationReactor.
+     */
+    public void setAssociationReactor(AssociationReactor reactor) {
+        this.reactor = reactor;
+    }
+
+    /** Getter for property taskExecutor.
+     * @return Value of property taskExecutor.
+     */
+    public TaskExecutor getTaskExecutor() {
+        return executor;
+    }
+
+    /** Setter for property taskExecutor.
+     * @param executor New value of property taskExecutor.
+     */
+    public void setTaskExecutor(TaskExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+    }
+
+    public int getMaxAssociations() {
+        return maxAssociations;
+    }
+
+    public void setMaxAssociations(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max: " + max);
+        }
+        this.maxAssociations = max;
+    }
+
+    public int getMaxAssociationsPerCallingAET() {
+        return maxAssociationsPerCallingAET;
+    }
+
+    public void setMaxAssociationsPerCallingAET(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max: " + max);
+        }
+        this.maxAssociationsPerCallingAET = max;
+    }
+
+    public int getMaxAssociationsForCallingAET(String aet) {
+        synchronized (counts) {
+            Integer quota = (Integer) quotas.get(aet);
+            return quota != null ? quota.intValue()
+                    : maxAssociationsPerCallingAET;
+        }
+    }
+
+    public void setMaxAssociationsForCallingAET(String aet, int max) {
+        if (max < -1) {
+            throw new IllegalArgumentException("max: " + max);
+        }
+        synchronized (counts) {
+            if (max == -1) {
+                quotas.remove(aet);
+            } else {
+                quotas.put(aet, new Integer(max));
+            }
+        }
+    }
+
+    public int getNumAssociations() {
+        synchronized (counts) {
+            return numAssociations;
+        }
+    }
+
+    public int getNumAssociations(String aet) {
+        synchronized (counts) {
+            int[] count = (int[]) counts.get(aet);
+            return count != null ? count[0] : 0;
+        }
+    }
+
+    public int getNumPendingAssociations() {
+        synchronized (counts) {
+            return numPending;
+        }
+    }
+
+    public long getRejectedCount() {
+        synchronized (counts) {
+            return rejectedCount;
+        }
+    }
     // DcmHandler implementation -------------------------------------
     /**
      *  Description of the Method
@@ -237,16 +409,30 @@ class DcmHandlerImpl implements DcmHandler
     public void handle(Socket s)
         throws IOException
     {
-        Association assoc = fact.newAcceptor(s);
-        assoc.setRqTimeout(rqTimeout);
-        assoc.setDimseTimeout(dimseTimeout);
-        assoc.setSoCloseDelay(soCloseDelay);
-        assoc.setPackPDVs(packPDVs);
-        for (Iterator it = listeners.iterator(); it.hasNext(); ) {
-            assoc.addAssociationListener((AssociationListener) it.next());
+        Association assoc = newAcceptor(s);
+        assoc.addAssociationListener(releaser);
+        PDU rp;
+        synchronized (counts) {
+            ++numPending;
         }
-        if (assoc.accept(policy) instanceof AAssociateAC) {
-            fact.newActiveAssociation(assoc, services).run();
+        try {
+            rp = assoc.accept(policy, admission);
+        } finally {
+            synchronized (counts) {
+                --numPending;
+            }
+        }
+        if (!(rp instanceof AAssociateAC)) {
+            release(assoc);
+        } else {
+            ActiveAssociation active =
+                    fact.newActiveAssociation(assoc, services);
+            if (reactor != null && s.getChannel() != null) {
+                active.start(reactor);
+            } else {
+                active.setTaskExecutor(executor);
+                active.run();
+            }
         }
     }
 
@@ -281,6 +467,24 @@ class DcmHandlerImpl implements DcmHandler
         return listeners.iterator();
     }
 
+
+    /**
+     *  Rejects the association request with A-ASSOCIATE-RJ (rejected-transient,
+     *  local limit exceeded).
+     *
+     *@param  s                Description of the Parameter
+     *@exception  IOException  Description of the Exception
+     */
+    public void reject(Socket s)
+        throws IOException
+    {
+        // invoked by the accepting thread, which must not wait long
+        Association assoc = newAcceptor(s);
+        assoc.setRqTimeout(rejectTimeout);
+        assoc.setSoCloseDelay(0);
+        assoc.accept(policy, rejectAll);
+    }
+
     /**
      *  Gets the sockedClosedByHandler attribute of the DcmHandlerImpl object
      *
@@ -296,6 +500,65 @@ class DcmHandlerImpl implements DcmHandler
     // Protected -----------------------------------------------------
 
     // Private -------------------------------------------------------
+    private Association newAcceptor(Socket s)
+        throws IOException
+    {
+        Association assoc = fact.newAcceptor(s);
+        assoc.setRqTimeout(rqTimeout);
+        assoc.setDimseTimeout(dimseTimeout);
+        assoc.setSoCloseDelay(soCloseDelay);
+        assoc.setPackPDVs(packPDVs);
+        for (Iterator it = listeners.iterator(); it.hasNext(); ) {
+            assoc.addAssociationListener((AssociationListener) it.next());
+        }
+        return assoc;
+    }
+
+
+    private static AAssociateRJException newLocalLimitExceeded()
+    {
+        return new AAssociateRJException(AAssociateRJ.REJECTED_TRANSIENT,
+                AAssociateRJ.SERVICE_PROVIDER_PRES,
+                AAssociateRJ.LOCAL_LIMIT_EXCEEDED);
+    }
+
+
+    private void admit(Association assoc)
+        throws AAssociateRJException
+    {
+        String aet = assoc.getCallingAET();
+        synchronized (counts) {
+            int[] count = (int[]) counts.get(aet);
+            int quota = getMaxAssociationsForCallingAET(aet);
+            if (maxAssociations != 0 && numAssociations >= maxAssociations
+                    || quota != 0 && count != null && count[0] >= quota) {
+                ++rejectedCount;
+                throw newLocalLimitExceeded();
+            }
+            if (count == null) {
+                counts.put(aet, count = new int[1]);
+            }
+            ++count[0];
+            ++numAssociations;
+            assoc.putProperty(ADMITTED, Boolean.TRUE);
+        }
+    }
+
+
+    private void release(Association assoc)
+    {
+        synchronized (counts) {
+            if (!Boolean.TRUE.equals(assoc.getProperty(ADMITTED))) {
+                return;
+            }
+            assoc.putProperty(ADMITTED, Boolean.FALSE);
+            int[] count = (int[]) counts.get(assoc.getCallingAET());
+            if (--count[0] == 0) {
+                counts.remove(assoc.getCallingAET());
+            }
+            --numAssociations;
+        }
+    }
 
     // Inner classes -------------------------------------------------
 }
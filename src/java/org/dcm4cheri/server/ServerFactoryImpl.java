@@ -38,6 +38,8 @@
 
 package org.dcm4cheri.server;
 
+import javax.net.ServerSocketFactory;
+
 import org.dcm4che.server.Server;
 import org.dcm4che.server.UDPServer;
 import org.dcm4che.server.SyslogService;
@@ -87,6 +89,10 @@ public class ServerFactoryImpl extends ServerFactory
    public UDPServer newUDPServer(UDPServer.Handler handler) {
        return new UDPServerImpl(handler);
    }
+
+   public ServerSocketFactory newChannelServerSocketFactory() {
+       return new ChannelServerSocketFactory();
+   }
    
    // Constants -----------------------------------------------------
    
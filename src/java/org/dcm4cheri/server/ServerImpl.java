@@ -44,6 +44,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -59,6 +60,8 @@ import org.apache.log4j.Logger;
 import org.dcm4che.server.Server;
 import org.dcm4che.util.HandshakeFailedEvent;
 import org.dcm4che.util.HandshakeFailedListener;
+import org.dcm4che.util.HandshakeMetrics;
+import org.dcm4che.util.TaskExecutor;
 import org.dcm4cheri.util.LF_ThreadPool;
 
 /**
@@ -81,10 +84,16 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
     private List hcl = null;
     private List hfl = null;
     private ServerSocketFactory ssf = ServerSocketFactory.getDefault();    
+    private TaskExecutor executor = TaskExecutor.getDefault();
+    private TaskExecutor handshakeExecutor = null;
+    private final HandshakeMetrics handshakeMetrics = new HandshakeMetrics();
     private int sslHandshakeSoTimeout = 0;
     private int soRcvBuf;
     private int soSndBuf;
     private boolean tcpNoDelay = true;
+    private int backlog = 0;
+    private boolean rejectIfSaturated = false;
+    private long rejectedCount = 0;
     
     private InetAddress laddr;
     
@@ -222,6 +231,33 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
     public int getNumIdleThreads() {
         return threadPool.waiting();
     }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        if (backlog < 0) {
+            throw new IllegalArgumentException("backlog: " + backlog);
+        }
+        this.backlog = backlog;
+    }
+
+    public boolean isRejectIfSaturated() {
+        return rejectIfSaturated;
+    }
+
+    public void setRejectIfSaturated(boolean reject) {
+        this.rejectIfSaturated = reject;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public HandshakeMetrics getHandshakeMetrics() {
+        return handshakeMetrics;
+    }
     
     public void start(int port) throws IOException {
         start(port, ServerSocketFactory.getDefault());
@@ -237,10 +273,11 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
         checkNotRunning();
         if (log.isInfoEnabled())
             log.info("Start Server listening on " + getLocalAddress() + ":" + port);
-        ss = ssf.createServerSocket(port,0,laddr);
-        new Thread(new Runnable() {
+        ss = ssf.createServerSocket(port,backlog,laddr);
+        threadPool.setTaskExecutor(executor);
+        executor.execute(new Runnable() {
             public void run() { threadPool.join(); }
-        }, name).start();
+        }, name);
     }
     
     public void stop() {
@@ -268,12 +305,54 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
         if (ss == null)
             return;
         
-        Socket s = null;
+        final Socket s;
         try {
             s = ss.accept();
-            if (log.isInfoEnabled()) {
-                log.info("handle - " + s);
+        } catch (Exception e) {
+            if (e instanceof SocketException
+                    || e instanceof ClosedChannelException) {
+                log.info("Blocking ServerSocket.accept method canceled");
+            } else {
+                log.error(e, e);
             }
+            return;
+        }
+        if (log.isInfoEnabled()) {
+            log.info("handle - " + s);
+        }
+        TaskExecutor tmp = handshakeExecutor;
+        if (tmp != null && s instanceof SSLSocket) {
+            // stay leader, the TLS handshake may take a while
+            try {
+                tmp.execute(new Runnable() {
+                    public void run() { handle(s); }
+                }, name + "-" + s.getInetAddress().getHostAddress());
+            } catch (RuntimeException e) {
+                log.error(e, e);
+                try { s.close(); } catch (IOException ignore) {};
+            }
+            return;
+        }
+        if (isSaturated(pool)) {
+            // stay leader, so further connections are refused fast
+            reject(s);
+            return;
+        }
+        // the handshake is performed by the follower, so a slow
+        // client does not block accepting further connections
+        pool.promoteNewLeader();
+        handle(s);
+    }
+    
+    // Y overrides ---------------------------------------------------
+    
+    // Package protected ---------------------------------------------
+    
+    // Protected -----------------------------------------------------
+    
+    // Private -------------------------------------------------------
+    private void handle(Socket s) {
+        try {
             if (s instanceof SSLSocket) {
                 init((SSLSocket) s);
             }
@@ -284,33 +363,41 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
                 s.setTcpNoDelay(tcpNoDelay );
             }
             
-            pool.promoteNewLeader();
             handler.handle(s);
-            if (!handler.isSockedClosedByHandler() && s != null) {
+            if (!handler.isSockedClosedByHandler()) {
                 try { s.close(); } catch (IOException ignore) {}
             }
         } catch (Exception e) {
-            if ((e instanceof SocketException) && (s == null)) {
-                log.info("Blocking ServerSocket.accept method canceled");
-            } else {
-                log.error(e, e);
-            }
-            if (s != null) {
-                try { s.close(); } catch (IOException ignore) {};
-            }
+            log.error(e, e);
+            try { s.close(); } catch (IOException ignore) {};
         }
-        if (log.isInfoEnabled() && s != null) {
+        if (log.isInfoEnabled()) {
             log.info("finished - " + s);
         }
     }
-    
-    // Y overrides ---------------------------------------------------
-    
-    // Package protected ---------------------------------------------
-    
-    // Protected -----------------------------------------------------
-    
-    // Private -------------------------------------------------------
+
+    private boolean isSaturated(LF_ThreadPool pool) {
+        int max = pool.getMaxRunning();
+        return rejectIfSaturated && handler instanceof RejectingHandler
+                && max != 0 && pool.waiting() == 0 && pool.running() >= max;
+    }
+
+    private void reject(Socket s) {
+        synchronized (this) {
+            ++rejectedCount;
+        }
+        if (log.isInfoEnabled()) {
+            log.info("reject - " + s + ", " + getNumClients() + " clients");
+        }
+        try {
+            ((RejectingHandler) handler).reject(s);
+        } catch (IOException e) {
+            log.warn("Failed to reject " + s, e);
+        } finally {
+            try { s.close(); } catch (IOException ignore) {}
+        }
+    }
+
     private void initSendBufferSize(Socket s) throws SocketException {
         int tmp = s.getSendBufferSize();
         if (soSndBuf == 0) {
@@ -347,9 +434,13 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
             }
         }
         InetAddress remoteAddr = s.getInetAddress();
+        long startTime = System.currentTimeMillis();
+        boolean completed = false;
         try {
         	s.setSoTimeout(sslHandshakeSoTimeout);
             s.startHandshake();
+            completed = true;
+            handshakeMetrics.handshakeCompleted(s.getSession(), startTime);
             if (log.isInfoEnabled()) {
                 SSLSession se = s.getSession();
                 try {
@@ -366,6 +457,9 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
                 }
             }
         } catch (IOException e) {
+            if (!completed) {
+                handshakeMetrics.handshakeFailed();
+            }
             if (hfl != null) {
                 HandshakeFailedEvent event = new HandshakeFailedEvent(s,remoteAddr,e);
                 for (int i = 0, n = hfl.size(); i < n; ++i) {
@@ -380,19 +474,21 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
     }
         
     /** Getter for property port.
-     * @return Value of property port.
+     * @return Value of property port, or the port the server is listening
+     * on, if it was started with port 0.
      *
      */
     public int getPort() {
-        return port;
+        ServerSocket tmp = ss;
+        return tmp != null ? tmp.getLocalPort() : port;
     }
     
     /** Setter for property port.
-     * @param port New value of property port.
+     * @param port New value of property port. 0 binds to any free port.
      *
      */
     public void setPort(int port) {
-        if (port <= 0) {
+        if (port < 0) {
             throw new IllegalArgumentException("port: " + port);
         }
         this.port = port;
@@ -416,5 +512,24 @@ class ServerImpl implements LF_ThreadPool.Handler, Server {
         }
         this.ssf = ssf;
     }
+
+    public TaskExecutor getTaskExecutor() {
+        return executor;
+    }
+
+    public void setTaskExecutor(TaskExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+    }
+
+    public TaskExecutor getHandshakeExecutor() {
+        return handshakeExecutor;
+    }
+
+    public void setHandshakeExecutor(TaskExecutor executor) {
+        this.handshakeExecutor = executor;
+    }
     
 }
@@ -40,6 +40,7 @@ package org.dcm4cheri.srom;
 
 import org.dcm4che.data.Dataset;
 import org.dcm4che.data.DcmValueException;
+import org.dcm4che.data.ValueBufferPool;
 import org.dcm4che.dict.Tags;
 
 import org.dcm4che.srom.IconImage;
@@ -85,7 +86,7 @@ class IconImageImpl implements IconImage {
 
     public IconImageImpl(Dataset ds) throws DcmValueException {
         this(ds.getInt(Tags.Rows, -1), ds.getInt(Tags.Columns, -1),
-            ds.getByteBuffer(Tags.PixelData).array());
+            ValueBufferPool.toByteArray(ds.getByteBuffer(Tags.PixelData)));
     }
     
     public static IconImage newIconImage(Dataset ds) throws DcmValueException {
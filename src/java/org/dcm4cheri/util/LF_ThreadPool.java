@@ -39,6 +39,7 @@
 package org.dcm4cheri.util;
 
 import org.apache.log4j.Logger;
+import org.dcm4che.util.TaskExecutor;
 
 /**
  * Leader/Follower Thread Pool 
@@ -72,6 +73,7 @@ public class LF_ThreadPool
    private final int instNo = ++instCount;
    private int threadNo = 0;
    private final String name;
+   private TaskExecutor executor = TaskExecutor.getDefault();
    
    // Static --------------------------------------------------------
    private static int instCount = 0;
@@ -127,6 +129,23 @@ public class LF_ThreadPool
       this.maxWaiting = maxWaiting;
    }
    
+   public TaskExecutor getTaskExecutor()
+   {
+      return executor;
+   }
+   
+   /**
+    * Sets the executor, which provides additional threads, if the current
+    * leader promotes a new leader and there is no waiting follower.
+    */
+   public void setTaskExecutor(TaskExecutor executor)
+   {
+      if (executor == null)
+         throw new NullPointerException();
+      
+      this.executor = executor;
+   }
+   
    public String toString()
    {
       return "LF_ThreadPool-" + instNo + "[leader:"
@@ -241,7 +260,7 @@ public class LF_ThreadPool
    // Protected -----------------------------------------------------
    // may be overloaded to take new thread from convential thread pool
    protected void addThread(Runnable r) {
-       new Thread(r, name + "-" + (++threadNo)).start();
+       executor.execute(r, name + "-" + (++threadNo));
    }
    
    // Private -------------------------------------------------------
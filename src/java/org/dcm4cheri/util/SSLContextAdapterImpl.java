@@ -67,6 +67,7 @@ import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
@@ -75,6 +76,7 @@ import javax.net.ssl.TrustManagerFactory;
 import org.apache.log4j.Logger;
 import org.dcm4che.util.HandshakeFailedEvent;
 import org.dcm4che.util.HandshakeFailedListener;
+import org.dcm4che.util.HandshakeMetrics;
 
 import org.dcm4che.util.SSLContextAdapter;
 
@@ -114,6 +116,10 @@ public class SSLContextAdapterImpl extends SSLContextAdapter
     private SSLServerSocket unboundSSLServerSocket = null;
     private List hcl = null;
     private List hfl = null;
+    private int sessionCacheSize = -1;
+    private int sessionTimeout = -1;
+    private boolean sessionResumption = true;
+    private final HandshakeMetrics handshakeMetrics = new HandshakeMetrics();
 
     // Static --------------------------------------------------------
     /**
@@ -364,6 +370,98 @@ public class SSLContextAdapterImpl extends SSLContextAdapter
     }
 
 
+    /**
+     *  Sets the sessionCacheSize attribute of the SSLContextAdapterImpl object
+     *
+     * @param  size  The new sessionCacheSize value
+     */
+    public void setSessionCacheSize(int size)
+    {
+        if (size < -1) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        this.sessionCacheSize = size;
+        if (!dirty) {
+            initSessionContexts();
+        }
+    }
+
+
+    /**
+     *  Gets the sessionCacheSize attribute of the SSLContextAdapterImpl object
+     *
+     * @return    The sessionCacheSize value
+     */
+    public int getSessionCacheSize()
+    {
+        return sessionCacheSize;
+    }
+
+
+    /**
+     *  Sets the sessionTimeout attribute of the SSLContextAdapterImpl object
+     *
+     * @param  seconds  The new sessionTimeout value
+     */
+    public void setSessionTimeout(int seconds)
+    {
+        if (seconds < -1) {
+            throw new IllegalArgumentException("seconds: " + seconds);
+        }
+        this.sessionTimeout = seconds;
+        if (!dirty) {
+            initSessionContexts();
+        }
+    }
+
+
+    /**
+     *  Gets the sessionTimeout attribute of the SSLContextAdapterImpl object
+     *
+     * @return    The sessionTimeout value
+     */
+    public int getSessionTimeout()
+    {
+        return sessionTimeout;
+    }
+
+
+    /**
+     *  Sets the sessionResumption attribute of the SSLContextAdapterImpl
+     *  object. Only applied by {@link #startHandshake}.
+     *
+     * @param  enable  The new sessionResumption value
+     */
+    public void setSessionResumption(boolean enable)
+    {
+        this.sessionResumption = enable;
+    }
+
+
+    /**
+     *  Gets the sessionResumption attribute of the SSLContextAdapterImpl
+     *  object
+     *
+     * @return    The sessionResumption value
+     */
+    public boolean isSessionResumption()
+    {
+        return sessionResumption;
+    }
+
+
+    /**
+     *  Gets the handshakeMetrics attribute of the SSLContextAdapterImpl
+     *  object
+     *
+     * @return    The handshakeMetrics value
+     */
+    public HandshakeMetrics getHandshakeMetrics()
+    {
+        return handshakeMetrics;
+    }
+
+
     /*
     public void setEnabledCipherSuites(String[] cipherSuites) {
         this.cipherSuites = (String[])cipherSuites.clone();
@@ -459,6 +557,7 @@ public class SSLContextAdapterImpl extends SSLContextAdapter
         if (dirty) {
             ctx.init(kms, tms, random);
             dirty = false;
+            initSessionContexts();
         }
     }
 
@@ -467,6 +566,27 @@ public class SSLContextAdapterImpl extends SSLContextAdapter
     // Protected -----------------------------------------------------
 
     // Private -------------------------------------------------------
+    private void initSessionContexts()
+    {
+        initSessionContext(ctx.getClientSessionContext());
+        initSessionContext(ctx.getServerSessionContext());
+    }
+
+
+    private void initSessionContext(SSLSessionContext sc)
+    {
+        if (sc == null) {
+            return;
+        }
+        if (sessionCacheSize != -1) {
+            sc.setSessionCacheSize(sessionCacheSize);
+        }
+        if (sessionTimeout != -1) {
+            sc.setSessionTimeout(sessionTimeout);
+        }
+    }
+
+
     private String toKeyStoreType(String fname)
     {
         return fname.endsWith(".p12")
@@ -804,8 +924,16 @@ public class SSLContextAdapterImpl extends SSLContextAdapter
 
     public void startHandshake(SSLSocket s) throws IOException {
         InetAddress remoteAddr = s.getInetAddress();
+        long startTime = System.currentTimeMillis();
+        boolean completed = false;
         try {
             s.startHandshake();
+            completed = true;
+            SSLSession session = s.getSession();
+            handshakeMetrics.handshakeCompleted(session, startTime);
+            if (!sessionResumption) {
+                session.invalidate();
+            }
             if (log.isInfoEnabled()) {
                 SSLSession se = s.getSession();
                 try {
@@ -822,6 +950,9 @@ public class SSLContextAdapterImpl extends SSLContextAdapter
                 }
             }
         } catch (IOException e) {
+            if (!completed) {
+                handshakeMetrics.handshakeFailed();
+            }
             if (hfl != null) {
                 HandshakeFailedEvent event = new HandshakeFailedEvent(s, remoteAddr, e);
                 for (int i = 0, n = hfl.size(); i < n; ++i) {
@@ -0,0 +1,130 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4cheri.util;
+
+/**
+ * Counting semaphore. Simplified version of
+ * EDU.oswego.cs.dl.util.concurrent.Semaphore
+ * in Doug Lea's util.concurrent package.
+ *
+ * @version $Revision$
+ */
+public final class Semaphore
+{
+   private long permits;
+
+   public Semaphore(long initialPermits)
+   {
+      this.permits = initialPermits;
+   }
+
+   /** Waits until a permit is available and takes it. */
+   public void acquire() throws InterruptedException
+   {
+      if (Thread.interrupted())
+         throw new InterruptedException();
+      synchronized (this) {
+         try {
+            while (permits <= 0)
+               wait();
+            --permits;
+         } catch (InterruptedException e) {
+            // pass on a notification, which may have been addressed to us
+            notify();
+            throw e;
+         }
+      }
+   }
+
+   /**
+    * Waits at most <code>msecs</code> for a permit and takes it.
+    *
+    * @return <code>true</code>, if a permit was taken
+    */
+   public boolean attempt(long msecs) throws InterruptedException
+   {
+      if (Thread.interrupted())
+         throw new InterruptedException();
+      synchronized (this) {
+         if (permits > 0) {
+            --permits;
+            return true;
+         }
+         if (msecs <= 0)
+            return false;
+         long end = System.currentTimeMillis() + msecs;
+         try {
+            do {
+               wait(msecs);
+               if (permits > 0) {
+                  --permits;
+                  return true;
+               }
+               msecs = end - System.currentTimeMillis();
+            } while (msecs > 0);
+            return false;
+         } catch (InterruptedException e) {
+            // pass on a notification, which may have been addressed to us
+            notify();
+            throw e;
+         }
+      }
+   }
+
+   /** Returns a permit. */
+   public synchronized void release()
+   {
+      ++permits;
+      notify();
+   }
+
+   /** Returns <code>n</code> permits. */
+   public synchronized void release(long n)
+   {
+      if (n < 0)
+         throw new IllegalArgumentException("n: " + n);
+      permits += n;
+      notifyAll();
+   }
+
+   public synchronized long permits()
+   {
+      return permits;
+   }
+}
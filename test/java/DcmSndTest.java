@@ -0,0 +1,151 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.*;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmDecodeParam;
+import org.dcm4che.data.DcmEncodeParam;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.net.ActiveAssociation;
+import org.dcm4che.net.DcmServiceBase;
+import org.dcm4che.net.Dimse;
+import org.dcm4che.server.ServerFactory;
+import org.dcm4che.server.TestServer;
+import org.dcm4che.util.DcmURL;
+
+/**
+ * Sends files by the DcmSnd sample application.
+ *
+ * @version $Revision$
+ */
+public class DcmSndTest extends TestCase {
+
+    public DcmSndTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(DcmSndTest.class);
+    }
+
+    private static final String CUID = UIDs.SecondaryCaptureImageStorage;
+    private static final int PIXEL_DATA_LENGTH = 100000;
+
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+    private byte[] received;
+    private TestServer server;
+
+    protected void setUp() throws Exception {
+        server = new TestServer();
+        server.getPolicy().putPresContext(CUID,
+                new String[] { UIDs.ImplicitVRLittleEndian });
+        server.getServices().bind(CUID, new DcmServiceBase() {
+            protected void doCStore(ActiveAssociation assoc, Dimse rq,
+                    Command rspCmd) throws IOException {
+                Dataset ds = rq.getDataset();
+                synchronized (DcmSndTest.this) {
+                    received = ds.getByteBuffer(Tags.PixelData).array();
+                }
+                rspCmd.putUS(Tags.Status, SUCCESS);
+            }
+        });
+        server.start(ServerFactory.getInstance()
+                .newChannelServerSocketFactory());
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    public void testSendExplicitVRLittleEndian() throws Exception {
+        doTestSend(UIDs.ExplicitVRLittleEndian);
+    }
+
+    public void testSendDeflated() throws Exception {
+        doTestSend(UIDs.DeflatedExplicitVRLittleEndian);
+    }
+
+    private void doTestSend(String tsuid) throws Exception {
+        byte[] pixelData = new byte[PIXEL_DATA_LENGTH];
+        for (int i = 0; i < pixelData.length; i++)
+            pixelData[i] = (byte) (i / 100);
+        Dataset ds = objFact.newDataset();
+        ds.setFileMetaInfo(objFact.newFileMetaInfo(CUID, "1.2.3.4", tsuid));
+        ds.putUI(Tags.SOPClassUID, CUID);
+        ds.putUI(Tags.SOPInstanceUID, "1.2.3.4");
+        ds.putOB(Tags.PixelData, pixelData);
+        File file = File.createTempFile("dcmsnd", ".dcm");
+        File cfgFile = File.createTempFile("dcmsnd", ".cfg");
+        try {
+            ds.writeFile(file,
+                    (DcmEncodeParam) DcmDecodeParam.valueOf(tsuid));
+            FileOutputStream out = new FileOutputStream(cfgFile);
+            try {
+                out.write(("so-close-delay=0\n"
+                        + "pc.1=SecondaryCaptureImageStorage,"
+                        + "ImplicitVRLittleEndian\n").getBytes("US-ASCII"));
+            } finally {
+                out.close();
+            }
+            DcmSnd dcmsnd = new DcmSnd(new Configuration(cfgFile.toURL()),
+                    new DcmURL("dicom", "STORESCP", "DCMSND", TestServer.HOST,
+                            server.getPort()), 2);
+            dcmsnd.send(new String[] { file.getPath() }, 0);
+            synchronized (this) {
+                assertNotNull(received);
+                assertTrue(Arrays.equals(pixelData, received));
+            }
+        } finally {
+            file.delete();
+            cfgFile.delete();
+        }
+    }
+}
@@ -56,11 +56,15 @@ public class PackageTest extends Object {
     
     public static Test suite() {
         TestSuite suite= new TestSuite();
+        suite.addTest(org.dcm4che.client.PackageTest.suite());
         suite.addTest(org.dcm4che.data.PackageTest.suite());
         suite.addTest(org.dcm4che.dict.PackageTest.suite());
         suite.addTest(org.dcm4che.hl7.PackageTest.suite());
+        suite.addTest(org.dcm4che.image.PackageTest.suite());
+        suite.addTest(org.dcm4che.imageio.plugins.PackageTest.suite());
         suite.addTest(org.dcm4che.media.PackageTest.suite());
         suite.addTest(org.dcm4che.net.PackageTest.suite());
+        suite.addTest(org.dcm4che.server.PackageTest.suite());
         suite.addTest(org.dcm4che.srom.PackageTest.suite());
         suite.addTest(org.dcm4che.util.PackageTest.suite());
         return suite;
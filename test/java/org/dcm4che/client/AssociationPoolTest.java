@@ -0,0 +1,203 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.client;
+
+import java.io.InterruptedIOException;
+
+import junit.framework.*;
+
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.net.ActiveAssociation;
+import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.DcmServiceBase;
+import org.dcm4che.net.PresContext;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class AssociationPoolTest extends TestCase {
+
+    public AssociationPoolTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(AssociationPoolTest.class);
+    }
+
+    private static final String AET = "POOLTEST";
+    private static final String HOST = TestServer.HOST;
+    private static final String[] TS = { UIDs.ImplicitVRLittleEndian };
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+    private TestServer server;
+    private int port;
+    private AssociationPool pool;
+
+    protected void setUp() throws Exception {
+        server = new TestServer();
+        server.getPolicy().putPresContext(UIDs.Verification, TS);
+        server.getPolicy().putPresContext(
+                UIDs.StudyRootQueryRetrieveInformationModelFIND, TS);
+        server.getServices().bind(UIDs.Verification,
+                DcmServiceBase.VERIFICATION_SCP);
+        port = server.start();
+        pool = new AssociationPool();
+        pool.setCallingAET("POOLSCU");
+        pool.setSoCloseDelay(0);
+    }
+
+    protected void tearDown() throws Exception {
+        pool.close();
+        server.stop();
+    }
+
+    private void echo(ActiveAssociation active) throws Exception {
+        PresContext pc = AssociationPool.getAcceptedPresContext(active,
+                UIDs.Verification, TS);
+        assertNotNull(pc);
+        assertEquals(0, active.invoke(fact.newDimse(pc.pcid(),
+                objFact.newCommand().initCEchoRQ(
+                        active.getAssociation().nextMsgID())))
+                .get().getCommand().getStatus());
+    }
+
+    public void testReuse() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            ActiveAssociation active = pool.borrow(AET, HOST, port,
+                    UIDs.Verification, TS);
+            echo(active);
+            pool.release(active);
+        }
+        assertEquals(3, pool.getBorrowCount());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(2.f / 3, pool.getReuseRatio(), 0.001f);
+    }
+
+    public void testRenegotiate() throws Exception {
+        ActiveAssociation echoAssoc = pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS);
+        pool.release(echoAssoc);
+        ActiveAssociation findAssoc = pool.borrow(AET, HOST, port,
+                UIDs.StudyRootQueryRetrieveInformationModelFIND, TS);
+        assertNotSame(echoAssoc, findAssoc);
+        assertNotNull(AssociationPool.getAcceptedPresContext(findAssoc,
+                UIDs.StudyRootQueryRetrieveInformationModelFIND, TS));
+        pool.release(findAssoc);
+        assertSame(findAssoc, pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS));
+        // rejected SOP Class is not negotiated again
+        ActiveAssociation mwlAssoc = pool.borrow(AET, HOST, port,
+                UIDs.ModalityWorklistInformationModelFIND, TS);
+        assertNull(AssociationPool.getAcceptedPresContext(mwlAssoc,
+                UIDs.ModalityWorklistInformationModelFIND, TS));
+        pool.release(mwlAssoc);
+        assertSame(mwlAssoc, pool.borrow(AET, HOST, port,
+                UIDs.ModalityWorklistInformationModelFIND, TS));
+        assertEquals(3, pool.getCreatedCount());
+    }
+
+    public void testProposeRecentlyRequested() throws Exception {
+        pool.setMaxAssociationsPerPeer(1);
+        // more SOP Classes than Presentation Contexts fit into one request
+        final int n = 130;
+        for (int i = 0; i < n; i++)
+            pool.release(pool.borrow(AET, HOST, port, "1.2.3.4." + i, TS));
+        assertEquals(n, pool.getCreatedCount());
+        ActiveAssociation active = pool.borrow(AET, HOST, port,
+                "1.2.3.4." + (n - 1), TS);
+        pool.release(active);
+        assertSame(active, pool.borrow(AET, HOST, port,
+                "1.2.3.4." + (n - 1), TS));
+        pool.release(active);
+        // least recently requested SOP Class is proposed again
+        active = pool.borrow(AET, HOST, port, "1.2.3.4.0", TS);
+        assertEquals(n + 1, pool.getCreatedCount());
+        assertEquals(128, active.getAssociation().getAAssociateRQ()
+                .listPresContext().size());
+    }
+
+    public void testMaxAssociationsPerPeer() throws Exception {
+        pool.setMaxAssociationsPerPeer(1);
+        pool.setBorrowTimeout(200);
+        ActiveAssociation active = pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS);
+        try {
+            pool.borrow(AET, HOST, port, UIDs.Verification, TS);
+            fail("borrow timeout expected");
+        } catch (InterruptedIOException expected) {
+        }
+        pool.release(active);
+        assertSame(active, pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS));
+    }
+
+    public void testValidation() throws Exception {
+        pool.setValidationInterval(0);
+        ActiveAssociation active = pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS);
+        pool.release(active);
+        active = pool.borrow(AET, HOST, port, UIDs.Verification, TS);
+        echo(active);
+        active.getAssociation().getSocket().close();
+        pool.release(active);
+        ActiveAssociation other = pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS);
+        assertNotSame(active, other);
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    public void testEvictIdle() throws Exception {
+        pool.setIdleTimeout(0);
+        ActiveAssociation active = pool.borrow(AET, HOST, port,
+                UIDs.Verification, TS);
+        pool.release(active);
+        pool.evictIdle();
+        assertEquals(0, pool.getNumIdle());
+    }
+}
@@ -0,0 +1,271 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.*;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmDecodeParam;
+import org.dcm4che.data.DcmEncodeParam;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.net.ActiveAssociation;
+import org.dcm4che.net.Association;
+import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.DataSource;
+import org.dcm4che.net.DcmService;
+import org.dcm4che.net.DcmServiceBase;
+import org.dcm4che.net.Dimse;
+import org.dcm4che.net.DimseListener;
+import org.dcm4che.net.FutureRSP;
+import org.dcm4che.net.PresContext;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class RetrieveEngineTest extends TestCase {
+
+    public RetrieveEngineTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(RetrieveEngineTest.class);
+    }
+
+    private static final String MOVE_SCP = "MOVESCP";
+    private static final String STORE_SCP = "STORESCP";
+    private static final String HOST = TestServer.HOST;
+    private static final String[] TS = { UIDs.ImplicitVRLittleEndian };
+    private static final int NUM_INSTANCES = 12;
+    private static final long STORE_DELAY = 100L;
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+    private TestServer storeServer;
+    private TestServer moveServer;
+    private AssociationPool storePool;
+    private AssociationPool movePool;
+    private RetrieveEngine engine;
+    private int stored = 0;
+    private int concurrent = 0;
+    private int maxConcurrent = 0;
+    private String moveOriginator;
+
+    protected void setUp() throws Exception {
+        storePool = new AssociationPool();
+        storePool.setCallingAET(MOVE_SCP);
+        storePool.setSoCloseDelay(0);
+        engine = new RetrieveEngine(storePool);
+        storeServer = startServer(UIDs.SecondaryCaptureImageStorage,
+                new DcmServiceBase() {
+                    protected void doCStore(ActiveAssociation assoc,
+                            Dimse rq, Command rspCmd) throws IOException {
+                        rq.getDataset();
+                        stored(rq.getCommand());
+                        rspCmd.putUS(Tags.Status, SUCCESS);
+                    }
+                });
+        final int storePort = storeServer.getPort();
+        moveServer = startServer(
+                UIDs.StudyRootQueryRetrieveInformationModelMOVE,
+                new DcmServiceBase() {
+                    protected MultiDimseRsp doCMove(ActiveAssociation assoc,
+                            Dimse rq, Command rspCmd) throws IOException {
+                        rq.getDataset();
+                        return engine.move(assoc, rq, HOST, storePort,
+                                newInstances());
+                    }
+                });
+        movePool = new AssociationPool();
+        movePool.setCallingAET("MOVESCU");
+        movePool.setSoCloseDelay(0);
+    }
+
+    protected void tearDown() throws Exception {
+        movePool.close();
+        storePool.close();
+        moveServer.stop();
+        storeServer.stop();
+    }
+
+    private TestServer startServer(String cuid, DcmService scp)
+            throws IOException {
+        TestServer server = new TestServer();
+        server.getPolicy().putPresContext(cuid, TS);
+        server.getServices().bind(cuid, scp);
+        server.start();
+        return server;
+    }
+
+    private void stored(Command cmd) {
+        synchronized (this) {
+            moveOriginator = cmd.getString(Tags.MoveOriginatorAET);
+            maxConcurrent = Math.max(maxConcurrent, ++concurrent);
+        }
+        try {
+            Thread.sleep(STORE_DELAY);
+        } catch (InterruptedException e) {
+        }
+        synchronized (this) {
+            --concurrent;
+            ++stored;
+        }
+    }
+
+    private List newInstances() {
+        ArrayList list = new ArrayList(NUM_INSTANCES);
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            final String iuid = "1.2.3." + i;
+            list.add(new RetrieveEngine.Instance() {
+                public String getSOPClassUID() {
+                    return UIDs.SecondaryCaptureImageStorage;
+                }
+
+                public String getSOPInstanceUID() {
+                    return iuid;
+                }
+
+                public String[] getTransferSyntaxUIDs() {
+                    return TS;
+                }
+
+                public DataSource getDataSource() {
+                    return new DataSource() {
+                        public void writeTo(OutputStream out, String tsUID)
+                                throws IOException {
+                            Dataset ds = objFact.newDataset();
+                            ds.putUI(Tags.SOPClassUID,
+                                    UIDs.SecondaryCaptureImageStorage);
+                            ds.putUI(Tags.SOPInstanceUID, iuid);
+                            ds.writeDataset(out, (DcmEncodeParam)
+                                    DcmDecodeParam.valueOf(tsUID));
+                        }
+                    };
+                }
+            });
+        }
+        return list;
+    }
+
+    private FutureRSP move(ActiveAssociation active, int msgID,
+            DimseListener l) throws Exception {
+        PresContext pc = AssociationPool.getAcceptedPresContext(active,
+                UIDs.StudyRootQueryRetrieveInformationModelMOVE, TS);
+        assertNotNull(pc);
+        Command cmd = objFact.newCommand().initCMoveRQ(msgID,
+                UIDs.StudyRootQueryRetrieveInformationModelMOVE,
+                Command.MEDIUM, STORE_SCP);
+        Dataset keys = objFact.newDataset();
+        keys.putCS(Tags.QueryRetrieveLevel, "STUDY");
+        keys.putUI(Tags.StudyInstanceUID, "1.2.3");
+        return active.tryInvoke(fact.newDimse(pc.pcid(), cmd, keys), l);
+    }
+
+    public void testMove() throws Exception {
+        ActiveAssociation active = movePool.borrow(MOVE_SCP, HOST,
+                moveServer.getPort(),
+                UIDs.StudyRootQueryRetrieveInformationModelMOVE, TS);
+        final int[] pending = new int[1];
+        FutureRSP future = move(active, active.getAssociation().nextMsgID(),
+                new DimseListener() {
+            public void dimseReceived(Association assoc, Dimse dimse) {
+                ++pending[0];
+            }
+        });
+        Command rsp = future.get().getCommand();
+        movePool.release(active);
+        assertEquals(RetrieveEngine.SUCCESS, rsp.getStatus());
+        assertEquals(NUM_INSTANCES,
+                rsp.getInt(Tags.NumberOfCompletedSubOperations, -1));
+        assertEquals(0, rsp.getInt(Tags.NumberOfFailedSubOperations, -1));
+        assertEquals(0, rsp.getInt(Tags.NumberOfWarningSubOperations, -1));
+        assertEquals(NUM_INSTANCES, stored);
+        assertEquals("MOVESCU", moveOriginator);
+        assertTrue("pending responses: " + pending[0], pending[0] > 0);
+        assertTrue("concurrent stores: " + maxConcurrent, maxConcurrent > 1);
+        assertTrue(maxConcurrent <= engine.getParallelism());
+        assertTrue(storePool.getCreatedCount() <= engine.getParallelism());
+    }
+
+    public void testCancel() throws Exception {
+        engine.setParallelism(2);
+        final ActiveAssociation active = movePool.borrow(MOVE_SCP, HOST,
+                moveServer.getPort(),
+                UIDs.StudyRootQueryRetrieveInformationModelMOVE, TS);
+        final PresContext pc = AssociationPool.getAcceptedPresContext(active,
+                UIDs.StudyRootQueryRetrieveInformationModelMOVE, TS);
+        final int msgID = active.getAssociation().nextMsgID();
+        FutureRSP future = move(active, msgID, new DimseListener() {
+            private boolean canceled = false;
+            public void dimseReceived(Association assoc, Dimse dimse) {
+                if (canceled)
+                    return;
+                canceled = true;
+                try {
+                    assoc.write(fact.newDimse(pc.pcid(),
+                            objFact.newCommand().initCCancelRQ(msgID)));
+                } catch (IOException e) {
+                    fail(e.toString());
+                }
+            }
+        });
+        Command rsp = future.get().getCommand();
+        movePool.release(active);
+        assertEquals(RetrieveEngine.CANCEL, rsp.getStatus());
+        int remaining = rsp.getInt(Tags.NumberOfRemainingSubOperations, -1);
+        int completed = rsp.getInt(Tags.NumberOfCompletedSubOperations, -1);
+        assertTrue("remaining: " + remaining, remaining > 0);
+        assertEquals(NUM_INSTANCES, remaining + completed);
+        assertEquals(completed, stored);
+    }
+}
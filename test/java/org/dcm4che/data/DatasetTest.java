@@ -39,11 +39,19 @@
 package org.dcm4che.data;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
 
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.OutputKeys;
@@ -63,6 +71,7 @@ import org.dcm4che.dict.DictionaryFactory;
 import org.dcm4che.dict.TagDictionary;
 import org.dcm4che.dict.Tags;
 import org.dcm4che.dict.UIDs;
+import org.dcm4che.dict.VRs;
 
 /**
  *@author     gunter.zeilinger@tiani.com
@@ -343,6 +352,73 @@ public class DatasetTest extends TestCase {
     }
 
 
+    public void testLazyDataset() throws Exception {
+        putStrings();
+        ds.putSQ(Tags.RefSeriesSeq).addNewItem()
+                .putUI(Tags.SeriesInstanceUID, "1.2.3.4");
+        ds.setFileMetaInfo(DcmObjectFactory.getInstance().newFileMetaInfo(
+                UIDs.SecondaryCaptureImageStorage, "1.2.3.4.5",
+                UIDs.ExplicitVRLittleEndian));
+        File f = File.createTempFile("lazy", ".dcm");
+        try {
+            ds.writeFile(f, new DcmEncodeParam(ByteOrder.LITTLE_ENDIAN,
+                    true, false, false, true, false, false));
+            Dataset lazy = DcmObjectFactory.getInstance().newLazyDataset();
+            lazy.readFile(f, null, -1);
+            assertEquals(ds.size(), lazy.size());
+            assertEquals(ACCESSION_NUMBER, lazy, Tags.AccessionNumber);
+            assertEquals("1.2.3.4", lazy.getItem(Tags.RefSeriesSeq)
+                    .getString(Tags.SeriesInstanceUID));
+            assertEquals(ds, lazy);
+        } finally {
+            f.delete();
+        }
+    }
+
+    public void testLazyDatasetConcurrentAccess() throws Exception {
+        putStrings();
+        ds.setFileMetaInfo(DcmObjectFactory.getInstance().newFileMetaInfo(
+                UIDs.SecondaryCaptureImageStorage, "1.2.3.4.5",
+                UIDs.ExplicitVRLittleEndian));
+        File f = File.createTempFile("lazy", ".dcm");
+        try {
+            ds.writeFile(f, new DcmEncodeParam(ByteOrder.LITTLE_ENDIAN,
+                    true, false, false, true, false, false));
+            final Dataset lazy = DcmObjectFactory.getInstance().newLazyDataset();
+            lazy.readFile(f, null, -1);
+            final int[] tags = new int[ds.size()];
+            int n = 0;
+            for (Iterator it = ds.iterator(); it.hasNext();)
+                tags[n++] = ((DcmElement) it.next()).tag();
+            final Throwable[] failure = new Throwable[1];
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                final int offset = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            for (int j = 0; j < tags.length; j++) {
+                                int tag = tags[(j + offset) % tags.length];
+                                assertEquals(ds.get(tag), lazy.get(tag));
+                            }
+                        } catch (Throwable e) {
+                            failure[0] = e;
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (int i = 0; i < threads.length; i++)
+                threads[i].join();
+            if (failure[0] != null)
+                fail(failure[0].toString());
+            assertEquals(ds, lazy);
+        } finally {
+            f.delete();
+        }
+    }
+
+
     /**
      *  Description of the Method
      */
@@ -470,6 +546,112 @@ public class DatasetTest extends TestCase {
     }
 
 
+    public void testWriteBackPatched() throws Exception {
+        putStrings();
+        Dataset item = ds.putSQ(Tags.RefSeriesSeq).addNewItem();
+        item.putUI(Tags.SeriesInstanceUID, "1.2.3.4");
+        item.putSQ(Tags.RefImageSeq).addNewItem()
+                .putUI(Tags.RefSOPInstanceUID, "1.2.3.4.5");
+        DcmEncodeParam param = new DcmEncodeParam(ByteOrder.LITTLE_ENDIAN,
+                true, false, false, false, false, false);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ds.writeDataset(expected, param);
+        item.putLO(Tags.SeriesDescription, "changed");
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ds.writeDataset(bout, param);
+        assertTrue(bout.size() > expected.size());
+        item.remove(Tags.SeriesDescription);
+        bout.reset();
+        ImageOutputStream ios = new MemoryCacheImageOutputStream(bout);
+        ds.writeDataset(ios, param);
+        ios.close();
+        assertTrue(Arrays.equals(expected.toByteArray(), bout.toByteArray()));
+        assertEquals(expected.size(), ds.calcLength(param));
+    }
+
+    public void testRecalcItemLength() throws Exception {
+        putStrings();
+        Dataset item = ds.putSQ(Tags.RefSeriesSeq).addNewItem();
+        item.putUI(Tags.SeriesInstanceUID, "1.2.3.4");
+        DcmEncodeParam param = new DcmEncodeParam(ByteOrder.LITTLE_ENDIAN,
+                true, false, false, false, false, false);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ds.writeDataset(expected, param);
+        item.calcLength(new DcmEncodeParam(ByteOrder.LITTLE_ENDIAN,
+                true, false, false, true, false, false));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ds.writeDataset(bout, param);
+        assertTrue(Arrays.equals(expected.toByteArray(), bout.toByteArray()));
+        Dataset ds2 = DcmObjectFactory.getInstance().newDataset();
+        ds2.readDataset(new ByteArrayInputStream(bout.toByteArray()),
+                DcmDecodeParam.EVR_LE, -1);
+        assertEquals("1.2.3.4", ds2.getItem(Tags.RefSeriesSeq)
+                .getString(Tags.SeriesInstanceUID));
+    }
+
+    public void testDatasetMatcher() throws Exception {
+        DcmObjectFactory f = DcmObjectFactory.getInstance();
+        ds.putPN(Tags.PatientName, "Doe^John");
+        ds.putDA(Tags.StudyDate, "20050317");
+        ds.putCS(Tags.ModalitiesInStudy, new String[] { "CT", "PR" });
+        ds.putSQ(Tags.RefStudySeq).addNewItem()
+                .putUI(Tags.RefSOPInstanceUID, "1.2.3.4");
+        Dataset keys = f.newDataset();
+        keys.putPN(Tags.PatientName, "DOE*");
+        keys.putDA(Tags.StudyDate, "20050301-20050331");
+        keys.putCS(Tags.ModalitiesInStudy, "?R");
+        keys.putSQ(Tags.RefStudySeq).addNewItem()
+                .putUI(Tags.RefSOPInstanceUID, "1.2.3.4");
+        keys.putSH(Tags.AccessionNumber);
+        DatasetMatcher ignoreCase = f.newDatasetMatcher(keys, true, true);
+        assertTrue(ignoreCase.matches(ds));
+        assertTrue(ds.match(keys, true, true));
+        assertFalse(f.newDatasetMatcher(keys, false, true).matches(ds));
+        assertFalse(ds.match(keys, false, true));
+        assertTrue(f.newDatasetMatcher(keys, true, false).matches(ds));
+        keys.putLO(Tags.PatientID, "123");
+        assertTrue(f.newDatasetMatcher(keys, true, true).matches(ds));
+        assertFalse(f.newDatasetMatcher(keys, true, false).matches(ds));
+        keys.putDA(Tags.StudyDate, "-20050316");
+        assertFalse(f.newDatasetMatcher(keys, true, true).matches(ds));
+        keys.putDA(Tags.StudyDate, "20050317-");
+        assertTrue(f.newDatasetMatcher(keys, true, true).matches(ds));
+        keys.putSQ(Tags.RefStudySeq).addNewItem()
+                .putUI(Tags.RefSOPInstanceUID, "1.2.3.5");
+        assertFalse(f.newDatasetMatcher(keys, true, true).matches(ds));
+        // compiled matcher is not affected by later changes of the keys
+        assertTrue(ignoreCase.matches(ds));
+    }
+
+    public void testCachedStrings() throws Exception {
+        DcmObjectFactory f = DcmObjectFactory.getInstance();
+        f.setMaxCachedStringLength(1024);
+        try {
+            putStrings();
+            for (int i = 0; i < 2; ++i) {
+                assertEquals(OTHER_PATIENT_NAMES, ds, Tags.OtherPatientNames);
+                assertEquals(IMAGE_TYPE, ds, Tags.ImageType);
+                assertEquals(TEXT_VALUE, ds, Tags.TextValue);
+            }
+            ds.getStrings(Tags.ImageType)[0] = "MODIFIED";
+            assertEquals(IMAGE_TYPE[0], ds.getString(Tags.ImageType));
+            ds.putCS(Tags.SpecificCharacterSet, "ISO_IR 100");
+            ds.putPN(Tags.PatientName, "M\u00fcller^Hans");
+            assertEquals("M\u00fcller^Hans", ds.getString(Tags.PatientName));
+            assertEquals(1, ds.vm(Tags.PatientName));
+            ds.putCS(Tags.SpecificCharacterSet,
+                    new String[] { "", "ISO 2022 IR 87" });
+            // JIS X 0208 code of U+4FD1 is 0x505C
+            ds.putXX(Tags.PatientName, VRs.PN, ByteBuffer.wrap(new byte[] {
+                    0x1b, 0x24, 0x42, 0x50, 0x5c, 0x1b, 0x28, 0x42 }));
+            assertEquals(1, ds.vm(Tags.PatientName));
+            assertEquals("\u4fd1", ds.getString(Tags.PatientName));
+        } finally {
+            f.setMaxCachedStringLength(0);
+        }
+    }
+
+
     /**
      *  A unit test for JUnit
      *
@@ -511,6 +693,37 @@ public class DatasetTest extends TestCase {
         assertEquals(0, sub12.size());
         assertEquals(9, ds.size());
     }
+
+    public void testPutUnsorted() throws Exception {
+        final int[] tags = {
+                Tags.PatientName, 0xFFFAFFFA, Tags.Modality, Tags.PixelData,
+                Tags.PatientID, Tags.SOPInstanceUID, 0xFFFCFFFC, Tags.StudyID
+        };
+        for (int i = 0; i < tags.length; ++i) {
+            ds.putXX(tags[i]);
+        }
+        ds.putXX(Tags.Modality);
+        assertEquals(tags.length, ds.size());
+        long prev = -1L;
+        for (Iterator it = ds.iterator(); it.hasNext();) {
+            long tag = ((DcmElement) it.next()).tag() & 0xFFFFFFFFL;
+            assertTrue(prev < tag);
+            prev = tag;
+        }
+        assertEquals(0xFFFCFFFCL, prev);
+        Dataset sub = ds.subSet(Tags.PatientName, 0xFFFCFFFC);
+        assertEquals(5, sub.size());
+        Iterator it = sub.iterator();
+        assertEquals(Tags.PatientName, ((DcmElement) it.next()).tag());
+        assertEquals(Tags.PatientID, ((DcmElement) it.next()).tag());
+        assertEquals(Tags.StudyID, ((DcmElement) it.next()).tag());
+        assertEquals(Tags.PixelData, ((DcmElement) it.next()).tag());
+        assertEquals(0xFFFAFFFA, ((DcmElement) it.next()).tag());
+        assertFalse(it.hasNext());
+        ds.remove(Tags.StudyID);
+        assertNull(ds.get(Tags.StudyID));
+        assertNotNull(ds.get(0xFFFAFFFA));
+    }
  
     
     /**
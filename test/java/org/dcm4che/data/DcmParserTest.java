@@ -39,9 +39,13 @@
 package org.dcm4che.data;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 
+import org.dcm4che.dict.Tags;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -119,4 +123,41 @@ public class DcmParserTest extends TestCase {
             try { in.close(); } catch (Exception ignore) {}
         }
     }
+
+    public void testValueBufferLease() throws Exception {
+        Dataset ds = DcmObjectFactory.getInstance().newDataset();
+        ds.putCS(Tags.SpecificCharacterSet, "ISO_IR 100");
+        ds.putCS(Tags.ImageType, new String[] { "ORIGINAL", "PRIMARY" });
+        ds.putPN(Tags.PatientName, "Doe^John");
+        ds.putUS(Tags.Rows, 512);
+        ds.putSQ(Tags.RefSeriesSeq).addNewItem()
+                .putUI(Tags.SeriesInstanceUID, "1.2.3.4");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ds.writeDataset(out, DcmDecodeParam.EVR_LE);
+
+        ValueBufferPool pool = new ValueBufferPool(0x1000, 4);
+        ValueBufferPool.Lease lease = pool.lease();
+        Dataset parsed = DcmObjectFactory.getInstance().newDataset();
+        parser = pfact.newDcmParser(
+                new ByteArrayInputStream(out.toByteArray()));
+        parser.setDcmHandler(parsed.getDcmHandler());
+        parser.setValueBufferLease(lease);
+        parser.parseDataset(DcmDecodeParam.EVR_LE, -1);
+        assertEquals(ds, parsed);
+        assertEquals("Doe^John", parsed.getString(Tags.PatientName));
+        assertEquals(2, parsed.vm(Tags.ImageType));
+        assertEquals("PRIMARY", parsed.getString(Tags.ImageType, 1));
+        assertEquals(512, parsed.getInt(Tags.Rows, -1));
+        assertEquals("1.2.3.4", parsed.getItem(Tags.RefSeriesSeq)
+                .getString(Tags.SeriesInstanceUID));
+        assertEquals(1, lease.getSlabs());
+
+        lease.release();
+        assertTrue(lease.isReleased());
+        assertEquals(1, pool.getPooledSlabs());
+        assertEquals(1, pool.getAllocatedSlabs());
+        pool.lease().allocate(8);
+        assertEquals(0, pool.getPooledSlabs());
+        assertEquals(1, pool.getAllocatedSlabs());
+    }
 }
@@ -0,0 +1,172 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.image;
+
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+
+public class ColorModelFactoryTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ColorModelFactoryTest.class);
+    }
+
+    public static Test suite() {
+        return new TestSuite(ColorModelFactoryTest.class);
+    }
+
+    public ColorModelFactoryTest(String name) {
+        super(name);
+    }
+
+    private ColorModelFactory factory;
+
+    private ColorModelParam param;
+
+    private int maxSize;
+
+    private long maxMemory;
+
+    protected void setUp() throws Exception {
+        factory = ColorModelFactory.getInstance();
+        maxSize = factory.getMaxCacheSize();
+        maxMemory = factory.getMaxCacheMemory();
+        factory.clearCache();
+        Dataset ds = DcmObjectFactory.getInstance().newDataset();
+        ds.putCS(Tags.PhotometricInterpretation, "MONOCHROME2");
+        ds.putUS(Tags.BitsAllocated, 16);
+        ds.putUS(Tags.BitsStored, 12);
+        ds.putUS(Tags.HighBit, 11);
+        ds.putUS(Tags.PixelRepresentation, 0);
+        param = factory.makeParam(ds);
+    }
+
+    protected void tearDown() throws Exception {
+        factory.setMaxCacheSize(maxSize);
+        factory.setMaxCacheMemory(maxMemory);
+        factory.clearCache();
+    }
+
+    public void testHitAndMiss() {
+        ColorModel cm = factory.getColorModel(param.update(1000, 400, false));
+        assertSame(cm, factory.getColorModel(param.update(1000, 400, false)));
+        assertNotSame(cm, factory.getColorModel(param.update(1000, 400, true)));
+        assertEquals(2, factory.getCacheSize());
+        assertEquals(1, factory.getCacheHits());
+        assertEquals(2, factory.getCacheMisses());
+        assertEquals(2 * 4096 * 4, factory.getCacheMemory());
+    }
+
+    public void testQuantizedWindow() {
+        ColorModel cm = factory.getColorModel(param.update(1000.2f, 400, false));
+        assertSame(cm, factory.getColorModel(param.update(1000.4f, 400.3f, false)));
+        assertNotSame(cm, factory.getColorModel(param.update(1001, 400, false)));
+        assertEquals(1, factory.getCacheHits());
+    }
+
+    public void testQuantizedColorMap() {
+        IndexColorModel cm1 = (IndexColorModel) param.update(1000.2f, 400, false)
+                .newColorModel();
+        IndexColorModel cm2 = (IndexColorModel) param.update(1000.4f, 400.3f, false)
+                .newColorModel();
+        int[] rgb1 = new int[cm1.getMapSize()];
+        int[] rgb2 = new int[cm2.getMapSize()];
+        cm1.getRGBs(rgb1);
+        cm2.getRGBs(rgb2);
+        assertTrue(Arrays.equals(rgb1, rgb2));
+    }
+
+    public void testEvictLeastRecentlyUsed() {
+        factory.setMaxCacheSize(2);
+        ColorModel cm1 = factory.getColorModel(param.update(1000, 100, false));
+        ColorModel cm2 = factory.getColorModel(param.update(1000, 200, false));
+        assertSame(cm1, factory.getColorModel(param.update(1000, 100, false)));
+        factory.getColorModel(param.update(1000, 300, false));
+        assertEquals(2, factory.getCacheSize());
+        assertSame(cm1, factory.getColorModel(param.update(1000, 100, false)));
+        assertNotSame(cm2, factory.getColorModel(param.update(1000, 200, false)));
+    }
+
+    public void testMemoryBound() {
+        factory.setMaxCacheMemory(3 * 4096 * 4);
+        for (int i = 1; i <= 10; i++)
+            factory.getColorModel(param.update(1000, i * 10, false));
+        assertEquals(3, factory.getCacheSize());
+        assertEquals(3 * 4096 * 4, factory.getCacheMemory());
+        factory.setMaxCacheMemory(4096 * 4);
+        assertEquals(1, factory.getCacheSize());
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        factory.setMaxCacheSize(8);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            ColorModel cm = factory.getColorModel(
+                                    param.update(1000, 10 + i % 16, false));
+                            assertEquals(4096, ((IndexColorModel) cm)
+                                    .getMapSize());
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+        assertNull(failure[0]);
+        assertTrue(factory.getCacheSize() <= 8);
+        assertEquals(800, factory.getCacheHits() + factory.getCacheMisses());
+    }
+}
@@ -0,0 +1,213 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.image;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.dcm4cheri.image.PixelKernels;
+
+public class PixelKernelsTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(PixelKernelsTest.class);
+    }
+
+    public static Test suite() {
+        return new TestSuite(PixelKernelsTest.class);
+    }
+
+    public PixelKernelsTest(String name) {
+        super(name);
+    }
+
+    private final Random rnd = new Random(4711);
+
+    private static int signExtend(int val, int sign) {
+        return (val & sign) != 0 ? val | sign : val;
+    }
+
+    private static int sign(int stored, boolean signed) {
+        return signed ? -1 << (stored - 1) : 0;
+    }
+
+    public void testMinMaxByte() {
+        for (int len = 1; len < 8; ++len)
+            for (int stored = 6; stored <= 8; ++stored) {
+                checkMinMax(len, stored, false);
+                checkMinMax(len, stored, true);
+            }
+        checkMinMax(1001, 7, true);
+    }
+
+    private void checkMinMax(int len, int stored, boolean signed) {
+        byte[] data = new byte[len];
+        rnd.nextBytes(data);
+        int mask = -1 >>> (32 - stored);
+        int sign = sign(stored, signed);
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        byte[] masked = new byte[len];
+        for (int i = 0; i < len; i++) {
+            int val = data[i] & mask;
+            masked[i] = (byte) val;
+            val = signExtend(val, sign);
+            min = Math.min(min, val);
+            max = Math.max(max, val);
+        }
+        byte[] copy = (byte[]) data.clone();
+        int[] minMax = PixelKernels.minMax(copy, mask,
+                PixelKernels.signShift(stored, signed), false);
+        assertEquals(min, minMax[0]);
+        assertEquals(max, minMax[1]);
+        assertTrue(Arrays.equals(data, copy));
+        minMax = PixelKernels.minMax(copy, mask,
+                PixelKernels.signShift(stored, signed), true);
+        assertEquals(min, minMax[0]);
+        assertEquals(max, minMax[1]);
+        assertTrue(Arrays.equals(masked, copy));
+    }
+
+    public void testMinMaxShort() {
+        for (int len = 1; len < 8; ++len)
+            for (int stored = 10; stored <= 16; ++stored) {
+                checkMinMax(newShorts(len), stored, false);
+                checkMinMax(newShorts(len), stored, true);
+            }
+        checkMinMax(newShorts(4097), 12, true);
+    }
+
+    private short[] newShorts(int len) {
+        short[] data = new short[len];
+        for (int i = 0; i < len; i++)
+            data[i] = (short) rnd.nextInt();
+        return data;
+    }
+
+    private void checkMinMax(short[] data, int stored, boolean signed) {
+        int len = data.length;
+        int mask = -1 >>> (32 - stored);
+        int sign = sign(stored, signed);
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        short[] masked = new short[len];
+        for (int i = 0; i < len; i++) {
+            int val = data[i] & mask;
+            masked[i] = (short) val;
+            val = signExtend(val, sign);
+            min = Math.min(min, val);
+            max = Math.max(max, val);
+        }
+        short[] copy = (short[]) data.clone();
+        int[] minMax = PixelKernels.minMax(copy, mask,
+                PixelKernels.signShift(stored, signed), false);
+        assertEquals(min, minMax[0]);
+        assertEquals(max, minMax[1]);
+        assertTrue(Arrays.equals(data, copy));
+        minMax = PixelKernels.minMax(copy, mask,
+                PixelKernels.signShift(stored, signed), true);
+        assertEquals(min, minMax[0]);
+        assertEquals(max, minMax[1]);
+        assertTrue(Arrays.equals(masked, copy));
+    }
+
+    public void testClamp() {
+        for (int len = 1; len < 8; ++len) {
+            short[] data = newShorts(len);
+            short[] expected = new short[len];
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int i = 0; i < len; i++) {
+                int val = Math.min(data[i] & 0xffff, 0xfff);
+                expected[i] = (short) val;
+                min = Math.min(min, val);
+                max = Math.max(max, val);
+            }
+            short[] copy = (short[]) data.clone();
+            PixelKernels.clamp(copy, 0xfff);
+            assertTrue(Arrays.equals(expected, copy));
+            int[] minMax = PixelKernels.clampMinMax(data, 0xfff);
+            assertEquals(min, minMax[0]);
+            assertEquals(max, minMax[1]);
+            assertTrue(Arrays.equals(expected, data));
+        }
+    }
+
+    public void testMask() {
+        for (int len = 1; len < 8; ++len) {
+            short[] data = newShorts(len);
+            short[] expected = new short[len];
+            for (int i = 0; i < len; i++)
+                expected[i] = (short) (data[i] & 0x3ff);
+            PixelKernels.mask(data, 0x3ff);
+            assertTrue(Arrays.equals(expected, data));
+            byte[] bytes = new byte[len];
+            rnd.nextBytes(bytes);
+            byte[] expectedBytes = new byte[len];
+            for (int i = 0; i < len; i++)
+                expectedBytes[i] = (byte) (bytes[i] & 0x7f);
+            PixelKernels.mask(bytes, 0x7f);
+            assertTrue(Arrays.equals(expectedBytes, bytes));
+        }
+    }
+
+    public void testWindow() {
+        byte[] pv2dll = new byte[256];
+        rnd.nextBytes(pv2dll);
+        int[] ws = { 1, 3, 255, 256, 257, 1000, 4095 };
+        for (int k = 0; k < ws.length; ++k) {
+            int w = ws[k];
+            checkWindow(pv2dll, -w / 3, w, 0);
+            checkWindow(pv2dll, 17, w, -1);
+        }
+    }
+
+    private void checkWindow(byte[] pv2dll, int u, int w, int inverse) {
+        int size = 4096;
+        int from = Math.max(0, u);
+        int to = Math.min(u + w, size);
+        int[] cmap = new int[size];
+        PixelKernels.window(cmap, 0, from, to, u, w, pv2dll, 8, inverse, 0xff);
+        for (int i = from; i < to; ++i) {
+            int v = pv2dll[(((i - u) << 8) / w ^ inverse) & 0xff] & 0xff;
+            assertEquals(0xff000000 | (v << 16) | (v << 8) | v, cmap[i]);
+        }
+    }
+}
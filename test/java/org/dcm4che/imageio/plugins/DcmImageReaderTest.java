@@ -0,0 +1,442 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.imageio.plugins;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmEncodeParam;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.dict.VRs;
+import org.dcm4che.util.TaskExecutor;
+import org.dcm4che.util.UIDGenerator;
+import org.dcm4cheri.image.ImageReaderFactory;
+import org.dcm4cheri.image.ImageWriterFactory;
+import org.dcm4cheri.imageio.plugins.DcmImageReader;
+
+public class DcmImageReaderTest extends TestCase {
+
+    private static final int FRAMES = 12;
+
+    private static final int SIZE = 64;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DcmImageReaderTest.class);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(DcmImageReaderTest.class);
+        return suite;
+    }
+
+    public DcmImageReaderTest(String name) {
+        super(name);
+    }
+
+    private File file;
+
+    private DcmImageReader reader;
+
+    private FileImageInputStream in;
+
+    protected void setUp() throws Exception {
+        file = File.createTempFile("multiframe", ".dcm");
+        writeMultiframeJpeg(file);
+        Iterator it = ImageIO.getImageReadersByFormatName("DICOM");
+        reader = (DcmImageReader) it.next();
+        in = new FileImageInputStream(file);
+        reader.setInput(in);
+    }
+
+    protected void tearDown() throws Exception {
+        reader.dispose();
+        in.close();
+        file.delete();
+    }
+
+    private static void writeMultiframeJpeg(File f) throws Exception {
+        DcmObjectFactory fact = DcmObjectFactory.getInstance();
+        Dataset ds = fact.newDataset();
+        String iuid = UIDGenerator.getInstance().createUID();
+        ds.putUI(Tags.SOPClassUID, UIDs.MultiframeTrueColorSecondaryCaptureImageStorage);
+        ds.putUI(Tags.SOPInstanceUID, iuid);
+        ds.putUS(Tags.SamplesPerPixel, 3);
+        ds.putCS(Tags.PhotometricInterpretation, "YBR_FULL_422");
+        ds.putUS(Tags.PlanarConfiguration, 0);
+        ds.putIS(Tags.NumberOfFrames, FRAMES);
+        ds.putUS(Tags.Rows, SIZE);
+        ds.putUS(Tags.Columns, SIZE);
+        ds.putUS(Tags.BitsAllocated, 8);
+        ds.putUS(Tags.BitsStored, 8);
+        ds.putUS(Tags.HighBit, 7);
+        ds.putUS(Tags.PixelRepresentation, 0);
+        ds.setFileMetaInfo(fact.newFileMetaInfo(
+                UIDs.MultiframeTrueColorSecondaryCaptureImageStorage,
+                iuid, UIDs.JPEGBaseline));
+        DcmEncodeParam encParam = DcmEncodeParam.valueOf(UIDs.JPEGBaseline);
+        OutputStream out = new FileOutputStream(f);
+        try {
+            ds.writeFile(out, encParam);
+            ds.writeHeader(out, encParam, Tags.PixelData, VRs.OB, -1);
+            ds.writeHeader(out, encParam, Tags.Item, VRs.NONE, 0);
+            for (int i = 0; i < FRAMES; i++) {
+                byte[] jpeg = encodeFrame(i);
+                ds.writeHeader(out, encParam, Tags.Item, VRs.NONE,
+                        (jpeg.length + 1) & ~1);
+                out.write(jpeg);
+                if ((jpeg.length & 1) != 0)
+                    out.write(0);
+            }
+            ds.writeHeader(out, encParam, Tags.SeqDelimitationItem,
+                    VRs.NONE, 0);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int sample(int frame, int x, int y, int band) {
+        return frame * 1000 + y * 7 + x * 3 + band * 50;
+    }
+
+    private static void writeNative(File f, int frames, int w, int h,
+            int bitsAllocated, int samples) throws Exception {
+        DcmObjectFactory fact = DcmObjectFactory.getInstance();
+        Dataset ds = fact.newDataset();
+        String iuid = UIDGenerator.getInstance().createUID();
+        ds.putUI(Tags.SOPClassUID, UIDs.SecondaryCaptureImageStorage);
+        ds.putUI(Tags.SOPInstanceUID, iuid);
+        ds.putUS(Tags.SamplesPerPixel, samples);
+        ds.putCS(Tags.PhotometricInterpretation,
+                samples == 3 ? "RGB" : "MONOCHROME2");
+        if (samples == 3)
+            ds.putUS(Tags.PlanarConfiguration, 1);
+        ds.putIS(Tags.NumberOfFrames, frames);
+        ds.putUS(Tags.Rows, h);
+        ds.putUS(Tags.Columns, w);
+        ds.putUS(Tags.BitsAllocated, bitsAllocated);
+        ds.putUS(Tags.BitsStored, bitsAllocated);
+        ds.putUS(Tags.HighBit, bitsAllocated - 1);
+        ds.putUS(Tags.PixelRepresentation, 0);
+        ds.setFileMetaInfo(fact.newFileMetaInfo(
+                UIDs.SecondaryCaptureImageStorage, iuid,
+                UIDs.ExplicitVRLittleEndian));
+        int bytes = bitsAllocated >> 3;
+        byte[] pixelData = new byte[frames * samples * w * h * bytes];
+        int i = 0;
+        for (int frame = 0; frame < frames; frame++)
+            for (int band = 0; band < samples; band++)
+                for (int y = 0; y < h; y++)
+                    for (int x = 0; x < w; x++) {
+                        int val = sample(frame, x, y, band);
+                        pixelData[i++] = (byte) val;
+                        if (bytes == 2)
+                            pixelData[i++] = (byte) (val >> 8);
+                    }
+        DcmEncodeParam encParam =
+                DcmEncodeParam.valueOf(UIDs.ExplicitVRLittleEndian);
+        OutputStream out = new FileOutputStream(f);
+        try {
+            ds.writeFile(out, encParam);
+            ds.writeHeader(out, encParam, Tags.PixelData,
+                    bytes == 2 ? VRs.OW : VRs.OB, pixelData.length);
+            out.write(pixelData);
+        } finally {
+            out.close();
+        }
+    }
+
+    private BufferedImage readNative(int frames, int bitsAllocated,
+            int samples, int frame, DcmImageReadParam param) throws Exception {
+        File f = File.createTempFile("native", ".dcm");
+        FileImageInputStream fin = null;
+        try {
+            writeNative(f, frames, 300, 200, bitsAllocated, samples);
+            fin = new FileImageInputStream(f);
+            reader.setInput(fin);
+            return reader.read(frame, param);
+        } finally {
+            if (fin != null)
+                fin.close();
+            f.delete();
+        }
+    }
+
+    public void testReadRegion() throws Exception {
+        DcmImageReadParam param =
+                (DcmImageReadParam) reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(50, 20, 64, 32));
+        BufferedImage bi = readNative(2, 16, 1, 1, param);
+        assertEquals(64, bi.getWidth());
+        assertEquals(32, bi.getHeight());
+        Raster raster = bi.getRaster();
+        for (int y = 0; y < 32; y++)
+            for (int x = 0; x < 64; x++)
+                assertEquals(sample(1, 50 + x, 20 + y, 0),
+                        raster.getSample(x, y, 0));
+    }
+
+    public void testReadSubsampledRegion() throws Exception {
+        DcmImageReadParam param =
+                (DcmImageReadParam) reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(10, 10, 200, 150));
+        param.setSourceSubsampling(4, 3, 0, 0);
+        BufferedImage bi = readNative(1, 16, 1, 0, param);
+        assertEquals(50, bi.getWidth());
+        assertEquals(50, bi.getHeight());
+        Raster raster = bi.getRaster();
+        for (int y = 0; y < 50; y++)
+            for (int x = 0; x < 50; x++)
+                assertEquals(sample(0, 10 + x * 4, 10 + y * 3, 0),
+                        raster.getSample(x, y, 0));
+    }
+
+    public void testReadPlanarRegion() throws Exception {
+        DcmImageReadParam param =
+                (DcmImageReadParam) reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(100, 150, 40, 30));
+        BufferedImage bi = readNative(2, 8, 3, 1, param);
+        assertEquals(40, bi.getWidth());
+        assertEquals(30, bi.getHeight());
+        Raster raster = bi.getRaster();
+        for (int band = 0; band < 3; band++)
+            for (int y = 0; y < 30; y++)
+                for (int x = 0; x < 40; x++)
+                    assertEquals(sample(1, 100 + x, 150 + y, band) & 0xff,
+                            raster.getSample(x, y, band));
+    }
+
+    private static byte[] encodeFrame(int frame) throws Exception {
+        BufferedImage bi = new BufferedImage(SIZE, SIZE,
+                BufferedImage.TYPE_3BYTE_BGR);
+        WritableRaster raster = bi.getRaster();
+        for (int y = 0; y < SIZE; y++)
+            for (int x = 0; x < SIZE; x++) {
+                raster.setSample(x, y, 0, (x + y + frame * 16) & 0xff);
+                raster.setSample(x, y, 1, (x * 2 + frame * 8) & 0xff);
+                raster.setSample(x, y, 2, (y * 2) & 0xff);
+            }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(bi, "jpeg", out));
+        return out.toByteArray();
+    }
+
+    private static byte[] pixels(BufferedImage bi) {
+        return ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+    }
+
+    private void assertFrames(int[] indices, int threads) throws Exception {
+        byte[][] expected = new byte[indices.length][];
+        for (int i = 0; i < indices.length; i++)
+            expected[i] = pixels(reader.read(indices[i]));
+        FrameIterator frames = reader.readFrames(indices, null, threads);
+        for (int i = 0; i < indices.length; i++) {
+            assertTrue(frames.hasNext());
+            assertEquals(indices[i], frames.nextIndex());
+            BufferedImage bi = frames.next();
+            assertEquals(SIZE, bi.getWidth());
+            assertEquals(SIZE, bi.getHeight());
+            byte[] data = pixels(bi);
+            assertEquals(expected[i].length, data.length);
+            for (int j = 0; j < data.length; j++)
+                assertEquals(expected[i][j], data[j]);
+        }
+        assertFalse(frames.hasNext());
+    }
+
+    public void testReadFrames() throws Exception {
+        int[] indices = new int[FRAMES];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+        assertFrames(indices, 4);
+    }
+
+    public void testReadFramesInRequestedOrder() throws Exception {
+        assertFrames(new int[] { 9, 2, 11, 0, 5, 5 }, 3);
+    }
+
+    public void testReadFramesSequential() throws Exception {
+        assertFrames(new int[] { 3, 1, 7 }, 1);
+    }
+
+    public void testClose() throws Exception {
+        FrameIterator frames = reader.readFrames(
+                new int[] { 0, 1, 2, 3, 4, 5 }, null, 2);
+        frames.next();
+        frames.close();
+        assertFalse(frames.hasNext());
+        try {
+            frames.next();
+            fail("NoSuchElementException expected");
+        } catch (NoSuchElementException expected) {
+        }
+        // reader still usable
+        assertEquals(SIZE, reader.read(4).getWidth());
+    }
+
+    /** Records the threads of the executed tasks. */
+    private static final class RecordingExecutor extends TaskExecutor {
+
+        final List threads = new ArrayList();
+
+        public void execute(final Runnable task, String name) {
+            TaskExecutor.getPlatformThreadExecutor().execute(new Runnable() {
+                public void run() {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    task.run();
+                }
+            }, name);
+        }
+
+        Thread[] threads() {
+            synchronized (threads) {
+                return (Thread[]) threads.toArray(new Thread[threads.size()]);
+            }
+        }
+    }
+
+    public void testDroppedIteratorReleasesWorkers() throws Exception {
+        TaskExecutor prev = TaskExecutor.getDefault();
+        RecordingExecutor executor = new RecordingExecutor();
+        TaskExecutor.setDefault(executor);
+        try {
+            FrameIterator frames = reader.readFrames(
+                    new int[] { 0, 1, 2, 3, 4, 5 }, null, 2);
+            frames.next();
+            frames = null;
+            Thread[] workers = executor.threads();
+            assertTrue(workers.length > 0);
+            for (int i = 0; i < workers.length; i++) {
+                workers[i].join(10000);
+                assertFalse(workers[i].isAlive());
+            }
+        } finally {
+            TaskExecutor.setDefault(prev);
+        }
+    }
+
+    public void testInterruptedWorkers() throws Exception {
+        TaskExecutor prev = TaskExecutor.getDefault();
+        RecordingExecutor executor = new RecordingExecutor();
+        TaskExecutor.setDefault(executor);
+        try {
+            int[] indices = new int[FRAMES];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = i;
+            FrameIterator frames = reader.readFrames(indices, null, 2);
+            frames.next();
+            Thread[] workers = executor.threads();
+            for (int i = 0; i < workers.length; i++)
+                workers[i].interrupt();
+            // remaining frames are either decompressed by replaced workers
+            // or fail, but next() must not hang
+            int read = 1;
+            while (frames.hasNext()) {
+                try {
+                    frames.next();
+                } catch (InterruptedIOException expected) {
+                }
+                ++read;
+            }
+            assertEquals(FRAMES, read);
+        } finally {
+            TaskExecutor.setDefault(prev);
+        }
+    }
+
+    public void testDecompressorPool() throws Exception {
+        ImageReaderFactory f = ImageReaderFactory.getInstance();
+        reader.read(0);
+        int idle = f.getNumIdleReaders(UIDs.JPEGBaseline);
+        assertTrue(idle > 0);
+        FrameIterator frames =
+                reader.readFrames(new int[] { 1, 2, 3, 4 }, null, 2);
+        frames.next();
+        frames.close();
+        ImageReader r = f.borrowReader(UIDs.JPEGBaseline);
+        assertNull(r.getInput());
+        f.returnReader(UIDs.JPEGBaseline, r);
+        assertSame(r, f.borrowReader(UIDs.JPEGBaseline));
+        f.returnReader(UIDs.JPEGBaseline, r);
+        assertTrue(f.getNumIdleReaders(UIDs.JPEGBaseline)
+                <= f.getMaxIdleReaders());
+    }
+
+    public void testCompressorPool() throws Exception {
+        ImageWriterFactory f = ImageWriterFactory.getInstance();
+        ImageWriter w = f.borrowWriter(UIDs.JPEGBaseline);
+        assertNotSame(w, f.getWriterForTransferSyntax(UIDs.JPEGBaseline));
+        f.returnWriter(UIDs.JPEGBaseline, w);
+        assertSame(w, f.borrowWriter(UIDs.JPEGBaseline));
+        f.returnWriter(UIDs.JPEGBaseline, w);
+    }
+
+    public void testIllegalIndex() throws Exception {
+        try {
+            reader.readFrames(new int[] { 0, FRAMES }, null, 2);
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import junit.framework.*;
+
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class AcceptorPolicyTest extends TestCase {
+
+    public AcceptorPolicyTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(AcceptorPolicyTest.class);
+    }
+
+    private static final int NUM_PRES_CONTEXTS = 128;
+    private static final String CUID_PREFIX = "1.2.40.0.13.1.1.99.";
+    private static final String[] ACCEPTED_TS = {
+        UIDs.JPEGLossless,
+        UIDs.ExplicitVRLittleEndian,
+        UIDs.ImplicitVRLittleEndian
+    };
+    private static final String[] OFFERED_TS = {
+        UIDs.ImplicitVRLittleEndian,
+        UIDs.ExplicitVRBigEndian,
+        UIDs.ExplicitVRLittleEndian,
+        UIDs.JPEGBaseline
+    };
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private AcceptorPolicy policy;
+    private TestServer server;
+
+    protected void setUp() throws Exception {
+        server = new TestServer();
+        policy = server.getPolicy();
+        // every second SOP Class is supported
+        for (int i = 0; i < NUM_PRES_CONTEXTS; i += 2)
+            policy.putPresContext(CUID_PREFIX + i, ACCEPTED_TS);
+        policy.putPresContext(CUID_PREFIX + 2,
+                new String[] { UIDs.JPEGLossless });
+        policy.putRoleSelection(CUID_PREFIX + 0, true, true);
+        server.start();
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private AAssociateAC connect() throws Exception {
+        Association assoc = server.newRequestor();
+        AAssociateRQ rq = fact.newAAssociateRQ();
+        rq.setCalledAET("POLICYTEST");
+        rq.setCallingAET("POLICYSCU");
+        for (int i = 0; i < NUM_PRES_CONTEXTS; i++)
+            rq.addPresContext(fact.newPresContext(2 * i + 1,
+                    CUID_PREFIX + i, OFFERED_TS));
+        rq.addRoleSelection(fact.newRoleSelection(CUID_PREFIX + 0, true,
+                true));
+        rq.addRoleSelection(fact.newRoleSelection(CUID_PREFIX + 4, true,
+                true));
+        PDU pdu = assoc.connect(rq);
+        assertTrue(pdu instanceof AAssociateAC);
+        fact.newActiveAssociation(assoc, null).release(false);
+        return (AAssociateAC) pdu;
+    }
+
+    public void testNegotiate() throws Exception {
+        AAssociateAC ac = connect();
+        assertEquals(NUM_PRES_CONTEXTS, ac.listPresContext().size());
+        for (int i = 0; i < NUM_PRES_CONTEXTS; i++) {
+            PresContext pc = ac.getPresContext(2 * i + 1);
+            if (i == 2) {
+                assertEquals(PresContext.TRANSFER_SYNTAXES_NOT_SUPPORTED,
+                        pc.result());
+            } else if ((i & 1) != 0) {
+                assertEquals(PresContext.ABSTRACT_SYNTAX_NOT_SUPPORTED,
+                        pc.result());
+            } else {
+                assertEquals(PresContext.ACCEPTANCE, pc.result());
+                // preference of the acceptor
+                assertEquals(UIDs.ExplicitVRLittleEndian,
+                        pc.getTransferSyntaxUID());
+            }
+        }
+        RoleSelection rs0 = ac.getRoleSelection(CUID_PREFIX + 0);
+        assertTrue(rs0.scu() && rs0.scp());
+        RoleSelection rs4 = ac.getRoleSelection(CUID_PREFIX + 4);
+        assertTrue(rs4.scu() && !rs4.scp());
+    }
+
+    public void testReconfigure() throws Exception {
+        connect();
+        policy.putPresContext(CUID_PREFIX + 1,
+                new String[] { UIDs.ImplicitVRLittleEndian });
+        policy.putPresContext(CUID_PREFIX + 0, null);
+        policy.removeRoleSelection(CUID_PREFIX + 0);
+        AAssociateAC ac = connect();
+        assertEquals(PresContext.ABSTRACT_SYNTAX_NOT_SUPPORTED,
+                ac.getPresContext(1).result());
+        PresContext pc = ac.getPresContext(3);
+        assertEquals(PresContext.ACCEPTANCE, pc.result());
+        assertEquals(UIDs.ImplicitVRLittleEndian, pc.getTransferSyntaxUID());
+        assertFalse(ac.getRoleSelection(CUID_PREFIX + 0).scp());
+    }
+
+    public void testReconfigureConcurrently() throws Exception {
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 5; i++)
+                            connect();
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int i = 1; i < NUM_PRES_CONTEXTS; i += 2) {
+            policy.putPresContext(CUID_PREFIX + i, ACCEPTED_TS);
+            Thread.sleep(5);
+        }
+        for (int t = 0; t < threads.length; t++)
+            threads[t].join();
+        assertNull(failure[0]);
+        AAssociateAC ac = connect();
+        for (int i = 1; i < NUM_PRES_CONTEXTS; i += 2)
+            assertEquals(PresContext.ACCEPTANCE,
+                    ac.getPresContext(2 * i + 1).result());
+    }
+}
@@ -0,0 +1,315 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.*;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class ActiveAssociationTest extends TestCase {
+
+    public ActiveAssociationTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(ActiveAssociationTest.class);
+    }
+
+    private static final String[] TS = { UIDs.ImplicitVRLittleEndian };
+    private static final int NUM_MATCHES = 3;
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+    private final Object echoLock = new Object();
+    private boolean echoBlocked = false;
+    private TestServer server;
+    private ActiveAssociation active;
+
+    protected void setUp() throws Exception {
+        server = new TestServer();
+        AcceptorPolicy policy = server.getPolicy();
+        policy.setAsyncOpsWindow(0, 0);
+        policy.putPresContext(UIDs.Verification, TS);
+        policy.putPresContext(UIDs.StudyRootQueryRetrieveInformationModelFIND,
+                TS);
+        DcmServiceRegistry services = server.getServices();
+        services.bind(UIDs.Verification, new DcmServiceBase() {
+            protected void doCEcho(ActiveAssociation assoc, Dimse rq,
+                    Command rspCmd) throws IOException {
+                synchronized (echoLock) {
+                    while (echoBlocked)
+                        try {
+                            echoLock.wait();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e.toString());
+                        }
+                }
+            }
+        });
+        services.bind(UIDs.StudyRootQueryRetrieveInformationModelFIND,
+                new DcmServiceBase() {
+            protected MultiDimseRsp doCFind(ActiveAssociation assoc,
+                    Dimse rq, Command rspCmd) throws IOException {
+                rq.getDataset();
+                return new MultiDimseRsp() {
+                    int count = 0;
+                    public DimseListener getCancelListener() {
+                        return null;
+                    }
+                    public Dataset next(ActiveAssociation assoc, Dimse rq,
+                            Command rspCmd) {
+                        if (count == NUM_MATCHES) {
+                            rspCmd.putUS(Tags.Status, SUCCESS);
+                            return null;
+                        }
+                        Dataset ds = objFact.newDataset();
+                        ds.putUI(Tags.StudyInstanceUID, "1.2.3." + ++count);
+                        return ds;
+                    }
+                    public void release() {
+                    }
+                };
+            }
+        });
+        server.start();
+    }
+
+    private void open(int maxOpsInvoked) throws Exception {
+        Association assoc = server.newRequestor();
+        AAssociateRQ rq = fact.newAAssociateRQ();
+        rq.setCalledAET("ACTIVETEST");
+        rq.setCallingAET("ACTIVESCU");
+        rq.setAsyncOpsWindow(fact.newAsyncOpsWindow(maxOpsInvoked, 1));
+        rq.addPresContext(fact.newPresContext(1, UIDs.Verification, TS));
+        rq.addPresContext(fact.newPresContext(3,
+                UIDs.StudyRootQueryRetrieveInformationModelFIND, TS));
+        assertTrue(assoc.connect(rq) instanceof AAssociateAC);
+        active = fact.newActiveAssociation(assoc, null);
+        active.start();
+    }
+
+    protected void tearDown() throws Exception {
+        setEchoBlocked(false);
+        if (active != null)
+            active.release(true);
+        server.stop();
+    }
+
+    private void setEchoBlocked(boolean blocked) {
+        synchronized (echoLock) {
+            echoBlocked = blocked;
+            echoLock.notifyAll();
+        }
+    }
+
+    private Dimse newEchoRQ() {
+        return fact.newDimse(1, objFact.newCommand().initCEchoRQ(
+                active.getAssociation().nextMsgID()));
+    }
+
+    public void testTryInvoke() throws Exception {
+        open(1);
+        setEchoBlocked(true);
+        FutureRSP future = active.tryInvoke(newEchoRQ(), null);
+        assertNotNull(future);
+        // default window of one outstanding operation
+        assertNull(active.tryInvoke(newEchoRQ(), null));
+        final List completed = new ArrayList();
+        future.addListener(new FutureRSP.Listener() {
+            public void completed(FutureRSP f) {
+                synchronized (completed) {
+                    completed.add(f);
+                    completed.notifyAll();
+                }
+            }
+        });
+        setEchoBlocked(false);
+        synchronized (completed) {
+            if (completed.isEmpty())
+                completed.wait(5000);
+        }
+        assertEquals(1, completed.size());
+        assertSame(future, completed.get(0));
+        assertTrue(future.isReady());
+        assertEquals(0, future.peek().getCommand().getStatus());
+        active.waitForPendingRSP();
+        FutureRSP next = active.tryInvoke(newEchoRQ(), null);
+        assertNotNull(next);
+        next.get();
+        // completed futures notify new listeners immediately
+        future.addListener(new FutureRSP.Listener() {
+            public void completed(FutureRSP f) {
+                completed.add(f);
+            }
+        });
+        assertEquals(2, completed.size());
+    }
+
+    public void testKeepWindowFull() throws Exception {
+        final int window = 4;
+        final int numEchos = 50;
+        open(window);
+        final Object lock = new Object();
+        final int[] outstanding = { 0 };
+        int maxOutstanding = 0;
+        FutureRSP.Listener l = new FutureRSP.Listener() {
+            public void completed(FutureRSP f) {
+                synchronized (lock) {
+                    --outstanding[0];
+                    lock.notifyAll();
+                }
+            }
+        };
+        List futures = new ArrayList();
+        while (futures.size() < numEchos) {
+            FutureRSP future = active.tryInvoke(newEchoRQ(), null);
+            synchronized (lock) {
+                if (future == null) {
+                    // wait for a free slot
+                    lock.wait(10);
+                    continue;
+                }
+                maxOutstanding = Math.max(maxOutstanding, ++outstanding[0]);
+            }
+            future.addListener(l);
+            futures.add(future);
+        }
+        active.waitForPendingRSP();
+        assertTrue("max: " + maxOutstanding, maxOutstanding <= window);
+        for (int i = 0; i < numEchos; i++)
+            assertEquals(0, ((FutureRSP) futures.get(i)).get().getCommand()
+                    .getStatus());
+        synchronized (lock) {
+            assertEquals(0, outstanding[0]);
+        }
+    }
+
+    public void testTryInvokeInterrupted() throws Exception {
+        open(1);
+        Thread.currentThread().interrupt();
+        try {
+            active.tryInvoke(newEchoRQ(), null);
+            fail("InterruptedIOException expected");
+        } catch (InterruptedIOException e) {
+            // expected
+        }
+        assertNotNull(active.tryInvoke(newEchoRQ(), null));
+    }
+
+    public void testPendingListener() throws Exception {
+        open(1);
+        Dataset keys = objFact.newDataset();
+        keys.putCS(Tags.QueryRetrieveLevel, "STUDY");
+        keys.putUI(Tags.StudyInstanceUID);
+        Command cmd = objFact.newCommand().initCFindRQ(
+                active.getAssociation().nextMsgID(),
+                UIDs.StudyRootQueryRetrieveInformationModelFIND,
+                Command.MEDIUM);
+        final List matches = new ArrayList();
+        FutureRSP future = active.tryInvoke(fact.newDimse(3, cmd, keys),
+                new DimseListener() {
+            public void dimseReceived(Association assoc, Dimse dimse) {
+                try {
+                    matches.add(dimse.getDataset()
+                            .getString(Tags.StudyInstanceUID));
+                } catch (IOException e) {
+                    matches.add(e);
+                }
+            }
+        });
+        assertEquals(0, future.get().getCommand().getStatus());
+        assertEquals(NUM_MATCHES, matches.size());
+        assertEquals("1.2.3.1", matches.get(0));
+        assertTrue(future.listPending().isEmpty());
+    }
+
+    public void testSlowListener() throws Exception {
+        open(2);
+        Dataset keys = objFact.newDataset();
+        keys.putCS(Tags.QueryRetrieveLevel, "STUDY");
+        keys.putUI(Tags.StudyInstanceUID);
+        Command cmd = objFact.newCommand().initCFindRQ(
+                active.getAssociation().nextMsgID(),
+                UIDs.StudyRootQueryRetrieveInformationModelFIND,
+                Command.MEDIUM);
+        final List echoStatus = new ArrayList();
+        // invokes and waits for a C-ECHO on receive of the first match
+        FutureRSP future = active.tryInvoke(fact.newDimse(3, cmd, keys),
+                new DimseListener() {
+            public void dimseReceived(Association assoc, Dimse dimse) {
+                if (!echoStatus.isEmpty())
+                    return;
+                try {
+                    FutureRSP echo = active.invoke(newEchoRQ());
+                    long end = System.currentTimeMillis() + 5000;
+                    while (!echo.isReady()
+                            && System.currentTimeMillis() < end)
+                        Thread.sleep(10);
+                    echoStatus.add(echo.isReady()
+                            ? new Integer(echo.peek().getCommand().getStatus())
+                            : (Object) "timeout");
+                } catch (Exception e) {
+                    echoStatus.add(e);
+                }
+            }
+        });
+        assertEquals(0, future.get().getCommand().getStatus());
+        assertEquals(1, echoStatus.size());
+        assertEquals(new Integer(0), echoStatus.get(0));
+    }
+}
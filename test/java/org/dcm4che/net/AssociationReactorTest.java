@@ -0,0 +1,285 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+import junit.framework.*;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmDecodeParam;
+import org.dcm4che.data.DcmEncodeParam;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.dict.VRs;
+import org.dcm4che.server.ServerFactory;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version 1.0.0
+ */
+public class AssociationReactorTest extends TestCase {
+
+    public AssociationReactorTest(java.lang.String testName) {
+        super(testName);
+    }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(AssociationReactorTest.class);
+        return suite;
+    }
+
+    private static final int NUM_ASSOCS = 5;
+    private static final int NUM_ECHOS = 3;
+    private static final int MAX_WORKERS = 2;
+    private static final int MAX_PDU_LENGTH = 4096;
+    private static final int PIXEL_DATA_LENGTH = 100000;
+
+    private AssociationFactory fact;
+    private DcmObjectFactory objFact;
+    private ServerFactory srvFact;
+
+    protected void setUp() throws Exception {
+        fact = AssociationFactory.getInstance();
+        objFact = DcmObjectFactory.getInstance();
+        srvFact = ServerFactory.getInstance();
+    }
+
+    private ActiveAssociation open(TestServer server,
+            AssociationReactor reactor) throws Exception {
+        ActiveAssociation active = connect(server);
+        active.start(reactor);
+        return active;
+    }
+
+    private ActiveAssociation connect(TestServer server) throws Exception {
+        Association assoc = server.newRequestor();
+        AAssociateRQ rq = fact.newAAssociateRQ();
+        rq.setCalledAET("REACTOR_SCP");
+        rq.setCallingAET("REACTOR_SCU");
+        rq.setMaxPDULength(MAX_PDU_LENGTH);
+        rq.addPresContext(fact.newPresContext(1, UIDs.Verification,
+                new String[] { UIDs.ImplicitVRLittleEndian }));
+        rq.addPresContext(fact.newPresContext(3, UIDs.SecondaryCaptureImageStorage,
+                new String[] { UIDs.ImplicitVRLittleEndian }));
+        assertTrue(assoc.connect(rq) instanceof AAssociateAC);
+        return fact.newActiveAssociation(assoc, null);
+    }
+
+    private TestServer startServer(AssociationReactor reactor,
+            DcmService storageSCP) throws Exception {
+        TestServer server = new TestServer();
+        AcceptorPolicy policy = server.getPolicy();
+        policy.setMaxPDULength(MAX_PDU_LENGTH);
+        policy.putPresContext(UIDs.Verification,
+                new String[] { UIDs.ImplicitVRLittleEndian });
+        policy.putPresContext(UIDs.SecondaryCaptureImageStorage,
+                new String[] { UIDs.ImplicitVRLittleEndian });
+        DcmServiceRegistry services = server.getServices();
+        services.bind(UIDs.Verification, DcmServiceBase.VERIFICATION_SCP);
+        services.bind(UIDs.SecondaryCaptureImageStorage, storageSCP);
+        server.getHandler().setAssociationReactor(reactor);
+        server.start(srvFact.newChannelServerSocketFactory());
+        return server;
+    }
+
+    public void testEcho() throws Exception {
+        AssociationReactor reactor = fact.newAssociationReactor();
+        reactor.setMaxWorkers(MAX_WORKERS);
+        TestServer server = startServer(reactor,
+                DcmServiceBase.NO_SUCH_SOP_CLASS_SCP);
+        try {
+            ActiveAssociation[] active = new ActiveAssociation[NUM_ASSOCS];
+            for (int i = 0; i < NUM_ASSOCS; i++)
+                active[i] = open(server, reactor);
+            for (int j = 0; j < NUM_ECHOS; j++)
+                for (int i = 0; i < NUM_ASSOCS; i++) {
+                    FutureRSP rsp = active[i].invoke(fact.newDimse(1,
+                            objFact.newCommand().initCEchoRQ(j)));
+                    assertEquals(0, rsp.get().getCommand().getStatus());
+                }
+            // both sides of each association are served by the reactor
+            assertEquals(2 * NUM_ASSOCS, reactor.getNumAssociations());
+            assertTrue(reactor.getNumWorkers() <= MAX_WORKERS);
+            for (int i = 0; i < NUM_ASSOCS; i++)
+                active[i].release(true);
+            for (int i = 0; i < 50 && reactor.getNumAssociations() > 0; i++)
+                Thread.sleep(100);
+            assertEquals(0, reactor.getNumAssociations());
+            for (int i = 0; i < NUM_ASSOCS; i++)
+                assertEquals(Association.IDLE,
+                        active[i].getAssociation().getState());
+        } finally {
+            server.stop();
+            reactor.stop();
+        }
+    }
+
+    public void testStopAbortsAssociations() throws Exception {
+        AssociationReactor reactor = fact.newAssociationReactor();
+        TestServer server = startServer(reactor,
+                DcmServiceBase.NO_SUCH_SOP_CLASS_SCP);
+        try {
+            ActiveAssociation active = connect(server);
+            active.start();
+            for (int i = 0; i < 50 && reactor.getNumAssociations() == 0; i++)
+                Thread.sleep(100);
+            assertEquals(1, reactor.getNumAssociations());
+            reactor.stop();
+            assertEquals(0, reactor.getNumAssociations());
+            Association assoc = active.getAssociation();
+            for (int i = 0; i < 50 && assoc.getState() != Association.IDLE;
+                    i++)
+                Thread.sleep(100);
+            assertEquals(Association.IDLE, assoc.getState());
+            assertNotNull(assoc.getAAbort());
+        } finally {
+            server.stop();
+            reactor.stop();
+        }
+    }
+
+    public void testStoreByReactor() throws Exception {
+        AssociationReactor reactor = fact.newAssociationReactor();
+        try {
+            doTestStore(reactor, null);
+        } finally {
+            reactor.stop();
+        }
+    }
+
+    public void testStoreByThreadPool() throws Exception {
+        doTestStore(null, null);
+    }
+
+    public void testStoreFromFile() throws Exception {
+        File file = File.createTempFile("pixeldata", ".raw");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(newPixelData());
+            } finally {
+                out.close();
+            }
+            FileInputStream in = new FileInputStream(file);
+            try {
+                doTestStore(null, in.getChannel());
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] newPixelData() {
+        byte[] pixelData = new byte[PIXEL_DATA_LENGTH];
+        for (int i = 0; i < pixelData.length; i++)
+            pixelData[i] = (byte) i;
+        return pixelData;
+    }
+
+    private void doTestStore(AssociationReactor reactor,
+            final FileChannel pixelDataFile) throws Exception {
+        final byte[] pixelData = newPixelData();
+        final int[] stored = new int[1];
+        DcmService storageSCP = new DcmServiceBase() {
+            protected void doCStore(ActiveAssociation assoc, Dimse rq,
+                    Command rspCmd) throws IOException {
+                byte[] b = rq.getDataset().getByteBuffer(Tags.PixelData)
+                        .array();
+                synchronized (stored) {
+                    if (java.util.Arrays.equals(pixelData, b))
+                        ++stored[0];
+                }
+                rspCmd.putUS(Tags.Status, SUCCESS);
+            }
+        };
+        TestServer server = startServer(reactor, storageSCP);
+        try {
+            ActiveAssociation active = connect(server);
+            active.start();
+            for (int i = 0; i < NUM_ECHOS; i++) {
+                final Dataset ds = objFact.newDataset();
+                ds.putUI(Tags.SOPClassUID, UIDs.SecondaryCaptureImageStorage);
+                ds.putUI(Tags.SOPInstanceUID, "1.2.3." + i);
+                Command cmd = objFact.newCommand().initCStoreRQ(i + 1,
+                        UIDs.SecondaryCaptureImageStorage, "1.2.3." + i,
+                        Command.MEDIUM);
+                Dimse rq;
+                if (pixelDataFile == null) {
+                    ds.putOB(Tags.PixelData, pixelData);
+                    rq = fact.newDimse(3, cmd, ds);
+                } else {
+                    rq = fact.newDimse(3, cmd, new DataSource() {
+                        public void writeTo(OutputStream out, String tsUID)
+                                throws IOException {
+                            DcmEncodeParam param = (DcmEncodeParam)
+                                    DcmDecodeParam.valueOf(tsUID);
+                            ds.writeDataset(out, param);
+                            ds.writeHeader(out, param, Tags.PixelData,
+                                    VRs.OB, PIXEL_DATA_LENGTH);
+                            assertTrue(out instanceof FileRegionOutput);
+                            ((FileRegionOutput) out).transferFrom(
+                                    pixelDataFile, 0, PIXEL_DATA_LENGTH);
+                        }
+                    });
+                }
+                FutureRSP rsp = active.invoke(rq);
+                assertEquals(0, rsp.get().getCommand().getStatus());
+            }
+            active.release(true);
+            assertEquals(NUM_ECHOS, stored[0]);
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.*;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.data.FileFormat;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class FileStorageSCPTest extends TestCase {
+
+    public FileStorageSCPTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(FileStorageSCPTest.class);
+    }
+
+    private static final String[] TS = { UIDs.ExplicitVRLittleEndian };
+    private static final String CUID = UIDs.SecondaryCaptureImageStorage;
+    private static final int PIXEL_DATA_LENGTH = 100000;
+    private static final int NUM_FILES = 3;
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+    private final List stored = new ArrayList();
+    private File dir;
+    private FileStorageSCP scp;
+    private TestServer server;
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("storescp", null);
+        dir.delete();
+        scp = new FileStorageSCP(dir) {
+            protected void stored(ActiveAssociation assoc, Dimse rq,
+                    File file, Dataset attrs) {
+                synchronized (stored) {
+                    stored.add(attrs);
+                }
+            }
+        };
+        server = new TestServer();
+        server.getPolicy().putPresContext(CUID, TS);
+        server.getServices().bind(CUID, scp);
+        server.start();
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (int i = 0; i < files.length; i++)
+                files[i].delete();
+        dir.delete();
+    }
+
+    private static byte[] newPixelData() {
+        byte[] pixelData = new byte[PIXEL_DATA_LENGTH];
+        for (int i = 0; i < pixelData.length; i++)
+            pixelData[i] = (byte) i;
+        return pixelData;
+    }
+
+    private Dataset newDataset(int i, byte[] pixelData) {
+        Dataset ds = objFact.newDataset();
+        ds.putUI(Tags.SOPClassUID, CUID);
+        ds.putUI(Tags.SOPInstanceUID, "1.2.3." + i);
+        ds.putLO(Tags.PatientID, "PID-" + i);
+        ds.putUI(Tags.StudyInstanceUID, "1.2.3");
+        ds.putOB(Tags.PixelData, pixelData);
+        return ds;
+    }
+
+    private void store(byte[] pixelData) throws Exception {
+        Association assoc = server.newRequestor();
+        AAssociateRQ rq = fact.newAAssociateRQ();
+        rq.setCalledAET("STORESCP");
+        rq.setCallingAET("STORESCU");
+        rq.addPresContext(fact.newPresContext(1, CUID, TS));
+        assertTrue(assoc.connect(rq) instanceof AAssociateAC);
+        ActiveAssociation active = fact.newActiveAssociation(assoc, null);
+        active.start();
+        for (int i = 0; i < NUM_FILES; i++) {
+            Command cmd = objFact.newCommand().initCStoreRQ(
+                    assoc.nextMsgID(), CUID, "1.2.3." + i, Command.MEDIUM);
+            FutureRSP rsp = active.invoke(fact.newDimse(1, cmd,
+                    newDataset(i, pixelData)));
+            assertEquals(0, rsp.get().getCommand().getStatus());
+        }
+        active.release(true);
+    }
+
+    public void testStore() throws Exception {
+        scp.setIndexTags(new int[] { Tags.PatientID, Tags.SOPInstanceUID });
+        scp.setSyncBatchSize(2);
+        byte[] pixelData = newPixelData();
+        store(pixelData);
+        scp.flush();
+        assertEquals(NUM_FILES, dir.list().length);
+        for (int i = 0; i < NUM_FILES; i++) {
+            Dataset ds = objFact.newDataset();
+            ds.readFile(new File(dir, "1.2.3." + i), FileFormat.DICOM_FILE,
+                    -1);
+            assertEquals(CUID, ds.getFileMetaInfo()
+                    .getMediaStorageSOPClassUID());
+            assertEquals("PID-" + i, ds.getString(Tags.PatientID));
+            assertTrue(Arrays.equals(pixelData,
+                    ds.getByteBuffer(Tags.PixelData).array()));
+            Dataset attrs = (Dataset) stored.get(i);
+            assertEquals(2, attrs.size());
+            assertEquals("PID-" + i, attrs.getString(Tags.PatientID));
+            assertEquals("1.2.3." + i, attrs.getString(Tags.SOPInstanceUID));
+        }
+    }
+
+    public void testStoreWithoutIndex() throws Exception {
+        scp.setUseTempFile(false);
+        store(newPixelData());
+        assertEquals(NUM_FILES, dir.list().length);
+        assertNull(stored.get(0));
+        Dataset ds = objFact.newDataset();
+        ds.readFile(new File(dir, "1.2.3.0"), FileFormat.DICOM_FILE, -1);
+        assertEquals("1.2.3", ds.getString(Tags.StudyInstanceUID));
+    }
+}
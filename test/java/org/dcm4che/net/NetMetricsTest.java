@@ -0,0 +1,173 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import junit.framework.*;
+
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class NetMetricsTest extends TestCase {
+
+    public NetMetricsTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(NetMetricsTest.class);
+    }
+
+    private static final String AET = "NETMETRICS";
+    private static final String[] TS = { UIDs.ImplicitVRLittleEndian };
+    private static final int NUM_ECHOS = 50;
+    private static final long TIMEOUT = 5000L;
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+    private TestServer server;
+
+    protected void setUp() throws Exception {
+        server = new TestServer();
+        server.getPolicy().addCalledAET(AET);
+        server.getPolicy().putPresContext(UIDs.Verification, TS);
+        server.getServices().bind(UIDs.Verification,
+                DcmServiceBase.VERIFICATION_SCP);
+        server.start();
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private Association connect(String calledAET) throws Exception {
+        AAssociateRQ rq = fact.newAAssociateRQ();
+        rq.setCalledAET(calledAET);
+        rq.setCallingAET("METRICSSCU");
+        rq.addPresContext(fact.newPresContext(1, UIDs.Verification, TS));
+        return server.connect(rq);
+    }
+
+    private long awaitPerformed(NetMetrics metrics, long expected)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        long performed;
+        while ((performed = metrics.getPerformedOperations(UIDs.Verification))
+                < expected && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        return performed;
+    }
+
+    public void testEcho() throws Exception {
+        NetMetrics global = fact.getMetrics();
+        long performed = global.getPerformedOperations(UIDs.Verification);
+        Association assoc = connect(AET);
+        assertEquals(Association.ASSOCIATION_ESTABLISHED, assoc.getState());
+        ActiveAssociation active = fact.newActiveAssociation(assoc, null);
+        active.start();
+        for (int i = 0; i < NUM_ECHOS; i++)
+            active.invoke(fact.newDimse(1,
+                    objFact.newCommand().initCEchoRQ(assoc.nextMsgID())),
+                    null);
+        active.release(true);
+        NetMetrics metrics = assoc.getMetrics();
+        assertEquals(NUM_ECHOS, metrics.getDimsesSent());
+        assertEquals(NUM_ECHOS, metrics.getDimsesReceived());
+        // A-ASSOCIATE-RQ, P-DATA-TFs, A-RELEASE-RQ
+        assertEquals(NUM_ECHOS + 2, metrics.getPDUsSent());
+        // A-RELEASE-RP may not be received yet
+        assertTrue(metrics.getPDUsReceived() >= NUM_ECHOS + 1);
+        assertTrue(metrics.getBytesSent() > NUM_ECHOS * 6);
+        assertTrue(metrics.getBytesReceived() > NUM_ECHOS * 6);
+        assertEquals(0, metrics.getPendingOperations());
+        assertTrue(metrics.getMaxPendingOperations() >= 1);
+        assertEquals(1, metrics.getSOPClassUIDs().length);
+        assertEquals(NUM_ECHOS,
+                metrics.getInvokedOperations(UIDs.Verification));
+        assertEquals(0, metrics.getPerformedOperations(UIDs.Verification));
+        long median = metrics.getInvokeLatency(UIDs.Verification, 50);
+        long max = metrics.getInvokeLatency(UIDs.Verification, 100);
+        assertTrue("median: " + median + ", max: " + max,
+                median > 0 && median <= max);
+        assertEquals(performed + NUM_ECHOS, awaitPerformed(global,
+                performed + NUM_ECHOS));
+        assertTrue(global.getDimsesSent() >= 2 * NUM_ECHOS);
+        metrics.reset();
+        assertEquals(0, metrics.getPDUsSent());
+        assertEquals(0, metrics.getSOPClassUIDs().length);
+        assertEquals(0, metrics.getInvokeLatency(UIDs.Verification, 50));
+    }
+
+    public void testReject() throws Exception {
+        NetMetrics global = fact.getMetrics();
+        long rejected = global.getAssociationsRejected();
+        Association assoc = connect("UNKNOWN");
+        assertNotNull(assoc.getAAssociateRJ());
+        assertEquals(1, assoc.getMetrics().getAssociationsRejected());
+        // sent by acceptor and received by requestor
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (global.getAssociationsRejected() < rejected + 2
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(rejected + 2, global.getAssociationsRejected());
+    }
+
+    public void testRegisterMBean() throws Exception {
+        String name = "org.dcm4che.net:type=NetMetricsTest";
+        try {
+            fact.registerMetricsMBean(name);
+        } catch (UnsupportedOperationException e) {
+            return; // no JMX
+        }
+        try {
+            fact.registerMetricsMBean(name);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+        fact.unregisterMetricsMBean(name);
+    }
+}
@@ -66,6 +66,12 @@ public class PackageTest extends Object {
         suite.addTest(AReleaseRQTest.suite());
         suite.addTest(AReleaseRPTest.suite());
         suite.addTest(AAbortTest.suite());
+        suite.addTest(AssociationReactorTest.suite());
+        suite.addTest(ActiveAssociationTest.suite());
+        suite.addTest(StreamingMultiDimseRspTest.suite());
+        suite.addTest(FileStorageSCPTest.suite());
+        suite.addTest(NetMetricsTest.suite());
+        suite.addTest(AcceptorPolicyTest.suite());
         return suite;
     }
 }
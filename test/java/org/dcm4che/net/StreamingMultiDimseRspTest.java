@@ -0,0 +1,245 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.net;
+
+import java.io.IOException;
+
+import junit.framework.*;
+
+import org.dcm4che.data.Command;
+import org.dcm4che.data.Dataset;
+import org.dcm4che.data.DcmObjectFactory;
+import org.dcm4che.dict.Tags;
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.server.TestServer;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class StreamingMultiDimseRspTest extends TestCase {
+
+    public StreamingMultiDimseRspTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(StreamingMultiDimseRspTest.class);
+    }
+
+    private static final String[] TS = { UIDs.ImplicitVRLittleEndian };
+    private static final String CUID =
+        UIDs.StudyRootQueryRetrieveInformationModelFIND;
+    private static final int NUM_MATCHES = 20;
+    private static final int PREFETCH = 4;
+    private static final long TIMEOUT = 5000L;
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private final DcmObjectFactory objFact = DcmObjectFactory.getInstance();
+
+    /** Cursor over a number of matches; -1 for unlimited matches. */
+    private class Cursor implements DatasetCursor {
+        private final int size;
+        private int fetched = 0;
+        private boolean closed = false;
+
+        Cursor(int size) {
+            this.size = size;
+        }
+
+        public synchronized Dataset next() {
+            if (fetched == size)
+                return null;
+            Dataset ds = objFact.newDataset();
+            ds.putUI(Tags.StudyInstanceUID, "1.2.3." + ++fetched);
+            notifyAll();
+            return ds;
+        }
+
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        synchronized int awaitFetched(int n) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT;
+            long wait;
+            while (fetched < n
+                    && (wait = end - System.currentTimeMillis()) > 0)
+                wait(wait);
+            return fetched;
+        }
+
+        synchronized boolean awaitClosed() throws InterruptedException {
+            if (!closed)
+                wait(TIMEOUT);
+            return closed;
+        }
+    }
+
+    private Command newRspCmd() {
+        return objFact.newCommand().initCFindRSP(1, CUID,
+                DcmServiceBase.PENDING);
+    }
+
+    public void testPrefetch() throws Exception {
+        Cursor cursor = new Cursor(NUM_MATCHES);
+        StreamingMultiDimseRsp mdr =
+            new StreamingMultiDimseRsp(cursor, PREFETCH);
+        mdr.start();
+        assertEquals(PREFETCH, cursor.awaitFetched(PREFETCH));
+        Thread.sleep(100);
+        // reading stops at full buffer
+        assertEquals(PREFETCH, cursor.awaitFetched(PREFETCH));
+        assertEquals(PREFETCH, mdr.available());
+        Command rspCmd = newRspCmd();
+        for (int i = 1; i <= NUM_MATCHES; i++) {
+            Dataset ds = mdr.next(null, null, rspCmd);
+            assertTrue(rspCmd.isPending());
+            assertEquals("1.2.3." + i, ds.getString(Tags.StudyInstanceUID));
+        }
+        assertNull(mdr.next(null, null, rspCmd));
+        assertEquals(DcmServiceBase.SUCCESS, rspCmd.getStatus());
+        assertTrue(cursor.awaitClosed());
+        mdr.release();
+    }
+
+    public void testCancel() throws Exception {
+        Cursor cursor = new Cursor(-1);
+        StreamingMultiDimseRsp mdr =
+            new StreamingMultiDimseRsp(cursor, PREFETCH);
+        Command rspCmd = newRspCmd();
+        assertNotNull(mdr.next(null, null, rspCmd));
+        mdr.getCancelListener().dimseReceived(null, null);
+        assertNull(mdr.next(null, null, rspCmd));
+        assertEquals(StreamingMultiDimseRsp.CANCEL, rspCmd.getStatus());
+        mdr.release();
+        assertTrue(cursor.awaitClosed());
+    }
+
+    public void testFailure() throws Exception {
+        StreamingMultiDimseRsp mdr = new StreamingMultiDimseRsp(
+                new DatasetCursor() {
+                    public Dataset next() throws IOException {
+                        throw new IOException("cursor failed");
+                    }
+                    public void close() {
+                    }
+                }, PREFETCH);
+        try {
+            mdr.next(null, null, newRspCmd());
+            fail("DcmServiceException expected");
+        } catch (DcmServiceException e) {
+            assertEquals(StreamingMultiDimseRsp.PROCESSING_FAILURE,
+                    e.getStatus());
+        }
+        mdr.release();
+    }
+
+    public void testPackPDVs() throws Exception {
+        TestServer server = new TestServer();
+        server.getPolicy().putPresContext(CUID, TS);
+        server.getServices().bind(CUID, new DcmServiceBase() {
+            protected MultiDimseRsp doCFind(ActiveAssociation assoc,
+                    Dimse rq, Command rspCmd) throws IOException {
+                rq.getDataset();
+                Cursor cursor = new Cursor(NUM_MATCHES);
+                StreamingMultiDimseRsp mdr =
+                    new StreamingMultiDimseRsp(cursor, NUM_MATCHES);
+                mdr.start();
+                try {
+                    cursor.awaitFetched(NUM_MATCHES);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+                return mdr;
+            }
+        });
+        server.getHandler().setPackPDVs(true);
+        server.start();
+        try {
+            Association assoc = server.newRequestor();
+            AAssociateRQ rq = fact.newAAssociateRQ();
+            rq.setCalledAET("STREAMTEST");
+            rq.setCallingAET("STREAMSCU");
+            rq.addPresContext(fact.newPresContext(1, CUID, TS));
+            assertTrue(assoc.connect(rq) instanceof AAssociateAC);
+            final int[] pdus = new int[1];
+            assoc.addAssociationListener(new AssociationListener() {
+                public void received(Association src, PDU pdu) {
+                    if (pdu instanceof PDataTF)
+                        ++pdus[0];
+                }
+                public void write(Association src, PDU pdu) {
+                }
+                public void write(Association src, Dimse dimse) {
+                }
+                public void received(Association src, Dimse dimse) {
+                }
+                public void error(Association src, IOException ioe) {
+                }
+                public void closing(Association src) {
+                }
+                public void closed(Association src) {
+                }
+            });
+            ActiveAssociation active = fact.newActiveAssociation(assoc, null);
+            active.start();
+            Dataset keys = objFact.newDataset();
+            keys.putCS(Tags.QueryRetrieveLevel, "STUDY");
+            keys.putUI(Tags.StudyInstanceUID);
+            FutureRSP future = active.invoke(fact.newDimse(1,
+                    objFact.newCommand().initCFindRQ(
+                            assoc.nextMsgID(), CUID, Command.MEDIUM),
+                    keys));
+            assertEquals(DcmServiceBase.SUCCESS,
+                    future.get().getCommand().getStatus());
+            assertEquals(NUM_MATCHES, future.listPending().size());
+            active.release(true);
+            // C-FIND-RSPs of matches packed into few P-DATA-TFs
+            assertTrue("P-DATA-TFs: " + pdus[0], pdus[0] < NUM_MATCHES / 2);
+        } finally {
+            server.stop();
+        }
+    }
+}
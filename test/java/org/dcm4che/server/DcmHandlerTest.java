@@ -0,0 +1,202 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.server;
+
+import java.net.Socket;
+
+import junit.framework.*;
+
+import org.dcm4che.dict.UIDs;
+import org.dcm4che.net.AAssociateRJ;
+import org.dcm4che.net.AAssociateRQ;
+import org.dcm4che.net.Association;
+import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.DcmServiceBase;
+
+/**
+ *
+ * @version $Revision$
+ */
+public class DcmHandlerTest extends TestCase {
+
+    public DcmHandlerTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(DcmHandlerTest.class);
+    }
+
+    private static final String[] TS = { UIDs.ImplicitVRLittleEndian };
+    private static final long TIMEOUT = 5000L;
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+    private TestServer testServer;
+    private DcmHandler handler;
+    private Server server;
+
+    protected void setUp() throws Exception {
+        testServer = new TestServer();
+        testServer.getPolicy().putPresContext(UIDs.Verification, TS);
+        testServer.getServices().bind(UIDs.Verification,
+                DcmServiceBase.VERIFICATION_SCP);
+        handler = testServer.getHandler();
+        server = testServer.getServer();
+        server.setBacklog(50);
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private Association connect(String callingAET) throws Exception {
+        AAssociateRQ rq = fact.newAAssociateRQ();
+        rq.setCalledAET("HANDLERTEST");
+        rq.setCallingAET(callingAET);
+        rq.addPresContext(fact.newPresContext(1, UIDs.Verification, TS));
+        return testServer.connect(rq);
+    }
+
+    private static void assertLocalLimitExceeded(Association assoc) {
+        AAssociateRJ rj = assoc.getAAssociateRJ();
+        assertNotNull(rj);
+        assertEquals(AAssociateRJ.REJECTED_TRANSIENT, rj.result());
+        assertEquals(AAssociateRJ.SERVICE_PROVIDER_PRES, rj.source());
+        assertEquals(AAssociateRJ.LOCAL_LIMIT_EXCEEDED, rj.reason());
+    }
+
+    private void awaitNumAssociations(int expected)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (handler.getNumAssociations() != expected
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(expected, handler.getNumAssociations());
+    }
+
+    private void release(Association assoc) throws Exception {
+        fact.newActiveAssociation(assoc, null).release(false);
+    }
+
+    public void testCallingAETQuota() throws Exception {
+        handler.setMaxAssociationsPerCallingAET(1);
+        handler.setMaxAssociationsForCallingAET("PRIVILEGED", 2);
+        testServer.start();
+        Association a1 = connect("MODALITY");
+        assertNotNull(a1.getAAssociateAC());
+        Association a2 = connect("MODALITY");
+        assertLocalLimitExceeded(a2);
+        Association b1 = connect("PRIVILEGED");
+        Association b2 = connect("PRIVILEGED");
+        assertNotNull(b2.getAAssociateAC());
+        assertEquals(3, handler.getNumAssociations());
+        assertEquals(1, handler.getNumAssociations("MODALITY"));
+        assertEquals(2, handler.getNumAssociations("PRIVILEGED"));
+        assertEquals(1, handler.getRejectedCount());
+        release(a1);
+        release(b1);
+        release(b2);
+        awaitNumAssociations(0);
+        Association a3 = connect("MODALITY");
+        assertNotNull(a3.getAAssociateAC());
+        release(a3);
+    }
+
+    public void testMaxAssociations() throws Exception {
+        handler.setMaxAssociations(1);
+        testServer.start();
+        Association a1 = connect("MODALITY1");
+        assertNotNull(a1.getAAssociateAC());
+        assertLocalLimitExceeded(connect("MODALITY2"));
+        release(a1);
+        awaitNumAssociations(0);
+    }
+
+    public void testRejectIfSaturated() throws Exception {
+        // one thread handling associations, one refusing connections
+        server.setMaxClients(2);
+        server.setRejectIfSaturated(true);
+        testServer.start();
+        Association a1 = connect("MODALITY1");
+        assertNotNull(a1.getAAssociateAC());
+        long start = System.currentTimeMillis();
+        Association a2 = connect("MODALITY2");
+        assertLocalLimitExceeded(a2);
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT);
+        assertEquals(1, server.getRejectedCount());
+        assertEquals(1, handler.getRejectedCount());
+        release(a1);
+        awaitNumAssociations(0);
+        // handling thread accepts connections again
+        long end = System.currentTimeMillis() + TIMEOUT;
+        Association a3;
+        do {
+            a3 = connect("MODALITY3");
+        } while (a3.getAAssociateAC() == null
+                && System.currentTimeMillis() < end);
+        assertNotNull(a3.getAAssociateAC());
+        release(a3);
+    }
+
+    public void testRejectSilentPeer() throws Exception {
+        server.setMaxClients(2);
+        server.setRejectIfSaturated(true);
+        handler.setRqTimeout(5000);
+        handler.setRejectTimeout(200);
+        testServer.start();
+        Association a1 = connect("MODALITY1");
+        assertNotNull(a1.getAAssociateAC());
+        // peer, which never sends an A-ASSOCIATE-RQ
+        Socket silent = new Socket(TestServer.HOST, server.getPort());
+        try {
+            long start = System.currentTimeMillis();
+            assertLocalLimitExceeded(connect("MODALITY2"));
+            assertTrue(System.currentTimeMillis() - start < 2000);
+            assertEquals(2, server.getRejectedCount());
+        } finally {
+            silent.close();
+        }
+        release(a1);
+        awaitNumAssociations(0);
+    }
+}
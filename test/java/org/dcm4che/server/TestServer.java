@@ -0,0 +1,150 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ServerSocketFactory;
+
+import org.dcm4che.net.AAssociateRQ;
+import org.dcm4che.net.AcceptorPolicy;
+import org.dcm4che.net.Association;
+import org.dcm4che.net.AssociationFactory;
+import org.dcm4che.net.DcmServiceRegistry;
+
+/**
+ * Server listening on a free port of the loopback interface, shared by the
+ * tests, which connect a requestor to it.
+ *
+ * @version $Revision$
+ */
+public class TestServer {
+
+    public static final String HOST = "127.0.0.1";
+
+    private final AssociationFactory fact = AssociationFactory.getInstance();
+
+    private final AcceptorPolicy policy;
+
+    private final DcmServiceRegistry services;
+
+    private final DcmHandler handler;
+
+    private final Server server;
+
+    public TestServer() {
+        this(AssociationFactory.getInstance().newAcceptorPolicy(),
+                AssociationFactory.getInstance().newDcmServiceRegistry());
+    }
+
+    public TestServer(AcceptorPolicy policy, DcmServiceRegistry services) {
+        ServerFactory srvFact = ServerFactory.getInstance();
+        this.policy = policy;
+        this.services = services;
+        this.handler = srvFact.newDcmHandler(policy, services);
+        this.handler.setSoCloseDelay(0);
+        this.server = srvFact.newServer(handler);
+    }
+
+    /** Serves connections by the specified handler instead of DICOM. */
+    public TestServer(Server.Handler handler) {
+        this.policy = null;
+        this.services = null;
+        this.handler = null;
+        this.server = ServerFactory.getInstance().newServer(handler);
+    }
+
+    public AcceptorPolicy getPolicy() {
+        return policy;
+    }
+
+    public DcmServiceRegistry getServices() {
+        return services;
+    }
+
+    public DcmHandler getHandler() {
+        return handler;
+    }
+
+    public Server getServer() {
+        return server;
+    }
+
+    /** Returns the port the server is listening on, while it is running. */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    public int start() throws IOException {
+        return start(ServerSocketFactory.getDefault());
+    }
+
+    /**
+     * Binds the server socket to a free port and starts the server.
+     *
+     * @return the port the server is listening on
+     */
+    public int start(ServerSocketFactory ssf) throws IOException {
+        server.setPort(0);
+        server.setServerSocketFactory(ssf);
+        server.start();
+        return server.getPort();
+    }
+
+    public void stop() {
+        server.stop();
+    }
+
+    /** Opens a connection to the server, without negotiating an association. */
+    public Association newRequestor() throws IOException {
+        Association assoc = fact.newRequestor(SocketChannel.open(
+                new InetSocketAddress(HOST, getPort())).socket());
+        assoc.setSoCloseDelay(0);
+        return assoc;
+    }
+
+    /** Opens a connection to the server and requests an association. */
+    public Association connect(AAssociateRQ rq) throws IOException {
+        Association assoc = newRequestor();
+        assoc.connect(rq);
+        return assoc;
+    }
+}
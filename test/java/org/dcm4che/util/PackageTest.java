@@ -58,6 +58,8 @@ public class PackageTest extends Object {
     public static Test suite() {
         TestSuite suite= new TestSuite();
         suite.addTest(UIDGeneratorTest.suite());
+        suite.addTest(TaskExecutorTest.suite());
+        suite.addTest(SSLContextAdapterTest.suite());
         return suite;
     }
 }
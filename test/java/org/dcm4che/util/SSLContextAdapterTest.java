@@ -0,0 +1,172 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.KeyStore;
+
+import javax.net.SocketFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.dcm4che.server.Server;
+import org.dcm4che.server.TestServer;
+
+public class SSLContextAdapterTest extends TestCase {
+
+    private static final char[] PASSWD = "secret".toCharArray();
+
+    private static final String[] PROTOCOLS = { "TLSv1.2" };
+
+    private static final int CONNECTIONS = 4;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SSLContextAdapterTest.class);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(SSLContextAdapterTest.class);
+        return suite;
+    }
+
+    public SSLContextAdapterTest(String name) {
+        super(name);
+    }
+
+    private SSLContextAdapter tls;
+    private TestServer testServer;
+    private Server server;
+    private String handlerThread;
+
+    private final Server.Handler handler = new Server.Handler() {
+        public void handle(Socket s) throws IOException {
+            synchronized (SSLContextAdapterTest.this) {
+                handlerThread = Thread.currentThread().getName();
+            }
+            InputStream in = s.getInputStream();
+            while (in.read() != -1)
+                ;
+        }
+
+        public boolean isSockedClosedByHandler() {
+            return false;
+        }
+    };
+
+    protected void setUp() throws Exception {
+        tls = SSLContextAdapter.getInstance();
+        KeyStore key = tls.loadKeyStore(new File("test_tls.p12"), PASSWD);
+        tls.setKey(key, PASSWD);
+        tls.setTrust(key);
+        tls.setEnabledProtocols(PROTOCOLS);
+        testServer = new TestServer(handler);
+        server = testServer.getServer();
+    }
+
+    protected void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private void connect(int n) throws Exception {
+        int port = testServer.start(tls.getServerSocketFactory(null));
+        SocketFactory sf = tls.getSocketFactory(null);
+        for (int i = 0; i < n; i++) {
+            Socket s = sf.createSocket(TestServer.HOST, port);
+            s.getOutputStream().write(i);
+            s.close();
+        }
+        HandshakeMetrics metrics = server.getHandshakeMetrics();
+        for (int i = 0; i < 50 && metrics.getHandshakes() < n; i++)
+            Thread.sleep(100);
+    }
+
+    public void testSessionResumption() throws Exception {
+        connect(CONNECTIONS);
+        HandshakeMetrics client = tls.getHandshakeMetrics();
+        assertEquals(CONNECTIONS, client.getHandshakes());
+        assertEquals(CONNECTIONS - 1, client.getResumedHandshakes());
+        assertEquals(0, client.getFailedHandshakes());
+        HandshakeMetrics server = this.server.getHandshakeMetrics();
+        assertEquals(CONNECTIONS, server.getHandshakes());
+        assertEquals(CONNECTIONS - 1, server.getResumedHandshakes());
+        assertTrue(server.getMaxHandshakeTime() >= server.getMeanHandshakeTime());
+    }
+
+    public void testDisableSessionResumption() throws Exception {
+        tls.setSessionResumption(false);
+        connect(CONNECTIONS);
+        HandshakeMetrics client = tls.getHandshakeMetrics();
+        assertEquals(CONNECTIONS, client.getHandshakes());
+        assertEquals(0, client.getResumedHandshakes());
+        assertEquals(0, server.getHandshakeMetrics().getResumedHandshakes());
+    }
+
+    public void testSessionContext() throws Exception {
+        tls.setSessionCacheSize(10);
+        tls.setSessionTimeout(60);
+        tls.init();
+        assertEquals(10, tls.getSSLContext().getClientSessionContext()
+                .getSessionCacheSize());
+        assertEquals(60, tls.getSSLContext().getServerSessionContext()
+                .getSessionTimeout());
+        tls.setSessionTimeout(120);
+        assertEquals(120, tls.getSSLContext().getClientSessionContext()
+                .getSessionTimeout());
+    }
+
+    public void testHandshakeExecutor() throws Exception {
+        server.setHandshakeExecutor(new TaskExecutor() {
+            public void execute(Runnable task, String name) {
+                new Thread(task, "Handshake-" + name).start();
+            }
+        });
+        connect(1);
+        assertEquals(1, server.getHandshakeMetrics().getHandshakes());
+        synchronized (this) {
+            for (int i = 0; i < 50 && handlerThread == null; i++)
+                wait(100);
+            assertTrue(handlerThread, handlerThread.startsWith("Handshake-"));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at http://sourceforge.net/projects/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * TIANI Medgraph AG.
+ * Portions created by the Initial Developer are Copyright (C) 2002-2005
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * Gunter Zeilinger <gunter.zeilinger@tiani.com>
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class TaskExecutorTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(TaskExecutorTest.class);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(TaskExecutorTest.class);
+        return suite;
+    }
+
+    public TaskExecutorTest(String name) {
+        super(name);
+    }
+
+    private String execute(TaskExecutor executor) throws Exception {
+        final String[] threadName = new String[1];
+        Runnable task = new Runnable() {
+            public void run() {
+                synchronized (threadName) {
+                    threadName[0] = Thread.currentThread().getName();
+                    threadName.notify();
+                }
+            }
+        };
+        synchronized (threadName) {
+            executor.execute(task, "TaskExecutorTest");
+            for (int i = 0; i < 50 && threadName[0] == null; i++)
+                threadName.wait(100);
+        }
+        return threadName[0];
+    }
+
+    public void testPlatformThreadExecutor() throws Exception {
+        assertEquals("TaskExecutorTest",
+                execute(TaskExecutor.getPlatformThreadExecutor()));
+    }
+
+    public void testForName() throws Exception {
+        assertSame(TaskExecutor.getPlatformThreadExecutor(),
+                TaskExecutor.forName("platform"));
+        TaskExecutor virtual = TaskExecutor.forName("virtual");
+        if (TaskExecutor.isVirtualThreadSupported())
+            assertSame(TaskExecutor.getVirtualThreadExecutor(), virtual);
+        else
+            assertSame(TaskExecutor.getPlatformThreadExecutor(), virtual);
+        assertEquals("TaskExecutorTest", execute(virtual));
+        try {
+            TaskExecutor.forName("unknown");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}